@@ -61,6 +61,12 @@ public class Conventions {
 		 * list name is required to invoke a list service
 		 */
 		public static final String LIST_NAME_REQUIRED = "_listNameRequired";
+
+		/**
+		 * one or more partitions of a partitioned job failed. Details are in the
+		 * output of the job
+		 */
+		public static final String PARTITIONS_FAILED = "_partitionsFailed";
 		/**
 		 * list name is required to invoke a list service
 		 */
@@ -119,6 +125,10 @@ public class Conventions {
 		 * name in the context for sessionId
 		 */
 		public static final String SESSION_ID_FIELD_NAME = "sessionId";
+		/**
+		 * content type for a streamed response with new-line delimited json
+		 */
+		public static final String CONTENT_TYPE_NDJSON = "application/x-ndjson";
 		/**
 		 * all Ok
 		 */
@@ -149,6 +159,10 @@ public class Conventions {
 		 * closest!!
 		 */
 		public static final int STATUS_SERVICE_FAILED = 409;
+		/**
+		 * server is running at its full capacity and can not accept this request now
+		 */
+		public static final int STATUS_SERVICE_UNAVAILABLE = 503;
 	}
 
 	/**
@@ -214,6 +228,31 @@ public class Conventions {
 		 * responded with
 		 */
 		public static final String TAG_TABLE_NAME = "tableName";
+
+		/**
+		 * request may set this to true to receive tabular data in the compact form
+		 * {"columns": ["a", "b"...], "rows": [[1, 2..]...]} instead of an array of
+		 * objects in which every row repeats the column names
+		 */
+		public static final String TAG_COMPACT_ARRAYS = "compactArrays";
+		/**
+		 * member name for the column names of tabular data in the compact form
+		 */
+		public static final String TAG_COLUMNS = "columns";
+		/**
+		 * member name for the rows of tabular data in the compact form
+		 */
+		public static final String TAG_ROWS = "rows";
+		/**
+		 * request may set this to true to receive rows as new-line delimited json, as
+		 * and when they are read. The last line is the usual response object with
+		 * status and messages
+		 */
+		public static final String TAG_STREAM = "stream";
+		/**
+		 * default number of rows after which a streamed response is flushed
+		 */
+		public static final int DEFAULT_STREAM_FLUSH_INTERVAL = 100;
 		/**
 		 * request object may contain an array of filter conditions with tag filterBy
 		 * e.g. "filterBy":[{"field": "field1"....}
@@ -264,6 +303,34 @@ public class Conventions {
 		 */
 		public static final String TAG_DATA_OBJECT = "dataObject";
 
+		/**
+		 * a batch request has an array of calls, each of the form {"id": "callId",
+		 * "service": "serviceName", "data": {...}}
+		 */
+		public static final String TAG_CALLS = "calls";
+		/**
+		 * id of a call in a batch request. Response for the call is keyed by this id
+		 */
+		public static final String TAG_CALL_ID = "id";
+		/**
+		 * batch request may set this to true to have its calls served in parallel
+		 */
+		public static final String TAG_PARALLEL = "parallel";
+		/**
+		 * object in the response to a batch request that has the response for each
+		 * call as a member named with its id
+		 */
+		public static final String TAG_RESPONSES = "responses";
+		/**
+		 * id of a job that is run in the background. returned by an async service,
+		 * and is used to get the status/output of the job
+		 */
+		public static final String TAG_JOB_ID = "jobId";
+		/**
+		 * default max number of calls that a batch request may have
+		 */
+		public static final int DEFAULT_MAX_BATCH_CALLS = 20;
+
 	}
 
 	/**
@@ -340,6 +407,11 @@ public class Conventions {
 		 * generated by the generator and placed in the gen root package
 		 */
 		public static final String GENERATED_MESSAGES_CLASS_NAME = "DefinedMessages";
+		/**
+		 * index of all the generated forms, records and lists. This is generated by
+		 * the generator and placed in the gen root package
+		 */
+		public static final String GENERATED_COMP_INDEX_CLASS_NAME = "GeneratedCompIndex";
 
 		/**
 		 * folder name under which services are defined
@@ -415,6 +487,14 @@ public class Conventions {
 		 * predefined name for Report Configuration Service service
 		 */
 		public static final String SERVICE_GET_REPORT_SETTINGS = "_getReportSettings";
+		/**
+		 * predefined name for the service that returns a snapshot of request metrics
+		 */
+		public static final String SERVICE_METRICS = "_metrics";
+		/**
+		 * predefined name for a request that has several service calls in it
+		 */
+		public static final String SERVICE_BATCH = "_batch";
 		/**
 		 * predefined name for the service to get the output of an async-service that
 		 * was requested earlier
@@ -424,6 +504,25 @@ public class Conventions {
 		 * name with which the user data is saved in the context
 		 */
 		public static final String USER_IN_CTX = "_user";
+		/**
+		 * name with which the progress recorder is saved in the context of a
+		 * service that is run as a job
+		 */
+		public static final String JOB_PROGRESS_IN_CTX = "_jobProgress";
+
+		/**
+		 * name with which the id of the job is saved in the context of a
+		 * service that is run as a job. Work done by the service, like an
+		 * upload, is checkpointed with an id derived from this
+		 */
+		public static final String JOB_ID_IN_CTX = "_jobId";
+
+		/**
+		 * name with which the number of uploads run so far is saved in the
+		 * context of a service that is run as a job. Each upload in a job is
+		 * checkpointed with an id of its own
+		 */
+		public static final String NBR_UPLOADS_IN_CTX = "_nbrUploads";
 
 	}
 
@@ -463,6 +562,15 @@ public class Conventions {
 		 * list of fields from this form.
 		 */
 		public static final String TAG_FIELDS = "fields";
+		/**
+		 * number of rows to be committed as one transaction.
+		 */
+		public static final String TAG_CHUNK_SIZE = "chunkSize";
+		/**
+		 * number of threads to parse the rows. Rows are uploaded on the calling
+		 * thread if this is not specified.
+		 */
+		public static final String TAG_NBR_WORKERS = "nbrWorkers";
 		/**
 		 * indicates that this is set to a constant value
 		 */
@@ -22,6 +22,8 @@
 package org.simplity.fm.core;
 
 import org.simplity.fm.core.data.Field;
+import org.simplity.fm.core.service.IInputArray;
+import org.simplity.fm.core.service.IInputData;
 import org.simplity.fm.core.service.IOutputData;
 
 /**
@@ -92,6 +94,44 @@ public class Message {
 		return new Message(messageType, messageId, null, params, null, -1);
 	}
 
+	/**
+	 * re-create a message from the data that was written using
+	 * toOutputData()
+	 *
+	 * @param data
+	 * @return message
+	 */
+	public static Message fromInputData(final IInputData data) {
+		MessageType type = MessageType.Error;
+		final String text = data.getString("type");
+		for (final MessageType mt : MessageType.values()) {
+			if (mt.name().equalsIgnoreCase(text)) {
+				type = mt;
+				break;
+			}
+		}
+		String[] params = null;
+		final IInputArray arr = data.getArray("params");
+		if (arr != null) {
+			params = arr.toStringArray();
+		}
+		final String idx = getText(data, "idx");
+		final int rowNumber = idx == null ? -1 : (int) data.getInteger("idx");
+		return new Message(type, getText(data, "id"), getText(data, "fieldName"), params,
+				getText(data, "objectName"), rowNumber);
+	}
+
+	/*
+	 * missing member may be returned as empty string
+	 */
+	private static String getText(final IInputData data, final String name) {
+		final String text = data.getString(name);
+		if (text == null || text.isEmpty()) {
+			return null;
+		}
+		return text;
+	}
+
 	/**
 	 * message type/severity.
 	 */
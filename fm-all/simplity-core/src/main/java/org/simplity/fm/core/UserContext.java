@@ -22,12 +22,24 @@
 
 package org.simplity.fm.core;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.simplity.fm.core.data.OverrideUtil;
 import org.simplity.fm.core.data.OverrideUtil.Overrides;
 import org.simplity.fm.core.data.RecordOverride;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * data that is to be cached for a logged-in user that is used across service
@@ -38,6 +50,15 @@ import org.simplity.fm.core.data.RecordOverride;
  *
  */
 public class UserContext {
+	private static final Logger logger = LoggerFactory.getLogger(UserContext.class);
+	private static final byte TYPE_NULL = 0;
+	private static final byte TYPE_LONG = 1;
+	private static final byte TYPE_TEXT = 2;
+	private static final byte TYPE_INT = 3;
+	/*
+	 * constructors used for de-serialization, by class name
+	 */
+	private static final Map<String, Constructor<?>> readers = new ConcurrentHashMap<>();
 
 	/**
 	 * userId for whom this context is created. not-null non-empty. If this is for a
@@ -62,10 +83,24 @@ public class UserContext {
 	 * name of records that are overridden in this context
 	 */
 	protected Set<String> recordOverrides;
+	/*
+	 * version of the overrides with which the above sets are built. -1 forces a
+	 * refresh, like after this context is read from a session store on another
+	 * node. This is not serialized
+	 */
+	private volatile long overrideVersion = -1;
+	/*
+	 * set when this context is modified after it is cached, so that it is put
+	 * back into the cache (and hence into a shared session store) at the end of
+	 * the request. This is not serialized
+	 */
+	private volatile boolean modified;
 	/**
-	 * pending jobs that the user has asked for, but not delivered yet
+	 * pending jobs that the user has asked for, but not delivered yet. A
+	 * concurrent set, as the calls in a batch request may be served in parallel
+	 * for the same context
 	 */
-	protected Set<String> jobs;
+	protected volatile Set<String> jobs;
 
 	/**
 	 *
@@ -75,6 +110,139 @@ public class UserContext {
 		this.userId = userId;
 	}
 
+	/**
+	 * re-create a context from its serialized form. A sub-class MUST have a
+	 * constructor with DataInput as its only parameter that calls this first, and
+	 * then reads its own fields in the same order in which its writeTo() writes
+	 * them
+	 *
+	 * @param in
+	 * @throws IOException
+	 */
+	protected UserContext(final DataInput in) throws IOException {
+		this.userId = in.readLong();
+		final byte type = in.readByte();
+		if (type == TYPE_LONG) {
+			this.tenantId = in.readLong();
+		} else if (type == TYPE_INT) {
+			this.tenantId = in.readInt();
+		} else if (type == TYPE_TEXT) {
+			this.tenantId = in.readUTF();
+		}
+		this.overrideId = in.readBoolean() ? in.readUTF() : null;
+		this.formOverrides = readSet(in);
+		this.recordOverrides = readSet(in);
+		final Set<String> set = readSet(in);
+		if (set != null) {
+			this.jobs = ConcurrentHashMap.newKeySet();
+			this.jobs.addAll(set);
+		}
+	}
+
+	/**
+	 * write this context in a compact binary form, to be read back with the
+	 * constructor that takes a DataInput. A sub-class that has its own fields must
+	 * override this, call super.writeTo() first, and then write its fields
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeTo(final DataOutput out) throws IOException {
+		out.writeLong(this.userId);
+		final Object tid = this.tenantId;
+		if (tid == null) {
+			out.writeByte(TYPE_NULL);
+		} else if (tid instanceof Long) {
+			out.writeByte(TYPE_LONG);
+			out.writeLong((Long) tid);
+		} else if (tid instanceof Integer) {
+			out.writeByte(TYPE_INT);
+			out.writeInt((Integer) tid);
+		} else {
+			out.writeByte(TYPE_TEXT);
+			out.writeUTF(tid.toString());
+		}
+		out.writeBoolean(this.overrideId != null);
+		if (this.overrideId != null) {
+			out.writeUTF(this.overrideId);
+		}
+		writeSet(out, this.formOverrides);
+		writeSet(out, this.recordOverrides);
+		writeSet(out, this.jobs);
+	}
+
+	/**
+	 * serialize a context, including its class name, into bytes that can be
+	 * stored outside this JVM
+	 *
+	 * @param ctx non-null
+	 * @return bytes from which the context can be re-created with fromBytes()
+	 * @throws IOException
+	 */
+	public static byte[] toBytes(final UserContext ctx) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeUTF(ctx.getClass().getName());
+			ctx.writeTo(out);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * re-create a context from the bytes that were created using toBytes()
+	 *
+	 * @param bytes
+	 * @return user context. null in case of any error, or if the class named in
+	 *         the bytes is not a UserContext
+	 */
+	public static UserContext fromBytes(final byte[] bytes) {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+			final String cls = in.readUTF();
+			Constructor<?> cons = readers.get(cls);
+			if (cons == null) {
+				/*
+				 * the class name comes from stored data. It is not initialized, let alone
+				 * instantiated, unless it is a UserContext
+				 */
+				final Class<?> c = Class.forName(cls, false, UserContext.class.getClassLoader());
+				if (!UserContext.class.isAssignableFrom(c)) {
+					logger.error("{} is not a UserContext. Stored session is rejected", cls);
+					return null;
+				}
+				cons = c.getDeclaredConstructor(DataInput.class);
+				cons.setAccessible(true);
+				readers.put(cls, cons);
+			}
+			return (UserContext) cons.newInstance(in);
+		} catch (final Exception e) {
+			logger.error("Error while de-serializing a user context: {}", e.getMessage());
+			return null;
+		}
+	}
+
+	private static void writeSet(final DataOutput out, final Set<String> set) throws IOException {
+		if (set == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(set.size());
+		for (final String s : set) {
+			out.writeUTF(s);
+		}
+	}
+
+	private static Set<String> readSet(final DataInput in) throws IOException {
+		final int n = in.readInt();
+		if (n == -1) {
+			return null;
+		}
+		final Set<String> set = new HashSet<>();
+		for (int i = 0; i < n; i++) {
+			set.add(in.readUTF());
+		}
+		return set;
+	}
+
 	/**
 	 *
 	 * @return the ID of the user to whom this session belongs to
@@ -83,6 +251,15 @@ public class UserContext {
 		return this.userId;
 	}
 
+	/**
+	 *
+	 * @return id with which forms/records are overridden for this user. null if
+	 *         there are no overrides
+	 */
+	public String getOverrideId() {
+		return this.overrideId;
+	}
+
 	/**
 	 *
 	 * @return null if this app is not multi-tenant, or if it is not set
@@ -97,26 +274,72 @@ public class UserContext {
 	 */
 	public void setTenantId(Object id) {
 		this.tenantId = id;
+		this.modified = true;
+	}
+
+	/**
+	 * to be invoked by the extended class whenever its fields are modified, so
+	 * that the context is saved back into the session cache at the end of the
+	 * request
+	 */
+	protected void setModified() {
+		this.modified = true;
+	}
+
+	/**
+	 * check whether this context is modified, and reset the flag
+	 *
+	 * @return true if this context was modified after it was last checked
+	 */
+	public boolean checkAndResetModified() {
+		if (!this.modified) {
+			return false;
+		}
+		this.modified = false;
+		return true;
 	}
 
 	/**
 	 * to be invoked by the extended class to cache the form/record overrides
 	 */
 	protected void setOverrides(final String id) {
+		final long version = OverrideUtil.getVersion(id);
 		final Overrides overs = OverrideUtil.getOverides(id);
 		if (overs == null) {
 			return;
 		}
 
 		this.overrideId = id;
-		this.formOverrides = new HashSet<>();
-		for (final String s : overs.forms) {
-			this.formOverrides.add(s);
+		this.loadOverrides(overs, version);
+	}
+
+	private void loadOverrides(final Overrides overs, final long version) {
+		final Set<String> forms = new HashSet<>();
+		final Set<String> records = new HashSet<>();
+		if (overs != null) {
+			for (final String s : overs.forms) {
+				forms.add(s);
+			}
+			for (final String s : overs.records) {
+				records.add(s);
+			}
 		}
+		this.formOverrides = forms;
+		this.recordOverrides = records;
+		this.overrideVersion = version;
+	}
 
-		this.recordOverrides = new HashSet<>();
-		for (final String s : overs.records) {
-			this.recordOverrides.add(s);
+	/*
+	 * overrides may have been modified after this context was created
+	 */
+	private void refreshOverrides() {
+		final String id = this.overrideId;
+		if (id == null) {
+			return;
+		}
+		final long version = OverrideUtil.getVersion(id);
+		if (version != this.overrideVersion) {
+			this.loadOverrides(OverrideUtil.getOverides(id), version);
 		}
 	}
 
@@ -128,6 +351,7 @@ public class UserContext {
 	 *
 	 */
 	public String getRecordOverrideId(final String recordName) {
+		this.refreshOverrides();
 		if (this.recordOverrides != null && this.recordOverrides.contains(recordName)) {
 			return this.overrideId;
 		}
@@ -140,6 +364,7 @@ public class UserContext {
 	 * @return id with which this form is overridden. null if it is not overridden.
 	 */
 	public String getFormOverrideId(final String formName) {
+		this.refreshOverrides();
 		if (this.formOverrides != null && this.formOverrides.contains(formName)) {
 			return this.overrideId;
 		}
@@ -162,10 +387,28 @@ public class UserContext {
 	 * @param jobId must be a valid jobId returned by the JobManager
 	 */
 	public void addJob(final String jobId) {
-		if (this.jobs == null) {
-			this.jobs = new HashSet<>();
+		Set<String> set = this.jobs;
+		if (set == null) {
+			synchronized (this) {
+				if (this.jobs == null) {
+					this.jobs = ConcurrentHashMap.newKeySet();
+				}
+				set = this.jobs;
+			}
 		}
-		this.jobs.add(jobId);
+		set.add(jobId);
+		this.modified = true;
+	}
+
+	/**
+	 *
+	 * @param jobId
+	 * @return true if this job was started on behalf of this context, and is not
+	 *         delivered yet
+	 */
+	public boolean hasJob(final String jobId) {
+		final Set<String> set = this.jobs;
+		return set != null && set.contains(jobId);
 	}
 
 	/**
@@ -174,8 +417,9 @@ public class UserContext {
 	 * @param jobId
 	 */
 	public void removeJob(final String jobId) {
-		if (this.jobs != null) {
-			this.jobs.remove(jobId);
+		final Set<String> set = this.jobs;
+		if (set != null && set.remove(jobId)) {
+			this.modified = true;
 		}
 	}
 }
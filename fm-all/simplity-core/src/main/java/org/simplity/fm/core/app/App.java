@@ -25,32 +25,63 @@ package org.simplity.fm.core.app;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
-
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.simplity.fm.core.ApplicationError;
 import org.simplity.fm.core.Conventions;
 import org.simplity.fm.core.Message;
 import org.simplity.fm.core.UserContext;
 import org.simplity.fm.core.db.IDbDriver;
 import org.simplity.fm.core.infra.IAccessController;
+import org.simplity.fm.core.infra.IAdmissionController;
+import org.simplity.fm.core.infra.IAdmissionController.IPermit;
+import org.simplity.fm.core.infra.ICheckpointStore;
 import org.simplity.fm.core.infra.ICompProvider;
 import org.simplity.fm.core.infra.IEmailer;
 import org.simplity.fm.core.infra.IExceptionListener;
+import org.simplity.fm.core.infra.IJobManager;
+import org.simplity.fm.core.infra.IMetricsCollector;
+import org.simplity.fm.core.infra.IMetricsCollector.Phase;
 import org.simplity.fm.core.infra.IRequestLogger;
+import org.simplity.fm.core.infra.IScheduler;
 import org.simplity.fm.core.infra.IServiceContextFactory;
 import org.simplity.fm.core.infra.ISessionCache;
+import org.simplity.fm.core.infra.ITempFileManager;
 import org.simplity.fm.core.infra.ITexter;
 import org.simplity.fm.core.infra.defalt.DefaultCompProvider;
+import org.simplity.fm.core.infra.defalt.DefaultMetricsCollector;
+import org.simplity.fm.core.infra.defalt.DefaultScheduler;
 import org.simplity.fm.core.infra.defalt.DefaultContextFactory;
+import org.simplity.fm.core.infra.defalt.DefaultJobManager;
 import org.simplity.fm.core.infra.defalt.DefaultSessionCacher;
+import org.simplity.fm.core.infra.defalt.DefaultTempFileManager;
+import org.simplity.fm.core.infra.defalt.StoreBackedSessionCache;
 import org.simplity.fm.core.infra.defalt.DefunctAccessController;
+import org.simplity.fm.core.infra.defalt.DefunctAdmissionController;
+import org.simplity.fm.core.infra.defalt.DefunctCheckpointStore;
 import org.simplity.fm.core.infra.defalt.DefunctCompProvider;
 import org.simplity.fm.core.infra.defalt.DefunctDbConFactory;
 import org.simplity.fm.core.infra.defalt.DefunctEmailer;
 import org.simplity.fm.core.infra.defalt.DefunctExceptionListener;
 import org.simplity.fm.core.infra.defalt.DefunctRequestLogger;
+import org.simplity.fm.core.infra.defalt.DefunctTempFileManager;
 import org.simplity.fm.core.infra.defalt.DefunctTexter;
 import org.simplity.fm.core.jdbc.DbDriver;
+import org.simplity.fm.core.job.internal.ServiceAsJob;
 import org.simplity.fm.core.json.JsonUtil;
+import org.simplity.fm.core.service.IInputArray;
 import org.simplity.fm.core.service.IInputData;
 import org.simplity.fm.core.service.IOutputData;
 import org.simplity.fm.core.service.IService;
@@ -75,6 +106,12 @@ class App implements IApp {
 	private static final String TAG_STATUS = "status";
 	private static final String TAG_STATUS_DESC = "statusDescription";
 	private static final String TAG_DATA = "data";
+	private static final String TAG_RESPONSES = Conventions.Request.TAG_RESPONSES;
+	/*
+	 * requests for services that are not served are accounted under this name,
+	 * so that junk names do not pollute the metrics
+	 */
+	private static final String INVALID_SERVICE = "_invalidService";
 
 	protected static final Logger logger = LoggerFactory.getLogger(App.class);
 
@@ -91,7 +128,23 @@ class App implements IApp {
 	private final ITexter texter;
 	private final IEmailer emailer;
 	private final IServiceContextFactory contextFactory;
+	private final IMetricsCollector metrics;
+	private final IAdmissionController admission;
+	private final ITempFileManager tempFiles;
+	private final ICheckpointStore checkpoints;
+	private final IJobManager jobManager;
+	private final IScheduler scheduler;
+	/*
+	 * null if identical requests are not to be coalesced
+	 */
+	private final RequestCoalescer coalescer;
+	/*
+	 * null if the calls in a batch are not to be served in parallel
+	 */
+	private final ExecutorService batchExecutor;
+	private final int maxBatchCalls;
 	private int maxRowsForFilter = 10000;
+	private int streamFlushInterval = Conventions.Request.DEFAULT_STREAM_FLUSH_INTERVAL;
 
 	/**
 	 * configure the app
@@ -107,6 +160,9 @@ class App implements IApp {
 		if (config.maxRowsForFilter != 0) {
 			this.maxRowsForFilter = config.maxRowsForFilter;
 		}
+		if (config.streamFlushInterval > 0) {
+			this.streamFlushInterval = config.streamFlushInterval;
+		}
 
 		String text = config.appRootPackage;
 
@@ -143,9 +199,14 @@ class App implements IApp {
 			this.listener = config.exceptionListener;
 		}
 
-		if (config.sessionCache == null) {
+		if (config.sessionCache == null && config.sessionStore != null) {
+			logger.info("Sessions are saved to the configured store, with a near-cache on this node");
+			this.cache = new StoreBackedSessionCache(config.sessionStore, config.sessionIdleSeconds,
+					config.sessionMaxLifeSeconds, config.nearCacheSeconds);
+		} else if (config.sessionCache == null) {
 			logger.warn("No Session Cacher controller configured. local caching arranged instead..");
-			this.cache = new DefaultSessionCacher();
+			this.cache = new DefaultSessionCacher(config.sessionIdleSeconds, config.sessionMaxLifeSeconds,
+					config.maxSessions);
 		} else {
 			this.cache = config.sessionCache;
 		}
@@ -157,6 +218,49 @@ class App implements IApp {
 			this.reqLogger = config.requestLogger;
 		}
 
+		if (config.metricsCollector == null) {
+			this.metrics = new DefaultMetricsCollector();
+		} else {
+			this.metrics = config.metricsCollector;
+		}
+
+		if (config.admissionController == null) {
+			this.admission = new DefunctAdmissionController();
+		} else {
+			this.admission = config.admissionController;
+		}
+
+		this.coalescer = config.coalesceReadOnlyRequests ? new RequestCoalescer() : null;
+		this.maxBatchCalls = config.maxBatchCalls > 0 ? config.maxBatchCalls
+				: Conventions.Request.DEFAULT_MAX_BATCH_CALLS;
+		this.batchExecutor = config.batchThreads > 0 ? newBatchExecutor(config.batchThreads) : null;
+
+		if (config.tempFileManager != null) {
+			this.tempFiles = config.tempFileManager;
+		} else {
+			this.tempFiles = newTempFileManager();
+		}
+
+		if (config.checkpointStore != null) {
+			this.checkpoints = config.checkpointStore;
+		} else {
+			this.checkpoints = new DefunctCheckpointStore();
+		}
+
+		if (config.jobManager != null) {
+			this.jobManager = config.jobManager;
+		} else {
+			this.jobManager = new DefaultJobManager(DefaultJobManager.DEFAULT_NBR_THREADS,
+					DefaultJobManager.DEFAULT_MAX_WAITING, this.tempFiles, DefaultJobManager.DEFAULT_RETAIN_SECONDS,
+					this.checkpoints);
+		}
+
+		if (config.scheduler == null) {
+			this.scheduler = new DefaultScheduler(this.jobManager);
+		} else {
+			this.scheduler = config.scheduler;
+		}
+
 		if (config.texter == null) {
 			logger.warn(
 					"SMS texts can not be sent as the facility is not configured. SMS text will insted be just logged");
@@ -180,6 +284,33 @@ class App implements IApp {
 		}
 	}
 
+	/*
+	 * calls are served on the requesting thread when all the threads are busy and
+	 * the queue is full. This limits the threads used by batches without
+	 * rejecting any call
+	 */
+	private static ExecutorService newBatchExecutor(final int nbrThreads) {
+		final AtomicInteger nbr = new AtomicInteger();
+		final ThreadPoolExecutor ex = new ThreadPoolExecutor(nbrThreads, nbrThreads, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(nbrThreads * 4), r -> {
+					final Thread t = new Thread(r, "batch-" + nbr.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}, new ThreadPoolExecutor.CallerRunsPolicy());
+		ex.allowCoreThreadTimeOut(true);
+		return ex;
+	}
+
+	private static ITempFileManager newTempFileManager() {
+		try {
+			return new DefaultTempFileManager();
+		} catch (ApplicationError e) {
+			logger.error("Default temp file manager could not be created: {}. Temp files will not be saved",
+					e.getMessage());
+			return new DefunctTempFileManager();
+		}
+	}
+
 	@Override
 	public int getMaxRowsToExtractFromDb() {
 		return this.maxRowsForFilter;
@@ -195,6 +326,35 @@ class App implements IApp {
 		return this.appName;
 	}
 
+	@Override
+	public void shutdown() {
+		logger.info("App {} is shutting down", this.appName);
+		// no more jobs are fired by the scheduler
+		this.scheduler.shutdown();
+		this.jobManager.shutdown();
+		if (this.batchExecutor != null) {
+			this.batchExecutor.shutdown();
+		}
+		// output of jobs can no more be downloaded from this instance
+		this.tempFiles.shutdown();
+	}
+
+	/**
+	 * create app components up-front if the comp provider supports it, and
+	 * resume the jobs that were interrupted by the last shut down. To be invoked
+	 * after this app is registered with the AppManager, as components refer to
+	 * the app while being created
+	 */
+	void warmUp() {
+		if (this.compProvider instanceof DefaultCompProvider) {
+			((DefaultCompProvider) this.compProvider).warmUp();
+		}
+		final int nbr = this.jobManager.resumeInterruptedJobs();
+		if (nbr > 0) {
+			logger.info("{} interrupted jobs are resumed from their checkpoints", nbr);
+		}
+	}
+
 	@Override
 	public ICompProvider getCompProvider() {
 		return this.compProvider;
@@ -215,6 +375,36 @@ class App implements IApp {
 		return this.emailer;
 	}
 
+	@Override
+	public IMetricsCollector getMetricsCollector() {
+		return this.metrics;
+	}
+
+	@Override
+	public IJobManager getJobManager() {
+		return this.jobManager;
+	}
+
+	@Override
+	public IScheduler getScheduler() {
+		return this.scheduler;
+	}
+
+	@Override
+	public ITempFileManager getTempFileManager() {
+		return this.tempFiles;
+	}
+
+	@Override
+	public ICheckpointStore getCheckpointStore() {
+		return this.checkpoints;
+	}
+
+	@Override
+	public ISessionCache getSessionCache() {
+		return this.cache;
+	}
+
 	@Override
 	public boolean guestsOk() {
 		return this.serveGuests;
@@ -222,34 +412,77 @@ class App implements IApp {
 
 	@Override
 	public RequestStatus serve(IInputData inData, Writer writer) throws IOException {
-		IServiceContext ctx = null;
+		final long start = System.nanoTime();
 		String serviceName = inData.getString(TAG_SERVICE);
 		if (serviceName == null || serviceName.isEmpty()) {
 			logger.error("Attribute named {} is required for service name", TAG_SERVICE);
 			return writeErrorResponse(RequestStatus.ServiceNameRequired, writer);
 		}
+		/*
+		 * session is resolved once for all the calls in a batch
+		 */
+		String sessionId = inData.getString(TAG_SESSION_ID);
+		UserContext utx = null;
+		if (sessionId != null && sessionId.isEmpty() == false) {
+			utx = this.cache.get(sessionId);
+			if (utx == null) {
+				logger.info("SessionId {} not found in cache. May be timed-out", sessionId);
+			}
+		}
+		if (utx == null) {
+			sessionId = null;
+		}
+
+		try {
+			if (serviceName.equals(Conventions.App.SERVICE_BATCH)) {
+				return this.serveBatch(inData, sessionId, utx, writer);
+			}
+			return this.serveCall(serviceName, inData, sessionId, utx, writer, start);
+		} finally {
+			if (utx != null) {
+				this.saveUserContext(sessionId, utx);
+			}
+		}
+	}
+
+	/*
+	 * a context that is modified by the services is put back into the cache, so
+	 * that the modification is not lost when the cache is backed by a shared store.
+	 * It is not put back if the session was removed while serving
+	 */
+	private void saveUserContext(String sessionId, UserContext utx) {
+		if (utx.checkAndResetModified() && this.cache.get(sessionId) != null) {
+			this.cache.put(sessionId, utx);
+		}
+	}
+
+	/*
+	 * serve a service, accounting for it in the metrics
+	 */
+	private RequestStatus serveCall(String serviceName, IInputData inData, String sessionId, UserContext utx,
+			Writer writer, long start) throws IOException {
+		RequestStatus status = RequestStatus.ServerError;
+		try {
+			status = this.serve(serviceName, inData, sessionId, utx, writer, start);
+			return status;
+		} finally {
+			final String name = status == RequestStatus.NoSuchService ? INVALID_SERVICE : serviceName;
+			this.metrics.requestCompleted(name, status, System.nanoTime() - start);
+		}
+	}
+
+	private RequestStatus serve(String serviceName, IInputData inData, String sessionId, UserContext utx,
+			Writer writer, long start) throws IOException {
+		IServiceContext ctx = null;
 		try {
 
-			UserContext utx = null;
 			long userId = 0;
-			String sessionId = inData.getString(TAG_SESSION_ID);
-			if (sessionId != null && sessionId.isEmpty()) {
-				sessionId = null;
-			}
 
 			StringWriter stringWriter = new StringWriter();
 			IOutputData outData = JsonUtil.newOutputData(stringWriter);
+			outData.setCompactArrays(inData.getBoolean(Conventions.Request.TAG_COMPACT_ARRAYS));
 			outData.beginObject();
 
-			// get user context
-			if (sessionId != null) {
-				utx = this.cache.get(sessionId);
-				if (utx == null) {
-					logger.info("SessionId {} not found in cache. May be timed-out", sessionId);
-					sessionId = null;
-				}
-			}
-
 			if (utx == null) {
 				ctx = this.contextFactory.newSessionLessContext(outData);
 			} else {
@@ -258,11 +491,18 @@ class App implements IApp {
 				logger.info("Session for user-id {} retrieved", userId);
 			}
 
-			IService service = this.compProvider.getService(serviceName, ctx);
+			final long sessionDone = System.nanoTime();
+			IService service = null;
+			if (serviceName.equals(Conventions.App.SERVICE_BATCH) == false) {
+				service = this.compProvider.getService(serviceName, ctx);
+			}
 
 			if (service == null) {
 				return writeErrorResponse(RequestStatus.NoSuchService, writer);
 			}
+			final long lookupDone = System.nanoTime();
+			this.metrics.record(serviceName, Phase.Session, sessionDone - start);
+			this.metrics.record(serviceName, Phase.Lookup, lookupDone - sessionDone);
 
 			if (service.serveGuests() == false && userId == 0) {
 				return writeErrorResponse(RequestStatus.SessionRequired, writer);
@@ -272,6 +512,10 @@ class App implements IApp {
 				return writeErrorResponse(RequestStatus.NoSuchService, writer);
 			}
 
+			if (service.isAsynch()) {
+				service = new ServiceAsJob(service);
+			}
+
 			IInputData data = inData.getData(TAG_DATA);
 			if (data == null) {
 				data = JsonUtil.newInputData();
@@ -284,38 +528,40 @@ class App implements IApp {
 			ctx.setValue(Conventions.Http.CLIENT_IP_FIELD_NAME, ip);
 			ctx.setValue(Conventions.Http.SESSION_ID_FIELD_NAME, sessionId);
 
-			this.reqLogger.log("" + userId, serviceName, ip, inData.toString());
-
-			outData.addName(TAG_DATA).beginObject();
-			service.serve(ctx, data);
-			outData.endObject();
-
-			RequestStatus status = ctx.allOk() ? RequestStatus.Completed : RequestStatus.CompletedWithErrors;
-			outData.addName(TAG_STATUS).addValue(status.getMessageId());
+			this.reqLogger.log("" + userId, serviceName, ip, inData);
 
-			if (sessionId != null && ctx.toResetUserContext()) {
-				this.cache.remove(sessionId);
+			/*
+			 * rows streamed by the service go to the writer directly. The response object
+			 * is written as the last line after the service completes
+			 */
+			final boolean toStream = inData.getBoolean(Conventions.Request.TAG_STREAM);
+			if (toStream) {
+				ctx.enableStreaming(writer, this.streamFlushInterval);
 			}
 
-			UserContext newCtx = ctx.getNewUserContext();
-			if (newCtx != null) {
-				if (sessionId != null) {
-					this.cache.remove(sessionId);
-				}
-				sessionId = UUID.randomUUID().toString();
-				this.cache.put(sessionId, newCtx);
-				outData.addName(TAG_SESSION_ID).addValue(sessionId);
-				logger.info("Session created for user {}", newCtx.getUserId());
+			/*
+			 * lambda requires effectively final variables
+			 */
+			final IServiceContext sctx = ctx;
+			final IInputData payload = data;
+			final IService svc = service;
+			final Callable<ServiceResponse> task = () -> this.execute(serviceName, svc, sctx, payload, sessionId,
+					outData, stringWriter);
+
+			final ServiceResponse resp;
+			if (this.coalescer != null && !toStream && svc.isReadOnly()) {
+				final String key = toCoalescingKey(serviceName, utx, svc.isUserIndependent(), payload,
+						outData.isCompactArrays());
+				resp = this.coalescer.execute(key, task);
+			} else {
+				resp = task.call();
 			}
 
-			Message[] messages = ctx.getMessages();
-			if (messages != null && messages.length > 0) {
-				writeMessages(messages, outData);
+			writer.write(resp.getResponseData());
+			if (toStream) {
+				writer.write('\n');
 			}
-
-			outData.endObject();
-			writer.write(stringWriter.toString());
-			return status;
+			return resp.getStatus();
 
 		} catch (Exception | Error e) {
 			logger.error("Service {} threw an exception: {} ", serviceName);
@@ -326,6 +572,172 @@ class App implements IApp {
 
 	}
 
+	/*
+	 * serve each of the calls in a batch request. Response has the response of
+	 * each call as a member named with the call id.
+	 */
+	private RequestStatus serveBatch(IInputData inData, String sessionId, UserContext utx, Writer writer)
+			throws IOException {
+		final IInputArray arr = inData.getArray(Conventions.Request.TAG_CALLS);
+		if (arr == null || arr.length() == 0 || arr.length() > this.maxBatchCalls) {
+			logger.error("A batch request must have 1 to {} calls in an array named {}", this.maxBatchCalls,
+					Conventions.Request.TAG_CALLS);
+			return writeErrorResponse(RequestStatus.InvalidDataFormat, writer);
+		}
+
+		final IInputData[] calls = arr.toDataArray();
+		final String[] ids = new String[calls.length];
+		final Set<String> uniqueIds = new HashSet<>();
+		final String ip = inData.getString(Conventions.Http.CLIENT_IP_FIELD_NAME);
+		final boolean compact = inData.getBoolean(Conventions.Request.TAG_COMPACT_ARRAYS);
+		for (int i = 0; i < calls.length; i++) {
+			final IInputData call = calls[i];
+			final String id = call == null ? null : call.getString(Conventions.Request.TAG_CALL_ID);
+			if (id == null || id.isEmpty() || uniqueIds.add(id) == false) {
+				logger.error("Each call in a batch request must have a unique value for {}",
+						Conventions.Request.TAG_CALL_ID);
+				return writeErrorResponse(RequestStatus.InvalidDataFormat, writer);
+			}
+			ids[i] = id;
+			/*
+			 * a call inherits these from the batch. Its response can not be streamed
+			 */
+			call.addValue(Conventions.Http.CLIENT_IP_FIELD_NAME, ip);
+			call.addValue(Conventions.Request.TAG_STREAM, "false");
+			if (compact) {
+				call.addValue(Conventions.Request.TAG_COMPACT_ARRAYS, "true");
+			}
+		}
+
+		final ServiceResponse[] responses = new ServiceResponse[calls.length];
+		if (this.batchExecutor != null && calls.length > 1 && inData.getBoolean(Conventions.Request.TAG_PARALLEL)) {
+			final List<Future<ServiceResponse>> futures = new ArrayList<>(calls.length);
+			for (int i = 1; i < calls.length; i++) {
+				final IInputData call = calls[i];
+				futures.add(this.batchExecutor.submit(() -> this.serveBatchCall(call, sessionId, utx)));
+			}
+			/*
+			 * this thread serves the first call rather than just waiting
+			 */
+			responses[0] = this.serveBatchCall(calls[0], sessionId, utx);
+			for (int i = 1; i < calls.length; i++) {
+				try {
+					responses[i] = futures.get(i - 1).get();
+				} catch (InterruptedException | ExecutionException e) {
+					logger.error("Call {} in a batch request could not be completed: {}", ids[i], e.getMessage());
+					StringWriter sw = new StringWriter();
+					responses[i] = new ServiceResponse(writeErrorResponse(RequestStatus.ServerError, sw),
+							sw.toString());
+				}
+			}
+		} else {
+			for (int i = 0; i < calls.length; i++) {
+				responses[i] = this.serveBatchCall(calls[i], sessionId, utx);
+			}
+		}
+
+		RequestStatus status = RequestStatus.Completed;
+		StringWriter stringWriter = new StringWriter();
+		IOutputData outData = JsonUtil.newOutputData(stringWriter);
+		outData.beginObject();
+		outData.addName(TAG_RESPONSES).beginObject();
+		for (int i = 0; i < calls.length; i++) {
+			if (responses[i].getStatus() != RequestStatus.Completed) {
+				status = RequestStatus.CompletedWithErrors;
+			}
+			outData.addName(ids[i]).addStringAsJson(responses[i].getResponseData());
+		}
+		outData.endObject();
+		outData.addName(TAG_STATUS).addValue(status.getMessageId());
+		outData.endObject();
+		writer.write(stringWriter.toString());
+		return status;
+	}
+
+	private ServiceResponse serveBatchCall(IInputData call, String sessionId, UserContext utx) throws IOException {
+		final long start = System.nanoTime();
+		final StringWriter sw = new StringWriter();
+		final String serviceName = call.getString(TAG_SERVICE);
+		final RequestStatus status;
+		if (serviceName == null || serviceName.isEmpty()) {
+			status = writeErrorResponse(RequestStatus.ServiceNameRequired, sw);
+		} else {
+			status = this.serveCall(serviceName, call, sessionId, utx, sw, start);
+		}
+		return new ServiceResponse(status, sw.toString());
+	}
+
+	/*
+	 * execute the service and prepare the response. Response is written to
+	 * outData which is backed by stringWriter
+	 */
+	private ServiceResponse execute(String serviceName, IService service, IServiceContext ctx, IInputData data,
+			String sessionId, IOutputData outData, StringWriter stringWriter) throws Exception {
+		final IPermit permit = this.admission.admit(serviceName, ctx.getTenantId());
+		if (permit == null) {
+			StringWriter errorWriter = new StringWriter();
+			return new ServiceResponse(writeErrorResponse(RequestStatus.Overloaded, errorWriter),
+					errorWriter.toString());
+		}
+
+		outData.addName(TAG_DATA).beginObject();
+		final long serveStart = System.nanoTime();
+		try {
+			service.serve(ctx, data);
+		} finally {
+			permit.release();
+		}
+		final long serveDone = System.nanoTime();
+		this.metrics.record(serviceName, Phase.Serve, serveDone - serveStart);
+		outData.endObject();
+
+		RequestStatus status = ctx.allOk() ? RequestStatus.Completed : RequestStatus.CompletedWithErrors;
+		outData.addName(TAG_STATUS).addValue(status.getMessageId());
+
+		if (sessionId != null && ctx.toResetUserContext()) {
+			this.cache.remove(sessionId);
+		}
+
+		UserContext newCtx = ctx.getNewUserContext();
+		if (newCtx != null) {
+			if (sessionId != null) {
+				this.cache.remove(sessionId);
+			}
+			String newId = UUID.randomUUID().toString();
+			this.cache.put(newId, newCtx);
+			outData.addName(TAG_SESSION_ID).addValue(newId);
+			logger.info("Session created for user {}", newCtx.getUserId());
+		}
+
+		Message[] messages = ctx.getMessages();
+		if (messages != null && messages.length > 0) {
+			writeMessages(messages, outData);
+		}
+
+		outData.endObject();
+		final String text = stringWriter.toString();
+		this.metrics.record(serviceName, Phase.Serialize, System.nanoTime() - serveDone);
+		return new ServiceResponse(status, text);
+	}
+
+	/*
+	 * requests with the same key produce the same response from a read-only
+	 * service. A service may filter its data by the user, and hence requests from
+	 * different users are coalesced only if the service is user-independent
+	 */
+	static String toCoalescingKey(String serviceName, UserContext utx, boolean userIndependent, IInputData data,
+			boolean compactArrays) {
+		StringBuilder sbf = new StringBuilder(serviceName).append('\n');
+		if (utx != null) {
+			if (!userIndependent) {
+				sbf.append(utx.getUserId());
+			}
+			sbf.append('\n').append(utx.getTenantId()).append('\n').append(utx.getOverrideId());
+		}
+		sbf.append('\n').append(compactArrays).append('\n').append(JsonUtil.toCanonicalString(data));
+		return sbf.toString();
+	}
+
 	private static void writeMessages(Message[] messages, IOutputData outData) {
 		outData.addName("messages").beginArray();
 		for (Message msg : messages) {
@@ -1,13 +1,23 @@
 package org.simplity.fm.core.app;
 
+import org.simplity.fm.core.Conventions;
 import org.simplity.fm.core.infra.IAccessController;
+import org.simplity.fm.core.infra.IAdmissionController;
+import org.simplity.fm.core.infra.ICheckpointStore;
 import org.simplity.fm.core.infra.IDbConnectionFactory;
 import org.simplity.fm.core.infra.IEmailer;
 import org.simplity.fm.core.infra.IExceptionListener;
+import org.simplity.fm.core.infra.IJobManager;
+import org.simplity.fm.core.infra.IMetricsCollector;
+import org.simplity.fm.core.infra.IScheduler;
+import org.simplity.fm.core.infra.ITempFileManager;
 import org.simplity.fm.core.infra.IRequestLogger;
 import org.simplity.fm.core.infra.IServiceContextFactory;
 import org.simplity.fm.core.infra.ISessionCache;
+import org.simplity.fm.core.infra.ISessionStore;
 import org.simplity.fm.core.infra.ITexter;
+import org.simplity.fm.core.infra.defalt.DefaultSessionCacher;
+import org.simplity.fm.core.infra.defalt.StoreBackedSessionCache;
 
 /**
  *
@@ -64,16 +74,59 @@ public class AppConfig {
 	public IExceptionListener exceptionListener;
 
 	/**
-	 * optional. a simple map-based cacher is used. Entries do not expire
+	 * optional. a local, in-memory cache is used, with the time-outs and max size
+	 * as set below
 	 */
 	public ISessionCache sessionCache;
 
 	/**
-	 * optional. requests are logged using the underlying logger-framework
+	 * optional. requests are logged using the underlying logger-framework.
+	 * AsyncRequestLogger may be used to write requests to a db table or a file in
+	 * batches, without holding up the requests
 	 */
 
 	public IRequestLogger requestLogger;
 
+	/**
+	 * optional. all requests are admitted if this is not set.
+	 * DefaultAdmissionController may be used to limit concurrent requests for
+	 * services and tenants
+	 */
+	public IAdmissionController admissionController;
+
+	/**
+	 * optional. latencies are collected in memory and are made available through
+	 * the service _metrics
+	 */
+	public IMetricsCollector metricsCollector;
+
+	/**
+	 * optional. services that are to be run asynchronously are run as jobs on a
+	 * DefaultJobManager if this is not set
+	 */
+	public IJobManager jobManager;
+
+	/**
+	 * optional. temp files, like job outputs, are managed under the temp folder
+	 * of the system by a DefaultTempFileManager if this is not set
+	 */
+	public ITempFileManager tempFileManager;
+
+	/**
+	 * optional. checkpoints of long-running jobs and uploads are saved here, so
+	 * that they can be resumed after a restart. for example DbCheckpointStore,
+	 * that may be shared by the instances of a cluster. Only the jobs of
+	 * resumable services are resumed. Work is not checkpointed if this is not
+	 * set
+	 */
+	public ICheckpointStore checkpointStore;
+
+	/**
+	 * optional. services are scheduled on a DefaultScheduler that hands them over
+	 * to the job manager if this is not set
+	 */
+	public IScheduler scheduler;
+
 	/**
 	 * optional. if not specified, text messages are just logged.
 	 */
@@ -94,4 +147,63 @@ public class AppConfig {
 	 * filter-feature.
 	 */
 	public int maxRowsForFilter = 10000;
+
+	/**
+	 * optional. number of rows after which a streamed response is flushed to the
+	 * client.
+	 */
+	public int streamFlushInterval = Conventions.Request.DEFAULT_STREAM_FLUSH_INTERVAL;
+
+	/**
+	 * optional. if true, identical requests for a read-only service that arrive
+	 * while one of them is being served are not executed again. They wait for the
+	 * one in progress and share its response. Requests are identical if they are
+	 * for the same service, user, tenant, overrides and payload. Requests from
+	 * different users are identical if the service is also user-independent.
+	 */
+	public boolean coalesceReadOnlyRequests;
+
+	/**
+	 * optional. number of threads on which the calls in a batch request are
+	 * served in parallel. 0 implies that they are always served one after the
+	 * other.
+	 */
+	public int batchThreads = 8;
+
+	/**
+	 * optional. max number of calls that a batch request may have.
+	 */
+	public int maxBatchCalls = Conventions.Request.DEFAULT_MAX_BATCH_CALLS;
+
+	/**
+	 * optional. used only if sessionCache is not specified. a session expires if
+	 * it is not used for these many seconds. 0 means no idle time-out
+	 */
+	public long sessionIdleSeconds = DefaultSessionCacher.DEFAULT_IDLE_SECONDS;
+
+	/**
+	 * optional. used only if sessionCache is not specified. a session expires
+	 * after these many seconds since login. 0 means no limit
+	 */
+	public long sessionMaxLifeSeconds = DefaultSessionCacher.DEFAULT_MAX_LIFE_SECONDS;
+
+	/**
+	 * optional. used only if sessionCache is not specified. least recently used
+	 * sessions are evicted beyond this number
+	 */
+	public int maxSessions = DefaultSessionCacher.DEFAULT_MAX_SESSIONS;
+
+	/**
+	 * optional. used only if sessionCache is not specified. Sessions are saved to
+	 * this store, so that they are available to all the nodes of this app, with a
+	 * near-cache on each node. sessionIdleSeconds and sessionMaxLifeSeconds are
+	 * used for the life of a session in the store
+	 */
+	public ISessionStore sessionStore;
+
+	/**
+	 * optional. used only with sessionStore. a session cached on this node is
+	 * re-read from the store after these many seconds.
+	 */
+	public long nearCacheSeconds = StoreBackedSessionCache.DEFAULT_NEAR_CACHE_SECONDS;
 }
@@ -63,6 +63,7 @@ public class AppManager {
 		try {
 			App app = new App(config);
 			currentApp = app;
+			app.warmUp();
 
 			return app;
 		} catch (Exception e) {
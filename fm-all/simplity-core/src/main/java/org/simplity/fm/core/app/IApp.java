@@ -26,8 +26,14 @@ import java.io.IOException;
 import java.io.Writer;
 
 import org.simplity.fm.core.db.IDbDriver;
+import org.simplity.fm.core.infra.ICheckpointStore;
 import org.simplity.fm.core.infra.ICompProvider;
 import org.simplity.fm.core.infra.IEmailer;
+import org.simplity.fm.core.infra.IJobManager;
+import org.simplity.fm.core.infra.IMetricsCollector;
+import org.simplity.fm.core.infra.IScheduler;
+import org.simplity.fm.core.infra.ISessionCache;
+import org.simplity.fm.core.infra.ITempFileManager;
 import org.simplity.fm.core.infra.ITexter;
 import org.simplity.fm.core.service.IInputData;
 
@@ -105,6 +111,45 @@ public interface IApp {
 	 */
 	IEmailer getEmailer();
 
+	/**
+	 *
+	 * @return non-null
+	 */
+	IMetricsCollector getMetricsCollector();
+
+	/**
+	 *
+	 * @return non-null
+	 */
+	IJobManager getJobManager();
+
+	/**
+	 *
+	 * @return non-null
+	 */
+	IScheduler getScheduler();
+
+	/**
+	 *
+	 * @return non-null
+	 */
+	ITempFileManager getTempFileManager();
+
+	/**
+	 *
+	 * @return non-null
+	 */
+	ICheckpointStore getCheckpointStore();
+
+	/**
+	 * sessions are normally resolved by the app while serving a request. This
+	 * is meant for the layers that respond to the clients on their own, like
+	 * downloading the output of a job, and must know whose session it is
+	 *
+	 * @return non-null
+	 */
+	ISessionCache getSessionCache();
+
 	/**
 	 * designed to facilitate writing the response directly to the stream. internal
 	 * calls can use a StringWriter to get the response as an string
@@ -117,4 +162,11 @@ public interface IApp {
 	 */
 	RequestStatus serve(IInputData request, Writer writer) throws IOException;
 
+	/**
+	 * stop the background work of the app, like the scheduler and the jobs, and
+	 * release their threads. To be invoked by the server that hosts the app
+	 * when it shuts down
+	 */
+	void shutdown();
+
 }
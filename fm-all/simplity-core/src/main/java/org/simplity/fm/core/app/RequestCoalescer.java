@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.simplity.fm.core.app;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * single-flight execution of identical requests. The first request for a key
+ * executes the task, while requests with the same key that arrive before it
+ * completes wait for its response instead of executing the task again. The
+ * response is not cached beyond the execution: a request that arrives after
+ * the task is complete executes it again.
+ *
+ * @author simplity.org
+ *
+ */
+class RequestCoalescer {
+	private final ConcurrentHashMap<String, CompletableFuture<ServiceResponse>> inFlight = new ConcurrentHashMap<>();
+	private final LongAdder nbrCoalesced = new LongAdder();
+
+	/**
+	 *
+	 * @param key  requests with the same key are identical
+	 * @param task to be executed if no identical request is in progress
+	 * @return response from the task, either executed by this thread, or by the
+	 *         thread that was executing the identical request
+	 * @throws Exception thrown by the task
+	 */
+	ServiceResponse execute(final String key, final Callable<ServiceResponse> task) throws Exception {
+		final CompletableFuture<ServiceResponse> mine = new CompletableFuture<>();
+		final CompletableFuture<ServiceResponse> running = this.inFlight.putIfAbsent(key, mine);
+		if (running != null) {
+			this.nbrCoalesced.increment();
+			try {
+				return running.get();
+			} catch (final ExecutionException e) {
+				final Throwable cause = e.getCause();
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw (Exception) cause;
+			}
+		}
+
+		try {
+			final ServiceResponse resp = task.call();
+			mine.complete(resp);
+			return resp;
+		} catch (final Exception | Error e) {
+			mine.completeExceptionally(e);
+			throw e;
+		} finally {
+			this.inFlight.remove(key, mine);
+		}
+	}
+
+	/**
+	 *
+	 * @return number of requests that were served with the response of an
+	 *         identical request
+	 */
+	long getNbrCoalesced() {
+		return this.nbrCoalesced.sum();
+	}
+}
@@ -83,6 +83,16 @@ public enum RequestStatus {
 		public String getDescription() {
 			return "There was an internal error on the server. It is being looked into. ";
 		}
+	},
+	/**
+	 * server is running at its capacity for this service, and the request could
+	 * not be admitted in time. Client may retry after some time
+	 */
+	Overloaded {
+		@Override
+		public String getDescription() {
+			return "Server is too busy to serve this request now. Please retry after some time.";
+		}
 	};
 
 	/**
@@ -101,12 +101,20 @@ public class DataTable<T extends Record> implements Iterable<T>, IRowProcessor {
 	}
 
 	/**
-	 * serialized into an array [{},{}....]
+	 * serialized into an array [{},{}....], or as {"columns":[..], "rows":[[..]..]}
+	 * if the output is set to use compact arrays
 	 *
 	 * @param outData
 	 * @throws IOException
 	 */
 	public void writeOut(final IOutputData outData) throws IOException {
+		if (outData.isCompactArrays()) {
+			/*
+			 * rows are written as they are. No need to create a record for each row
+			 */
+			outData.addCompactTable(this.record.fetchFieldNames(), this.rows);
+			return;
+		}
 		outData.beginArray();
 		for (final T rec : this) {
 			outData.beginObject();
@@ -32,6 +32,7 @@ import org.simplity.fm.core.Message;
 import org.simplity.fm.core.app.AppManager;
 import org.simplity.fm.core.db.IReadWriteHandle;
 import org.simplity.fm.core.db.IReadonlyHandle;
+import org.simplity.fm.core.db.IRowProcessor;
 import org.simplity.fm.core.filter.FilterDetails;
 import org.simplity.fm.core.filter.FilterParams;
 import org.simplity.fm.core.json.JsonUtil;
@@ -307,6 +308,11 @@ public abstract class DbRecord extends Record {
 			super(name);
 		}
 
+		@Override
+		public boolean isReadOnly() {
+			return true;
+		}
+
 		@Override
 		public void serve(final IServiceContext ctx, final IInputData payload) throws Exception {
 			final DbRecord rec = DbRecord.this.newInstance();
@@ -416,6 +422,11 @@ public abstract class DbRecord extends Record {
 			super(name);
 		}
 
+		@Override
+		public boolean isReadOnly() {
+			return true;
+		}
+
 		@Override
 		public void serve(final IServiceContext ctx, final IInputData payload) throws Exception {
 			final DbRecord rec = DbRecord.this.newInstance();
@@ -437,6 +448,19 @@ public abstract class DbRecord extends Record {
 				return;
 			}
 
+			final IRowProcessor streamer = ctx.getRowStreamer(filter.getOutputNames());
+			if (streamer != null) {
+				/*
+				 * rows go to the client as they are read, instead of accumulating them
+				 */
+				AppManager.getApp().getDbDriver().doReadonlyOperations(handle -> {
+					handle.readWithRowProcessor(filter.getSql(), filter.getParamValues(), filter.getParamTypes(),
+							filter.getOutputTypes(), streamer);
+					return true;
+				});
+				return;
+			}
+
 			final List<Object[]> rows = new ArrayList<>();
 
 			boolean readOk = AppManager.getApp().getDbDriver().doReadonlyOperations(handle -> {
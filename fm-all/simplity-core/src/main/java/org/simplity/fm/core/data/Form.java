@@ -31,6 +31,7 @@ import org.simplity.fm.core.Conventions;
 import org.simplity.fm.core.Message;
 import org.simplity.fm.core.app.AppManager;
 import org.simplity.fm.core.db.IReadonlyHandle;
+import org.simplity.fm.core.db.IRowProcessor;
 import org.simplity.fm.core.filter.FilterDetails;
 import org.simplity.fm.core.filter.FilterParams;
 import org.simplity.fm.core.json.JsonUtil;
@@ -217,6 +218,11 @@ public abstract class Form<T extends Record> {
 			super(name);
 		}
 
+		@Override
+		public boolean isReadOnly() {
+			return true;
+		}
+
 		@Override
 		public void serve(final IServiceContext ctx, final IInputData payload) throws Exception {
 			if (!Form.this.parseKeys(payload, ctx)) {
@@ -351,6 +357,11 @@ public abstract class Form<T extends Record> {
 			super(name);
 		}
 
+		@Override
+		public boolean isReadOnly() {
+			return true;
+		}
+
 		@Override
 		public void serve(final IServiceContext ctx, final IInputData payload) throws Exception {
 			logger.info("Form service invoked for filter for {}", this.getId());
@@ -369,6 +380,22 @@ public abstract class Form<T extends Record> {
 				return;
 			}
 
+			if (!Form.this.hasChildren()) {
+				/*
+				 * no child forms to be read for each row. rows can be streamed as they are
+				 * read, if the client has asked for it
+				 */
+				final IRowProcessor streamer = ctx.getRowStreamer(filter.getOutputNames());
+				if (streamer != null) {
+					AppManager.getApp().getDbDriver().doReadonlyOperations(handle -> {
+						handle.readWithRowProcessor(filter.getSql(), filter.getParamValues(), filter.getParamTypes(),
+								filter.getOutputTypes(), streamer);
+						return true;
+					});
+					return;
+				}
+			}
+
 			final List<Object[]> rows = new ArrayList<>();
 			AppManager.getApp().getDbDriver().doReadonlyOperations(handle -> {
 				handle.readMany(filter.getSql(), filter.getParamValues(), filter.getParamTypes(),
@@ -381,6 +408,14 @@ public abstract class Form<T extends Record> {
 				final IOutputData outData = ctx.getOutputData();
 				outData.beginObject();
 				outData.addName(Conventions.Request.TAG_LIST);
+				if (outData.isCompactArrays() && !Form.this.hasChildren()) {
+					/*
+					 * no child forms to be nested inside each row. rows can go out as they are
+					 */
+					outData.addCompactTable(filter.getOutputNames(), rows);
+					outData.endObject();
+					return true;
+				}
 				outData.beginArray();
 
 				if (rows.size() == 0) {
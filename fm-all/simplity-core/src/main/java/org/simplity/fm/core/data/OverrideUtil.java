@@ -23,6 +23,10 @@
 package org.simplity.fm.core.data;
 
 import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 import org.simplity.fm.core.ApplicationError;
 import org.simplity.fm.core.app.AppManager;
@@ -34,7 +38,15 @@ import org.slf4j.LoggerFactory;
 import com.google.gson.Gson;
 
 /**
- * Utility for managing record overrides
+ * Utility for managing record overrides.
+ *
+ * Overrides read from the db are cached by their override id. Every override
+ * id has a version that is incremented whenever its overrides are saved or
+ * deleted. A cached entry is used only if it was read with the current
+ * version, and hence any component that is built out of the overrides can use
+ * this version to know whether it is still valid. Caching is local to this
+ * JVM. invalidate() is to be used when the overrides are modified by another
+ * node.
  *
  * @author simplity.org
  *
@@ -54,6 +66,12 @@ public class OverrideUtil {
 	private static final String DELETE_REC = "delete from st_rec_overrides where id=? and name=?";
 
 	private static final String COMMA = ",";
+	private static final char KEY_SEP = '|';
+	private static final Gson GSON = new Gson();
+
+	private static final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+	private static final Map<String, Cached<Overrides>> overrides = new ConcurrentHashMap<>();
+	private static final Map<String, Cached<RecordOverride>> recordOverrides = new ConcurrentHashMap<>();
 
 	/**
 	 * data structure that carries form and record overrides
@@ -83,13 +101,72 @@ public class OverrideUtil {
 		}
 	}
 
+	/*
+	 * value, possibly null, read with a version of its override id
+	 */
+	private static class Cached<T> {
+		final long version;
+		final T value;
+
+		Cached(final long version, final T value) {
+			this.version = version;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * current version of the overrides with this id. Any component built out of
+	 * these overrides is to be discarded when the version changes
+	 *
+	 * @param id
+	 * @return version of the overrides with this id.
+	 */
+	public static long getVersion(final String id) {
+		return versions.computeIfAbsent(id, k -> new AtomicLong()).get();
+	}
+
+	/**
+	 * discard cached overrides for this id. Components built out of the overrides
+	 * for this id are to be re-built, as the version is changed. To be invoked
+	 * when the overrides are modified on another node.
+	 *
+	 * @param id
+	 */
+	public static void invalidate(final String id) {
+		versions.computeIfAbsent(id, k -> new AtomicLong()).incrementAndGet();
+		overrides.remove(id);
+		final String prefix = id + KEY_SEP;
+		recordOverrides.keySet().removeIf(key -> key.startsWith(prefix));
+	}
+
 	/**
 	 *
 	 * @param id
 	 * @return overrides, or null if no overrides defined for this id
 	 */
 	public static Overrides getOverides(final String id) {
-		final IDbDriver driver = AppManager.getApp().getDbDriver();
+		return getOverides(id, () -> AppManager.getApp().getDbDriver());
+	}
+
+	/*
+	 * driver is asked for only if the overrides are to be read from the db
+	 */
+	static Overrides getOverides(final String id, final Supplier<IDbDriver> driver) {
+		final long version = getVersion(id);
+		final Cached<Overrides> cached = overrides.get(id);
+		if (cached != null && cached.version == version) {
+			return cached.value;
+		}
+		/*
+		 * version is noted before reading, so that a save in the meantime makes this
+		 * entry stale
+		 */
+		final Overrides overs = readOverrides(id, driver.get());
+		overrides.put(id, new Cached<>(version, overs));
+		return overs;
+	}
+
+	private static Overrides readOverrides(final String id, final IDbDriver driver) {
 		final Object[] values = { id };
 		final ValueType[] types = { ValueType.Text };
 		final Overrides[] overs = new Overrides[1];
@@ -121,7 +198,10 @@ public class OverrideUtil {
 	 * @param overs
 	 */
 	public static void saveOverides(final String id, final Overrides overs) {
-		final IDbDriver driver = AppManager.getApp().getDbDriver();
+		saveOverides(id, overs, AppManager.getApp().getDbDriver());
+	}
+
+	static void saveOverides(final String id, final Overrides overs, final IDbDriver driver) {
 		final Object[] values = { String.join(COMMA, overs.forms), String.join(COMMA, overs.records), id };
 		final ValueType[] types = { ValueType.Text, ValueType.Text, ValueType.Text };
 
@@ -151,6 +231,8 @@ public class OverrideUtil {
 
 		final SQLException e) {
 			throw new ApplicationError("Error while saving overrides", e);
+		} finally {
+			invalidate(id);
 		}
 	}
 
@@ -159,7 +241,10 @@ public class OverrideUtil {
 	 * @param id
 	 */
 	public static void deleteOverides(final String id) {
-		final IDbDriver driver = AppManager.getApp().getDbDriver();
+		deleteOverides(id, AppManager.getApp().getDbDriver());
+	}
+
+	static void deleteOverides(final String id, final IDbDriver driver) {
 		final Object[] values = { id };
 		final ValueType[] types = { ValueType.Text };
 
@@ -178,6 +263,8 @@ public class OverrideUtil {
 			});
 		} catch (final SQLException e) {
 			throw new ApplicationError("Error while saving overrides", e);
+		} finally {
+			invalidate(id);
 		}
 	}
 
@@ -188,7 +275,11 @@ public class OverrideUtil {
 	 * @param recordJson
 	 */
 	public static void saveRecord(final String id, final String recordName, final String recordJson) {
-		final IDbDriver driver = AppManager.getApp().getDbDriver();
+		saveRecord(id, recordName, recordJson, AppManager.getApp().getDbDriver());
+	}
+
+	static void saveRecord(final String id, final String recordName, final String recordJson,
+			final IDbDriver driver) {
 		final Object[] values = { recordJson, id, recordName };
 		final ValueType[] types = { ValueType.Text, ValueType.Text, ValueType.Text };
 
@@ -213,6 +304,8 @@ public class OverrideUtil {
 			});
 		} catch (final SQLException e) {
 			throw new ApplicationError("Error while saving record override", e);
+		} finally {
+			invalidate(id);
 		}
 	}
 
@@ -222,7 +315,7 @@ public class OverrideUtil {
 	 * @param override
 	 */
 	public static void saveRecord(final String id, final RecordOverride override) {
-		saveRecord(id, override.name, new Gson().toJson(override));
+		saveRecord(id, override.name, GSON.toJson(override));
 	}
 
 	/**
@@ -231,7 +324,10 @@ public class OverrideUtil {
 	 * @param recordName
 	 */
 	public static void deleteRecord(final String id, final String recordName) {
-		final IDbDriver driver = AppManager.getApp().getDbDriver();
+		deleteRecord(id, recordName, AppManager.getApp().getDbDriver());
+	}
+
+	static void deleteRecord(final String id, final String recordName, final IDbDriver driver) {
 		final Object[] values = { id, recordName };
 		final ValueType[] types = { ValueType.Text, ValueType.Text };
 
@@ -247,6 +343,8 @@ public class OverrideUtil {
 			});
 		} catch (final SQLException e) {
 			throw new ApplicationError("Error while saving overrides", e);
+		} finally {
+			invalidate(id);
 		}
 	}
 
@@ -257,7 +355,22 @@ public class OverrideUtil {
 	 * @return instance of record override. null if this is not found.
 	 */
 	public static RecordOverride getRecord(final String id, final String recordName) {
-		final IDbDriver driver = AppManager.getApp().getDbDriver();
+		return getRecord(id, recordName, () -> AppManager.getApp().getDbDriver());
+	}
+
+	static RecordOverride getRecord(final String id, final String recordName, final Supplier<IDbDriver> driver) {
+		final String key = id + KEY_SEP + recordName;
+		final long version = getVersion(id);
+		final Cached<RecordOverride> cached = recordOverrides.get(key);
+		if (cached != null && cached.version == version) {
+			return cached.value;
+		}
+		final RecordOverride ovr = readRecord(id, recordName, driver.get());
+		recordOverrides.put(key, new Cached<>(version, ovr));
+		return ovr;
+	}
+
+	private static RecordOverride readRecord(final String id, final String recordName, final IDbDriver driver) {
 		final Object[] values = { id, recordName };
 		final ValueType[] types = { ValueType.Text, ValueType.Text };
 		final Object[] texts = new Object[1];
@@ -279,6 +392,6 @@ public class OverrideUtil {
 		/*
 		 * this text is the json for RecordOverride instance
 		 */
-		return new Gson().fromJson(text, RecordOverride.class);
+		return GSON.fromJson(text, RecordOverride.class);
 	}
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.simplity.fm.core.infra;
+
+/**
+ * decides whether a request can be served now, based on the load on the
+ * server. This allows the app to limit the number of concurrent requests for
+ * expensive services, or for a tenant, so that other requests continue to be
+ * served with low latency during bursts.
+ *
+ * @author simplity.org
+ *
+ */
+public interface IAdmissionController {
+	/**
+	 * admit a request to be served. May wait for a while if the request can not
+	 * be admitted right away.
+	 *
+	 * @param serviceName non-null name of the service to be served
+	 * @param tenantId    null if the app is not multi-tenant, or the request is
+	 *                    not for any tenant
+	 * @return permit that MUST be released after the service completes. null if
+	 *         the request is not admitted
+	 */
+	IPermit admit(String serviceName, Object tenantId);
+
+	/**
+	 * permission to serve a request
+	 */
+	interface IPermit {
+		/**
+		 * to be called once, after the request is served
+		 */
+		void release();
+	}
+}
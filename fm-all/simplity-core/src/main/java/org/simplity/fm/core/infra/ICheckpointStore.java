@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.simplity.fm.core.infra;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import org.simplity.fm.core.db.IReadWriteHandle;
+import org.simplity.fm.core.job.Checkpoint;
+
+/**
+ * durable store of checkpoints for long-running jobs and uploads. A checkpoint
+ * is saved as and when work is committed, and is removed when the work ends.
+ * Checkpoints that are found in the store when the app starts are of the work
+ * that was interrupted, and can be resumed from there.
+ *
+ * @author simplity.org
+ *
+ */
+public interface ICheckpointStore {
+	/**
+	 * save a checkpoint, replacing the earlier one with the same id if any, in
+	 * a transaction of its own
+	 *
+	 * @param checkpoint non-null
+	 * @throws SQLException
+	 */
+	void save(Checkpoint checkpoint) throws SQLException;
+
+	/**
+	 * save a checkpoint as part of a transaction of the caller. To be used to
+	 * commit the checkpoint along with the work it records, so that the two
+	 * never go out of step.
+	 *
+	 * @param checkpoint non-null
+	 * @param handle     handle of the transaction in which the work is done.
+	 *                   This method does not commit.
+	 * @throws SQLException
+	 */
+	void save(Checkpoint checkpoint, IReadWriteHandle handle) throws SQLException;
+
+	/**
+	 *
+	 * @param id
+	 * @return checkpoint saved with this id. null if there is no such
+	 *         checkpoint
+	 * @throws SQLException
+	 */
+	Checkpoint get(String id) throws SQLException;
+
+	/**
+	 * remove the checkpoint. No action if it does not exist
+	 *
+	 * @param id
+	 * @throws SQLException
+	 */
+	void remove(String id) throws SQLException;
+
+	/**
+	 *
+	 * @return checkpoints of jobs that were waiting or running when the app was
+	 *         shut down, except the ones that are held by another instance of
+	 *         the app with a lease that is yet to expire. non-null, could be
+	 *         empty
+	 * @throws SQLException
+	 */
+	List<Checkpoint> getInterruptedJobs() throws SQLException;
+
+	/**
+	 * claim the checkpoint of an interrupted job for this instance of the app,
+	 * so that the job is resumed by only one instance. The claim is atomic: it
+	 * fails if another instance holds the checkpoint with a lease that is yet to
+	 * expire. Every save by the instance that holds a checkpoint renews its
+	 * lease.
+	 *
+	 * @param id
+	 * @return true if this instance now holds the checkpoint. false if it is
+	 *         held by another instance, or it is no more of a waiting or a
+	 *         running job
+	 * @throws SQLException
+	 */
+	boolean claim(String id) throws SQLException;
+
+	/**
+	 * renew the lease on all the checkpoints held by this instance, so that the
+	 * jobs that run for a long time without saving their checkpoints are not
+	 * claimed by another instance
+	 *
+	 * @throws SQLException
+	 */
+	void renewLeases() throws SQLException;
+}
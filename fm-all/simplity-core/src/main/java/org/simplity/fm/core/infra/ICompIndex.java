@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2019 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.simplity.fm.core.infra;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.simplity.fm.core.data.Form;
+import org.simplity.fm.core.data.Record;
+import org.simplity.fm.core.validn.IValueList;
+
+/**
+ * index of the components generated for an app. The generator emits a class
+ * that implements this interface, so that the components can be instantiated
+ * with their constructors instead of locating their classes by name at run
+ * time.
+ *
+ * @author simplity.org
+ *
+ */
+public interface ICompIndex {
+	/**
+	 *
+	 * @return non-null map of form-id to the constructor of its generated class
+	 */
+	Map<String, Supplier<Form<?>>> getForms();
+
+	/**
+	 *
+	 * @return non-null map of record name to the constructor of its generated
+	 *         class
+	 */
+	Map<String, Supplier<Record>> getRecords();
+
+	/**
+	 *
+	 * @return non-null map of list-id to the constructor of its generated class
+	 */
+	Map<String, Supplier<IValueList>> getLists();
+}
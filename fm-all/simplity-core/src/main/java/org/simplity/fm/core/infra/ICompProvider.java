@@ -50,7 +50,8 @@ public interface ICompProvider {
 	 *
 	 * @param formId
 	 * @param ctx
-	 *            service context that may have form-overrides
+	 *            service context that may have form-overrides. null if the base
+	 *            form is required
 	 * @return form instance, or null if such a form is not located
 	 */
 	Form<?> getForm(String formId, IServiceContext ctx);
@@ -92,7 +93,9 @@ public interface ICompProvider {
 	 *
 	 * @param serviceName
 	 * @param ctx
-	 *            service context where this service is to be executed
+	 *            service context where this service is to be executed. null if
+	 *            there is no context, like for a job that is resumed, in which
+	 *            case overrides are not considered
 	 * @return an instance for this id, or null if it cannot be located
 	 */
 	IService getService(String serviceName, IServiceContext ctx);
@@ -24,7 +24,11 @@ package org.simplity.fm.core.infra;
 
 import java.io.Reader;
 
+import org.simplity.fm.core.UserContext;
 import org.simplity.fm.core.job.IJobHandle;
+import org.simplity.fm.core.job.IPartitionedTask;
+import org.simplity.fm.core.service.IInputData;
+import org.simplity.fm.core.service.IService;
 
 /**
  * @author simplity.org
@@ -45,6 +49,24 @@ public interface IJobManager {
 
 	IJobHandle newJob(Reader reader, String serviceName);
 
+	/**
+	 * create a job to run the service in the background. The job is queued only
+	 * when it is started.
+	 *
+	 * @param service
+	 *            service to be executed
+	 * @param inputData
+	 *            input for the service
+	 * @param utx
+	 *            context of the user on whose behalf the job is run. null if
+	 *            the service is to be run without a user context
+	 * @param priority
+	 *            jobs with a higher priority are run ahead of other waiting
+	 *            jobs of the same tenant
+	 * @return Handle for the new Job that is created.
+	 */
+	IJobHandle newJob(IService service, IInputData inputData, UserContext utx, int priority);
+
 	/**
 	 * locate the handle to a job that was created earlier. A job may be deleted
 	 * after it is run, or may be cleaned-up periodically.
@@ -55,4 +77,48 @@ public interface IJobManager {
 	 */
 	IJobHandle getJob(String jobId);
 
+	/**
+	 * create a job that runs the partitions of a task in parallel. Each
+	 * partition is processed in a transaction of its own. Progress of the
+	 * partitions is aggregated into that of the job, and the outcome of each
+	 * partition is reported in the output of the job. The job is queued only
+	 * when it is started.
+	 *
+	 * @param task
+	 *            task to be run
+	 * @param inputData
+	 *            input for the task
+	 * @param utx
+	 *            context of the user on whose behalf the job is run. null if
+	 *            the task is to be run without a user context
+	 * @param parallelism
+	 *            max number of partitions of this job that may be processed at
+	 *            the same time
+	 * @param failFast
+	 *            if true, the job fails as soon as a partition fails, and the
+	 *            partitions that are yet to be done are abandoned. if false,
+	 *            all the partitions are processed irrespective of failures
+	 * @return Handle for the new Job that is created.
+	 */
+	IJobHandle newPartitionedJob(IPartitionedTask task, IInputData inputData, UserContext utx, int parallelism,
+			boolean failFast);
+
+	/**
+	 * re-create and start the jobs that were waiting or running when the app
+	 * was shut down, from their checkpoints. To be invoked once, after the app
+	 * is ready to serve. In a cluster, it may be invoked on every instance, as a
+	 * job is resumed only by the instance that claims its checkpoint. Jobs of
+	 * services that are not resumable are abandoned.
+	 *
+	 * @return number of jobs that are resumed
+	 */
+	int resumeInterruptedJobs();
+
+	/**
+	 * stop running jobs, and release the threads. Jobs that are running are
+	 * completed, but the ones that are waiting are not run. To be invoked when
+	 * the app shuts down
+	 */
+	void shutdown();
+
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.simplity.fm.core.infra;
+
+import org.simplity.fm.core.app.RequestStatus;
+import org.simplity.fm.core.service.IOutputData;
+
+/**
+ * collects latency and outcome of requests served by the app. App records the
+ * time taken for each phase of serving a request, and the total time along
+ * with its status. Implementations must be thread-safe, and must not block, as
+ * they are invoked on every request.
+ *
+ * @author simplity.org
+ *
+ */
+public interface IMetricsCollector {
+	/**
+	 * phases of serving a request that are timed separately
+	 */
+	enum Phase {
+		/**
+		 * retrieving the user context from the session cache
+		 */
+		Session,
+		/**
+		 * locating the service with the comp provider
+		 */
+		Lookup,
+		/**
+		 * executing the service
+		 */
+		Serve,
+		/**
+		 * writing the response
+		 */
+		Serialize
+	}
+
+	/**
+	 * record the time taken by a phase
+	 *
+	 * @param serviceName name of the service being served
+	 * @param phase       phase that is completed
+	 * @param nanos       time taken in nano-seconds
+	 */
+	void record(String serviceName, Phase phase, long nanos);
+
+	/**
+	 * record the completion of a request
+	 *
+	 * @param serviceName name of the service that was requested
+	 * @param status      status with which the request completed
+	 * @param nanos       total time taken in nano-seconds
+	 */
+	void requestCompleted(String serviceName, RequestStatus status, long nanos);
+
+	/**
+	 * write a snapshot of the metrics collected so far
+	 *
+	 * @param outData to which the snapshot is to be written as members of the
+	 *                current object
+	 */
+	void writeSnapshot(IOutputData outData);
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.simplity.fm.core.infra;
+
+import java.util.List;
+
+/**
+ * writes a batch of requests to a persistent log. Used by an asynchronous
+ * request logger that accumulates requests in memory, and writes them in
+ * batches from a background thread
+ *
+ * @author simplity.org
+ *
+ */
+public interface IRequestLogWriter {
+	/**
+	 * write a batch of entries. Called from a single thread, and hence need not
+	 * be thread-safe.
+	 *
+	 * @param entries non-null, non-empty
+	 * @throws Exception in case the entries could not be written. The entries are
+	 *                   discarded after logging the error
+	 */
+	void write(List<RequestLogEntry> entries) throws Exception;
+
+	/**
+	 * release any resources held by this writer. No more writes after this
+	 */
+	void close();
+}
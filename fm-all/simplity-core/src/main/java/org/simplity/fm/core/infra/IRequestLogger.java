@@ -22,6 +22,8 @@
 
 package org.simplity.fm.core.infra;
 
+import org.simplity.fm.core.service.IInputData;
+
 /**
  * utility to log each request that is served by this app. Responses are not
  * logged at this time.
@@ -39,4 +41,18 @@ public interface IRequestLogger {
 	 * @param output      response
 	 */
 	void log(String loginId, String serviceName, String ip, String input);
+
+	/**
+	 * log a request with its pay-load as received. The pay-load is serialized
+	 * only if it is going to be logged. Pay-load may be modified by the service
+	 * after this call returns, and hence it must not be retained
+	 *
+	 * @param loginId
+	 * @param serviceName
+	 * @param ip          IP address of the requester
+	 * @param input       pay-load as received
+	 */
+	default void log(final String loginId, final String serviceName, final String ip, final IInputData input) {
+		this.log(loginId, serviceName, ip, input.toString());
+	}
 }
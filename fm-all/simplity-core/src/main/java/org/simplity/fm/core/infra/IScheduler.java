@@ -1,11 +1,67 @@
 package org.simplity.fm.core.infra;
 
+import org.simplity.fm.core.UserContext;
+import org.simplity.fm.core.job.MissedFirePolicy;
+import org.simplity.fm.core.job.Trigger;
+import org.simplity.fm.core.service.IInputData;
+import org.simplity.fm.core.service.IOutputData;
+import org.simplity.fm.core.service.IService;
+
 /**
- * 
+ * runs services as per their triggers, within this process. Each run is
+ * handed over to the job manager, and hence does not go through the request
+ * path.
+ *
  * @author simplity.org
  *
  */
 public interface IScheduler {
-	// yet to design this
 
+	/**
+	 * schedule a service to be run whenever the trigger fires. A fire is skipped
+	 * if the earlier run of the same trigger is yet to complete
+	 *
+	 * @param service
+	 *            to be run
+	 * @param inputData
+	 *            input for each run of the service
+	 * @param utx
+	 *            user context, and hence the tenant, for which the service is
+	 *            run. null if the service is to be run without a user context
+	 * @param trigger
+	 *            decides when the service is to be run
+	 * @param policy
+	 *            what to do if a fire is missed
+	 * @return id with which this schedule can be cancelled
+	 */
+	String schedule(IService service, IInputData inputData, UserContext utx, Trigger trigger,
+			MissedFirePolicy policy);
+
+	/**
+	 *
+	 * @param triggerId
+	 *            returned by schedule()
+	 * @return true if it is un-scheduled. false if no such schedule exists
+	 */
+	boolean unschedule(String triggerId);
+
+	/**
+	 *
+	 * @param tenantId
+	 * @return number of schedules of this tenant that are un-scheduled
+	 */
+	int unscheduleTenant(Object tenantId);
+
+	/**
+	 * write the state and run-time statistics of each of the schedules
+	 *
+	 * @param outData
+	 */
+	void writeStatus(IOutputData outData);
+
+	/**
+	 * stop firing triggers. Jobs that are already handed over to the job
+	 * manager are not affected. To be invoked when the app shuts down
+	 */
+	void shutdown();
 }
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.simplity.fm.core.infra;
+
+/**
+ * store for serialized user sessions that is shared by all the nodes of an
+ * app, typically an external key-value store. Sessions are cached locally by
+ * each node, and the store is used only when a session is not found locally.
+ * This allows any node to serve a request, and sessions survive the restart of
+ * a node.
+ *
+ * @author simplity.org
+ *
+ */
+public interface ISessionStore {
+
+	/**
+	 * save a session, replacing any existing session with this id
+	 *
+	 * @param id        non-null unique id/token of the session
+	 * @param session   serialized session
+	 * @param expiresAt epoch-millis after which this session is not to be
+	 *                  returned
+	 */
+	void save(String id, byte[] session, long expiresAt);
+
+	/**
+	 *
+	 * @param id unique id/token of the session
+	 * @return serialized session. null if there is no such session, or if it has
+	 *         expired
+	 */
+	byte[] load(String id);
+
+	/**
+	 *
+	 * @param id unique id/token of the session
+	 */
+	void delete(String id);
+
+	/**
+	 * remove all sessions
+	 */
+	void clear();
+}
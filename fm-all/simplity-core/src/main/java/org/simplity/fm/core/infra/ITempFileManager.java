@@ -24,8 +24,13 @@ package org.simplity.fm.core.infra;
 
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
 
 /**
+ * manages files that are required temporarily, like the output of a job, or a
+ * file being uploaded. Files are written and read through call-backs so that
+ * the manager can close them
+ *
  * @author simplity.org
  *
  */
@@ -75,23 +80,51 @@ public interface ITempFileManager {
 
 	/**
 	 * create a new file with the content being written by the call-back method.
+	 * The file is visible to others only after the call-back returns true. An
+	 * existing file with the same name is replaced.
 	 *
 	 * @param fileName
 	 * @param fileWriter
+	 * @return true if the file is created. false if the call-back returned
+	 *         false, or the file could not be written
 	 */
 
-	void newFile(String fileName, IFileWriter fileWriter);
+	boolean newFile(String fileName, IFileWriter fileWriter);
 
 	/**
 	 *
 	 * @param fileName
+	 * @param fileReader
+	 *            call-back to which a reader on the file is passed
 	 * @param removeAfterRead
 	 *            if true, the file is deleted after the reader returns
 	 * @return true if the file was indeed opened and read. false if it could
 	 *         not be opened for reading.
 	 */
 
-	boolean readFile(String fileName, boolean removeAfterRead);
+	boolean readFile(String fileName, IFileReader fileReader, boolean removeAfterRead);
+
+	/**
+	 * copy the content of the file, as it is, to the channel. Meant to send a
+	 * file to a client without reading the whole of it into memory.
+	 *
+	 * @param fileName
+	 * @param channel
+	 *            to which the file is to be copied
+	 * @param removeAfterRead
+	 *            if true, the file is deleted after it is copied
+	 * @return number of bytes copied. -1 if the file could not be copied
+	 */
+	long transferTo(String fileName, WritableByteChannel channel, boolean removeAfterRead);
+
+	/**
+	 * a pinned file is never removed by the manager on its own, like when the
+	 * files are removed to keep their total size within a quota. A file may be
+	 * pinned before it is created. It is un-pinned when it is removed.
+	 *
+	 * @param fileName
+	 */
+	void pinFile(String fileName);
 
 	/**
 	 *
@@ -99,4 +132,10 @@ public interface ITempFileManager {
 	 */
 
 	void removeFile(String fileName);
+
+	/**
+	 * release the resources held by the manager. Files that the manager created
+	 * for this run alone may be removed. To be invoked when the app shuts down
+	 */
+	void shutdown();
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.simplity.fm.core.infra;
+
+import java.time.Instant;
+
+/**
+ * a request that is captured for logging
+ *
+ * @author simplity.org
+ *
+ */
+public class RequestLogEntry {
+	/**
+	 * when the request was received
+	 */
+	public final Instant receivedAt;
+	/**
+	 * login id of the user. "0" for a guest
+	 */
+	public final String loginId;
+	/**
+	 * service that was requested
+	 */
+	public final String serviceName;
+	/**
+	 * IP address of the requester
+	 */
+	public final String ip;
+	/**
+	 * pay-load as received, in json format
+	 */
+	public final String input;
+
+	/**
+	 *
+	 * @param receivedAt
+	 * @param loginId
+	 * @param serviceName
+	 * @param ip
+	 * @param input
+	 */
+	public RequestLogEntry(final Instant receivedAt, final String loginId, final String serviceName,
+			final String ip, final String input) {
+		this.receivedAt = receivedAt;
+		this.loginId = loginId;
+		this.serviceName = serviceName;
+		this.ip = ip;
+		this.input = input;
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.simplity.fm.core.infra.defalt;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * concurrency limit that adapts itself to the observed latency, with additive
+ * increase and multiplicative decrease (AIMD). As long as requests complete
+ * within the target latency, the limit is increased by about one for every
+ * "limit" number of requests. When a request takes longer, the limit is cut
+ * down by a fixed ratio, but not more than once within the target latency, so
+ * that a burst of slow requests does not collapse the limit.
+ *
+ * @author simplity.org
+ *
+ */
+public class AdaptiveLimiter {
+	private static final double BACKOFF_RATIO = 0.9;
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final long targetNanos;
+	private final AdjustableSemaphore permits;
+
+	/*
+	 * guarded by this
+	 */
+	private double limit;
+	private int issuedLimit;
+	private long lastDecreaseAt;
+
+	/**
+	 *
+	 * @param initialLimit        limit to start with
+	 * @param minLimit            limit is never reduced below this
+	 * @param maxLimit            limit is never increased beyond this
+	 * @param targetLatencyMillis requests taking longer than this are considered
+	 *                            to be a sign of overload
+	 */
+	public AdaptiveLimiter(final int initialLimit, final int minLimit, final int maxLimit,
+			final long targetLatencyMillis) {
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.targetNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+		this.limit = initialLimit;
+		this.issuedLimit = initialLimit;
+		this.permits = new AdjustableSemaphore(initialLimit);
+		this.lastDecreaseAt = System.nanoTime() - this.targetNanos;
+	}
+
+	/**
+	 * acquire a permit, waiting for at most the given time
+	 *
+	 * @param timeoutNanos
+	 * @return true if acquired. false otherwise.
+	 * @throws InterruptedException
+	 */
+	public boolean tryAcquire(final long timeoutNanos) throws InterruptedException {
+		return this.permits.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * release a permit after the request is served, and adjust the limit based on
+	 * its latency
+	 *
+	 * @param latencyNanos time taken to serve the request
+	 */
+	public void release(final long latencyNanos) {
+		this.permits.release();
+		this.adjust(latencyNanos);
+	}
+
+	/**
+	 *
+	 * @return current limit on the number of concurrent requests
+	 */
+	public synchronized int getLimit() {
+		return this.issuedLimit;
+	}
+
+	private synchronized void adjust(final long latencyNanos) {
+		if (latencyNanos > this.targetNanos) {
+			final long now = System.nanoTime();
+			if (now - this.lastDecreaseAt < this.targetNanos) {
+				return;
+			}
+			this.lastDecreaseAt = now;
+			this.limit = Math.max(this.minLimit, this.limit * BACKOFF_RATIO);
+		} else {
+			this.limit = Math.min(this.maxLimit, this.limit + 1 / this.limit);
+		}
+
+		final int newLimit = (int) this.limit;
+		final int delta = newLimit - this.issuedLimit;
+		if (delta > 0) {
+			this.permits.release(delta);
+		} else if (delta < 0) {
+			this.permits.reducePermits(-delta);
+		}
+		this.issuedLimit = newLimit;
+	}
+
+	/*
+	 * reducePermits() is protected in Semaphore
+	 */
+	private static class AdjustableSemaphore extends Semaphore {
+		private static final long serialVersionUID = 1L;
+
+		AdjustableSemaphore(final int permits) {
+			super(permits);
+		}
+
+		@Override
+		protected void reducePermits(final int reduction) {
+			super.reducePermits(reduction);
+		}
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.simplity.fm.core.infra.defalt;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.simplity.fm.core.infra.IRequestLogWriter;
+import org.simplity.fm.core.infra.IRequestLogger;
+import org.simplity.fm.core.infra.RequestLogEntry;
+import org.simplity.fm.core.service.IInputData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * request logger that hands off the requests to a bounded buffer. A background
+ * thread drains the buffer and writes the requests in batches with the
+ * configured writer. The request thread never waits for the write.
+ *
+ * When the buffer is full, the request is either dropped or the request thread
+ * waits for a slot, as configured. A dropped request is not serialized at all.
+ *
+ * @author simplity.org
+ *
+ */
+public class AsyncRequestLogger implements IRequestLogger {
+	private static final Logger logger = LoggerFactory.getLogger(AsyncRequestLogger.class);
+	/**
+	 * default number of requests that can be buffered
+	 */
+	public static final int DEFAULT_CAPACITY = 10000;
+	/**
+	 * default max number of requests written in one batch
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 200;
+	/*
+	 * milliseconds the background thread waits for a request before checking
+	 * whether it is closed
+	 */
+	private static final long POLL_MILLIS = 500;
+	private static final long CLOSE_WAIT_MILLIS = 10000;
+
+	private final IRequestLogWriter writer;
+	private final BlockingQueue<RequestLogEntry> buffer;
+	private final boolean blockWhenFull;
+	private final int batchSize;
+	private final Thread worker;
+	private volatile boolean closed;
+
+	private final LongAdder nbrWritten = new LongAdder();
+	private final LongAdder nbrDropped = new LongAdder();
+	private final LongAdder nbrFailed = new LongAdder();
+
+	/**
+	 * logger with default capacity and batch-size, that drops requests when the
+	 * buffer is full
+	 *
+	 * @param writer non-null
+	 */
+	public AsyncRequestLogger(final IRequestLogWriter writer) {
+		this(writer, DEFAULT_CAPACITY, false, DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 *
+	 * @param writer        non-null writer to which requests are written in
+	 *                      batches
+	 * @param capacity      max number of requests that are buffered
+	 * @param blockWhenFull if true, the request thread waits for a slot when the
+	 *                      buffer is full. If false, the request is dropped
+	 * @param batchSize     max number of requests written in a batch
+	 */
+	public AsyncRequestLogger(final IRequestLogWriter writer, final int capacity, final boolean blockWhenFull,
+			final int batchSize) {
+		this.writer = writer;
+		this.buffer = new ArrayBlockingQueue<>(capacity);
+		this.blockWhenFull = blockWhenFull;
+		this.batchSize = batchSize;
+		this.worker = new Thread(this::drain, "request-logger");
+		this.worker.setDaemon(true);
+		this.worker.start();
+	}
+
+	@Override
+	public void log(final String loginId, final String serviceName, final String ip, final String input) {
+		this.enqueue(new RequestLogEntry(Instant.now(), loginId, serviceName, ip, input));
+	}
+
+	@Override
+	public void log(final String loginId, final String serviceName, final String ip, final IInputData input) {
+		/*
+		 * no point serializing the pay-load if it is going to be dropped. Pay-load is
+		 * mutable, and hence it is serialized on this thread
+		 */
+		if (this.closed || (!this.blockWhenFull && this.buffer.remainingCapacity() == 0)) {
+			this.nbrDropped.increment();
+			return;
+		}
+		this.enqueue(new RequestLogEntry(Instant.now(), loginId, serviceName, ip, input.toString()));
+	}
+
+	private void enqueue(final RequestLogEntry entry) {
+		if (this.closed) {
+			this.nbrDropped.increment();
+			return;
+		}
+		if (!this.blockWhenFull) {
+			if (!this.buffer.offer(entry)) {
+				this.nbrDropped.increment();
+			}
+			return;
+		}
+		try {
+			this.buffer.put(entry);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			this.nbrDropped.increment();
+		}
+	}
+
+	private void drain() {
+		final List<RequestLogEntry> batch = new ArrayList<>(this.batchSize);
+		while (true) {
+			RequestLogEntry entry = null;
+			try {
+				entry = this.buffer.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+			} catch (final InterruptedException e) {
+				// we check for closed anyway
+			}
+			if (entry == null) {
+				if (this.closed) {
+					return;
+				}
+				continue;
+			}
+			batch.add(entry);
+			this.buffer.drainTo(batch, this.batchSize - 1);
+			this.write(batch);
+			batch.clear();
+		}
+	}
+
+	private void write(final List<RequestLogEntry> batch) {
+		try {
+			this.writer.write(batch);
+			this.nbrWritten.add(batch.size());
+		} catch (final Exception e) {
+			this.nbrFailed.add(batch.size());
+			logger.error("Error while writing {} requests to the log. They are discarded. Error: {}", batch.size(),
+					e.getMessage());
+		}
+	}
+
+	/**
+	 * stop accepting requests, write the buffered ones and close the writer
+	 */
+	public void close() {
+		this.closed = true;
+		try {
+			this.worker.join(CLOSE_WAIT_MILLIS);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		this.writer.close();
+	}
+
+	/**
+	 *
+	 * @return number of requests written so far
+	 */
+	public long getNbrWritten() {
+		return this.nbrWritten.sum();
+	}
+
+	/**
+	 *
+	 * @return number of requests dropped because the buffer was full
+	 */
+	public long getNbrDropped() {
+		return this.nbrDropped.sum();
+	}
+
+	/**
+	 *
+	 * @return number of requests that the writer failed to write
+	 */
+	public long getNbrFailed() {
+		return this.nbrFailed.sum();
+	}
+}
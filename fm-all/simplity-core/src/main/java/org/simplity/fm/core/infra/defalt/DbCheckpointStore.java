@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.simplity.fm.core.infra.defalt;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.simplity.fm.core.app.AppManager;
+import org.simplity.fm.core.db.IReadWriteHandle;
+import org.simplity.fm.core.infra.ICheckpointStore;
+import org.simplity.fm.core.job.Checkpoint;
+import org.simplity.fm.core.job.JobStatus;
+import org.simplity.fm.core.valueschema.ValueType;
+
+/**
+ * saves checkpoints in a db table. The table is expected to have the columns
+ * job_id (text, primary key), service_name, input_data, user_context, status,
+ * messages, owner_id (text), nbr_rows, nbr_errors, nbr_commits (integer),
+ * updated_at and lease_until (timestamp)
+ *
+ * The table may be shared by the instances of the app in a cluster. Each
+ * instance is identified by a node id. A checkpoint is held by the instance
+ * that saved it last, with a lease that is renewed with every save. An
+ * interrupted job is resumed by the instance that claims its checkpoint, and
+ * the claim succeeds only if no other instance holds it with a live lease.
+ *
+ * @author simplity.org
+ *
+ */
+public class DbCheckpointStore implements ICheckpointStore {
+	/**
+	 * default number of seconds for which a checkpoint is held by an instance
+	 * after it is last saved or renewed
+	 */
+	public static final int DEFAULT_LEASE_SECONDS = 300;
+	private static final ValueType[] KEY_TYPES = { ValueType.Text };
+	/*
+	 * types of the values in the order in which they appear in the update
+	 * statement
+	 */
+	private static final ValueType[] UPDATE_TYPES = { ValueType.Text, ValueType.Text, ValueType.Text,
+			ValueType.Text, ValueType.Integer, ValueType.Integer, ValueType.Integer, ValueType.Text,
+			ValueType.Timestamp, ValueType.Text, ValueType.Timestamp, ValueType.Text };
+	private static final ValueType[] CLAIM_TYPES = { ValueType.Text, ValueType.Timestamp, ValueType.Text,
+			ValueType.Text, ValueType.Timestamp };
+	private static final ValueType[] LIVE_TYPES = { ValueType.Text, ValueType.Timestamp };
+	private static final ValueType[] RENEW_TYPES = { ValueType.Timestamp, ValueType.Text };
+	private static final ValueType[] SELECT_TYPES = { ValueType.Text, ValueType.Text, ValueType.Text,
+			ValueType.Text, ValueType.Text, ValueType.Integer, ValueType.Integer, ValueType.Integer,
+			ValueType.Text };
+	private static final String COLUMNS = "job_id, service_name, input_data, user_context, status, nbr_rows, nbr_errors, nbr_commits, messages";
+
+	private final String insertSql;
+	private final String updateSql;
+	private final String selectSql;
+	private final String selectJobsSql;
+	private final String deleteSql;
+	private final String claimSql;
+	private final String renewSql;
+	private final String nodeId;
+	private final long leaseMillis;
+
+	/**
+	 * this instance is identified by a random node id. Checkpoints held by an
+	 * earlier run of this instance can be claimed only after their leases
+	 * expire
+	 *
+	 * @param tableName name of the table in the db
+	 */
+	public DbCheckpointStore(final String tableName) {
+		this(tableName, UUID.randomUUID().toString(), DEFAULT_LEASE_SECONDS);
+	}
+
+	/**
+	 *
+	 * @param tableName    name of the table in the db
+	 * @param nodeId       unique id of this instance of the app in the cluster.
+	 *                     An instance that is restarted with the same id
+	 *                     claims its checkpoints at once
+	 * @param leaseSeconds number of seconds for which a checkpoint is held
+	 *                     after it is last saved or renewed. Must be well
+	 *                     above the interval at which the job manager renews
+	 *                     the leases
+	 */
+	public DbCheckpointStore(final String tableName, final String nodeId, final int leaseSeconds) {
+		this.nodeId = nodeId;
+		this.leaseMillis = leaseSeconds * 1000L;
+		final String active = "status in ('" + JobStatus.Waiting.name() + "', '" + JobStatus.Running.name() + "')";
+		final String free = "(owner_id is null or owner_id=? or lease_until is null or lease_until<?)";
+		this.updateSql = "update " + tableName
+				+ " set service_name=?, input_data=?, user_context=?, status=?, nbr_rows=?, nbr_errors=?, nbr_commits=?, messages=?, updated_at=?, owner_id=?, lease_until=? where job_id=?";
+		this.insertSql = "insert into " + tableName + " (service_name, input_data, user_context, status, nbr_rows, "
+				+ "nbr_errors, nbr_commits, messages, updated_at, owner_id, lease_until, job_id) "
+				+ "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+		this.selectSql = "select " + COLUMNS + " from " + tableName + " where job_id=?";
+		this.selectJobsSql = "select " + COLUMNS + " from " + tableName + " where " + active
+				+ " and service_name is not null and service_name <> '' and " + free;
+		this.deleteSql = "delete from " + tableName + " where job_id=?";
+		this.claimSql = "update " + tableName + " set owner_id=?, lease_until=? where job_id=? and " + active
+				+ " and " + free;
+		this.renewSql = "update " + tableName + " set lease_until=? where owner_id=?";
+	}
+
+	@Override
+	public void save(final Checkpoint checkpoint) throws SQLException {
+		AppManager.getApp().getDbDriver().doReadWriteOperations(handle -> {
+			this.save(checkpoint, handle);
+			return true;
+		});
+	}
+
+	@Override
+	public void save(final Checkpoint checkpoint, final IReadWriteHandle handle) throws SQLException {
+		final Instant now = Instant.now();
+		final Object[] values = { checkpoint.serviceName, checkpoint.inputData, checkpoint.userContext,
+				checkpoint.status.name(), (long) checkpoint.nbrRowsDone, (long) checkpoint.nbrErrors,
+				(long) checkpoint.nbrCommits, Checkpoint.messagesToJson(checkpoint.messages), now, this.nodeId,
+				now.plusMillis(this.leaseMillis), checkpoint.id };
+		if (handle.write(this.updateSql, values, UPDATE_TYPES) == 0) {
+			handle.write(this.insertSql, values, UPDATE_TYPES);
+		}
+	}
+
+	@Override
+	public Checkpoint get(final String id) throws SQLException {
+		final Object[] row = new Object[SELECT_TYPES.length];
+		final boolean[] found = { false };
+		AppManager.getApp().getDbDriver().doReadonlyOperations(handle -> {
+			found[0] = handle.read(this.selectSql, new Object[] { id }, KEY_TYPES, SELECT_TYPES, row);
+			return true;
+		});
+		if (found[0]) {
+			return toCheckpoint(row);
+		}
+		return null;
+	}
+
+	@Override
+	public void remove(final String id) throws SQLException {
+		AppManager.getApp().getDbDriver().doReadWriteOperations(handle -> {
+			handle.write(this.deleteSql, new Object[] { id }, KEY_TYPES);
+			return true;
+		});
+	}
+
+	@Override
+	public List<Checkpoint> getInterruptedJobs() throws SQLException {
+		final List<Object[]> rows = new ArrayList<>();
+		final Object[] values = { this.nodeId, Instant.now() };
+		AppManager.getApp().getDbDriver().doReadonlyOperations(handle -> {
+			handle.readMany(this.selectJobsSql, values, LIVE_TYPES, SELECT_TYPES, rows);
+			return true;
+		});
+		final List<Checkpoint> list = new ArrayList<>(rows.size());
+		for (final Object[] row : rows) {
+			list.add(toCheckpoint(row));
+		}
+		return list;
+	}
+
+	@Override
+	public boolean claim(final String id) throws SQLException {
+		final Instant now = Instant.now();
+		final Object[] values = { this.nodeId, now.plusMillis(this.leaseMillis), id, this.nodeId, now };
+		final boolean[] claimed = { false };
+		AppManager.getApp().getDbDriver().doReadWriteOperations(handle -> {
+			claimed[0] = handle.write(this.claimSql, values, CLAIM_TYPES) == 1;
+			return true;
+		});
+		return claimed[0];
+	}
+
+	@Override
+	public void renewLeases() throws SQLException {
+		final Object[] values = { Instant.now().plusMillis(this.leaseMillis), this.nodeId };
+		AppManager.getApp().getDbDriver().doReadWriteOperations(handle -> {
+			handle.write(this.renewSql, values, RENEW_TYPES);
+			return true;
+		});
+	}
+
+	private static Checkpoint toCheckpoint(final Object[] row) {
+		return new Checkpoint((String) row[0], toText(row[1]), toText(row[2]), toText(row[3]),
+				JobStatus.valueOf((String) row[4]), toInt(row[5]), toInt(row[6]), toInt(row[7]),
+				Checkpoint.messagesFromJson(toText(row[8])));
+	}
+
+	/*
+	 * null text is saved as empty string
+	 */
+	private static String toText(final Object obj) {
+		if (obj == null) {
+			return null;
+		}
+		final String text = obj.toString();
+		return text.isEmpty() ? null : text;
+	}
+
+	private static int toInt(final Object obj) {
+		if (obj == null) {
+			return 0;
+		}
+		return ((Number) obj).intValue();
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.simplity.fm.core.infra.defalt;
+
+import java.util.List;
+
+import org.simplity.fm.core.app.AppManager;
+import org.simplity.fm.core.infra.IRequestLogWriter;
+import org.simplity.fm.core.infra.RequestLogEntry;
+import org.simplity.fm.core.valueschema.ValueType;
+
+/**
+ * writes requests to a db table with a batched insert. The table is expected to
+ * have the columns received_at (timestamp), login_id, service_name, client_ip
+ * and payload (text)
+ *
+ * @author simplity.org
+ *
+ */
+public class DbRequestLogWriter implements IRequestLogWriter {
+	private static final ValueType[] TYPES = { ValueType.Timestamp, ValueType.Text, ValueType.Text, ValueType.Text,
+			ValueType.Text };
+	private final String sql;
+
+	/**
+	 *
+	 * @param tableName name of the table in the db
+	 */
+	public DbRequestLogWriter(final String tableName) {
+		this.sql = "insert into " + tableName
+				+ " (received_at, login_id, service_name, client_ip, payload) values (?, ?, ?, ?, ?)";
+	}
+
+	@Override
+	public void write(final List<RequestLogEntry> entries) throws Exception {
+		final Object[][] rows = new Object[entries.size()][];
+		int idx = 0;
+		for (final RequestLogEntry entry : entries) {
+			rows[idx] = new Object[] { entry.receivedAt, entry.loginId, entry.serviceName, entry.ip, entry.input };
+			idx++;
+		}
+		AppManager.getApp().getDbDriver().doReadWriteOperations(handle -> {
+			handle.writeMany(this.sql, rows, TYPES);
+			return true;
+		});
+	}
+
+	@Override
+	public void close() {
+		// connections are managed by the db driver
+	}
+}
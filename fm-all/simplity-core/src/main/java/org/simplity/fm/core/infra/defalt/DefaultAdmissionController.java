@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.simplity.fm.core.infra.defalt;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.simplity.fm.core.infra.IAdmissionController;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * admits requests within the configured concurrency limits for services and
+ * tenants, and an optional adaptive global limit. A request that can not be
+ * admitted right away waits till the max-wait time before it is rejected.
+ *
+ * Limits are acquired in the order tenant, service and global, so that a
+ * request that is waiting for its tenant or service does not hold a global
+ * permit.
+ *
+ * @author simplity.org
+ *
+ */
+public class DefaultAdmissionController implements IAdmissionController {
+	private static final Logger logger = LoggerFactory.getLogger(DefaultAdmissionController.class);
+
+	private final Map<String, Semaphore> serviceLimits = new HashMap<>();
+	private final int tenantLimit;
+	private final Map<Object, Semaphore> tenantLimits = new ConcurrentHashMap<>();
+	private final AdaptiveLimiter globalLimiter;
+	private final long maxWaitNanos;
+	private final LongAdder nbrRejected = new LongAdder();
+
+	/**
+	 *
+	 * @param serviceLimits max number of concurrent requests for specific
+	 *                      services. Services not in this map are not limited.
+	 *                      can be null
+	 * @param tenantLimit   max number of concurrent requests for any one tenant. 0
+	 *                      means no limit
+	 * @param globalLimiter limit on all requests together. null if no such limit
+	 * @param maxWaitMillis max time a request may wait to be admitted. 0 means it
+	 *                      is rejected right away if it can not be admitted
+	 */
+	public DefaultAdmissionController(final Map<String, Integer> serviceLimits, final int tenantLimit,
+			final AdaptiveLimiter globalLimiter, final long maxWaitMillis) {
+		if (serviceLimits != null) {
+			for (final Map.Entry<String, Integer> entry : serviceLimits.entrySet()) {
+				this.serviceLimits.put(entry.getKey(), new Semaphore(entry.getValue()));
+			}
+		}
+		this.tenantLimit = tenantLimit;
+		this.globalLimiter = globalLimiter;
+		this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+	}
+
+	@Override
+	public IPermit admit(final String serviceName, final Object tenantId) {
+		final long start = System.nanoTime();
+		final long deadline = start + this.maxWaitNanos;
+
+		Semaphore tenant = null;
+		if (this.tenantLimit > 0 && tenantId != null) {
+			tenant = this.tenantLimits.computeIfAbsent(tenantId, k -> new Semaphore(this.tenantLimit));
+		}
+		final Semaphore service = this.serviceLimits.get(serviceName);
+
+		boolean tenantOk = false;
+		boolean serviceOk = false;
+		boolean globalOk = false;
+		try {
+			tenantOk = tenant == null || tenant.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+			if (tenantOk) {
+				serviceOk = service == null
+						|| service.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+			}
+			if (serviceOk) {
+				globalOk = this.globalLimiter == null
+						|| this.globalLimiter.tryAcquire(deadline - System.nanoTime());
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		if (globalOk) {
+			return new Permit(tenant, service, this.globalLimiter != null);
+		}
+
+		if (serviceOk && service != null) {
+			service.release();
+		}
+		if (tenantOk && tenant != null) {
+			tenant.release();
+		}
+		this.nbrRejected.increment();
+		logger.warn("Request for service {} not admitted within {} ms", serviceName,
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		return null;
+	}
+
+	/**
+	 *
+	 * @return number of requests rejected so far
+	 */
+	public long getNbrRejected() {
+		return this.nbrRejected.sum();
+	}
+
+	private class Permit implements IPermit {
+		private final Semaphore tenant;
+		private final Semaphore service;
+		private final boolean global;
+		private final long admittedAt = System.nanoTime();
+
+		Permit(final Semaphore tenant, final Semaphore service, final boolean global) {
+			this.tenant = tenant;
+			this.service = service;
+			this.global = global;
+		}
+
+		@Override
+		public void release() {
+			if (this.global) {
+				DefaultAdmissionController.this.globalLimiter.release(System.nanoTime() - this.admittedAt);
+			}
+			if (this.service != null) {
+				this.service.release();
+			}
+			if (this.tenant != null) {
+				this.tenant.release();
+			}
+		}
+	}
+}
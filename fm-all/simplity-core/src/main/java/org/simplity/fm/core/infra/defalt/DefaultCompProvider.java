@@ -22,8 +22,10 @@
 
 package org.simplity.fm.core.infra.defalt;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 import org.simplity.fm.core.Conventions;
 import org.simplity.fm.core.IMessages;
@@ -32,6 +34,7 @@ import org.simplity.fm.core.Message;
 import org.simplity.fm.core.data.DbRecord;
 import org.simplity.fm.core.data.Form;
 import org.simplity.fm.core.data.IoType;
+import org.simplity.fm.core.data.OverrideUtil;
 import org.simplity.fm.core.data.Record;
 import org.simplity.fm.core.fn.Average;
 import org.simplity.fm.core.fn.Concat;
@@ -39,11 +42,14 @@ import org.simplity.fm.core.fn.IFunction;
 import org.simplity.fm.core.fn.Max;
 import org.simplity.fm.core.fn.Min;
 import org.simplity.fm.core.fn.Sum;
+import org.simplity.fm.core.infra.ICompIndex;
 import org.simplity.fm.core.infra.ICompProvider;
 import org.simplity.fm.core.service.IService;
 import org.simplity.fm.core.service.IServiceContext;
 import org.simplity.fm.core.service.ListService;
 import org.simplity.fm.core.service.GetReportSettings;
+import org.simplity.fm.core.service.GetMetrics;
+import org.simplity.fm.core.service.GetResponse;
 import org.simplity.fm.core.validn.IValueList;
 import org.simplity.fm.core.valueschema.ValueSchema;
 import org.slf4j.Logger;
@@ -54,6 +60,18 @@ import org.slf4j.LoggerFactory;
  * instead of throwing exception. That is, if no provider is available, all
  * requests will responded with null, after logging an error message.
  *
+ * Components are loaded once and cached in concurrent maps. Class names that
+ * are not found are remembered in a bounded negative cache, so that repeated
+ * requests for them do not hit the class-loader. Services generated for
+ * form/record operations are cached by the service name and the override-id in
+ * effect. Components that are built with overrides are re-built when the
+ * version of their overrides changes.
+ *
+ * If the generator has emitted an index of components, forms, records and
+ * lists are instantiated with the constructors from that index, and are not
+ * located by their class names. All of them are created up-front when
+ * warmUp() is invoked after the app is ready.
+ *
  * @author simplity.org
  *
  */
@@ -63,6 +81,11 @@ public class DefaultCompProvider implements ICompProvider {
 	private static final char DOT = '.';
 	private static final String RECORD = Conventions.App.RECORD_CLASS_SUFIX;
 	private static final String FORM = Conventions.App.FORM_CLASS_SUFIX;
+	/**
+	 * max number of names remembered as not-found, for each type of component
+	 */
+	public static final int MAX_NEGATIVE_ENTRIES = 1000;
+	private static final char KEY_SEP = '|';
 
 	private final IValueSchemas dataTypes;
 	private final String formRoot;
@@ -72,18 +95,48 @@ public class DefaultCompProvider implements ICompProvider {
 	private final String customListRoot;
 	private final String fnRoot;
 	private final IMessages messages;
-	private final Map<String, Form<?>> forms = new HashMap<>();
-	private final Map<String, Record> records = new HashMap<>();
-	private final Map<String, IValueList> lists = new HashMap<>();
-	private final Map<String, IService> services = new HashMap<>();
-	private final Map<String, IFunction> functions = new HashMap<>();
+	/*
+	 * null if the generator has not emitted an index
+	 */
+	private final ICompIndex index;
+	private final Map<String, Form<?>> forms = new ConcurrentHashMap<>();
+	private final Map<String, Record> records = new ConcurrentHashMap<>();
+	private final Map<String, IValueList> lists = new ConcurrentHashMap<>();
+	private final Map<String, IService> services = new ConcurrentHashMap<>();
+	private final Map<String, IFunction> functions = new ConcurrentHashMap<>();
+	/*
+	 * services generated for form/record operations. key is
+	 * serviceName|overrideId
+	 */
+	private final Map<String, Versioned<IService>> ioServices = new ConcurrentHashMap<>();
+	/*
+	 * forms and records with overrides. key is overrideId + name
+	 */
+	private final Map<String, Versioned<Form<?>>> overriddenForms = new ConcurrentHashMap<>();
+	private final Map<String, Versioned<Record>> overriddenRecords = new ConcurrentHashMap<>();
+	/*
+	 * class names that are not found
+	 */
+	private final NameSet missingClasses = new NameSet(MAX_NEGATIVE_ENTRIES);
+
+	private final LongAdder nbrHits = new LongAdder();
+	private final LongAdder nbrLoads = new LongAdder();
+	private final LongAdder nbrNegativeHits = new LongAdder();
 
 	public DefaultCompProvider(final String rootPackageName) {
+		this(rootPackageName, locateIndex(rootPackageName + DOT + Conventions.App.FOLDER_NAME_GEN + DOT));
+	}
+
+	/*
+	 * index is null if components are to be located by their class names
+	 */
+	DefaultCompProvider(final String rootPackageName, final ICompIndex index) {
 		final String root = rootPackageName + DOT;
 		final String genRoot = root + Conventions.App.FOLDER_NAME_GEN + DOT;
 
 		this.dataTypes = locateSchemas(genRoot);
 		this.messages = locateMessages(genRoot);
+		this.index = index;
 		this.formRoot = genRoot + Conventions.App.FOLDER_NAME_FORM + DOT;
 		this.recordRoot = genRoot + Conventions.App.FOLDER_NAME_RECORD + DOT;
 		this.listRoot = genRoot + Conventions.App.FOLDER_NAME_LIST + DOT;
@@ -95,12 +148,84 @@ public class DefaultCompProvider implements ICompProvider {
 		 */
 		this.services.put(Conventions.App.SERVICE_LIST, ListService.getInstance());
 		this.services.put(Conventions.App.SERVICE_GET_REPORT_SETTINGS, GetReportSettings.getInstance());
+		this.services.put(Conventions.App.SERVICE_METRICS, GetMetrics.getInstance());
+		this.services.put(Conventions.App.SERVICE_GET_RESPONSE, GetResponse.getInstance());
 		/*
 		 * add standard functions
 		 */
 		this.addStandardFuntions();
 	}
 
+	private static ICompIndex locateIndex(String genRoot) {
+		String cls = genRoot + Conventions.App.GENERATED_COMP_INDEX_CLASS_NAME;
+		try {
+			return (ICompIndex) Class.forName(cls).getConstructor().newInstance();
+		} catch (final Exception e) {
+			logger.warn("Unable to locate class {} as ICompIndex. Components will be located by their class names",
+					cls);
+			return null;
+		}
+	}
+
+	/**
+	 * create all the components in the index. Components refer to the app while
+	 * being created, and hence this is to be invoked after the app is registered
+	 * with the AppManager
+	 */
+	public void warmUp() {
+		if (this.index == null) {
+			return;
+		}
+		final long start = System.currentTimeMillis();
+		warm(this.index.getRecords(), this.records);
+		warm(this.index.getLists(), this.lists);
+		warm(this.index.getForms(), this.forms);
+		logger.info("{} forms, {} records and {} lists created in {} ms", this.forms.size(), this.records.size(),
+				this.lists.size(), System.currentTimeMillis() - start);
+	}
+
+	private static <T> void warm(final Map<String, Supplier<T>> constructors, final Map<String, T> comps) {
+		for (final Map.Entry<String, Supplier<T>> entry : constructors.entrySet()) {
+			final String id = entry.getKey();
+			if (comps.containsKey(id)) {
+				continue;
+			}
+			try {
+				comps.put(id, entry.getValue().get());
+			} catch (final Exception | LinkageError e) {
+				logger.error("Internal Error: Exception while creating an instance of component " + id + ". Error :",
+						e);
+			}
+		}
+	}
+
+	/*
+	 * components are loaded outside of the map and then put into it, and not with
+	 * computeIfAbsent(), as a component may load other components while it is
+	 * being created, like a form loading its child forms. If two threads load the
+	 * same component, the one that is cached first is used by both.
+	 */
+	private static <T> T cache(final Map<String, T> comps, final String id, final T comp) {
+		if (comp == null) {
+			return null;
+		}
+		final T existing = comps.putIfAbsent(id, comp);
+		return existing == null ? comp : existing;
+	}
+
+	/*
+	 * create an instance using the constructor from the index. null if the index
+	 * does not have this component
+	 */
+	private <T> T fromIndex(final Map<String, Supplier<T>> constructors, final String id) {
+		final Supplier<T> constructor = constructors.get(id);
+		if (constructor == null) {
+			return null;
+		}
+		this.nbrLoads.increment();
+		return constructor.get();
+	}
+
 	private static IValueSchemas locateSchemas(String genRoot) {
 		String cls = genRoot + Conventions.App.GENERATED_VALUE_SCHEMAS_CLASS_NAME;
 		try {
@@ -132,14 +257,12 @@ public class DefaultCompProvider implements ICompProvider {
 
 	@Override
 	public Form<?> getForm(final String formId) {
-		Form<?> form = this.forms.get(formId);
-		if (form == null) {
-			form = this.loadForm(formId);
-			if (form != null) {
-				this.forms.put(formId, form);
-			}
+		final Form<?> form = this.forms.get(formId);
+		if (form != null) {
+			this.nbrHits.increment();
+			return form;
 		}
-		return form;
+		return cache(this.forms, formId, this.loadForm(formId));
 	}
 
 	@Override
@@ -149,17 +272,34 @@ public class DefaultCompProvider implements ICompProvider {
 
 	@Override
 	public IValueList getValueList(final String listId) {
-		IValueList list = this.lists.get(listId);
+		final IValueList list = this.lists.get(listId);
 		if (list != null) {
+			this.nbrHits.increment();
 			return list;
 		}
+		return cache(this.lists, listId, this.loadList(listId));
+	}
+
+	private IValueList loadList(final String listId) {
+		if (this.index != null) {
+			try {
+				final IValueList list = this.fromIndex(this.index.getLists(), listId);
+				if (list != null) {
+					return list;
+				}
+			} catch (final Exception e) {
+				logger.error("Internal Error: Exception while creating an instance of list " + listId + ". Error :",
+						e);
+				return null;
+			}
+		}
 		final String clsName = toClassName(listId);
 		String cls = this.listRoot + clsName;
 		try {
-			list = (IValueList) Class.forName(cls).getConstructor().newInstance();
-			this.lists.put(listId, list);
-			return list;
-		} catch (final ClassNotFoundException e1) {
+			final Object obj = this.newInstance(cls);
+			if (obj != null) {
+				return (IValueList) obj;
+			}
 			// we will try a custom class instead
 		} catch (final Exception e) {
 			logger.error("Internal Error: List named " + listId
@@ -170,10 +310,10 @@ public class DefaultCompProvider implements ICompProvider {
 
 		cls = this.customListRoot + clsName;
 		try {
-			list = (IValueList) Class.forName(cls).getConstructor().newInstance();
-			this.lists.put(listId, list);
-			return list;
-		} catch (final ClassNotFoundException e1) {
+			final Object obj = this.newInstance(cls);
+			if (obj != null) {
+				return (IValueList) obj;
+			}
 			logger.error(
 					"{} is an invalid list name because we could not locate class {} in generated package {} or custom package {}",
 					listId, cls, this.listRoot, this.customListRoot);
@@ -182,7 +322,6 @@ public class DefaultCompProvider implements ICompProvider {
 			logger.error("Internal Error: Exception while instantiating class {}. Error :", cls, e);
 			return null;
 		}
-
 	}
 
 	@Override
@@ -194,6 +333,7 @@ public class DefaultCompProvider implements ICompProvider {
 	public IService getService(final String serviceId, final IServiceContext ctx) {
 		IService service = this.services.get(serviceId);
 		if (service != null) {
+			this.nbrHits.increment();
 			return service;
 		}
 		/*
@@ -202,24 +342,60 @@ public class DefaultCompProvider implements ICompProvider {
 		 */
 		final String cls = this.serviceRoot + toClassName(serviceId);
 		try {
-			service = (IService) Class.forName(cls).getConstructor().newInstance();
-			this.services.put(serviceId, service);
-		} catch (final Exception e) {
-			/*
-			 * it is not a class. Let us see if we can generate it. Also, form based
-			 * services are not cached to simplify form overrides. This is not an issue
-			 * because the for is anyways cached, and hence no disk access f\even if we do
-			 * not cache the service
-			 */
-			service = this.tryFormIo(serviceId, ctx);
-			if (service == null) {
-				logger.error("Service {} is not served by this application", serviceId);
-				return null;
+			final Object obj = this.newInstance(cls);
+			if (obj != null) {
+				service = (IService) obj;
+				final IService existing = this.services.putIfAbsent(serviceId, service);
+				return existing == null ? service : existing;
 			}
+		} catch (final Exception e) {
+			logger.error("Internal Error: Exception while instantiating service class {}. Error :", cls, e);
+			return null;
+		}
+
+		/*
+		 * it is not a class. Let us see if we can generate it. Services generated for
+		 * a form/record are cached with the override-id, as the same service name may
+		 * refer to different forms for different users
+		 */
+		final String overrideId = getOverrideId(serviceId, ctx);
+		final long version = overrideId.isEmpty() ? 0 : OverrideUtil.getVersion(overrideId);
+		final String key = serviceId + KEY_SEP + overrideId;
+		final Versioned<IService> cached = this.ioServices.get(key);
+		if (cached != null && cached.version == version) {
+			this.nbrHits.increment();
+			return cached.comp;
 		}
+		/*
+		 * a service that could not be generated is not remembered as missing, as the
+		 * reason may be transient. Classes that are not found are remembered anyway
+		 */
+		service = this.tryFormIo(serviceId, ctx);
+		if (service == null) {
+			logger.error("Service {} is not served by this application", serviceId);
+			return null;
+		}
+		this.ioServices.put(key, new Versioned<>(version, service));
 		return service;
 	}
 
+	/*
+	 * override id in effect for the form/record on which the service operates.
+	 * empty string if it is not overridden
+	 */
+	private static String getOverrideId(final String serviceName, final IServiceContext ctx) {
+		final int idx = serviceName.indexOf(Conventions.Request.SERVICE_OPER_SEPARATOR);
+		if (idx <= 0 || ctx == null) {
+			return "";
+		}
+		final String name = serviceName.substring(idx + 1);
+		String id = ctx.getFormOverrideId(name);
+		if (id == null) {
+			id = ctx.getRecordOverrideId(name);
+		}
+		return id == null ? "" : id;
+	}
+
 	private IService tryFormIo(final String serviceName, final IServiceContext ctx) {
 		final int idx = serviceName.indexOf(Conventions.Request.SERVICE_OPER_SEPARATOR);
 		if (idx <= 0) {
@@ -274,19 +450,27 @@ public class DefaultCompProvider implements ICompProvider {
 
 	@Override
 	public IFunction getFunction(final String functionName) {
-		IFunction fn = this.functions.get(functionName);
+		final IFunction fn = this.functions.get(functionName);
 		if (fn != null) {
+			this.nbrHits.increment();
 			return fn;
 		}
+		return cache(this.functions, functionName, this.loadFunction(functionName));
+	}
+
+	private IFunction loadFunction(final String functionName) {
 		final String cls = this.fnRoot + toClassName(functionName);
+		Object obj = null;
 		try {
-			fn = (IFunction) Class.forName(cls).getConstructor().newInstance();
+			obj = this.newInstance(cls);
 		} catch (final Exception e) {
+			//
+		}
+		if (obj == null) {
 			logger.error("No Function named {} because we could not locate class {}", functionName, cls);
 			return null;
 		}
-		this.functions.put(functionName, fn);
-		return fn;
+		return (IFunction) obj;
 	}
 
 	private static String toClassName(final String name) {
@@ -300,7 +484,11 @@ public class DefaultCompProvider implements ICompProvider {
 
 	@Override
 	public Record getRecord(final String recordName, final IServiceContext ctx) {
-		final String id = ctx.getRecordOverrideId(recordName);
+		/*
+		 * there is no context when a service is located for a job outside of a
+		 * request
+		 */
+		final String id = ctx == null ? null : ctx.getRecordOverrideId(recordName);
 		if (id == null) {
 			return this.getRecord(recordName);
 		}
@@ -309,31 +497,40 @@ public class DefaultCompProvider implements ICompProvider {
 		 * record is cached with this id as prefix
 		 */
 		final String key = id + recordName;
-
-		Record rec = this.records.get(key);
-		if (rec != null) {
-			return rec;
+		final long version = OverrideUtil.getVersion(id);
+		final Versioned<Record> cached = this.overriddenRecords.get(key);
+		if (cached != null && cached.version == version) {
+			this.nbrHits.increment();
+			return cached.comp;
 		}
 
 		/**
 		 * load and override it
 		 */
-		rec = this.loadRecord(recordName);
-		if (rec != null) {
-			rec.override(ctx);
-			this.records.put(key, rec);
+		final Record rec = this.loadRecord(recordName);
+		if (rec == null) {
+			return null;
 		}
-
+		rec.override(ctx);
+		this.overriddenRecords.put(key, new Versioned<>(version, rec));
 		return rec;
 	}
 
 	private Record loadRecord(final String recordName) {
 		final String cls = this.recordRoot + toClassName(recordName) + RECORD;
 		try {
-			return (Record) Class.forName(cls).getConstructor().newInstance();
-		} catch (final ClassNotFoundException e) {
-			logger.error("No record named {} because we could not locate class {}", recordName, cls);
-			return null;
+			if (this.index != null) {
+				final Record rec = this.fromIndex(this.index.getRecords(), recordName);
+				if (rec != null) {
+					return rec;
+				}
+			}
+			final Object obj = this.newInstance(cls);
+			if (obj == null) {
+				logger.error("No record named {} because we could not locate class {}", recordName, cls);
+				return null;
+			}
+			return (Record) obj;
 		} catch (final Exception e) {
 			logger.error("Internal Error: record named" + recordName
 					+ " exists but an excption occured while while creating an instance. Error :", e);
@@ -343,52 +540,145 @@ public class DefaultCompProvider implements ICompProvider {
 
 	@Override
 	public Record getRecord(final String recordName) {
-		Record rec = this.records.get(recordName);
-		if (rec == null) {
-			rec = this.loadRecord(recordName);
-			if (rec != null) {
-				this.records.put(recordName, rec);
-			}
+		final Record rec = this.records.get(recordName);
+		if (rec != null) {
+			this.nbrHits.increment();
+			return rec;
 		}
-		return rec;
+		return cache(this.records, recordName, this.loadRecord(recordName));
 	}
 
 	@Override
 	public Form<?> getForm(final String formId, final IServiceContext ctx) {
-		final String id = ctx.getFormOverrideId(formId);
+		final String id = ctx == null ? null : ctx.getFormOverrideId(formId);
 		if (id == null) {
 			return this.getForm(formId);
 		}
 
 		final String key = id + formId;
-		Form<?> form = this.forms.get(key);
-		if (form != null) {
-			return form;
+		final long version = OverrideUtil.getVersion(id);
+		final Versioned<Form<?>> cached = this.overriddenForms.get(key);
+		if (cached != null && cached.version == version) {
+			this.nbrHits.increment();
+			return cached.comp;
 		}
 
 		/**
 		 * load and override it
 		 */
-		form = this.loadForm(formId);
-		if (form != null) {
-			form.override(ctx);
-			this.forms.put(key, form);
+		final Form<?> form = this.loadForm(formId);
+		if (form == null) {
+			return null;
 		}
-
+		form.override(ctx);
+		this.overriddenForms.put(key, new Versioned<>(version, form));
 		return form;
 	}
 
 	private Form<?> loadForm(final String formId) {
 		final String cls = this.formRoot + toClassName(formId) + FORM;
 		try {
-			return (Form<?>) Class.forName(cls).getConstructor().newInstance();
-		} catch (final ClassNotFoundException e) {
-			logger.error("No form named {} because we could not locate class {}", formId, cls);
-			return null;
+			if (this.index != null) {
+				final Form<?> form = this.fromIndex(this.index.getForms(), formId);
+				if (form != null) {
+					return form;
+				}
+			}
+			final Object obj = this.newInstance(cls);
+			if (obj == null) {
+				logger.error("No form named {} because we could not locate class {}", formId, cls);
+				return null;
+			}
+			return (Form<?>) obj;
 		} catch (final Exception e) {
 			logger.error("Internal Error: Form named " + formId
 					+ " exists but an exception occurred while creating an instance. Error :", e);
 			return null;
 		}
 	}
+
+	/**
+	 * create an instance of a component class
+	 *
+	 * @param cls fully qualified class name
+	 * @return instance, or null if the class is not found
+	 * @throws Exception if the class exists, but an instance could not be created
+	 */
+	private Object newInstance(final String cls) throws Exception {
+		if (this.missingClasses.contains(cls)) {
+			this.nbrNegativeHits.increment();
+			return null;
+		}
+		try {
+			final Object obj = Class.forName(cls).getConstructor().newInstance();
+			this.nbrLoads.increment();
+			return obj;
+		} catch (final ClassNotFoundException e) {
+			this.missingClasses.add(cls);
+			return null;
+		}
+	}
+
+	/**
+	 *
+	 * @return number of requests served from the cache
+	 */
+	public long getNbrHits() {
+		return this.nbrHits.sum();
+	}
+
+	/**
+	 *
+	 * @return number of components loaded
+	 */
+	public long getNbrLoads() {
+		return this.nbrLoads.sum();
+	}
+
+	/**
+	 *
+	 * @return number of requests answered from the negative cache without trying
+	 *         to load the class
+	 */
+	public long getNbrNegativeHits() {
+		return this.nbrNegativeHits.sum();
+	}
+
+	/*
+	 * component built with overrides of a given version
+	 */
+	private static class Versioned<T> {
+		final long version;
+		final T comp;
+
+		Versioned(final long version, final T comp) {
+			this.version = version;
+			this.comp = comp;
+		}
+	}
+
+	/**
+	 * set of names with an upper limit on its size. It is just cleared when it
+	 * reaches its limit. This is good enough to guard against a flood of requests
+	 * with invalid names
+	 */
+	private static class NameSet {
+		private final Map<String, Boolean> names = new ConcurrentHashMap<>();
+		private final int maxSize;
+
+		NameSet(final int maxSize) {
+			this.maxSize = maxSize;
+		}
+
+		boolean contains(final String name) {
+			return this.names.containsKey(name);
+		}
+
+		void add(final String name) {
+			if (this.names.size() >= this.maxSize) {
+				this.names.clear();
+			}
+			this.names.put(name, Boolean.TRUE);
+		}
+	}
 }
@@ -0,0 +1,559 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.simplity.fm.core.infra.defalt;
+
+import java.io.Reader;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.simplity.fm.core.ApplicationError;
+import org.simplity.fm.core.UserContext;
+import org.simplity.fm.core.app.AppManager;
+import org.simplity.fm.core.db.IDbDriver;
+import org.simplity.fm.core.infra.ICheckpointStore;
+import org.simplity.fm.core.infra.IJobManager;
+import org.simplity.fm.core.infra.ITempFileManager;
+import org.simplity.fm.core.job.Checkpoint;
+import org.simplity.fm.core.job.IJobHandle;
+import org.simplity.fm.core.job.IPartitionedTask;
+import org.simplity.fm.core.job.JobStatus;
+import org.simplity.fm.core.json.JsonUtil;
+import org.simplity.fm.core.service.IInputData;
+import org.simplity.fm.core.service.IService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * runs services as background jobs on a fixed number of worker threads. Jobs
+ * waiting to be run are queued separately for each tenant, ordered by their
+ * priority. Workers pick jobs from the tenants in turn, so that a tenant with
+ * a large number of jobs does not hold up the jobs of others. Output of a job
+ * is spooled to a temp file, and is retained for a configured time after the
+ * job ends.
+ *
+ * Jobs may be checkpointed in a durable store, so that the jobs that are
+ * interrupted by a restart of the app can be resumed. The store may be shared
+ * by the instances of the app in a cluster: a job is resumed by the instance
+ * that claims its checkpoint, and only if its service is resumable. Leases on
+ * the checkpoints of this instance are renewed periodically, when jobs that
+ * were held by other instances, and are no more, are looked for.
+ *
+ * Partitions of partitioned jobs are processed on a pool with a thread per
+ * core that is shared across jobs
+ *
+ * @author simplity.org
+ *
+ */
+public class DefaultJobManager implements IJobManager {
+	private static final Logger logger = LoggerFactory.getLogger(DefaultJobManager.class);
+	/**
+	 * default number of worker threads
+	 */
+	public static final int DEFAULT_NBR_THREADS = 4;
+	/**
+	 * default max number of jobs that may be waiting to be run
+	 */
+	public static final int DEFAULT_MAX_WAITING = 1000;
+	/**
+	 * default number of seconds for which a job, along with its output, is
+	 * retained after it ends
+	 */
+	public static final int DEFAULT_RETAIN_SECONDS = 3600;
+	/**
+	 * interval at which leases on checkpoints are renewed. Leases are to be
+	 * granted for a duration well above this
+	 */
+	public static final long LEASE_RENEWAL_MILLIS = 30000;
+
+	/*
+	 * tenant-id for jobs that are run without a tenant. ArrayDeque does not
+	 * accept null
+	 */
+	private static final Object NO_TENANT = new Object();
+	private static final long PURGE_INTERVAL_MILLIS = 60000;
+
+	private final Map<String, ServiceJob> jobs = new ConcurrentHashMap<>();
+	private final ITempFileManager files;
+	private final ExecutorService partitionThreads;
+	/*
+	 * driver with which partitions are processed. null to use the driver of the
+	 * app
+	 */
+	private final IDbDriver partitionDriver;
+	/*
+	 * null if jobs are not checkpointed
+	 */
+	private final ICheckpointStore checkpoints;
+	/*
+	 * renews leases on the checkpoints. null if jobs are not checkpointed
+	 */
+	private final Thread leaseWatcher;
+	private final long retainMillis;
+	private final int maxWaiting;
+	private volatile long purgedAt = System.currentTimeMillis();
+
+	/*
+	 * all the fields below are guarded by this lock
+	 */
+	private final Object lock = new Object();
+	private final Map<Object, PriorityQueue<ServiceJob>> queues = new HashMap<>();
+	/*
+	 * tenants with waiting jobs, in the order in which they get their turn
+	 */
+	private final ArrayDeque<Object> tenantsInTurn = new ArrayDeque<>();
+	private int nbrWaiting;
+	private boolean shutdown;
+
+	/**
+	 * job manager with default settings, spooling output to the temp folder of
+	 * the system
+	 */
+	public DefaultJobManager() {
+		this(DEFAULT_NBR_THREADS, DEFAULT_MAX_WAITING, new DefaultTempFileManager(), DEFAULT_RETAIN_SECONDS);
+	}
+
+	/**
+	 *
+	 * @param nbrThreads    number of jobs that may run concurrently
+	 * @param maxWaiting    max number of jobs that may wait to be run. A job can
+	 *                      not be started when this limit is reached
+	 * @param files         manager of the temp files to which the output of jobs
+	 *                      is spooled
+	 * @param retainSeconds number of seconds after which a job that has ended is
+	 *                      removed along with its output
+	 */
+	public DefaultJobManager(final int nbrThreads, final int maxWaiting, final ITempFileManager files,
+			final int retainSeconds) {
+		this(nbrThreads, maxWaiting, files, retainSeconds, null);
+	}
+
+	/**
+	 *
+	 * @param nbrThreads    number of jobs that may run concurrently
+	 * @param maxWaiting    max number of jobs that may wait to be run. A job can
+	 *                      not be started when this limit is reached
+	 * @param files         manager of the temp files to which the output of jobs
+	 *                      is spooled
+	 * @param retainSeconds number of seconds after which a job that has ended is
+	 *                      removed along with its output
+	 * @param checkpoints   store in which a checkpoint is saved for each job from
+	 *                      the time it is started till it ends. null if jobs are
+	 *                      not to be checkpointed
+	 */
+	public DefaultJobManager(final int nbrThreads, final int maxWaiting, final ITempFileManager files,
+			final int retainSeconds, final ICheckpointStore checkpoints) {
+		this(nbrThreads, maxWaiting, files, retainSeconds, checkpoints, null);
+	}
+
+	/*
+	 * partitions are processed with the given driver, so that partitioned jobs
+	 * can be run without an app
+	 */
+	DefaultJobManager(final int nbrThreads, final int maxWaiting, final ITempFileManager files,
+			final int retainSeconds, final ICheckpointStore checkpoints, final IDbDriver partitionDriver) {
+		this.files = files;
+		this.partitionDriver = partitionDriver;
+		this.checkpoints = checkpoints;
+		this.maxWaiting = maxWaiting;
+		this.retainMillis = retainSeconds * 1000L;
+		for (int i = 0; i < nbrThreads; i++) {
+			final Thread t = new Thread(this::work, "job-" + (i + 1));
+			t.setDaemon(true);
+			t.start();
+		}
+		if (checkpoints == null || checkpoints instanceof DefunctCheckpointStore) {
+			this.leaseWatcher = null;
+		} else {
+			this.leaseWatcher = new Thread(this::watchLeases, "job-leases");
+			this.leaseWatcher.setDaemon(true);
+			this.leaseWatcher.start();
+		}
+
+		final int nbrCores = Runtime.getRuntime().availableProcessors();
+		final AtomicInteger nbr = new AtomicInteger();
+		final ThreadPoolExecutor pool = new ThreadPoolExecutor(nbrCores, nbrCores, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), r -> {
+					final Thread t = new Thread(r, "partition-" + nbr.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				});
+		pool.allowCoreThreadTimeOut(true);
+		this.partitionThreads = pool;
+	}
+
+	@Override
+	public IJobHandle newJob(final Reader reader, final String serviceName) {
+		final IService service = AppManager.getApp().getCompProvider().getService(serviceName, null);
+		if (service == null) {
+			throw new ApplicationError("Service " + serviceName + " is not served by this app");
+		}
+		IInputData inputData = JsonUtil.newInputData(reader);
+		if (inputData == null) {
+			throw new ApplicationError("Input data for job " + serviceName + " is not a valid json");
+		}
+		return this.newJob(service, inputData, null, 0);
+	}
+
+	@Override
+	public IJobHandle newJob(final IService service, final IInputData inputData, final UserContext utx,
+			final int priority) {
+		this.purge();
+		final String id = UUID.randomUUID().toString();
+		final ServiceJob job = new ServiceJob(id, service, inputData, utx, priority, this.files, this);
+		this.jobs.put(id, job);
+		return job;
+	}
+
+	@Override
+	public IJobHandle getJob(final String jobId) {
+		return this.jobs.get(jobId);
+	}
+
+	@Override
+	public IJobHandle newPartitionedJob(final IPartitionedTask task, final IInputData inputData,
+			final UserContext utx, final int parallelism, final boolean failFast) {
+		this.purge();
+		final String id = UUID.randomUUID().toString();
+		final PartitionedService service = new PartitionedService(task, parallelism, failFast,
+				this.partitionThreads, this.partitionDriver);
+		/*
+		 * task is not a registered service, and hence the job can not be
+		 * re-created from a checkpoint
+		 */
+		final ServiceJob job = new ServiceJob(id, service, inputData, utx, 0, this.files, this, false);
+		this.jobs.put(id, job);
+		return job;
+	}
+
+	@Override
+	public int resumeInterruptedJobs() {
+		return this.resumeInterruptedJobs(name -> AppManager.getApp().getCompProvider().getService(name, null));
+	}
+
+	/**
+	 *
+	 * @param services returns the service with the given name, or null if there
+	 *                 is no such service
+	 * @return number of jobs that are resumed
+	 */
+	int resumeInterruptedJobs(final Function<String, IService> services) {
+		if (this.checkpoints == null) {
+			return 0;
+		}
+		final List<Checkpoint> list;
+		try {
+			list = this.checkpoints.getInterruptedJobs();
+		} catch (final SQLException e) {
+			logger.error("Checkpoints of interrupted jobs could not be read: {}", e.getMessage());
+			return 0;
+		}
+
+		int nbr = 0;
+		for (final Checkpoint cp : list) {
+			if (this.jobs.containsKey(cp.id) || this.claim(cp.id) == false) {
+				continue;
+			}
+			final IService service = services.apply(cp.serviceName);
+			final IInputData inputData = cp.getInputData();
+			/*
+			 * user context is re-created with UserContext.fromBytes(), that
+			 * instantiates only the sub-classes of UserContext
+			 */
+			final UserContext utx = cp.getUserContext();
+			if (service == null || inputData == null || (cp.userContext != null && utx == null)) {
+				logger.error("Job {} for service {} could not be re-created from its checkpoint, and is abandoned",
+						cp.id, cp.serviceName);
+				this.removeCheckpoint(cp.id);
+				continue;
+			}
+			if (service.isResumable() == false) {
+				logger.warn("Job {} for service {} is abandoned as the service is not resumable, and may have "
+						+ "done part of its work before it was interrupted", cp.id, cp.serviceName);
+				this.removeCheckpoint(cp.id);
+				continue;
+			}
+
+			final ServiceJob job = new ServiceJob(cp.id, service, inputData, utx, 0, this.files, this, false);
+			this.jobs.put(cp.id, job);
+			if (job.start()) {
+				logger.info("Job {} for service {} is resumed from its checkpoint", cp.id, cp.serviceName);
+				nbr++;
+			}
+		}
+		return nbr;
+	}
+
+	/**
+	 * stop the workers after the running jobs are completed. Jobs that are
+	 * waiting are not run. Partitions of running jobs are interrupted
+	 */
+	@Override
+	public void shutdown() {
+		synchronized (this.lock) {
+			this.shutdown = true;
+			this.lock.notifyAll();
+		}
+		this.partitionThreads.shutdownNow();
+		if (this.leaseWatcher != null) {
+			this.leaseWatcher.interrupt();
+		}
+	}
+
+	/**
+	 *
+	 * @return number of jobs that are waiting to be run
+	 */
+	public int getNbrWaiting() {
+		synchronized (this.lock) {
+			return this.nbrWaiting;
+		}
+	}
+
+	/**
+	 * queue a job to be run
+	 *
+	 * @param job
+	 * @return false if the job can not be queued
+	 */
+	boolean enqueue(final ServiceJob job) {
+		Object tenant = job.getTenantId();
+		if (tenant == null) {
+			tenant = NO_TENANT;
+		}
+		synchronized (this.lock) {
+			if (this.shutdown || this.nbrWaiting >= this.maxWaiting) {
+				logger.warn("Job {} could not be queued as {} jobs are already waiting", job.getId(),
+						this.nbrWaiting);
+				return false;
+			}
+			PriorityQueue<ServiceJob> queue = this.queues.get(tenant);
+			if (queue == null) {
+				queue = new PriorityQueue<>();
+				this.queues.put(tenant, queue);
+				this.tenantsInTurn.add(tenant);
+			}
+			queue.add(job);
+			this.nbrWaiting++;
+			this.lock.notify();
+		}
+		return true;
+	}
+
+	/**
+	 * remove a job that is cancelled while it is waiting, so that it does not
+	 * count towards the max number of waiting jobs
+	 *
+	 * @param job
+	 */
+	void dequeue(final ServiceJob job) {
+		Object tenant = job.getTenantId();
+		if (tenant == null) {
+			tenant = NO_TENANT;
+		}
+		synchronized (this.lock) {
+			final PriorityQueue<ServiceJob> queue = this.queues.get(tenant);
+			if (queue == null || queue.remove(job) == false) {
+				// not queued yet, or already taken by a worker
+				return;
+			}
+			this.nbrWaiting--;
+			if (queue.isEmpty()) {
+				this.queues.remove(tenant);
+				this.tenantsInTurn.remove(tenant);
+			}
+		}
+	}
+
+	private boolean claim(final String jobId) {
+		try {
+			return this.checkpoints.claim(jobId);
+		} catch (final SQLException | ApplicationError e) {
+			logger.error("Checkpoint for job {} could not be claimed: {}", jobId, e.getMessage());
+			return false;
+		}
+	}
+
+	/*
+	 * renew the leases on the checkpoints of this instance, and resume the jobs
+	 * of the instances that are no more
+	 */
+	private void watchLeases() {
+		while (true) {
+			try {
+				Thread.sleep(LEASE_RENEWAL_MILLIS);
+			} catch (final InterruptedException e) {
+				return;
+			}
+			synchronized (this.lock) {
+				if (this.shutdown) {
+					return;
+				}
+			}
+			try {
+				this.checkpoints.renewLeases();
+				if (AppManager.getApp() != null) {
+					this.resumeInterruptedJobs();
+				}
+			} catch (final Exception | ApplicationError e) {
+				logger.error("Leases on checkpoints could not be renewed: {}", e.getMessage());
+			}
+		}
+	}
+
+	/*
+	 * checkpoints are saved on a best-effort basis. A job is not failed for want
+	 * of its checkpoint
+	 */
+	void saveCheckpoint(final ServiceJob job) {
+		if (this.checkpoints == null) {
+			return;
+		}
+		try {
+			this.checkpoints.save(job.toCheckpoint());
+		} catch (final SQLException | ApplicationError e) {
+			logger.error("Checkpoint for job {} could not be saved: {}", job.getId(), e.getMessage());
+		}
+	}
+
+	void updateCheckpoint(final String jobId, final JobStatus status) {
+		if (this.checkpoints == null) {
+			return;
+		}
+		try {
+			final Checkpoint cp = this.checkpoints.get(jobId);
+			if (cp != null) {
+				this.checkpoints.save(cp.withStatus(status));
+			}
+		} catch (final SQLException e) {
+			logger.error("Checkpoint for job {} could not be updated: {}", jobId, e.getMessage());
+		}
+	}
+
+	/*
+	 * remove the checkpoint of the job, along with those of the uploads that
+	 * were run by it. Uploads of a job are checkpointed in an unbroken sequence
+	 */
+	void removeCheckpoint(final String jobId) {
+		if (this.checkpoints == null) {
+			return;
+		}
+		try {
+			for (int seq = 1;; seq++) {
+				final String id = Checkpoint.getUploadId(jobId, seq);
+				if (this.checkpoints.get(id) == null) {
+					break;
+				}
+				this.checkpoints.remove(id);
+			}
+			this.checkpoints.remove(jobId);
+		} catch (final SQLException e) {
+			logger.error("Checkpoint for job {} could not be removed: {}", jobId, e.getMessage());
+		}
+	}
+
+	/*
+	 * next job to be run. null if the manager is shut down
+	 */
+	private ServiceJob take() throws InterruptedException {
+		synchronized (this.lock) {
+			while (this.tenantsInTurn.isEmpty()) {
+				if (this.shutdown) {
+					return null;
+				}
+				this.lock.wait();
+			}
+			if (this.shutdown) {
+				return null;
+			}
+			final Object tenant = this.tenantsInTurn.poll();
+			final PriorityQueue<ServiceJob> queue = this.queues.get(tenant);
+			final ServiceJob job = queue.poll();
+			if (queue.isEmpty()) {
+				this.queues.remove(tenant);
+			} else {
+				this.tenantsInTurn.add(tenant);
+			}
+			this.nbrWaiting--;
+			return job;
+		}
+	}
+
+	private void work() {
+		while (true) {
+			final ServiceJob job;
+			try {
+				job = this.take();
+			} catch (final InterruptedException e) {
+				// interrupt meant for the job that was cancelled. continue
+				continue;
+			}
+			if (job == null) {
+				return;
+			}
+			try {
+				job.run();
+			} catch (final Throwable e) {
+				// job has already ended with a status. This worker lives on
+				logger.error("Worker {} caught an error from job {}: {}", Thread.currentThread().getName(),
+						job.getId(), e.getMessage());
+			}
+		}
+	}
+
+	/*
+	 * remove jobs that ended a while ago, along with their output, and the jobs
+	 * that were created a while ago but could not be started. Jobs are scanned at
+	 * most once a minute
+	 */
+	private void purge() {
+		final long now = System.currentTimeMillis();
+		if (now - this.purgedAt < PURGE_INTERVAL_MILLIS) {
+			return;
+		}
+		this.purgedAt = now;
+		final long cutOff = now - this.retainMillis;
+		final Iterator<ServiceJob> iter = this.jobs.values().iterator();
+		while (iter.hasNext()) {
+			final ServiceJob job = iter.next();
+			final long at = job.getFinishedAt();
+			if ((at != 0 && at < cutOff) || (at == 0 && !job.isStarted() && job.getCreatedAt() < cutOff)) {
+				job.deleteOutput();
+				iter.remove();
+			}
+		}
+	}
+}
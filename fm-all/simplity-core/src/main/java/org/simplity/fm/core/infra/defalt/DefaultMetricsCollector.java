@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.simplity.fm.core.infra.defalt;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.simplity.fm.core.app.RequestStatus;
+import org.simplity.fm.core.infra.IMetricsCollector;
+import org.simplity.fm.core.service.IOutputData;
+
+/**
+ * keeps a latency histogram for each phase of each service in memory. All
+ * latencies are recorded, and reported, in micro-seconds.
+ *
+ * @author simplity.org
+ *
+ */
+public class DefaultMetricsCollector implements IMetricsCollector {
+	/**
+	 * max number of services for which metrics are kept separately. Any service
+	 * beyond this is accounted under OTHERS
+	 */
+	public static final int MAX_SERVICES = 1000;
+	/**
+	 * name under which services beyond MAX_SERVICES are accounted
+	 */
+	public static final String OTHERS = "_others";
+
+	private static final String TOTAL = "total";
+	private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+	private static final String[] PERCENTILE_NAMES = { "p50", "p90", "p99", "p999" };
+	private static final Phase[] PHASES = Phase.values();
+	private static final RequestStatus[] STATUSES = RequestStatus.values();
+
+	private final Map<String, ServiceMetrics> services = new ConcurrentHashMap<>();
+
+	@Override
+	public void record(final String serviceName, final Phase phase, final long nanos) {
+		this.getMetrics(serviceName).phases[phase.ordinal()].record(TimeUnit.NANOSECONDS.toMicros(nanos));
+	}
+
+	@Override
+	public void requestCompleted(final String serviceName, final RequestStatus status, final long nanos) {
+		final ServiceMetrics metrics = this.getMetrics(serviceName);
+		metrics.total.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+		metrics.statusCounts[status.ordinal()].increment();
+	}
+
+	@Override
+	public void writeSnapshot(final IOutputData outData) {
+		final Map<String, ServiceMetrics> sorted = new TreeMap<>(this.services);
+		outData.addName("services").beginArray();
+		for (final Map.Entry<String, ServiceMetrics> entry : sorted.entrySet()) {
+			final ServiceMetrics metrics = entry.getValue();
+			outData.beginObject();
+			outData.addName("name").addValue(entry.getKey());
+
+			long nbrErrors = 0;
+			outData.addName("statusCounts").beginObject();
+			for (final RequestStatus status : STATUSES) {
+				final long n = metrics.statusCounts[status.ordinal()].sum();
+				if (n == 0) {
+					continue;
+				}
+				outData.addName(status.name()).addValue(n);
+				if (status != RequestStatus.Completed) {
+					nbrErrors += n;
+				}
+			}
+			outData.endObject();
+
+			final long count = metrics.total.getCount();
+			outData.addName("count").addValue(count);
+			outData.addName("errorRate").addValue(count == 0 ? 0.0 : (double) nbrErrors / count);
+
+			outData.addName("latencyMicros").beginObject();
+			writeHistogram(outData, TOTAL, metrics.total);
+			for (final Phase phase : PHASES) {
+				writeHistogram(outData, phase.name(), metrics.phases[phase.ordinal()]);
+			}
+			outData.endObject();
+
+			outData.endObject();
+		}
+		outData.endArray();
+	}
+
+	private static void writeHistogram(final IOutputData outData, final String name, final LatencyHistogram hist) {
+		final long count = hist.getCount();
+		if (count == 0) {
+			return;
+		}
+		outData.addName(name).beginObject();
+		outData.addName("count").addValue(count);
+		outData.addName("mean").addValue(hist.getMean());
+		for (int i = 0; i < PERCENTILES.length; i++) {
+			outData.addName(PERCENTILE_NAMES[i]).addValue(hist.getValueAtPercentile(PERCENTILES[i]));
+		}
+		outData.addName("max").addValue(hist.getMax());
+		outData.endObject();
+	}
+
+	private ServiceMetrics getMetrics(final String serviceName) {
+		final ServiceMetrics metrics = this.services.get(serviceName);
+		if (metrics != null) {
+			return metrics;
+		}
+		final String name = this.services.size() < MAX_SERVICES ? serviceName : OTHERS;
+		return this.services.computeIfAbsent(name, k -> new ServiceMetrics());
+	}
+
+	private static class ServiceMetrics {
+		final LatencyHistogram total = new LatencyHistogram();
+		final LatencyHistogram[] phases = new LatencyHistogram[PHASES.length];
+		final LongAdder[] statusCounts = new LongAdder[STATUSES.length];
+
+		ServiceMetrics() {
+			for (int i = 0; i < this.phases.length; i++) {
+				this.phases[i] = new LatencyHistogram();
+			}
+			for (int i = 0; i < this.statusCounts.length; i++) {
+				this.statusCounts[i] = new LongAdder();
+			}
+		}
+	}
+}
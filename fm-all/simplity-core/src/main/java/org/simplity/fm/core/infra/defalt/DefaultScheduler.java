@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.simplity.fm.core.infra.defalt;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.simplity.fm.core.ApplicationError;
+import org.simplity.fm.core.UserContext;
+import org.simplity.fm.core.infra.IJobManager;
+import org.simplity.fm.core.infra.IScheduler;
+import org.simplity.fm.core.job.IJobHandle;
+import org.simplity.fm.core.job.MissedFirePolicy;
+import org.simplity.fm.core.job.Trigger;
+import org.simplity.fm.core.service.IInputData;
+import org.simplity.fm.core.service.IOutputData;
+import org.simplity.fm.core.service.IService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * scheduler based on a hashed timing wheel. Time is divided into ticks, and
+ * the wheel has a bucket for each tick, wrapping around after the last one. A
+ * trigger is kept in the bucket of the tick at which it is due, along with the
+ * number of rounds of the wheel that are to pass before that. A single thread
+ * visits one bucket per tick, and hence the cost of scheduling and firing does
+ * not grow with the number of triggers. Triggers fire within a tick of their
+ * time.
+ *
+ * Scheduled services are run as jobs by the job manager. The thread is started
+ * when the first service is scheduled
+ *
+ * @author simplity.org
+ *
+ */
+public class DefaultScheduler implements IScheduler {
+	private static final Logger logger = LoggerFactory.getLogger(DefaultScheduler.class);
+	/**
+	 * default duration of a tick
+	 */
+	public static final long DEFAULT_TICK_MILLIS = 1000;
+	/**
+	 * default number of buckets in the wheel
+	 */
+	public static final int DEFAULT_WHEEL_SIZE = 512;
+	/**
+	 * a trigger that could not be fired within this time after it was due is
+	 * treated as missed
+	 */
+	public static final long DEFAULT_MISFIRE_MILLIS = 60000;
+
+	private final IJobManager jobManager;
+	private final long tickMillis;
+	private final long misfireMillis;
+	private final int mask;
+	private final Map<String, ScheduledTrigger> triggers = new ConcurrentHashMap<>();
+	/*
+	 * triggers scheduled by other threads, to be put into the wheel by the wheel
+	 * thread
+	 */
+	private final ConcurrentLinkedQueue<ScheduledTrigger> newTriggers = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean started = new AtomicBoolean();
+	private volatile boolean shutdown;
+
+	/*
+	 * accessed only by the wheel thread
+	 */
+	private final List<List<ScheduledTrigger>> buckets;
+	private long startedAt;
+	private long tick;
+
+	/**
+	 * scheduler with default settings
+	 *
+	 * @param jobManager to which the scheduled services are handed over to be run
+	 */
+	public DefaultScheduler(final IJobManager jobManager) {
+		this(jobManager, DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE, DEFAULT_MISFIRE_MILLIS);
+	}
+
+	/**
+	 *
+	 * @param jobManager    to which the scheduled services are handed over to be
+	 *                      run
+	 * @param tickMillis    duration of a tick. triggers fire within this time
+	 *                      after they are due
+	 * @param wheelSize     number of buckets in the wheel. rounded up to a power
+	 *                      of 2
+	 * @param misfireMillis a trigger that could not be fired within this time
+	 *                      after it was due is treated as missed
+	 */
+	public DefaultScheduler(final IJobManager jobManager, final long tickMillis, final int wheelSize,
+			final long misfireMillis) {
+		if (tickMillis <= 0 || wheelSize <= 0) {
+			throw new ApplicationError("Tick duration and wheel size must be positive for the scheduler");
+		}
+		this.jobManager = jobManager;
+		this.tickMillis = tickMillis;
+		this.misfireMillis = misfireMillis;
+		int size = 1;
+		while (size < wheelSize) {
+			size <<= 1;
+		}
+		this.mask = size - 1;
+		this.buckets = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			this.buckets.add(new ArrayList<>());
+		}
+	}
+
+	@Override
+	public String schedule(final IService service, final IInputData inputData, final UserContext utx,
+			final Trigger trigger, final MissedFirePolicy policy) {
+		if (this.shutdown) {
+			throw new ApplicationError("Scheduler is shut down");
+		}
+		final String id = UUID.randomUUID().toString();
+		final ScheduledTrigger st = new ScheduledTrigger(id, service, inputData, utx, trigger, policy);
+		st.deadline = trigger.nextFireAfter(System.currentTimeMillis());
+		if (st.deadline == Trigger.NEVER) {
+			logger.warn("Trigger {} for service {} never fires. Not scheduled", trigger, service.getId());
+			return id;
+		}
+		this.triggers.put(id, st);
+		this.newTriggers.add(st);
+		if (this.started.compareAndSet(false, true)) {
+			final Thread t = new Thread(this::run, "scheduler");
+			t.setDaemon(true);
+			t.start();
+		}
+		return id;
+	}
+
+	@Override
+	public boolean unschedule(final String triggerId) {
+		final ScheduledTrigger st = this.triggers.remove(triggerId);
+		if (st == null) {
+			return false;
+		}
+		// removed from its bucket when the wheel visits it next
+		st.cancelled = true;
+		return true;
+	}
+
+	@Override
+	public int unscheduleTenant(final Object tenantId) {
+		int n = 0;
+		final Iterator<ScheduledTrigger> iter = this.triggers.values().iterator();
+		while (iter.hasNext()) {
+			final ScheduledTrigger st = iter.next();
+			final Object id = st.getTenantId();
+			if (id != null && id.equals(tenantId)) {
+				st.cancelled = true;
+				iter.remove();
+				n++;
+			}
+		}
+		return n;
+	}
+
+	@Override
+	public void writeStatus(final IOutputData outData) {
+		outData.addName("triggers").beginArray();
+		for (final ScheduledTrigger st : this.triggers.values()) {
+			st.writeStatus(outData);
+		}
+		outData.endArray();
+	}
+
+	@Override
+	public void shutdown() {
+		this.shutdown = true;
+	}
+
+	/**
+	 *
+	 * @param triggerId
+	 * @return number of times the trigger has fired. 0 if no such trigger
+	 */
+	public long getNbrFired(final String triggerId) {
+		final ScheduledTrigger st = this.triggers.get(triggerId);
+		return st == null ? 0 : st.getNbrFired();
+	}
+
+	/**
+	 *
+	 * @param triggerId
+	 * @return number of times the trigger was not fired as its earlier run was
+	 *         yet to complete
+	 */
+	public long getNbrOverlapped(final String triggerId) {
+		final ScheduledTrigger st = this.triggers.get(triggerId);
+		return st == null ? 0 : st.getNbrOverlapped();
+	}
+
+	private void run() {
+		this.startedAt = System.currentTimeMillis();
+		while (this.shutdown == false) {
+			final long tickEnd = this.startedAt + (this.tick + 1) * this.tickMillis;
+			long now = System.currentTimeMillis();
+			if (now < tickEnd) {
+				try {
+					Thread.sleep(tickEnd - now);
+				} catch (final InterruptedException e) {
+					return;
+				}
+				continue;
+			}
+
+			ScheduledTrigger st;
+			while ((st = this.newTriggers.poll()) != null) {
+				this.place(st, this.tick);
+			}
+
+			try {
+				this.visit(this.buckets.get((int) (this.tick & this.mask)), now);
+			} catch (final Throwable e) {
+				logger.error("Error while firing triggers: {}", e.getMessage());
+			}
+			this.tick++;
+		}
+	}
+
+	/*
+	 * fire the triggers that are due in this bucket, and re-place them for their
+	 * next fire. Triggers are re-placed after the bucket is walked, as the next
+	 * fire may be due in this very bucket, like when the period is a multiple of
+	 * the span of the wheel
+	 */
+	private void visit(final List<ScheduledTrigger> bucket, final long now) {
+		final List<ScheduledTrigger> fired = new ArrayList<>();
+		int i = 0;
+		while (i < bucket.size()) {
+			final ScheduledTrigger st = bucket.get(i);
+			if (st.cancelled == false && st.remainingRounds > 0) {
+				st.remainingRounds--;
+				i++;
+				continue;
+			}
+
+			// remove by moving the last one into its slot
+			final int last = bucket.size() - 1;
+			bucket.set(i, bucket.get(last));
+			bucket.remove(last);
+			if (st.cancelled) {
+				continue;
+			}
+
+			this.fire(st, now);
+			st.deadline = st.trigger.nextFireAfter(Math.max(now, st.deadline));
+			if (st.deadline == Trigger.NEVER) {
+				this.triggers.remove(st.id);
+			} else {
+				fired.add(st);
+			}
+		}
+		for (final ScheduledTrigger st : fired) {
+			this.place(st, this.tick + 1);
+		}
+	}
+
+	private void fire(final ScheduledTrigger st, final long now) {
+		if (now - st.deadline > this.misfireMillis) {
+			st.missed();
+			if (st.policy == MissedFirePolicy.Skip) {
+				logger.warn("Trigger {} for service {} missed its fire time. Skipped", st.id, st.service.getId());
+				return;
+			}
+		}
+
+		if (st.isRunning()) {
+			logger.warn("Service {} is not run for trigger {} as its earlier run is yet to complete",
+					st.service.getId(), st.id);
+			st.overlapped();
+			return;
+		}
+
+		final IJobHandle job = this.jobManager.newJob(st, st.inputData, st.utx, 0);
+		if (job == null || job.start() == false) {
+			logger.error("Job manager did not accept service {} for trigger {}", st.service.getId(), st.id);
+			st.rejected();
+			return;
+		}
+		st.fired(job, now);
+	}
+
+	/*
+	 * put the trigger into the bucket for the tick at which it is due, but not
+	 * before the given tick
+	 */
+	private void place(final ScheduledTrigger st, final long fromTick) {
+		/*
+		 * bucket for tick t is visited at the end of that tick
+		 */
+		long due = (st.deadline - this.startedAt + this.tickMillis - 1) / this.tickMillis - 1;
+		if (due < fromTick) {
+			due = fromTick;
+		}
+		st.remainingRounds = (due - fromTick) / this.buckets.size();
+		this.buckets.get((int) (due & this.mask)).add(st);
+	}
+}
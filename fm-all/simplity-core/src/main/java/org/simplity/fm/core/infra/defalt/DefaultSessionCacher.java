@@ -22,8 +22,13 @@
 
 package org.simplity.fm.core.infra.defalt;
 
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.simplity.fm.core.UserContext;
 import org.simplity.fm.core.infra.ISessionCache;
@@ -31,14 +36,96 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * a stand-in cacher that is nothing but a map.
+ * local, in-memory session cache that is safe for concurrent use. Sessions
+ * expire after a period of inactivity (idle time-out), and also after a fixed
+ * period since login (max-life). Number of sessions is capped, and the least
+ * recently used ones are evicted to make room for the new ones. A background
+ * reaper removes expired sessions periodically.
+ *
+ * Sessions are spread across a number of stripes, each being an access-ordered
+ * map with its own lock. Hence the LRU is per stripe, and is an approximation
+ * of the LRU across all sessions
  *
  * @author simplity.org
  *
  */
 public class DefaultSessionCacher implements ISessionCache {
 	private static final Logger logger = LoggerFactory.getLogger(DefaultSessionCacher.class);
-	private final Map<String, UserContext> sessions = new HashMap<>();
+	/**
+	 * default idle time-out: 30 minutes
+	 */
+	public static final long DEFAULT_IDLE_SECONDS = 30 * 60;
+	/**
+	 * default max life of a session: 12 hours
+	 */
+	public static final long DEFAULT_MAX_LIFE_SECONDS = 12 * 60 * 60;
+	/**
+	 * default max number of sessions
+	 */
+	public static final int DEFAULT_MAX_SESSIONS = 100000;
+
+	private static final int NBR_STRIPES = 16;
+	private static final long MIN_REAP_INTERVAL = 10000;
+
+	private final Stripe[] stripes = new Stripe[NBR_STRIPES];
+	private final long idleMillis;
+	private final long maxLifeMillis;
+	private final ScheduledExecutorService reaper;
+
+	private final LongAdder nbrHits = new LongAdder();
+	private final LongAdder nbrMisses = new LongAdder();
+	private final LongAdder nbrEvictions = new LongAdder();
+	private final LongAdder nbrExpirations = new LongAdder();
+
+	/**
+	 * cache with default settings
+	 */
+	public DefaultSessionCacher() {
+		this(DEFAULT_IDLE_SECONDS, DEFAULT_MAX_LIFE_SECONDS, DEFAULT_MAX_SESSIONS);
+	}
+
+	/**
+	 *
+	 * @param idleSeconds    session expires if it is not accessed for these many
+	 *                       seconds. 0 means no idle time-out
+	 * @param maxLifeSeconds session expires after these many seconds since it was
+	 *                       created, irrespective of its use. 0 means no limit
+	 * @param maxSessions    max number of sessions. least recently used sessions
+	 *                       are evicted beyond this
+	 */
+	public DefaultSessionCacher(final long idleSeconds, final long maxLifeSeconds, final int maxSessions) {
+		this.idleMillis = idleSeconds * 1000;
+		this.maxLifeMillis = maxLifeSeconds * 1000;
+		int perStripe = maxSessions / NBR_STRIPES;
+		if (perStripe < 1) {
+			perStripe = 1;
+		}
+		for (int i = 0; i < NBR_STRIPES; i++) {
+			this.stripes[i] = new Stripe(perStripe);
+		}
+
+		/*
+		 * reap at a fraction of the shorter of the two time-outs
+		 */
+		long interval = Long.MAX_VALUE;
+		if (this.idleMillis > 0) {
+			interval = this.idleMillis;
+		}
+		if (this.maxLifeMillis > 0 && this.maxLifeMillis < interval) {
+			interval = this.maxLifeMillis;
+		}
+		if (interval == Long.MAX_VALUE) {
+			this.reaper = null;
+			return;
+		}
+		interval = Math.max(interval / 4, MIN_REAP_INTERVAL);
+		this.reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+			final Thread t = new Thread(r, "session-reaper");
+			t.setDaemon(true);
+			return t;
+		});
+		this.reaper.scheduleWithFixedDelay(this::reap, interval, interval, TimeUnit.MILLISECONDS);
+	}
 
 	@Override
 	public void put(final String id, final UserContext session) {
@@ -47,7 +134,17 @@ public class DefaultSessionCacher implements ISessionCache {
 		} else if (session == null) {
 			logger.error("Null sessions are not cached.");
 		} else {
-			this.sessions.put(id, session);
+			final Stripe stripe = this.stripeFor(id);
+			final long now = System.currentTimeMillis();
+			synchronized (stripe) {
+				/*
+				 * a session that is put back after being modified retains its
+				 * creation time, or else it would never reach its max-life
+				 */
+				final Entry existing = stripe.get(id);
+				final long createdAt = existing == null ? now : existing.createdAt;
+				stripe.put(id, new Entry(session, createdAt, now));
+			}
 		}
 	}
 
@@ -57,7 +154,24 @@ public class DefaultSessionCacher implements ISessionCache {
 			logger.error("key is to be non-null for a get().");
 			return null;
 		}
-		return this.sessions.get(id);
+		final Stripe stripe = this.stripeFor(id);
+		final long now = System.currentTimeMillis();
+		synchronized (stripe) {
+			final Entry entry = stripe.get(id);
+			if (entry == null) {
+				this.nbrMisses.increment();
+				return null;
+			}
+			if (this.hasExpired(entry, now)) {
+				stripe.remove(id);
+				this.nbrExpirations.increment();
+				this.nbrMisses.increment();
+				return null;
+			}
+			entry.lastUsedAt = now;
+			this.nbrHits.increment();
+			return entry.session;
+		}
 	}
 
 	@Override
@@ -66,13 +180,141 @@ public class DefaultSessionCacher implements ISessionCache {
 			logger.error("key is to be non-null for a remove().");
 			return null;
 		}
-		return this.sessions.remove(id);
+		final Stripe stripe = this.stripeFor(id);
+		synchronized (stripe) {
+			final Entry entry = stripe.remove(id);
+			return entry == null ? null : entry.session;
+		}
 	}
 
 	@Override
 	public void clear() {
 		logger.info("Sessions cleared");
-		this.sessions.clear();
+		for (final Stripe stripe : this.stripes) {
+			synchronized (stripe) {
+				stripe.clear();
+			}
+		}
+	}
+
+	/**
+	 * stop the background reaper. To be called when the app shuts down.
+	 */
+	public void shutdown() {
+		if (this.reaper != null) {
+			this.reaper.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return number of sessions in the cache, including the ones that have
+	 *         expired but not yet reaped
+	 */
+	public int getNbrSessions() {
+		int n = 0;
+		for (final Stripe stripe : this.stripes) {
+			synchronized (stripe) {
+				n += stripe.size();
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * @return number of get() calls that found a live session
+	 */
+	public long getNbrHits() {
+		return this.nbrHits.sum();
 	}
 
+	/**
+	 * @return number of get() calls that did not find a live session
+	 */
+	public long getNbrMisses() {
+		return this.nbrMisses.sum();
+	}
+
+	/**
+	 * @return number of sessions evicted to keep the cache within its max size
+	 */
+	public long getNbrEvictions() {
+		return this.nbrEvictions.sum();
+	}
+
+	/**
+	 * @return number of sessions removed because they had expired
+	 */
+	public long getNbrExpirations() {
+		return this.nbrExpirations.sum();
+	}
+
+	/**
+	 * remove all expired sessions. Called periodically by the reaper.
+	 */
+	void reap() {
+		final long now = System.currentTimeMillis();
+		int n = 0;
+		for (final Stripe stripe : this.stripes) {
+			synchronized (stripe) {
+				final Iterator<Entry> iter = stripe.values().iterator();
+				while (iter.hasNext()) {
+					if (this.hasExpired(iter.next(), now)) {
+						iter.remove();
+						n++;
+					}
+				}
+			}
+		}
+		if (n > 0) {
+			this.nbrExpirations.add(n);
+			logger.info("{} expired sessions removed", n);
+		}
+	}
+
+	private boolean hasExpired(final Entry entry, final long now) {
+		if (this.idleMillis > 0 && now - entry.lastUsedAt > this.idleMillis) {
+			return true;
+		}
+		return this.maxLifeMillis > 0 && now - entry.createdAt > this.maxLifeMillis;
+	}
+
+	private Stripe stripeFor(final String id) {
+		final int h = id.hashCode();
+		return this.stripes[(h ^ (h >>> 16)) & (NBR_STRIPES - 1)];
+	}
+
+	private static class Entry {
+		final UserContext session;
+		final long createdAt;
+		long lastUsedAt;
+
+		Entry(final UserContext session, final long createdAt, final long now) {
+			this.session = session;
+			this.createdAt = createdAt;
+			this.lastUsedAt = now;
+		}
+	}
+
+	/**
+	 * access-ordered map that evicts the least recently used entry when it grows
+	 * beyond its capacity. to be used under its own lock
+	 */
+	private class Stripe extends LinkedHashMap<String, Entry> {
+		private static final long serialVersionUID = 1L;
+		private final int capacity;
+
+		Stripe(final int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+			if (this.size() <= this.capacity) {
+				return false;
+			}
+			DefaultSessionCacher.this.nbrEvictions.increment();
+			return true;
+		}
+	}
 }
@@ -0,0 +1,434 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.simplity.fm.core.infra.defalt;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.simplity.fm.core.ApplicationError;
+import org.simplity.fm.core.infra.ITempFileManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * temp files are spread across a fixed number of segments (sub-folders) of a
+ * root folder, so that no folder grows too large. Files are written through a
+ * buffered file-channel, and are read from memory-mapped regions, so that the
+ * content of a large file never comes on to the heap. transferTo() uses
+ * FileChannel.transferTo(), that lets the OS copy the file without bringing it
+ * into the JVM only when the target is a file or a socket channel. Any other
+ * channel, like the one wrapping the output stream of a servlet response, gets
+ * the content copied through a buffer, one region at a time.
+ *
+ * Total size of the files is limited by a quota. Oldest files are removed when
+ * a new file takes the total beyond the quota. Pinned files, like the output of
+ * a job that is yet to be delivered, are never removed to meet the quota.
+ *
+ * @author simplity.org
+ *
+ */
+public class DefaultTempFileManager implements ITempFileManager {
+	private static final Logger logger = LoggerFactory.getLogger(DefaultTempFileManager.class);
+	/**
+	 * default number of sub-folders across which the files are spread
+	 */
+	public static final int DEFAULT_NBR_SEGMENTS = 16;
+	/**
+	 * default quota for the total size of all the files
+	 */
+	public static final long DEFAULT_MAX_BYTES = 1L << 30;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	/*
+	 * a large file is mapped one region at a time
+	 */
+	private static final int MAP_REGION_SIZE = 64 * 1024 * 1024;
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	/*
+	 * folder created by this instance for this run, and removed when it shuts
+	 * down. null if the folder is supplied by the caller
+	 */
+	private final File instanceFolder;
+	private final Thread cleaner;
+	private final File[] segments;
+	private final long maxBytes;
+	private final Map<String, Long> sizes = new ConcurrentHashMap<>();
+	private final Set<String> pinned = ConcurrentHashMap.newKeySet();
+	private final AtomicLong totalBytes = new AtomicLong();
+
+	/**
+	 * files are managed under a folder of its own that is created inside the temp
+	 * folder of the system, with default settings. The temp folder may be shared
+	 * by other JVMs on this machine, and hence no other folder is touched. The
+	 * folder, with any file left in it, is removed when this manager is shut
+	 * down, or when the JVM exits. Use the other constructor with a folder of
+	 * your own for the files to survive a restart.
+	 */
+	public DefaultTempFileManager() {
+		this(newInstanceFolder(), DEFAULT_NBR_SEGMENTS, DEFAULT_MAX_BYTES, true);
+	}
+
+	/**
+	 *
+	 * @param root        folder under which the files are managed. Files found in
+	 *                    this folder are considered to be managed by this
+	 *                    instance, and hence the folder must not be shared with
+	 *                    any other instance, in this JVM or in any other
+	 * @param nbrSegments number of sub-folders across which files are spread
+	 * @param maxBytes    quota for the total size of all the files
+	 */
+	public DefaultTempFileManager(final File root, final int nbrSegments, final long maxBytes) {
+		this(root, nbrSegments, maxBytes, false);
+	}
+
+	private DefaultTempFileManager(final File root, final int nbrSegments, final long maxBytes,
+			final boolean ownsRoot) {
+		if (ownsRoot) {
+			this.instanceFolder = root;
+			/*
+			 * in case the app is not shut down. Files are not held open, and
+			 * hence it is safe to delete them on exit
+			 */
+			this.cleaner = new Thread(() -> deleteFolder(root), "temp-files-cleaner");
+			Runtime.getRuntime().addShutdownHook(this.cleaner);
+		} else {
+			this.instanceFolder = null;
+			this.cleaner = null;
+		}
+		this.maxBytes = maxBytes;
+		this.segments = new File[nbrSegments];
+		for (int i = 0; i < nbrSegments; i++) {
+			final File folder = new File(root, "s" + i);
+			if (folder.isDirectory() == false && folder.mkdirs() == false) {
+				throw new ApplicationError("Unable to create folder " + folder.getPath() + " for temp files");
+			}
+			this.segments[i] = folder;
+			this.register(folder);
+		}
+	}
+
+	@Override
+	public boolean fileExists(final String fileName) {
+		return this.toFile(fileName).exists();
+	}
+
+	@Override
+	public boolean newFile(final String fileName, final IFileWriter fileWriter) {
+		final File file = this.toFile(fileName);
+		/*
+		 * written to a temp file first, so that a reader never sees a partial file
+		 */
+		final File temp = new File(file.getPath() + TEMP_SUFFIX);
+		boolean ok = false;
+		try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+				Writer writer = new BufferedWriter(
+						Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE), BUFFER_SIZE)) {
+			ok = fileWriter.writeToFile(writer);
+		} catch (final IOException e) {
+			logger.error("Error while writing temp file {}: {}", fileName, e.getMessage());
+		}
+
+		try {
+			if (ok == false) {
+				Files.deleteIfExists(temp.toPath());
+				return false;
+			}
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (final IOException e) {
+			logger.error("Error while saving temp file {}: {}", fileName, e.getMessage());
+			return false;
+		}
+
+		final long size = file.length();
+		final Long oldSize = this.sizes.put(fileName, size);
+		final long total = this.totalBytes.addAndGet(size - (oldSize == null ? 0 : oldSize));
+		if (total > this.maxBytes) {
+			this.enforceQuota(fileName);
+		}
+		return true;
+	}
+
+	@Override
+	public boolean readFile(final String fileName, final IFileReader fileReader, final boolean removeAfterRead) {
+		final File file = this.toFile(fileName);
+		if (file.exists() == false) {
+			return false;
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+				Reader reader = new BufferedReader(
+						new InputStreamReader(new MappedInputStream(channel), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+			fileReader.readFromFile(reader);
+		} catch (final IOException e) {
+			logger.error("Error while reading temp file {}: {}", fileName, e.getMessage());
+			return false;
+		}
+		if (removeAfterRead) {
+			this.removeFile(fileName);
+		}
+		return true;
+	}
+
+	@Override
+	public long transferTo(final String fileName, final WritableByteChannel channel, final boolean removeAfterRead) {
+		final File file = this.toFile(fileName);
+		if (file.exists() == false) {
+			return -1;
+		}
+		long position = 0;
+		try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			final long size = in.size();
+			while (position < size) {
+				final long n = in.transferTo(position, size - position, channel);
+				if (n <= 0) {
+					/*
+					 * a non-blocking channel that takes no more bytes for now. We
+					 * do not spin on it
+					 */
+					logger.error("Temp file {} transferred only {} of its {} bytes as the channel took no more",
+							fileName, position, size);
+					return -1;
+				}
+				position += n;
+			}
+		} catch (final IOException e) {
+			logger.error("Error while transferring temp file {}: {}", fileName, e.getMessage());
+			return -1;
+		}
+		if (removeAfterRead) {
+			this.removeFile(fileName);
+		}
+		return position;
+	}
+
+	@Override
+	public void pinFile(final String fileName) {
+		this.toFile(fileName);
+		this.pinned.add(fileName);
+	}
+
+	@Override
+	public void removeFile(final String fileName) {
+		final File file = this.toFile(fileName);
+		if (file.exists() && file.delete() == false) {
+			logger.warn("Unable to delete temp file {}", file.getPath());
+			return;
+		}
+		this.pinned.remove(fileName);
+		final Long size = this.sizes.remove(fileName);
+		if (size != null) {
+			this.totalBytes.addAndGet(-size);
+		}
+	}
+
+	/**
+	 * the folder created by this instance, if any, is removed along with its
+	 * files. Files of a folder supplied by the caller are left as they are
+	 */
+	@Override
+	public void shutdown() {
+		if (this.instanceFolder == null) {
+			return;
+		}
+		try {
+			Runtime.getRuntime().removeShutdownHook(this.cleaner);
+		} catch (final IllegalStateException e) {
+			// JVM is already exiting
+		}
+		deleteFolder(this.instanceFolder);
+		this.sizes.clear();
+		this.pinned.clear();
+		this.totalBytes.set(0);
+		logger.info("Temp folder {} removed", this.instanceFolder.getPath());
+	}
+
+	/**
+	 *
+	 * @return total size of all the files being managed
+	 */
+	public long getTotalBytes() {
+		return this.totalBytes.get();
+	}
+
+	private File toFile(final String fileName) {
+		if (fileName == null || fileName.isEmpty() || fileName.indexOf('/') != -1 || fileName.indexOf('\\') != -1
+				|| fileName.startsWith(".")) {
+			throw new ApplicationError("'" + fileName + "' is not a valid name for a temp file");
+		}
+		final int idx = (fileName.hashCode() & 0x7fffffff) % this.segments.length;
+		return new File(this.segments[idx], fileName);
+	}
+
+	/*
+	 * a new folder, unique to this instance, inside the temp folder of the system
+	 */
+	private static File newInstanceFolder() {
+		final File parent = new File(System.getProperty("java.io.tmpdir"), "simplity-files");
+		if (parent.isDirectory() == false && parent.mkdirs() == false && parent.isDirectory() == false) {
+			throw new ApplicationError("Unable to create folder " + parent.getPath() + " for temp files");
+		}
+		try {
+			return Files.createTempDirectory(parent.toPath(), "node").toFile();
+		} catch (final IOException e) {
+			throw new ApplicationError("Unable to create a folder for temp files inside " + parent.getPath(), e);
+		}
+	}
+
+	private static void deleteFolder(final File folder) {
+		final File[] files = folder.listFiles();
+		if (files != null) {
+			for (final File file : files) {
+				if (file.isDirectory()) {
+					deleteFolder(file);
+				} else {
+					file.delete();
+				}
+			}
+		}
+		folder.delete();
+	}
+
+	/*
+	 * account for files left behind by an earlier run
+	 */
+	private void register(final File folder) {
+		final File[] files = folder.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (final File file : files) {
+			if (file.getName().endsWith(TEMP_SUFFIX)) {
+				// left incomplete
+				file.delete();
+				continue;
+			}
+			this.sizes.put(file.getName(), file.length());
+			this.totalBytes.addAndGet(file.length());
+		}
+	}
+
+	/*
+	 * remove the oldest files till the total is within the quota. Pinned files
+	 * are not removed, even if the quota remains exceeded
+	 */
+	private synchronized void enforceQuota(final String fileToKeep) {
+		if (this.totalBytes.get() <= this.maxBytes) {
+			return;
+		}
+		final List<File> files = new ArrayList<>();
+		for (final String name : this.sizes.keySet()) {
+			if (name.equals(fileToKeep) == false && this.pinned.contains(name) == false) {
+				files.add(this.toFile(name));
+			}
+		}
+		files.sort(Comparator.comparingLong(File::lastModified));
+		for (final File file : files) {
+			if (this.totalBytes.get() <= this.maxBytes) {
+				return;
+			}
+			if (this.pinned.contains(file.getName())) {
+				// pinned after we listed it
+				continue;
+			}
+			logger.warn("Temp file {} removed as the quota of {} bytes is exceeded", file.getName(), this.maxBytes);
+			this.removeFile(file.getName());
+		}
+		if (this.totalBytes.get() > this.maxBytes) {
+			logger.warn("Temp files total {} bytes, beyond the quota of {} bytes, as they are pinned",
+					this.totalBytes.get(), this.maxBytes);
+		}
+	}
+
+	/**
+	 * reads a file by mapping it into memory one region at a time
+	 */
+	private static class MappedInputStream extends InputStream {
+		private final FileChannel channel;
+		private final long size;
+		private long mappedUpto;
+		private MappedByteBuffer buffer;
+
+		MappedInputStream(final FileChannel channel) throws IOException {
+			this.channel = channel;
+			this.size = channel.size();
+		}
+
+		private boolean ensureData() throws IOException {
+			if (this.buffer != null && this.buffer.hasRemaining()) {
+				return true;
+			}
+			if (this.mappedUpto >= this.size) {
+				return false;
+			}
+			final long len = Math.min(MAP_REGION_SIZE, this.size - this.mappedUpto);
+			this.buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, this.mappedUpto, len);
+			this.mappedUpto += len;
+			return true;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (this.ensureData() == false) {
+				return -1;
+			}
+			return this.buffer.get() & 0xff;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (this.ensureData() == false) {
+				return -1;
+			}
+			final int n = Math.min(len, this.buffer.remaining());
+			this.buffer.get(b, off, n);
+			return n;
+		}
+	}
+}
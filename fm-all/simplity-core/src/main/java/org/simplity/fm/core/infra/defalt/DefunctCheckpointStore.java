@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.simplity.fm.core.infra.defalt;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.simplity.fm.core.db.IReadWriteHandle;
+import org.simplity.fm.core.infra.ICheckpointStore;
+import org.simplity.fm.core.job.Checkpoint;
+
+/**
+ * used when checkpoints are not to be saved. Interrupted work is not resumed
+ *
+ * @author simplity.org
+ *
+ */
+public class DefunctCheckpointStore implements ICheckpointStore {
+
+	@Override
+	public void save(final Checkpoint checkpoint) {
+		//
+	}
+
+	@Override
+	public void save(final Checkpoint checkpoint, final IReadWriteHandle handle) {
+		//
+	}
+
+	@Override
+	public Checkpoint get(final String id) {
+		return null;
+	}
+
+	@Override
+	public void remove(final String id) {
+		//
+	}
+
+	@Override
+	public boolean claim(final String id) {
+		return false;
+	}
+
+	@Override
+	public void renewLeases() {
+		//
+	}
+
+	@Override
+	public List<Checkpoint> getInterruptedJobs() {
+		return Collections.emptyList();
+	}
+}
@@ -24,8 +24,12 @@ package org.simplity.fm.core.infra.defalt;
 
 import java.io.Reader;
 
+import org.simplity.fm.core.UserContext;
 import org.simplity.fm.core.infra.IJobManager;
 import org.simplity.fm.core.job.IJobHandle;
+import org.simplity.fm.core.job.IPartitionedTask;
+import org.simplity.fm.core.service.IInputData;
+import org.simplity.fm.core.service.IService;
 
 /**
  * @author simplity.org
@@ -38,9 +42,31 @@ public class DefunctJobManager implements IJobManager {
 		return null;
 	}
 
+	@Override
+	public IJobHandle newJob(final IService service, final IInputData inputData, final UserContext utx,
+			final int priority) {
+		return null;
+	}
+
 	@Override
 	public IJobHandle getJob(final String jobId) {
 		return null;
 	}
 
+	@Override
+	public IJobHandle newPartitionedJob(final IPartitionedTask task, final IInputData inputData,
+			final UserContext utx, final int parallelism, final boolean failFast) {
+		return null;
+	}
+
+	@Override
+	public int resumeInterruptedJobs() {
+		return 0;
+	}
+
+	@Override
+	public void shutdown() {
+		//
+	}
+
 }
@@ -23,6 +23,7 @@
 package org.simplity.fm.core.infra.defalt;
 
 import org.simplity.fm.core.infra.IRequestLogger;
+import org.simplity.fm.core.service.IInputData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,4 +39,11 @@ public class DefunctRequestLogger implements IRequestLogger {
 		logger.info("user {} from IP: {} requested for service:{} with data\n{}", loginId, ip, serviceName, input);
 
 	}
+
+	@Override
+	public void log(final String loginId, final String serviceName, final String ip, final IInputData input) {
+		if (logger.isInfoEnabled()) {
+			this.log(loginId, serviceName, ip, input.toString());
+		}
+	}
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.simplity.fm.core.infra.defalt;
+
+import java.nio.channels.WritableByteChannel;
+
+import org.simplity.fm.core.infra.ITempFileManager;
+
+/**
+ * used when temp files can not be managed. No files are created
+ *
+ * @author simplity.org
+ *
+ */
+public class DefunctTempFileManager implements ITempFileManager {
+
+	@Override
+	public boolean fileExists(final String fileName) {
+		return false;
+	}
+
+	@Override
+	public boolean newFile(final String fileName, final IFileWriter fileWriter) {
+		return false;
+	}
+
+	@Override
+	public boolean readFile(final String fileName, final IFileReader fileReader, final boolean removeAfterRead) {
+		return false;
+	}
+
+	@Override
+	public long transferTo(final String fileName, final WritableByteChannel channel, final boolean removeAfterRead) {
+		return -1;
+	}
+
+	@Override
+	public void pinFile(final String fileName) {
+		//
+	}
+
+	@Override
+	public void removeFile(final String fileName) {
+		//
+	}
+
+	@Override
+	public void shutdown() {
+		//
+	}
+}
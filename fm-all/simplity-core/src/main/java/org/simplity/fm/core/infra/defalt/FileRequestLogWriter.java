@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.simplity.fm.core.infra.defalt;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.simplity.fm.core.ApplicationError;
+import org.simplity.fm.core.infra.IRequestLogWriter;
+import org.simplity.fm.core.infra.RequestLogEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * writes requests to a file, one json object per line. When the file grows
+ * beyond the max size, it is rolled over as name.1, name.1 as name.2 and so
+ * on, and the oldest one is deleted
+ *
+ * @author simplity.org
+ *
+ */
+public class FileRequestLogWriter implements IRequestLogWriter {
+	private static final Logger logger = LoggerFactory.getLogger(FileRequestLogWriter.class);
+	/**
+	 * default max size of a file before it is rolled over
+	 */
+	public static final long DEFAULT_MAX_BYTES = 50L * 1024 * 1024;
+	/**
+	 * default number of rolled-over files to be retained
+	 */
+	public static final int DEFAULT_MAX_FILES = 10;
+
+	private final File file;
+	private final long maxBytes;
+	private final int maxFiles;
+	private Writer writer;
+	/*
+	 * size of the file, approximated as the number of characters written
+	 */
+	private long nbrBytes;
+
+	/**
+	 *
+	 * @param file     file to which requests are appended
+	 * @param maxBytes size beyond which the file is rolled over
+	 * @param maxFiles number of rolled-over files to be retained
+	 */
+	public FileRequestLogWriter(final File file, final long maxBytes, final int maxFiles) {
+		this.file = file;
+		this.maxBytes = maxBytes;
+		this.maxFiles = maxFiles;
+		try {
+			this.open();
+		} catch (final IOException e) {
+			throw new ApplicationError("Unable to open request log file " + file.getAbsolutePath(), e);
+		}
+	}
+
+	private void open() throws IOException {
+		this.nbrBytes = this.file.length();
+		this.writer = new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(this.file, true), StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public void write(final List<RequestLogEntry> entries) throws Exception {
+		final StringBuilder sbf = new StringBuilder();
+		for (final RequestLogEntry entry : entries) {
+			final int start = sbf.length();
+			appendEntry(sbf, entry);
+			sbf.append('\n');
+			this.nbrBytes += sbf.length() - start;
+		}
+		this.writer.write(sbf.toString());
+		this.writer.flush();
+		if (this.nbrBytes >= this.maxBytes) {
+			this.roll();
+		}
+	}
+
+	private static void appendEntry(final StringBuilder sbf, final RequestLogEntry entry) throws IOException {
+		final JsonWriter json = new JsonWriter(new StringBuilderWriter(sbf));
+		json.beginObject();
+		json.name("receivedAt").value(entry.receivedAt.toString());
+		json.name("loginId").value(entry.loginId);
+		json.name("service").value(entry.serviceName);
+		json.name("ip").value(entry.ip);
+		json.name("input").jsonValue(entry.input);
+		json.endObject();
+		json.flush();
+	}
+
+	private void roll() throws IOException {
+		this.writer.close();
+		final String path = this.file.getPath();
+		final File oldest = new File(path + '.' + this.maxFiles);
+		if (oldest.exists() && !oldest.delete()) {
+			logger.error("Unable to delete request log file {}", oldest.getPath());
+		}
+		for (int i = this.maxFiles - 1; i >= 1; i--) {
+			final File f = new File(path + '.' + i);
+			if (f.exists() && !f.renameTo(new File(path + '.' + (i + 1)))) {
+				logger.error("Unable to roll over request log file {}", f.getPath());
+			}
+		}
+		if (this.maxFiles > 0 && !this.file.renameTo(new File(path + ".1"))) {
+			logger.error("Unable to roll over request log file {}", path);
+		}
+		if (this.maxFiles == 0 && !this.file.delete()) {
+			logger.error("Unable to delete request log file {}", path);
+		}
+		this.open();
+	}
+
+	@Override
+	public void close() {
+		try {
+			this.writer.close();
+		} catch (final IOException e) {
+			logger.error("Error while closing request log file {}: {}", this.file.getPath(), e.getMessage());
+		}
+	}
+
+	/*
+	 * JsonWriter requires a Writer. We write to the builder directly
+	 */
+	private static class StringBuilderWriter extends Writer {
+		private final StringBuilder sbf;
+
+		StringBuilderWriter(final StringBuilder sbf) {
+			this.sbf = sbf;
+		}
+
+		@Override
+		public void write(final char[] cbuf, final int off, final int len) {
+			this.sbf.append(cbuf, off, len);
+		}
+
+		@Override
+		public void write(final String str, final int off, final int len) {
+			this.sbf.append(str, off, off + len);
+		}
+
+		@Override
+		public void flush() {
+			//
+		}
+
+		@Override
+		public void close() {
+			//
+		}
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.simplity.fm.core.infra.defalt;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * lock-free histogram of latencies, on the lines of HDR-Histogram. Values are
+ * kept in buckets with a fixed number of sub-buckets for every power of 2, so
+ * that the relative error of any reported value is within 1/SUB_BUCKETS,
+ * irrespective of its magnitude. Recording is a couple of atomic increments,
+ * and hence it can be used on every request without any contention.
+ *
+ * @author simplity.org
+ *
+ */
+public class LatencyHistogram {
+	/*
+	 * 32 sub-buckets for every power of 2 : about 3% precision
+	 */
+	private static final int SUB_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	/*
+	 * values beyond 2^36 (that is 19 hours in micro-seconds) are recorded as the
+	 * max value
+	 */
+	private static final int MAX_BITS = 36;
+	private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+	private static final int NBR_BUCKETS = SUB_BUCKETS + (MAX_BITS - SUB_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(NBR_BUCKETS);
+	private final LongAdder totalCount = new LongAdder();
+	private final LongAdder totalValue = new LongAdder();
+	private final AtomicLong maxValue = new AtomicLong();
+
+	/**
+	 * record a value
+	 *
+	 * @param value non-negative value. negative value is treated as 0
+	 */
+	public void record(final long value) {
+		long v = value < 0 ? 0 : value;
+		if (v > MAX_VALUE) {
+			v = MAX_VALUE;
+		}
+		this.counts.incrementAndGet(toIndex(v));
+		this.totalCount.increment();
+		this.totalValue.add(v);
+		long max = this.maxValue.get();
+		while (v > max && !this.maxValue.compareAndSet(max, v)) {
+			max = this.maxValue.get();
+		}
+	}
+
+	/**
+	 *
+	 * @return number of values recorded so far
+	 */
+	public long getCount() {
+		return this.totalCount.sum();
+	}
+
+	/**
+	 *
+	 * @return largest value recorded so far. 0 if nothing is recorded
+	 */
+	public long getMax() {
+		return this.maxValue.get();
+	}
+
+	/**
+	 *
+	 * @return mean of all values recorded so far. 0 if nothing is recorded
+	 */
+	public double getMean() {
+		final long n = this.totalCount.sum();
+		if (n == 0) {
+			return 0;
+		}
+		return (double) this.totalValue.sum() / n;
+	}
+
+	/**
+	 * value at a given percentile. Values that are being recorded while this is
+	 * computed may or may not be considered.
+	 *
+	 * @param percentile between 0 and 100
+	 * @return value at or below which the given percentage of recorded values
+	 *         fall. 0 if nothing is recorded
+	 */
+	public long getValueAtPercentile(final double percentile) {
+		long total = 0;
+		final long[] snapshot = new long[NBR_BUCKETS];
+		for (int i = 0; i < NBR_BUCKETS; i++) {
+			snapshot[i] = this.counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		final double pct = percentile < 0 ? 0 : percentile > 100 ? 100 : percentile;
+		long target = (long) Math.ceil(pct * total / 100);
+		if (target == 0) {
+			target = 1;
+		}
+		long soFar = 0;
+		for (int i = 0; i < NBR_BUCKETS; i++) {
+			soFar += snapshot[i];
+			if (soFar >= target) {
+				return Math.min(highestValueAt(i), this.maxValue.get());
+			}
+		}
+		return this.maxValue.get();
+	}
+
+	/*
+	 * values below SUB_BUCKETS have a bucket each. Any other value is placed in
+	 * one of the SUB_BUCKETS sub-buckets for its most significant bit
+	 */
+	static int toIndex(final long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		return SUB_BUCKETS + shift * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+	}
+
+	/*
+	 * highest value that is recorded at this index
+	 */
+	static long highestValueAt(final int idx) {
+		if (idx < SUB_BUCKETS) {
+			return idx;
+		}
+		final int shift = (idx - SUB_BUCKETS) / SUB_BUCKETS;
+		final long sub = (idx - SUB_BUCKETS) % SUB_BUCKETS;
+		return ((SUB_BUCKETS + sub) << shift) + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.simplity.fm.core.infra.defalt;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.simplity.fm.core.ApplicationError;
+import org.simplity.fm.core.infra.ISessionStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * session store on a memory-mapped file that can be shared by all the JVMs on
+ * a host. Intended for development, testing and single-host deployments where
+ * an external key-value store is not available.
+ *
+ * The file is a fixed number of fixed-size slots, addressed by the hash of the
+ * session id with linear probing. A session that does not fit into a slot is
+ * not saved. Every operation holds a lock on the file, so that the JVMs sharing
+ * the file see consistent data. A JVM should have only one instance of this
+ * store for a given file, as file-locks are held on behalf of the JVM.
+ *
+ * @author simplity.org
+ *
+ */
+public class MappedFileSessionStore implements ISessionStore {
+	private static final Logger logger = LoggerFactory.getLogger(MappedFileSessionStore.class);
+	/**
+	 * default number of slots
+	 */
+	public static final int DEFAULT_NBR_SLOTS = 4096;
+	/**
+	 * default size of a slot in bytes
+	 */
+	public static final int DEFAULT_SLOT_SIZE = 1024;
+
+	private static final int MAGIC = 0x53534e31;
+	/*
+	 * magic, nbrSlots, slotSize
+	 */
+	private static final int FILE_HEADER_SIZE = 12;
+	/*
+	 * status(1), expiresAt(8), idLength(2), dataLength(4)
+	 */
+	private static final int SLOT_HEADER_SIZE = 15;
+	private static final byte EMPTY = 0;
+	private static final byte USED = 1;
+	private static final byte DELETED = 2;
+
+	private final int nbrSlots;
+	private final int slotSize;
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+
+	/**
+	 * open the store on the file, creating it if required.
+	 *
+	 * @param file     all JVMs sharing the sessions must use the same file, with
+	 *                 the same number of slots and slot size
+	 * @param nbrSlots max number of sessions
+	 * @param slotSize max size of the id and the serialized session put together,
+	 *                 plus a header of 15 bytes
+	 * @throws IOException
+	 */
+	@SuppressWarnings("resource")
+	public MappedFileSessionStore(final File file, final int nbrSlots, final int slotSize) throws IOException {
+		this.nbrSlots = nbrSlots;
+		this.slotSize = slotSize;
+		final long size = FILE_HEADER_SIZE + (long) nbrSlots * slotSize;
+		this.channel = new RandomAccessFile(file, "rw").getChannel();
+		final FileLock lock = this.channel.lock();
+		try {
+			final boolean isNew = this.channel.size() == 0;
+			this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			if (isNew) {
+				this.buffer.putInt(0, MAGIC);
+				this.buffer.putInt(4, nbrSlots);
+				this.buffer.putInt(8, slotSize);
+			} else if (this.buffer.getInt(0) != MAGIC || this.buffer.getInt(4) != nbrSlots
+					|| this.buffer.getInt(8) != slotSize) {
+				this.channel.close();
+				throw new ApplicationError("File " + file.getPath()
+						+ " is not a session store, or is created with a different number of slots or slot size");
+			}
+		} finally {
+			if (lock.isValid()) {
+				lock.release();
+			}
+		}
+		logger.info("Session store opened on file {} with {} slots", file.getPath(), nbrSlots);
+	}
+
+	@Override
+	public void save(final String id, final byte[] session, final long expiresAt) {
+		final byte[] key = id.getBytes(StandardCharsets.UTF_8);
+		if (SLOT_HEADER_SIZE + key.length + session.length > this.slotSize) {
+			logger.error("Session with {} bytes is too large for the slot size of {}. Not saved", session.length,
+					this.slotSize);
+			return;
+		}
+		this.locked(() -> {
+			final long now = System.currentTimeMillis();
+			final int idx = this.find(key);
+			int pos;
+			if (idx != -1) {
+				pos = this.slotPosition(idx);
+			} else {
+				pos = this.findFreeSlot(key, now);
+				if (pos == -1) {
+					logger.error("Session store is full. Session not saved");
+					return null;
+				}
+			}
+			this.buffer.putLong(pos + 1, expiresAt);
+			this.buffer.putShort(pos + 9, (short) key.length);
+			this.buffer.putInt(pos + 11, session.length);
+			this.buffer.position(pos + SLOT_HEADER_SIZE);
+			this.buffer.put(key);
+			this.buffer.put(session);
+			/*
+			 * status is set last, after the content is in place
+			 */
+			this.buffer.put(pos, USED);
+			return null;
+		});
+	}
+
+	@Override
+	public byte[] load(final String id) {
+		final byte[] key = id.getBytes(StandardCharsets.UTF_8);
+		return this.locked(() -> {
+			final int idx = this.find(key);
+			if (idx == -1) {
+				return null;
+			}
+			final int pos = this.slotPosition(idx);
+			if (this.buffer.getLong(pos + 1) < System.currentTimeMillis()) {
+				this.buffer.put(pos, DELETED);
+				return null;
+			}
+			final byte[] data = new byte[this.buffer.getInt(pos + 11)];
+			this.buffer.position(pos + SLOT_HEADER_SIZE + key.length);
+			this.buffer.get(data);
+			return data;
+		});
+	}
+
+	@Override
+	public void delete(final String id) {
+		final byte[] key = id.getBytes(StandardCharsets.UTF_8);
+		this.locked(() -> {
+			final int idx = this.find(key);
+			if (idx != -1) {
+				this.buffer.put(this.slotPosition(idx), DELETED);
+			}
+			return null;
+		});
+	}
+
+	@Override
+	public void clear() {
+		this.locked(() -> {
+			for (int i = 0; i < this.nbrSlots; i++) {
+				this.buffer.put(this.slotPosition(i), EMPTY);
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * release the file. The store is not usable after this.
+	 */
+	public void close() {
+		try {
+			this.buffer.force();
+			this.channel.close();
+		} catch (final IOException e) {
+			logger.error("Error while closing the session store: {}", e.getMessage());
+		}
+	}
+
+	/*
+	 * slot index of this key, -1 if it is not found. An empty slot ends the probe
+	 * sequence
+	 */
+	private int find(final byte[] key) {
+		int idx = this.hash(key);
+		for (int i = 0; i < this.nbrSlots; i++) {
+			final int pos = this.slotPosition(idx);
+			final byte status = this.buffer.get(pos);
+			if (status == EMPTY) {
+				return -1;
+			}
+			if (status == USED && this.keyMatches(pos, key)) {
+				return idx;
+			}
+			idx++;
+			if (idx == this.nbrSlots) {
+				idx = 0;
+			}
+		}
+		return -1;
+	}
+
+	/*
+	 * position of the first slot in the probe sequence that is free, deleted or
+	 * expired. -1 if the store is full
+	 */
+	private int findFreeSlot(final byte[] key, final long now) {
+		int idx = this.hash(key);
+		for (int i = 0; i < this.nbrSlots; i++) {
+			final int pos = this.slotPosition(idx);
+			final byte status = this.buffer.get(pos);
+			if (status != USED || this.buffer.getLong(pos + 1) < now) {
+				return pos;
+			}
+			idx++;
+			if (idx == this.nbrSlots) {
+				idx = 0;
+			}
+		}
+		return -1;
+	}
+
+	private boolean keyMatches(final int pos, final byte[] key) {
+		if (this.buffer.getShort(pos + 9) != key.length) {
+			return false;
+		}
+		final byte[] stored = new byte[key.length];
+		this.buffer.position(pos + SLOT_HEADER_SIZE);
+		this.buffer.get(stored);
+		return Arrays.equals(stored, key);
+	}
+
+	private int hash(final byte[] key) {
+		final int h = Arrays.hashCode(key);
+		return ((h ^ (h >>> 16)) & 0x7fffffff) % this.nbrSlots;
+	}
+
+	private int slotPosition(final int idx) {
+		return FILE_HEADER_SIZE + idx * this.slotSize;
+	}
+
+	/*
+	 * synchronized for the threads within this JVM, and file-lock across JVMs
+	 */
+	private synchronized <T> T locked(final LockedTask<T> task) {
+		final FileLock lock;
+		try {
+			lock = this.channel.lock();
+		} catch (final IOException e) {
+			throw new ApplicationError("Error while locking the session store", e);
+		}
+		try {
+			return task.run();
+		} finally {
+			try {
+				lock.release();
+			} catch (final IOException e) {
+				logger.error("Error while releasing the lock on the session store: {}", e.getMessage());
+			}
+		}
+	}
+
+	@FunctionalInterface
+	private interface LockedTask<T> {
+		T run();
+	}
+}
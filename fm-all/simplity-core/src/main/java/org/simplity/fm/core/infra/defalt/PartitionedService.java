@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.simplity.fm.core.infra.defalt;
+
+import java.io.StringWriter;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.simplity.fm.core.ApplicationError;
+import org.simplity.fm.core.Conventions;
+import org.simplity.fm.core.Message;
+import org.simplity.fm.core.UserContext;
+import org.simplity.fm.core.app.AppManager;
+import org.simplity.fm.core.db.IDbDriver;
+import org.simplity.fm.core.job.IJobProgressRecorder;
+import org.simplity.fm.core.job.IPartitionedTask;
+import org.simplity.fm.core.job.JobStatus;
+import org.simplity.fm.core.job.Partition;
+import org.simplity.fm.core.job.internal.JobProgress;
+import org.simplity.fm.core.json.JsonUtil;
+import org.simplity.fm.core.service.AbstractService;
+import org.simplity.fm.core.service.DefaultServiceContext;
+import org.simplity.fm.core.service.IInputData;
+import org.simplity.fm.core.service.IOutputData;
+import org.simplity.fm.core.service.IServiceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * runs the partitions of a partitioned task in parallel, so that the task can
+ * be run as a job by the DefaultJobManager like any other service. Partitions
+ * are run on a shared pool of threads, with at most a given number of them
+ * running at a time for a job. Progress of the partitions is aggregated into
+ * that of the job.
+ *
+ * In fail-fast mode, the running partitions are asked to abort on the first
+ * failure, the rest are not started, and the job fails. Otherwise, all the
+ * partitions are run, and the ones that failed are reported in the output.
+ *
+ * @author simplity.org
+ *
+ */
+class PartitionedService extends AbstractService {
+	private static final Logger logger = LoggerFactory.getLogger(PartitionedService.class);
+	/*
+	 * progress of the job is updated at this interval while partitions are
+	 * running
+	 */
+	private static final long PROGRESS_MILLIS = 200;
+	private static final String TAG_PARTITIONS = "partitions";
+	private static final String TAG_INDEX = "index";
+	private static final String TAG_STATUS = "status";
+	private static final String TAG_COUNT = "count";
+	private static final String TAG_ERROR = "error";
+	private static final String TAG_MESSAGES = "messages";
+
+	private final IPartitionedTask task;
+	private final int parallelism;
+	private final boolean failFast;
+	private final ExecutorService executor;
+	/*
+	 * null to use the driver of the app
+	 */
+	private final IDbDriver dbDriver;
+
+	/**
+	 *
+	 * @param task        to be run
+	 * @param parallelism max number of partitions that may run at a time
+	 * @param failFast    true if the job is to be failed on the first partition
+	 *                    that fails. false to run all the partitions anyway
+	 * @param executor    on which partitions are run
+	 * @param dbDriver    with which partitions are processed. null to use the
+	 *                    driver of the app
+	 */
+	PartitionedService(final IPartitionedTask task, final int parallelism, final boolean failFast,
+			final ExecutorService executor, final IDbDriver dbDriver) {
+		super(task.getName());
+		this.task = task;
+		this.parallelism = parallelism < 1 ? 1 : parallelism;
+		this.failFast = failFast;
+		this.executor = executor;
+		this.dbDriver = dbDriver;
+	}
+
+	@Override
+	public boolean isAbortable() {
+		return true;
+	}
+
+	/*
+	 * results of the partitions that are done are not checkpointed
+	 */
+	@Override
+	public boolean isResumable() {
+		return false;
+	}
+
+	@Override
+	public void serve(final IServiceContext ctx, final IInputData inputData) throws Exception {
+		IJobProgressRecorder recorder = (IJobProgressRecorder) ctx.getValue(Conventions.App.JOB_PROGRESS_IN_CTX);
+		if (recorder == null) {
+			recorder = new JobProgress();
+		}
+
+		final Partition[] partitions = this.task.getPartitions(inputData, ctx);
+		final int nbr = partitions == null ? 0 : partitions.length;
+		// a job may be run without a user, like the one started by a scheduler
+		final UserContext utx = ctx.hasUserContext() ? ctx.getCurrentUserContext() : null;
+		final Run[] runs = new Run[nbr];
+		for (int i = 0; i < nbr; i++) {
+			runs[i] = new Run(partitions[i], inputData, utx);
+		}
+
+		final CompletionService<Run> done = new ExecutorCompletionService<>(this.executor);
+		int nextIdx = 0;
+		int nbrRunning = 0;
+		boolean stopped = false;
+		Run failed = null;
+		while (true) {
+			while (!stopped && nbrRunning < this.parallelism && nextIdx < nbr) {
+				done.submit(runs[nextIdx], runs[nextIdx]);
+				nextIdx++;
+				nbrRunning++;
+			}
+			if (nbrRunning == 0) {
+				break;
+			}
+
+			Future<Run> future = null;
+			try {
+				future = done.poll(PROGRESS_MILLIS, TimeUnit.MILLISECONDS);
+			} catch (final InterruptedException e) {
+				// job is being cancelled. recorder.toAbort() would be true
+			}
+			if (!stopped && recorder.toAbort()) {
+				logger.info("Job {} is aborted. Running partitions are asked to abort", this.serviceName);
+				stopped = true;
+				abortAll(runs);
+			}
+			report(recorder, runs);
+			if (future == null) {
+				continue;
+			}
+
+			nbrRunning--;
+			final Run run = getRun(future);
+			if (run.status != JobStatus.Completed && failed == null) {
+				failed = run;
+				if (this.failFast && !stopped) {
+					logger.error("Partition {} of job {} failed. Other partitions are asked to abort",
+							run.partition.index, this.serviceName);
+					stopped = true;
+					abortAll(runs);
+				}
+			}
+		}
+
+		/*
+		 * partitions that were not started because the job was stopped
+		 */
+		for (int i = nextIdx; i < nbr; i++) {
+			runs[i].status = JobStatus.Cancelled;
+		}
+		report(recorder, runs);
+
+		if (this.failFast && failed != null) {
+			throw new ApplicationError("Partition " + failed.partition.index + " of job " + this.serviceName
+					+ " failed. " + (failed.error == null ? "" : failed.error));
+		}
+		this.writeOutput(ctx, runs, failed != null);
+	}
+
+	private static Run getRun(final Future<Run> future) {
+		try {
+			return future.get();
+		} catch (final InterruptedException | ExecutionException e) {
+			/*
+			 * run does not throw, and the future is done
+			 */
+			throw new ApplicationError("Unexpected error while getting the result of a partition", e);
+		}
+	}
+
+	private static void abortAll(final Run[] runs) {
+		for (final Run run : runs) {
+			run.progress.requestAbort();
+		}
+	}
+
+	/*
+	 * partitions that are done are counted as 100%
+	 */
+	private static void report(final IJobProgressRecorder recorder, final Run[] runs) {
+		if (runs.length == 0) {
+			return;
+		}
+		long total = 0;
+		long count = 0;
+		int nbrDone = 0;
+		for (final Run run : runs) {
+			final long n = run.progress.getProgressCount();
+			if (n > 0) {
+				count += n;
+			}
+			if (run.status == JobStatus.Waiting || run.status == JobStatus.Running) {
+				final int pct = run.progress.getPercentageCompleted();
+				if (pct > 0) {
+					total += pct;
+				}
+			} else {
+				total += 100;
+				nbrDone++;
+			}
+		}
+		recorder.setPercentageCompleted((int) (total / runs.length));
+		recorder.setProgressCount(count);
+		recorder.setMessage(nbrDone + " of " + runs.length + " partitions done");
+	}
+
+	private void writeOutput(final IServiceContext ctx, final Run[] runs, final boolean hasFailures) {
+		final IOutputData outData = ctx.getOutputData();
+		outData.addName(TAG_PARTITIONS).beginArray();
+		for (final Run run : runs) {
+			outData.beginObject();
+			outData.addName(TAG_INDEX).addValue(run.partition.index);
+			outData.addName(TAG_STATUS).addValue(run.status.name());
+			outData.addName(TAG_COUNT).addValue(run.progress.getProgressCount());
+			if (run.error != null) {
+				outData.addName(TAG_ERROR).addValue(run.error);
+			}
+			final Message[] msgs = run.ctx.getMessages();
+			if (msgs != null && msgs.length > 0) {
+				outData.addName(TAG_MESSAGES).beginArray();
+				for (final Message msg : msgs) {
+					msg.toOutputData(outData);
+				}
+				outData.endArray();
+			}
+			outData.endObject();
+		}
+		outData.endArray();
+
+		if (hasFailures) {
+			ctx.addMessage(Message.newError(Conventions.MessageId.PARTITIONS_FAILED));
+		}
+	}
+
+	/**
+	 * a partition as it is run
+	 */
+	private class Run implements Runnable {
+		final Partition partition;
+		final IInputData inputData;
+		final JobProgress progress = new JobProgress();
+		/*
+		 * output written by the task for the partition is not used
+		 */
+		final IServiceContext ctx;
+		volatile JobStatus status = JobStatus.Waiting;
+		volatile String error;
+
+		Run(final Partition partition, final IInputData inputData, final UserContext utx) {
+			this.partition = partition;
+			this.inputData = inputData;
+			this.ctx = new DefaultServiceContext(utx, JsonUtil.newOutputData(new StringWriter()));
+		}
+
+		@Override
+		public void run() {
+			if (this.progress.toAbort()) {
+				this.status = JobStatus.Cancelled;
+				return;
+			}
+			this.status = JobStatus.Running;
+			JobStatus result;
+			try {
+				IDbDriver driver = PartitionedService.this.dbDriver;
+				if (driver == null) {
+					driver = AppManager.getApp().getDbDriver();
+				}
+				final boolean ok = driver.doReadWriteOperations(handle -> {
+					return PartitionedService.this.task.process(this.partition, handle, this.inputData, this.ctx,
+							this.progress);
+				});
+				if (ok) {
+					result = JobStatus.Completed;
+				} else if (this.progress.toAbort()) {
+					result = JobStatus.Cancelled;
+				} else {
+					result = JobStatus.Failed;
+				}
+			} catch (final Exception | Error e) {
+				logger.error("Partition {} of job {} failed: {}", this.partition.index,
+						PartitionedService.this.serviceName, e.getMessage());
+				this.error = e.getMessage();
+				result = JobStatus.Failed;
+			}
+			if (result == JobStatus.Completed) {
+				this.progress.setPercentageCompleted(100);
+			}
+			this.status = result;
+		}
+	}
+}
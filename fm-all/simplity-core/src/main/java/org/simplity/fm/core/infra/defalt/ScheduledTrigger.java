@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.simplity.fm.core.infra.defalt;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.simplity.fm.core.UserContext;
+import org.simplity.fm.core.job.IJobHandle;
+import org.simplity.fm.core.job.JobStatus;
+import org.simplity.fm.core.job.MissedFirePolicy;
+import org.simplity.fm.core.job.Trigger;
+import org.simplity.fm.core.service.AbstractService;
+import org.simplity.fm.core.service.IInputData;
+import org.simplity.fm.core.service.IOutputData;
+import org.simplity.fm.core.service.IService;
+import org.simplity.fm.core.service.IServiceContext;
+
+/**
+ * a schedule managed by the DefaultScheduler. This is also the service that is
+ * handed over to the job manager, so that the run time of the scheduled
+ * service can be measured
+ *
+ * @author simplity.org
+ *
+ */
+class ScheduledTrigger extends AbstractService {
+	final String id;
+	final IService service;
+	final IInputData inputData;
+	final UserContext utx;
+	final Trigger trigger;
+	final MissedFirePolicy policy;
+
+	/*
+	 * fields managed by the thread that runs the timing wheel
+	 */
+	volatile long deadline;
+	long remainingRounds;
+	IJobHandle lastJob;
+
+	volatile boolean cancelled;
+
+	/*
+	 * statistics
+	 */
+	private final LongAdder nbrFired = new LongAdder();
+	private final LongAdder nbrMissed = new LongAdder();
+	private final LongAdder nbrOverlapped = new LongAdder();
+	private final LongAdder nbrRejected = new LongAdder();
+	private final LongAdder nbrRuns = new LongAdder();
+	private final LongAdder totalRunMillis = new LongAdder();
+	private final AtomicLong maxRunMillis = new AtomicLong();
+	private volatile long lastRunMillis;
+	private volatile long lastFiredAt;
+
+	ScheduledTrigger(final String id, final IService service, final IInputData inputData, final UserContext utx,
+			final Trigger trigger, final MissedFirePolicy policy) {
+		super(service.getId());
+		this.id = id;
+		this.service = service;
+		this.inputData = inputData;
+		this.utx = utx;
+		this.trigger = trigger;
+		this.policy = policy;
+	}
+
+	@Override
+	public void serve(final IServiceContext ctx, final IInputData payload) throws Exception {
+		final long start = System.currentTimeMillis();
+		try {
+			this.service.serve(ctx, payload);
+		} finally {
+			final long millis = System.currentTimeMillis() - start;
+			this.lastRunMillis = millis;
+			this.nbrRuns.increment();
+			this.totalRunMillis.add(millis);
+			this.maxRunMillis.accumulateAndGet(millis, Math::max);
+		}
+	}
+
+	@Override
+	public boolean isAbortable() {
+		return this.service.isAbortable();
+	}
+
+	@Override
+	public boolean isResumable() {
+		return this.service.isResumable();
+	}
+
+	/**
+	 *
+	 * @return true if the job for the last fire is yet to complete
+	 */
+	boolean isRunning() {
+		if (this.lastJob == null) {
+			return false;
+		}
+		final JobStatus status = this.lastJob.getStatus();
+		return status == JobStatus.Waiting || status == JobStatus.Running;
+	}
+
+	Object getTenantId() {
+		return this.utx == null ? null : this.utx.getTenantId();
+	}
+
+	void fired(final IJobHandle job, final long at) {
+		this.lastJob = job;
+		this.lastFiredAt = at;
+		this.nbrFired.increment();
+	}
+
+	void missed() {
+		this.nbrMissed.increment();
+	}
+
+	void overlapped() {
+		this.nbrOverlapped.increment();
+	}
+
+	void rejected() {
+		this.nbrRejected.increment();
+	}
+
+	long getNbrFired() {
+		return this.nbrFired.sum();
+	}
+
+	long getNbrOverlapped() {
+		return this.nbrOverlapped.sum();
+	}
+
+	void writeStatus(final IOutputData outData) {
+		outData.beginObject();
+		outData.addName("id").addValue(this.id);
+		outData.addName("service").addValue(this.service.getId());
+		outData.addName("nextFireAt").addValue(this.cancelled ? 0 : this.deadline);
+		outData.addName("lastFiredAt").addValue(this.lastFiredAt);
+		outData.addName("nbrFired").addValue(this.nbrFired.sum());
+		outData.addName("nbrMissed").addValue(this.nbrMissed.sum());
+		outData.addName("nbrOverlapped").addValue(this.nbrOverlapped.sum());
+		outData.addName("nbrRejected").addValue(this.nbrRejected.sum());
+		final long runs = this.nbrRuns.sum();
+		outData.addName("nbrRuns").addValue(runs);
+		outData.addName("lastRunMillis").addValue(this.lastRunMillis);
+		outData.addName("maxRunMillis").addValue(this.maxRunMillis.get());
+		outData.addName("meanRunMillis").addValue(runs == 0 ? 0 : this.totalRunMillis.sum() / runs);
+		outData.endObject();
+	}
+}
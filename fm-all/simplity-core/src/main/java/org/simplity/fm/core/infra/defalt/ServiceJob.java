@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.simplity.fm.core.infra.defalt;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.simplity.fm.core.Conventions;
+import org.simplity.fm.core.Message;
+import org.simplity.fm.core.UserContext;
+import org.simplity.fm.core.app.RequestStatus;
+import org.simplity.fm.core.infra.ITempFileManager;
+import org.simplity.fm.core.job.Checkpoint;
+import org.simplity.fm.core.job.IJobHandle;
+import org.simplity.fm.core.job.IJobProgressReporter;
+import org.simplity.fm.core.job.JobStatus;
+import org.simplity.fm.core.job.internal.JobProgress;
+import org.simplity.fm.core.json.JsonUtil;
+import org.simplity.fm.core.service.DefaultServiceContext;
+import org.simplity.fm.core.service.IInputData;
+import org.simplity.fm.core.service.IOutputData;
+import org.simplity.fm.core.service.IService;
+import org.simplity.fm.core.service.IServiceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * a service that is run as a job by the DefaultJobManager. Response of the
+ * service is spooled to a temp file, in the same format as the response to a
+ * request
+ *
+ * @author simplity.org
+ *
+ */
+class ServiceJob implements IJobHandle, Comparable<ServiceJob> {
+	private static final Logger logger = LoggerFactory.getLogger(ServiceJob.class);
+	private static final AtomicLong lastSeqNo = new AtomicLong();
+	private static final String TAG_STATUS = "status";
+	private static final String TAG_MESSAGES = "messages";
+
+	private final String id;
+	private final IService service;
+	private final IInputData inputData;
+	private final UserContext utx;
+	private final int priority;
+	private final long seqNo = lastSeqNo.incrementAndGet();
+	private final ITempFileManager files;
+	private final String outFileName;
+	private final DefaultJobManager manager;
+	private final JobProgress progress = new JobProgress();
+	private final long createdAt = System.currentTimeMillis();
+	/*
+	 * false if the job is re-created from its checkpoint, and hence the
+	 * checkpoint exists, or if the job can not be re-created from a checkpoint
+	 */
+	private final boolean toSaveCheckpoint;
+	private final AtomicReference<JobStatus> status = new AtomicReference<>(JobStatus.Waiting);
+	private final AtomicBoolean started = new AtomicBoolean();
+	/*
+	 * thread running this job. guarded by this
+	 */
+	private Thread runner;
+	private volatile long finishedAt;
+
+	ServiceJob(final String id, final IService service, final IInputData inputData, final UserContext utx,
+			final int priority, final ITempFileManager files, final DefaultJobManager manager) {
+		this(id, service, inputData, utx, priority, files, manager, true);
+	}
+
+	ServiceJob(final String id, final IService service, final IInputData inputData, final UserContext utx,
+			final int priority, final ITempFileManager files, final DefaultJobManager manager,
+			final boolean toSaveCheckpoint) {
+		this.toSaveCheckpoint = toSaveCheckpoint;
+		this.id = id;
+		this.service = service;
+		this.inputData = inputData;
+		this.utx = utx;
+		this.priority = priority;
+		this.files = files;
+		this.outFileName = id + ".json";
+		this.manager = manager;
+	}
+
+	@Override
+	public String getId() {
+		return this.id;
+	}
+
+	@Override
+	public JobStatus getStatus() {
+		return this.status.get();
+	}
+
+	@Override
+	public IJobProgressReporter getProgress() {
+		return this.progress;
+	}
+
+	@Override
+	public boolean start() {
+		if (this.started.compareAndSet(false, true) == false || this.status.get() != JobStatus.Waiting) {
+			return false;
+		}
+		/*
+		 * checkpoint is saved before the job is queued, so that it is not left
+		 * behind by a job that ends before it is saved
+		 */
+		if (this.toSaveCheckpoint) {
+			this.manager.saveCheckpoint(this);
+		}
+		if (this.manager.enqueue(this)) {
+			return true;
+		}
+		if (this.toSaveCheckpoint) {
+			this.manager.removeCheckpoint(this.id);
+		}
+		this.started.set(false);
+		return false;
+	}
+
+	@Override
+	public boolean cancelJob(final boolean abortIfRunning) {
+		if (this.status.compareAndSet(JobStatus.Waiting, JobStatus.Cancelled)) {
+			this.finishedAt = System.currentTimeMillis();
+			this.manager.dequeue(this);
+			this.manager.removeCheckpoint(this.id);
+			return true;
+		}
+		if (abortIfRunning == false || this.service.isAbortable() == false) {
+			return false;
+		}
+		synchronized (this) {
+			if (this.runner == null) {
+				return false;
+			}
+			this.progress.requestAbort();
+			this.runner.interrupt();
+			return true;
+		}
+	}
+
+	@Override
+	public boolean writeOutput(final Writer writer) {
+		return this.copy(writer, true);
+	}
+
+	@Override
+	public boolean copyOutput(final Writer writer) {
+		return this.copy(writer, false);
+	}
+
+	@Override
+	public boolean transferOutput(final WritableByteChannel channel) {
+		if (this.finishedAt == 0) {
+			return false;
+		}
+		return this.files.transferTo(this.outFileName, channel, true) != -1;
+	}
+
+	private boolean copy(final Writer writer, final boolean toDelete) {
+		if (this.finishedAt == 0) {
+			return false;
+		}
+		final boolean[] copied = { false };
+		final boolean read = this.files.readFile(this.outFileName, reader -> {
+			try {
+				final char[] buf = new char[8192];
+				int n;
+				while ((n = reader.read(buf)) != -1) {
+					writer.write(buf, 0, n);
+				}
+				copied[0] = true;
+			} catch (final IOException e) {
+				logger.error("Error while copying output of job {}: {}", this.id, e.getMessage());
+			}
+		}, toDelete);
+		return read && copied[0];
+	}
+
+	/**
+	 * run the service, spooling its response to the output file. Invoked by a
+	 * worker thread of the manager
+	 */
+	void run() {
+		if (this.status.compareAndSet(JobStatus.Waiting, JobStatus.Running) == false) {
+			// cancelled while waiting
+			return;
+		}
+		synchronized (this) {
+			this.runner = Thread.currentThread();
+		}
+
+		/*
+		 * the job must end with a final status whatever happens here, or else it
+		 * is left Running for ever
+		 */
+		final Throwable[] error = { null };
+		boolean ok = false;
+		try {
+			this.manager.updateCheckpoint(this.id, JobStatus.Running);
+			// output is kept till it is delivered, or the job is purged
+			this.files.pinFile(this.outFileName);
+			ok = this.files.newFile(this.outFileName, writer -> {
+				try {
+					this.serve(writer);
+					return true;
+				} catch (final Throwable e) {
+					error[0] = e;
+					return false;
+				}
+			});
+		} catch (final Throwable e) {
+			error[0] = e;
+			ok = false;
+		} finally {
+			this.end(ok, error[0]);
+		}
+	}
+
+	private void end(final boolean ok, final Throwable error) {
+		synchronized (this) {
+			this.runner = null;
+			// clear the interrupt, if any, before the thread is used for the next job
+			Thread.interrupted();
+		}
+
+		JobStatus result = ok ? JobStatus.Completed : JobStatus.Failed;
+		try {
+			if (error != null) {
+				logger.error("Job {} for service {} failed: {}", this.id, this.service.getId(), error.getMessage());
+				this.progress.setMessage(error.getMessage());
+			}
+			if (this.progress.toAbort()) {
+				result = JobStatus.Cancelled;
+			}
+			if (result != JobStatus.Completed) {
+				this.deleteOutput();
+			}
+			this.manager.removeCheckpoint(this.id);
+		} finally {
+			this.finishedAt = System.currentTimeMillis();
+			this.status.set(result);
+		}
+		logger.info("Job {} for service {} ended with status {}", this.id, this.service.getId(), result);
+	}
+
+	private void serve(final Writer writer) throws Exception {
+		final IOutputData outData = JsonUtil.newOutputData(writer);
+		final IServiceContext ctx = new DefaultServiceContext(this.utx, outData);
+		ctx.setValue(Conventions.App.JOB_PROGRESS_IN_CTX, this.progress);
+		ctx.setValue(Conventions.App.JOB_ID_IN_CTX, this.id);
+
+		outData.beginObject();
+		outData.addName(Conventions.Request.TAG_DATA).beginObject();
+		this.service.serve(ctx, this.inputData);
+		outData.endObject();
+
+		final RequestStatus rs = ctx.allOk() ? RequestStatus.Completed : RequestStatus.CompletedWithErrors;
+		outData.addName(TAG_STATUS).addValue(rs.getMessageId());
+		final Message[] messages = ctx.getMessages();
+		if (messages != null && messages.length > 0) {
+			outData.addName(TAG_MESSAGES).beginArray();
+			for (final Message msg : messages) {
+				msg.toOutputData(outData);
+			}
+			outData.endArray();
+		}
+		outData.endObject();
+	}
+
+	/**
+	 *
+	 * @return checkpoint of this job before it is run
+	 */
+	Checkpoint toCheckpoint() {
+		return Checkpoint.forJob(this.id, this.service.getId(), this.inputData, this.utx);
+	}
+
+	void deleteOutput() {
+		this.files.removeFile(this.outFileName);
+	}
+
+	/**
+	 *
+	 * @return tenant of the user on whose behalf this job is run. null if this
+	 *         is not a multi-tenant app
+	 */
+	Object getTenantId() {
+		return this.utx == null ? null : this.utx.getTenantId();
+	}
+
+	/**
+	 *
+	 * @return true if this job is started, and is yet to be run or is running
+	 */
+	boolean isStarted() {
+		return this.started.get();
+	}
+
+	/**
+	 *
+	 * @return epoch at which this job was created
+	 */
+	long getCreatedAt() {
+		return this.createdAt;
+	}
+
+	/**
+	 *
+	 * @return epoch at which this job ended. 0 if it is yet to end
+	 */
+	long getFinishedAt() {
+		return this.finishedAt;
+	}
+
+	/**
+	 * higher priority first, and then first-come-first-served
+	 */
+	@Override
+	public int compareTo(final ServiceJob other) {
+		if (this.priority != other.priority) {
+			return this.priority > other.priority ? -1 : 1;
+		}
+		return Long.compare(this.seqNo, other.seqNo);
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.simplity.fm.core.infra.defalt;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.simplity.fm.core.UserContext;
+import org.simplity.fm.core.infra.ISessionCache;
+import org.simplity.fm.core.infra.ISessionStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * session cache backed by a shared session store, with a near-cache on this
+ * node. A session is read from the store only if it is not in the near-cache.
+ * Entries in the near-cache live for a short time, so that a session that is
+ * removed on another node (like on logout) is not served by this node beyond
+ * that time.
+ *
+ * @author simplity.org
+ *
+ */
+public class StoreBackedSessionCache implements ISessionCache {
+	private static final Logger logger = LoggerFactory.getLogger(StoreBackedSessionCache.class);
+	/**
+	 * default life of a session in the near-cache
+	 */
+	public static final long DEFAULT_NEAR_CACHE_SECONDS = 30;
+	private static final int MAX_NEAR_SESSIONS = 10000;
+	/*
+	 * a session is stored with the time at which it was first saved, so that its
+	 * max-life is enforced even as its idle-time is extended
+	 */
+	private static final int HEADER_SIZE = 8;
+
+	private final ISessionStore store;
+	private final DefaultSessionCacher nearCache;
+	private final long idleMillis;
+	private final long maxLifeMillis;
+
+	/**
+	 *
+	 * @param store            non-null shared store
+	 * @param idleSeconds      session expires in the store if it is not used for
+	 *                         these many seconds. 0 means no idle time-out.
+	 *                         Should be more than nearCacheSeconds, as the use of
+	 *                         a session is noticed by the store only when it is
+	 *                         re-read into the near-cache
+	 * @param maxLifeSeconds   session expires in the store after these many
+	 *                         seconds since it was first saved. 0 means no limit
+	 * @param nearCacheSeconds a session is re-read from the store after these
+	 *                         many seconds since it was cached locally
+	 */
+	public StoreBackedSessionCache(final ISessionStore store, final long idleSeconds, final long maxLifeSeconds,
+			final long nearCacheSeconds) {
+		this.store = store;
+		this.idleMillis = idleSeconds * 1000;
+		this.maxLifeMillis = maxLifeSeconds * 1000;
+		this.nearCache = new DefaultSessionCacher(0, nearCacheSeconds, MAX_NEAR_SESSIONS);
+	}
+
+	@Override
+	public void put(final String id, final UserContext session) {
+		if (id == null || session == null) {
+			logger.error("Null id or session can not be cached.");
+			return;
+		}
+		/*
+		 * a session that is put back after being modified retains its creation time
+		 */
+		long createdAt = System.currentTimeMillis();
+		final byte[] existing = this.store.load(id);
+		if (existing != null && existing.length >= HEADER_SIZE) {
+			createdAt = ByteBuffer.wrap(existing).getLong();
+		}
+		try {
+			final byte[] bytes = UserContext.toBytes(session);
+			final ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + bytes.length);
+			buf.putLong(createdAt).put(bytes);
+			this.save(id, buf.array(), createdAt);
+		} catch (final IOException e) {
+			logger.error("Session could not be serialized. It is cached only on this node: {}", e.getMessage());
+		}
+		this.nearCache.put(id, session);
+	}
+
+	@Override
+	public UserContext get(final String id) {
+		UserContext session = this.nearCache.get(id);
+		if (session != null || id == null) {
+			return session;
+		}
+		final byte[] bytes = this.store.load(id);
+		if (bytes == null || bytes.length < HEADER_SIZE) {
+			return null;
+		}
+		final ByteBuffer buf = ByteBuffer.wrap(bytes);
+		final long createdAt = buf.getLong();
+		session = UserContext.fromBytes(Arrays.copyOfRange(bytes, HEADER_SIZE, bytes.length));
+		if (session == null) {
+			return null;
+		}
+		/*
+		 * session is in use. Its idle-time starts afresh in the store
+		 */
+		if (this.idleMillis > 0) {
+			this.save(id, bytes, createdAt);
+		}
+		this.nearCache.put(id, session);
+		return session;
+	}
+
+	private void save(final String id, final byte[] bytes, final long createdAt) {
+		long expiresAt = Long.MAX_VALUE;
+		if (this.idleMillis > 0) {
+			expiresAt = System.currentTimeMillis() + this.idleMillis;
+		}
+		if (this.maxLifeMillis > 0) {
+			expiresAt = Math.min(expiresAt, createdAt + this.maxLifeMillis);
+		}
+		this.store.save(id, bytes, expiresAt);
+	}
+
+	@Override
+	public UserContext remove(final String id) {
+		final UserContext session = this.get(id);
+		if (id != null) {
+			this.nearCache.remove(id);
+			this.store.delete(id);
+		}
+		return session;
+	}
+
+	@Override
+	public void clear() {
+		this.nearCache.clear();
+		this.store.clear();
+	}
+}
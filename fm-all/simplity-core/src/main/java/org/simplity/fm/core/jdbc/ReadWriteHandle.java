@@ -116,7 +116,7 @@ public class ReadWriteHandle extends ReadonlyHandle implements IReadWriteHandle
 	public int insertWithKeyGenerations(final String sql, final Object[][] rowsToInsert, ValueType[] parameterTypes,
 			String generatedColumnName, long[] generatedKeys) throws SQLException {
 		logger.info("Generic Write SQL:{}", sql);
-		try (PreparedStatement ps = this.con.prepareStatement(sql)) {
+		try (PreparedStatement ps = this.con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 			for (final Object[] row : rowsToInsert) {
 				DbUtil.setPsParamValues(ps, row, parameterTypes);
 				ps.addBatch();
@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.simplity.fm.core.job;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Base64;
+
+import org.simplity.fm.core.ApplicationError;
+import org.simplity.fm.core.Message;
+import org.simplity.fm.core.UserContext;
+import org.simplity.fm.core.json.JsonUtil;
+import org.simplity.fm.core.service.IInputArray;
+import org.simplity.fm.core.service.IInputData;
+import org.simplity.fm.core.service.IOutputData;
+
+/**
+ * progress made by a long-running job or upload, as saved in a durable store,
+ * so that the work can be resumed from here after a restart of the app. A
+ * checkpoint of a job has all that is required to re-create the job, while
+ * that of a stand-alone upload has just the progress. Immutable.
+ *
+ * @author simplity.org
+ *
+ */
+public class Checkpoint {
+	private static final String TAG_MESSAGES = "messages";
+	private static final Message[] NO_MESSAGES = {};
+
+	/**
+	 * job id, or the id with which the upload is checkpointed
+	 */
+	public final String id;
+	/**
+	 * service run by the job. null if this is not a checkpoint of a job
+	 */
+	public final String serviceName;
+	/**
+	 * input data for the service as a json. null if this is not a job
+	 */
+	public final String inputData;
+	/**
+	 * user context of the job, serialized and base-64 encoded. null if the job
+	 * is run without a user context
+	 */
+	public final String userContext;
+	/**
+	 * status of the job when this checkpoint was saved
+	 */
+	public final JobStatus status;
+	/**
+	 * number of rows that are processed and committed. These rows are skipped
+	 * when the work is resumed
+	 */
+	public final int nbrRowsDone;
+	/**
+	 * number of rows, out of the ones that are done, that were in error
+	 */
+	public final int nbrErrors;
+	/**
+	 * number of transactions committed so far
+	 */
+	public final int nbrCommits;
+	/**
+	 * messages accumulated so far. non-null, could be empty
+	 */
+	public final Message[] messages;
+
+	/**
+	 *
+	 * @param id          job id, or the id with which an upload is checkpointed
+	 * @param serviceName null if this is not a checkpoint of a job
+	 * @param inputData   json. null if this is not a job
+	 * @param userContext base-64 encoded bytes of the user context. null if
+	 *                    none
+	 * @param status
+	 * @param nbrRowsDone number of rows that are processed and committed
+	 * @param nbrErrors   number of rows in error
+	 * @param nbrCommits  number of transactions committed so far
+	 * @param messages    messages accumulated so far. null if none
+	 */
+	public Checkpoint(final String id, final String serviceName, final String inputData, final String userContext,
+			final JobStatus status, final int nbrRowsDone, final int nbrErrors, final int nbrCommits,
+			final Message[] messages) {
+		this.id = id;
+		this.serviceName = serviceName;
+		this.inputData = inputData;
+		this.userContext = userContext;
+		this.status = status;
+		this.nbrRowsDone = nbrRowsDone;
+		this.nbrErrors = nbrErrors;
+		this.nbrCommits = nbrCommits;
+		this.messages = messages == null ? NO_MESSAGES : messages;
+	}
+
+	/**
+	 *
+	 * @param id          job id
+	 * @param serviceName service run by the job
+	 * @param inputData   input for the service
+	 * @param utx         null if the job is run without a user context
+	 * @return checkpoint of a job that is yet to start
+	 */
+	public static Checkpoint forJob(final String id, final String serviceName, final IInputData inputData,
+			final UserContext utx) {
+		String text = null;
+		if (utx != null) {
+			try {
+				text = Base64.getEncoder().encodeToString(UserContext.toBytes(utx));
+			} catch (final IOException e) {
+				throw new ApplicationError("User context for job " + id + " could not be serialized", e);
+			}
+		}
+		return new Checkpoint(id, serviceName, inputData.toString(), text, JobStatus.Waiting, 0, 0, 0, null);
+	}
+
+	/**
+	 *
+	 * @param id id with which the upload is to be checkpointed
+	 * @return checkpoint of an upload that is not run as a job
+	 */
+	public static Checkpoint forUpload(final String id) {
+		return new Checkpoint(id, null, null, null, JobStatus.Running, 0, 0, 0, null);
+	}
+
+	/**
+	 *
+	 * @param jobId
+	 * @param seq   1-based sequence number of the upload in the job
+	 * @return id with which an upload that is run as part of a job is
+	 *         checkpointed
+	 */
+	public static String getUploadId(final String jobId, final int seq) {
+		return jobId + '/' + seq;
+	}
+
+	/**
+	 *
+	 * @param newStatus
+	 * @return a copy of this checkpoint with the new status
+	 */
+	public Checkpoint withStatus(final JobStatus newStatus) {
+		return new Checkpoint(this.id, this.serviceName, this.inputData, this.userContext, newStatus,
+				this.nbrRowsDone, this.nbrErrors, this.nbrCommits, this.messages);
+	}
+
+	/**
+	 *
+	 * @param rowsDone
+	 * @param errors
+	 * @param commits
+	 * @param msgs     all the messages accumulated so far
+	 * @return a copy of this checkpoint with the progress updated
+	 */
+	public Checkpoint withProgress(final int rowsDone, final int errors, final int commits, final Message[] msgs) {
+		return new Checkpoint(this.id, this.serviceName, this.inputData, this.userContext, this.status, rowsDone,
+				errors, commits, msgs);
+	}
+
+	/**
+	 *
+	 * @return true if this is a checkpoint of a job, false if it is of a
+	 *         stand-alone upload
+	 */
+	public boolean isJob() {
+		return this.serviceName != null;
+	}
+
+	/**
+	 *
+	 * @return input data for the job. null if this is not a job, or if the
+	 *         saved input is not a valid json
+	 */
+	public IInputData getInputData() {
+		if (this.inputData == null) {
+			return null;
+		}
+		return JsonUtil.newInputData(new StringReader(this.inputData));
+	}
+
+	/**
+	 *
+	 * @return user context for the job. null if the job was run without one,
+	 *         or if it could not be re-created
+	 */
+	public UserContext getUserContext() {
+		if (this.userContext == null) {
+			return null;
+		}
+		return UserContext.fromBytes(Base64.getDecoder().decode(this.userContext));
+	}
+
+	/**
+	 *
+	 * @param msgs
+	 * @return json text from which the messages can be re-created with
+	 *         messagesFromJson()
+	 */
+	public static String messagesToJson(final Message[] msgs) {
+		final StringWriter writer = new StringWriter();
+		final IOutputData outData = JsonUtil.newOutputData(writer);
+		outData.beginObject();
+		outData.addName(TAG_MESSAGES).beginArray();
+		for (final Message msg : msgs) {
+			msg.toOutputData(outData);
+		}
+		outData.endArray();
+		outData.endObject();
+		return writer.toString();
+	}
+
+	/**
+	 *
+	 * @param json text that was created with messagesToJson()
+	 * @return non-null array of messages. empty if the json is null or invalid
+	 */
+	public static Message[] messagesFromJson(final String json) {
+		if (json == null || json.isEmpty()) {
+			return NO_MESSAGES;
+		}
+		final IInputData data = JsonUtil.newInputData(new StringReader(json));
+		if (data == null) {
+			return NO_MESSAGES;
+		}
+		final IInputArray arr = data.getArray(TAG_MESSAGES);
+		if (arr == null) {
+			return NO_MESSAGES;
+		}
+		final Message[] msgs = new Message[arr.length()];
+		for (int i = 0; i < msgs.length; i++) {
+			msgs[i] = Message.fromInputData(arr.getDataAt(i));
+		}
+		return msgs;
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.simplity.fm.core.job;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+
+import org.simplity.fm.core.ApplicationError;
+
+/**
+ * fires as per a cron expression with 5 fields: minute hour day-of-month month
+ * day-of-week. As in cron, if both the day fields are restricted, a day that
+ * matches either of them is a match. 0 as well as 7 are Sunday.
+ *
+ * @author simplity.org
+ *
+ */
+class CronTrigger extends Trigger {
+	/*
+	 * we do not look beyond these many days for the next fire time. An expression
+	 * like "0 0 30 2 *" never fires
+	 */
+	private static final int MAX_DAYS = 366 * 5;
+
+	private final String expression;
+	private final ZoneId zone;
+	/*
+	 * bit i is set if i is a valid value for that field
+	 */
+	private final long minutes;
+	private final long hours;
+	private final long days;
+	private final long months;
+	private final long weekDays;
+	private final boolean anyDay;
+	private final boolean anyWeekDay;
+
+	CronTrigger(final String expression, final ZoneId zone) {
+		this.expression = expression;
+		this.zone = zone;
+		final String[] fields = expression.trim().split("\\s+");
+		if (fields.length != 5) {
+			throw this.invalid("it should have 5 fields");
+		}
+		this.minutes = this.parse(fields[0], 0, 59);
+		this.hours = this.parse(fields[1], 0, 23);
+		this.days = this.parse(fields[2], 1, 31);
+		this.months = this.parse(fields[3], 1, 12);
+		long bits = this.parse(fields[4], 0, 7);
+		if ((bits & (1L << 7)) != 0) {
+			bits |= 1L;
+		}
+		this.weekDays = bits;
+		this.anyDay = isAny(fields[2]);
+		this.anyWeekDay = isAny(fields[4]);
+	}
+
+	@Override
+	public long nextFireAfter(final long epochMillis) {
+		ZonedDateTime t = Instant.ofEpochMilli(epochMillis).atZone(this.zone).truncatedTo(ChronoUnit.MINUTES)
+				.plusMinutes(1);
+		final ZonedDateTime limit = t.plusDays(MAX_DAYS);
+		while (t.isBefore(limit)) {
+			if (isSet(this.months, t.getMonthValue()) == false) {
+				t = t.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1).plusMonths(1);
+				continue;
+			}
+			if (this.isDayOk(t) == false) {
+				t = t.truncatedTo(ChronoUnit.DAYS).plusDays(1);
+				continue;
+			}
+			if (isSet(this.hours, t.getHour()) == false) {
+				t = t.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+				continue;
+			}
+			if (isSet(this.minutes, t.getMinute()) == false) {
+				t = t.plusMinutes(1);
+				continue;
+			}
+			return t.toInstant().toEpochMilli();
+		}
+		return NEVER;
+	}
+
+	private boolean isDayOk(final ZonedDateTime t) {
+		final boolean dayOk = isSet(this.days, t.getDayOfMonth());
+		// getValue() is 1 for Monday and 7 for Sunday
+		final boolean weekDayOk = isSet(this.weekDays, t.getDayOfWeek().getValue() % 7);
+		if (this.anyDay) {
+			return weekDayOk;
+		}
+		if (this.anyWeekDay) {
+			return dayOk;
+		}
+		return dayOk || weekDayOk;
+	}
+
+	private long parse(final String field, final int min, final int max) {
+		long bits = 0;
+		for (final String part : field.split(",")) {
+			String range = part;
+			int step = 1;
+			final int slash = part.indexOf('/');
+			if (slash != -1) {
+				step = this.toInt(part.substring(slash + 1));
+				range = part.substring(0, slash);
+			}
+
+			int from;
+			int to;
+			if (isAny(range)) {
+				from = min;
+				to = max;
+			} else {
+				final int dash = range.indexOf('-');
+				if (dash == -1) {
+					from = this.toInt(range);
+					// 5/10 is the same as 5-max/10
+					to = slash == -1 ? from : max;
+				} else {
+					from = this.toInt(range.substring(0, dash));
+					to = this.toInt(range.substring(dash + 1));
+				}
+			}
+
+			if (from < min || to > max || from > to || step <= 0) {
+				throw this.invalid("'" + part + "' is not valid for a field with values " + min + " to " + max);
+			}
+			for (int i = from; i <= to; i += step) {
+				bits |= 1L << i;
+			}
+		}
+		return bits;
+	}
+
+	private int toInt(final String text) {
+		try {
+			return Integer.parseInt(text);
+		} catch (final NumberFormatException e) {
+			throw this.invalid("'" + text + "' is not a number");
+		}
+	}
+
+	private ApplicationError invalid(final String reason) {
+		return new ApplicationError("Cron expression '" + this.expression + "' is invalid: " + reason);
+	}
+
+	private static boolean isAny(final String field) {
+		return field.equals("*") || field.equals("?");
+	}
+
+	private static boolean isSet(final long bits, final int i) {
+		return (bits & (1L << i)) != 0;
+	}
+
+	@Override
+	public String toString() {
+		return this.expression;
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.simplity.fm.core.job;
+
+import org.simplity.fm.core.ApplicationError;
+
+/**
+ * fires at fixed intervals from a start time. Fire times do not drift even if
+ * the runs are delayed
+ *
+ * @author simplity.org
+ *
+ */
+class FixedRateTrigger extends Trigger {
+	private final long startAt;
+	private final long periodMillis;
+
+	FixedRateTrigger(final long startAt, final long periodMillis) {
+		if (periodMillis <= 0) {
+			throw new ApplicationError("Period of a fixed-rate trigger must be positive");
+		}
+		this.startAt = startAt;
+		this.periodMillis = periodMillis;
+	}
+
+	@Override
+	public long nextFireAfter(final long epochMillis) {
+		if (epochMillis < this.startAt) {
+			return this.startAt + this.periodMillis;
+		}
+		return this.startAt + ((epochMillis - this.startAt) / this.periodMillis + 1) * this.periodMillis;
+	}
+}
@@ -23,6 +23,7 @@
 package org.simplity.fm.core.job;
 
 import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * @author simplity.org
@@ -43,6 +44,12 @@ public interface IJobHandle {
 	 */
 	JobStatus getStatus();
 
+	/**
+	 *
+	 * @return progress made by this job so far
+	 */
+	IJobProgressReporter getProgress();
+
 	/**
 	 * cancel the job if it is still waiting. Optionally try to abort it if it
 	 * is running
@@ -74,6 +81,16 @@ public interface IJobHandle {
 	 */
 	boolean copyOutput(Writer writer);
 
+	/**
+	 * copy the output bytes, as they are, to the channel, and remove the output.
+	 * Meant to send a large output to the client without reading it into memory
+	 *
+	 * @param channel
+	 * @return true if the output is copied and deleted. false if the output is
+	 *         not available
+	 */
+	boolean transferOutput(WritableByteChannel channel);
+
 	/**
 	 * run the job
 	 *
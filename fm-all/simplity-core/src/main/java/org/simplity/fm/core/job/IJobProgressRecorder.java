@@ -43,12 +43,20 @@ public interface IJobProgressRecorder {
 	 *            relevant number of units of work completed. -1 if it can not
 	 *            be determined
 	 */
-	void getProgressCount(long count);
+	void setProgressCount(long count);
 
 	/**
 	 *
 	 * @param message
 	 *            informative message.
 	 */
-	void getMessage(String message);
+	void setMessage(String message);
+
+	/**
+	 * a job that is abortable is expected to check this periodically, and
+	 * return at the earliest if it is true
+	 *
+	 * @return true if the job is asked to abort
+	 */
+	boolean toAbort();
 }
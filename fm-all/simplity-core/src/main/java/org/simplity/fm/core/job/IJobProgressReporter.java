@@ -49,4 +49,12 @@ public interface IJobProgressReporter {
 	 *         progress message
 	 */
 	String getMessage();
+
+	/**
+	 *
+	 * @return a number that changes every time the progress is recorded. Can be
+	 *         used to detect a change in progress without comparing each of
+	 *         its attributes
+	 */
+	long getVersion();
 }
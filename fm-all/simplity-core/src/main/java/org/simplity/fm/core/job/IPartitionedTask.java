@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.simplity.fm.core.job;
+
+import java.sql.SQLException;
+
+import org.simplity.fm.core.db.IReadWriteHandle;
+import org.simplity.fm.core.service.IInputData;
+import org.simplity.fm.core.service.IServiceContext;
+
+/**
+ * a batch task that is split into partitions, so that the partitions can be
+ * processed in parallel by a job manager. Each partition is processed in a
+ * transaction of its own, on a connection of its own. The instance is shared
+ * by the threads that process the partitions, and hence must be thread-safe.
+ *
+ * @author simplity.org
+ *
+ */
+public interface IPartitionedTask {
+
+	/**
+	 *
+	 * @return unique name of this task. used for logging and as the name of
+	 *         the job
+	 */
+	String getName();
+
+	/**
+	 * split the work into partitions. Called once, before any partition is
+	 * processed
+	 *
+	 * @param inputData input for the job
+	 * @param ctx       context of the job
+	 * @return partitions to be processed. null or empty if there is nothing to
+	 *         be done
+	 * @throws SQLException
+	 */
+	Partition[] getPartitions(IInputData inputData, IServiceContext ctx) throws SQLException;
+
+	/**
+	 * process a partition. Called concurrently for different partitions.
+	 *
+	 * @param partition partition to be processed
+	 * @param handle    handle of the transaction for this partition
+	 * @param inputData input for the job
+	 * @param ctx       context for this partition. messages added to this
+	 *                  context are reported in the output of the job. Output
+	 *                  written to this context is ignored.
+	 * @param progress  progress of this partition, to be aggregated into that of
+	 *                  the job. The task is expected to check toAbort()
+	 *                  periodically, and return false at the earliest if it is
+	 *                  true
+	 * @return true to commit the transaction. false if the partition failed,
+	 *         and the transaction is to be rolled back
+	 * @throws SQLException
+	 */
+	boolean process(Partition partition, IReadWriteHandle handle, IInputData inputData, IServiceContext ctx,
+			IJobProgressRecorder progress) throws SQLException;
+}
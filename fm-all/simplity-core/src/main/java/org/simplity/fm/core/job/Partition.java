@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.simplity.fm.core.job;
+
+import org.simplity.fm.core.Conventions;
+import org.simplity.fm.core.filter.FilterCondition;
+import org.simplity.fm.core.filter.FilterParams;
+
+/**
+ * a slice of the work of a partitioned job that can be processed
+ * independently of the other slices. A partition is either a range of keys or
+ * a set of filter conditions. A partition based on a key range has the
+ * equivalent filter conditions as well, so that it may be processed with a
+ * filter operation on a form.
+ *
+ * @author simplity.org
+ *
+ */
+public class Partition {
+	/**
+	 * 0-based index of this partition in the job
+	 */
+	public final int index;
+	/**
+	 * first key of the range, inclusive. 0 if this is not a key-range partition
+	 */
+	public final long fromKey;
+	/**
+	 * last key of the range, inclusive. less than fromKey if this is not a
+	 * key-range partition
+	 */
+	public final long toKey;
+	/**
+	 * filter conditions that select the rows of this partition. non-null
+	 */
+	public final FilterParams filterParams;
+
+	/**
+	 *
+	 * @param index        0-based index of this partition in the job
+	 * @param fromKey      first key of the range, inclusive
+	 * @param toKey        last key of the range, inclusive. less than fromKey
+	 *                     if this is not a key-range partition
+	 * @param filterParams filter that selects the rows of this partition
+	 */
+	public Partition(final int index, final long fromKey, final long toKey, final FilterParams filterParams) {
+		this.index = index;
+		this.fromKey = fromKey;
+		this.toKey = toKey;
+		this.filterParams = filterParams;
+	}
+
+	/**
+	 * split a range of keys into contiguous partitions of nearly equal size
+	 *
+	 * @param keyField      name of the integral key field
+	 * @param fromKey       first key, inclusive
+	 * @param toKey         last key, inclusive
+	 * @param nbrPartitions number of partitions. fewer partitions are created if
+	 *                      the range has fewer keys
+	 * @return non-null, non-empty array of partitions
+	 */
+	public static Partition[] byKeyRange(final String keyField, final long fromKey, final long toKey,
+			final int nbrPartitions) {
+		final long nbrKeys = toKey - fromKey + 1;
+		int nbr = nbrPartitions < 1 ? 1 : nbrPartitions;
+		if (nbrKeys < nbr) {
+			nbr = nbrKeys < 1 ? 1 : (int) nbrKeys;
+		}
+		final long size = nbrKeys / nbr;
+		final long extra = nbrKeys % nbr;
+
+		final Partition[] partitions = new Partition[nbr];
+		long from = fromKey;
+		for (int i = 0; i < nbr; i++) {
+			/*
+			 * the remainder is spread over the first partitions
+			 */
+			final long to = from + size - (i < extra ? 0 : 1);
+			final FilterParams params = new FilterParams();
+			params.filters = new FilterCondition[] { new FilterCondition(keyField, Conventions.Filter.BETWEEN,
+					Long.toString(from), Long.toString(to)) };
+			partitions[i] = new Partition(i, from, to, params);
+			from = to + 1;
+		}
+		return partitions;
+	}
+
+	/**
+	 * split a filter into partitions, one for each of the additional
+	 * conditions. The conditions are expected to select mutually exclusive sets
+	 * of rows, like the ones on a department or a region
+	 *
+	 * @param base   filter that applies to all the partitions. Its fields,
+	 *               sorts and maxRows are retained in each partition
+	 * @param splits one condition per partition
+	 * @return array of partitions, one for each split
+	 */
+	public static Partition[] byFilters(final FilterParams base, final FilterCondition[] splits) {
+		final FilterCondition[] baseFilters = base.filters == null ? new FilterCondition[0] : base.filters;
+		final Partition[] partitions = new Partition[splits.length];
+		for (int i = 0; i < splits.length; i++) {
+			final FilterParams params = new FilterParams();
+			params.maxRows = base.maxRows;
+			params.fields = base.fields;
+			params.sorts = base.sorts;
+			params.filters = new FilterCondition[baseFilters.length + 1];
+			System.arraycopy(baseFilters, 0, params.filters, 0, baseFilters.length);
+			params.filters[baseFilters.length] = splits[i];
+			partitions[i] = new Partition(i, 0, -1, params);
+		}
+		return partitions;
+	}
+
+	/**
+	 *
+	 * @return true if this partition is a range of keys
+	 */
+	public boolean isKeyRange() {
+		return this.toKey >= this.fromKey;
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.simplity.fm.core.job;
+
+import java.time.ZoneId;
+
+/**
+ * decides when a scheduled service is to be run
+ *
+ * @author simplity.org
+ *
+ */
+public abstract class Trigger {
+	/**
+	 * returned by nextFireAfter() if the trigger is not going to fire again
+	 */
+	public static final long NEVER = Long.MAX_VALUE;
+
+	/**
+	 *
+	 * @param epochMillis
+	 * @return epoch-milliseconds at which this trigger fires next after the
+	 *         given time. NEVER if it does not fire any more
+	 */
+	public abstract long nextFireAfter(long epochMillis);
+
+	/**
+	 * trigger that fires at a fixed rate, starting one period from now
+	 *
+	 * @param periodMillis milliseconds between two consecutive fires. must be
+	 *                     positive
+	 * @return non-null trigger
+	 */
+	public static Trigger fixedRate(final long periodMillis) {
+		return new FixedRateTrigger(System.currentTimeMillis(), periodMillis);
+	}
+
+	/**
+	 * trigger that fires as per a cron expression in the default time zone
+	 *
+	 * @param expression 5 fields: minute hour day-of-month month day-of-week.
+	 *                   Each field is *, or a comma separated list of values,
+	 *                   ranges like 1-5 and steps like 0-30/10
+	 * @return non-null trigger. ApplicationError is thrown if the expression is
+	 *         invalid
+	 */
+	public static Trigger cron(final String expression) {
+		return new CronTrigger(expression, ZoneId.systemDefault());
+	}
+
+	/**
+	 * trigger that fires as per a cron expression in the given time zone
+	 *
+	 * @param expression as in cron(expression)
+	 * @param zone       time zone in which the expression is to be interpreted
+	 * @return non-null trigger. ApplicationError is thrown if the expression is
+	 *         invalid
+	 */
+	public static Trigger cron(final String expression, final ZoneId zone) {
+		return new CronTrigger(expression, zone);
+	}
+}
@@ -22,18 +22,25 @@
 
 package org.simplity.fm.core.job.internal;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.simplity.fm.core.job.IJobProgressRecorder;
 import org.simplity.fm.core.job.IJobProgressReporter;
 
 /**
+ * progress is recorded by the thread that runs the job, and is reported to
+ * other threads
+ *
  * @author simplity.org
  *
  */
 public class JobProgress implements IJobProgressRecorder, IJobProgressReporter {
 
-	private int percent;
-	private long count;
-	private String info = "";
+	private volatile int percent;
+	private volatile long count;
+	private volatile String info = "";
+	private volatile boolean abortRequested;
+	private final AtomicLong version = new AtomicLong();
 
 	@Override
 	public int getPercentageCompleted() {
@@ -50,23 +57,43 @@ public class JobProgress implements IJobProgressRecorder, IJobProgressReporter {
 		return this.info;
 	}
 
+	@Override
+	public long getVersion() {
+		return this.version.get();
+	}
+
 	@Override
 	public void setPercentageCompleted(final int percentage) {
 		this.percent = percentage;
+		this.version.incrementAndGet();
 	}
 
 	@Override
-	public void getProgressCount(final long progressCount) {
+	public void setProgressCount(final long progressCount) {
 		this.count = progressCount;
+		this.version.incrementAndGet();
 	}
 
 	@Override
-	public void getMessage(final String message) {
+	public void setMessage(final String message) {
 		if (message == null) {
 			this.info = "";
 		} else {
 			this.info = message;
 		}
+		this.version.incrementAndGet();
+	}
+
+	@Override
+	public boolean toAbort() {
+		return this.abortRequested;
+	}
+
+	/**
+	 * ask the job to abort. It is up to the job to check toAbort() and act on it
+	 */
+	public void requestAbort() {
+		this.abortRequested = true;
 	}
 
 }
@@ -22,25 +22,67 @@
 
 package org.simplity.fm.core.job.internal;
 
+import org.simplity.fm.core.Conventions;
+import org.simplity.fm.core.Message;
+import org.simplity.fm.core.UserContext;
+import org.simplity.fm.core.app.AppManager;
+import org.simplity.fm.core.job.IJobHandle;
 import org.simplity.fm.core.service.AbstractService;
 import org.simplity.fm.core.service.IInputData;
+import org.simplity.fm.core.service.IService;
 import org.simplity.fm.core.service.IServiceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * Class that serves a service as a job
+ * Class that serves a service as a job. The service is handed over to the job
+ * manager to be run in the background, and the id of the job is returned right
+ * away. The client uses this id to get the output of the job later
  *
  * @author simplity.org
  *
  */
 public class ServiceAsJob extends AbstractService {
+	private static final Logger logger = LoggerFactory.getLogger(ServiceAsJob.class);
+	private final IService service;
+
+	/**
+	 *
+	 * @param service to be run as a job
+	 */
+	public ServiceAsJob(final IService service) {
+		super(service.getId());
+		this.service = service;
+	}
+
+	@Override
+	public void serve(final IServiceContext ctx, final IInputData inputObject) throws Exception {
+		final UserContext utx = ctx.hasUserContext() ? ctx.getCurrentUserContext() : null;
+		final IJobHandle job = AppManager.getApp().getJobManager().newJob(this.service, inputObject, utx, 0);
+		if (job == null || job.start() == false) {
+			logger.error("Service {} could not be queued as a job", this.serviceName);
+			ctx.addMessage(Message.newError(Conventions.MessageId.INTERNAL_ERROR));
+			return;
+		}
+
+		if (utx != null) {
+			utx.addJob(job.getId());
+		}
+		ctx.getOutputData().addName(Conventions.Request.TAG_JOB_ID).addValue(job.getId());
+	}
 
 	@Override
-	public void serve(final IServiceContext ctx, final IInputData inputObject)
-			throws Exception {
-		/**
-		 * TODO: implement this method
-		 */
-		// final String uid = UUID.randomUUID().toString();
+	public boolean serveGuests() {
+		return this.service.serveGuests();
 	}
 
+	@Override
+	public boolean isAbortable() {
+		return this.service.isAbortable();
+	}
+
+	@Override
+	public boolean isResumable() {
+		return this.service.isResumable();
+	}
 }
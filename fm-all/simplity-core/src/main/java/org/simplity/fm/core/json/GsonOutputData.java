@@ -23,12 +23,13 @@
 package org.simplity.fm.core.json;
 
 import java.io.IOException;
-import java.io.StringWriter;
+import java.io.Writer;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.util.Arrays;
 
 import org.simplity.fm.core.ApplicationError;
+import org.simplity.fm.core.Conventions;
 import org.simplity.fm.core.service.IOutputData;
 
 import com.google.gson.stream.JsonWriter;
@@ -43,12 +44,13 @@ import com.google.gson.stream.JsonWriter;
 class GsonOutputData implements IOutputData {
 	private static final String NULL = "";
 	private final JsonWriter writer;
+	private boolean compactArrays;
 
 	/**
 	 *
-	 * @param sw underlying string writer to which output json is written to
+	 * @param sw underlying writer to which output json is written to
 	 */
-	GsonOutputData(final StringWriter sw) {
+	GsonOutputData(final Writer sw) {
 		this.writer = new JsonWriter(sw);
 	}
 
@@ -222,6 +224,9 @@ class GsonOutputData implements IOutputData {
 
 	@Override
 	public GsonOutputData addArray(final String memberName, final String[] names, final Iterable<Object[]> rows) {
+		if (this.compactArrays) {
+			return this.addName(memberName).addCompactTable(names, rows);
+		}
 		try {
 			this.writer.name(memberName);
 			this.writer.beginArray();
@@ -261,6 +266,47 @@ class GsonOutputData implements IOutputData {
 		return this;
 	}
 
+	@Override
+	public GsonOutputData addCompactTable(final String[] names, final Iterable<Object[]> rows) {
+		try {
+			this.writer.beginObject();
+			this.writer.name(Conventions.Request.TAG_COLUMNS);
+			this.writer.beginArray();
+			for (final String name : names) {
+				this.writer.value(name);
+			}
+			this.writer.endArray();
+
+			this.writer.name(Conventions.Request.TAG_ROWS);
+			this.writer.beginArray();
+			if (rows != null) {
+				for (final Object[] row : rows) {
+					this.writer.beginArray();
+					for (final Object value : row) {
+						this.addPrimitive(value);
+					}
+					this.writer.endArray();
+				}
+			}
+			this.writer.endArray();
+			this.writer.endObject();
+		} catch (final IOException e) {
+			throw new ApplicationError("", e);
+		}
+		return this;
+	}
+
+	@Override
+	public GsonOutputData setCompactArrays(final boolean compact) {
+		this.compactArrays = compact;
+		return this;
+	}
+
+	@Override
+	public boolean isCompactArrays() {
+		return this.compactArrays;
+	}
+
 	@Override
 	public GsonOutputData addStringAsJson(String json) {
 		try {
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2020 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.simplity.fm.core.json;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.SQLException;
+
+import org.simplity.fm.core.ApplicationError;
+import org.simplity.fm.core.db.IRowProcessor;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * writes each row as a json object on its own line (new-line delimited json)
+ * directly to the underlying writer. Writer is flushed after every n rows so
+ * that the client receives the rows as they are read from the db.
+ *
+ * @author simplity.org
+ *
+ */
+class GsonRowStreamer implements IRowProcessor {
+	private static final char NEW_LINE = '\n';
+	private final Writer writer;
+	private final JsonWriter jsonWriter;
+	private final String[] names;
+	private final int flushInterval;
+	private int nbrPending;
+
+	/**
+	 *
+	 * @param writer        to which rows are written to
+	 * @param names         column names. length must match the number of values in
+	 *                      each row
+	 * @param flushInterval writer is flushed after these many rows. 0 or
+	 *                      negative to flush after every row
+	 */
+	GsonRowStreamer(final Writer writer, final String[] names, final int flushInterval) {
+		this.writer = writer;
+		this.names = names;
+		this.flushInterval = flushInterval;
+		this.jsonWriter = new JsonWriter(writer);
+		/*
+		 * we write a series of top-level objects, which is not valid in the strict
+		 * mode
+		 */
+		this.jsonWriter.setLenient(true);
+	}
+
+	@Override
+	public boolean process(final Object[] row) throws SQLException {
+		try {
+			this.jsonWriter.beginObject();
+			for (int i = 0; i < row.length; i++) {
+				this.jsonWriter.name(this.names[i]);
+				writePrimitive(this.jsonWriter, row[i]);
+			}
+			this.jsonWriter.endObject();
+			this.writer.write(NEW_LINE);
+
+			this.nbrPending++;
+			if (this.nbrPending >= this.flushInterval) {
+				this.writer.flush();
+				this.nbrPending = 0;
+			}
+		} catch (final IOException e) {
+			/*
+			 * client has probably gone away. no point in reading more rows
+			 */
+			throw new ApplicationError("Error while streaming rows to the client", e);
+		}
+		return true;
+	}
+
+	private static void writePrimitive(final JsonWriter jw, final Object value) throws IOException {
+		if (value == null) {
+			jw.value("");
+		} else if (value instanceof Boolean) {
+			jw.value(((Boolean) value).booleanValue());
+		} else if (value instanceof Number) {
+			jw.value((Number) value);
+		} else {
+			jw.value(value.toString());
+		}
+	}
+}
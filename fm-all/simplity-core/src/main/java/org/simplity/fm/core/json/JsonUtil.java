@@ -1,9 +1,11 @@
 package org.simplity.fm.core.json;
 
 import java.io.Reader;
-import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
 
 import org.simplity.fm.core.IoUtil;
+import org.simplity.fm.core.db.IRowProcessor;
 import org.simplity.fm.core.service.IInputArray;
 import org.simplity.fm.core.service.IInputData;
 import org.simplity.fm.core.service.IOutputData;
@@ -15,6 +17,7 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
 
 /**
  * All Json based tasks provided as utility methods. This is to ensure that we
@@ -91,11 +94,25 @@ public class JsonUtil {
 	 * @param writer
 	 * @return non-null IOutputData instance
 	 */
-	public static IOutputData newOutputData(StringWriter writer) {
+	public static IOutputData newOutputData(Writer writer) {
 		return new GsonOutputData(writer);
 
 	}
 
+	/**
+	 * create a row processor that writes each row as a json object on a new line
+	 * (ndjson) to the writer
+	 *
+	 * @param writer        to which rows are streamed
+	 * @param names         column names. length must match the number of values in
+	 *                      each row
+	 * @param flushInterval writer is flushed after these many rows
+	 * @return non-null row processor
+	 */
+	public static IRowProcessor newRowStreamer(Writer writer, String[] names, int flushInterval) {
+		return new GsonRowStreamer(writer, names, flushInterval);
+	}
+
 	/**
 	 * read a json resource into a JSONObject
 	 *
@@ -320,6 +337,53 @@ public class JsonUtil {
 		return new Gson().fromJson(((GsonInputData) inputData).getJsonObject(), cls);
 	}
 
+	/**
+	 * json text with the members of every object sorted by name, so that two
+	 * payloads that differ only in the order of their members result in the same
+	 * text
+	 *
+	 * @param inputData non-null
+	 * @return canonical json text
+	 */
+	public static String toCanonicalString(IInputData inputData) {
+		StringBuilder sbf = new StringBuilder();
+		appendCanonical(((GsonInputData) inputData).getJsonObject(), sbf);
+		return sbf.toString();
+	}
+
+	private static void appendCanonical(JsonElement ele, StringBuilder sbf) {
+		if (ele.isJsonObject()) {
+			JsonObject obj = ele.getAsJsonObject();
+			String[] names = obj.keySet().toArray(new String[0]);
+			Arrays.sort(names);
+			sbf.append('{');
+			for (int i = 0; i < names.length; i++) {
+				if (i > 0) {
+					sbf.append(',');
+				}
+				sbf.append(new JsonPrimitive(names[i]).toString()).append(':');
+				appendCanonical(obj.get(names[i]), sbf);
+			}
+			sbf.append('}');
+			return;
+		}
+
+		if (ele.isJsonArray()) {
+			JsonArray arr = ele.getAsJsonArray();
+			sbf.append('[');
+			for (int i = 0; i < arr.size(); i++) {
+				if (i > 0) {
+					sbf.append(',');
+				}
+				appendCanonical(arr.get(i), sbf);
+			}
+			sbf.append(']');
+			return;
+		}
+
+		sbf.append(ele.toString());
+	}
+
 	/**
 	 *
 	 * @param inObj  non-null
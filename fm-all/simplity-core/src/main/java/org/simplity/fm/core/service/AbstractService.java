@@ -58,9 +58,24 @@ public abstract class AbstractService implements IService {
 		return false;
 	}
 
+	@Override
+	public boolean isResumable() {
+		return false;
+	}
+
 	@Override
 	public boolean isAsynch() {
 		return false;
 	}
 
+	@Override
+	public boolean isReadOnly() {
+		return false;
+	}
+
+	@Override
+	public boolean isUserIndependent() {
+		return false;
+	}
+
 }
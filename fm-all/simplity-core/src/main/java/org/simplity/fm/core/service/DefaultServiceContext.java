@@ -36,6 +36,8 @@ import org.simplity.fm.core.Message;
 import org.simplity.fm.core.MessageType;
 import org.simplity.fm.core.UserContext;
 import org.simplity.fm.core.data.RecordOverride;
+import org.simplity.fm.core.db.IRowProcessor;
+import org.simplity.fm.core.json.JsonUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,6 +60,11 @@ public class DefaultServiceContext implements IServiceContext {
 	protected UserContext newUtx;
 	protected boolean responseSet;
 	protected boolean resetSession;
+	/*
+	 * set only if the client has asked for a streamed response
+	 */
+	protected Writer streamWriter;
+	protected int flushInterval;
 	/*
 	 * created on need-basis because we expect this to be used sparingly..
 	 */
@@ -267,4 +274,23 @@ public class DefaultServiceContext implements IServiceContext {
 		this.addMessages(Arrays.asList(msgs));
 
 	}
+
+	@Override
+	public void enableStreaming(final Writer writer, final int nbrRowsToFlush) {
+		this.streamWriter = writer;
+		this.flushInterval = nbrRowsToFlush;
+	}
+
+	@Override
+	public IRowProcessor getRowStreamer(final String[] columnNames) {
+		if (this.streamWriter == null) {
+			return null;
+		}
+		if (this.responseSet) {
+			throw new ApplicationError(
+					"Cannot stream rows as response. A response is already set or the serializer is already in use.");
+		}
+		this.responseSet = true;
+		return JsonUtil.newRowStreamer(this.streamWriter, columnNames, this.flushInterval);
+	}
 }
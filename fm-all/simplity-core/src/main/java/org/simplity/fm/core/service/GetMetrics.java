@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2019 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.simplity.fm.core.service;
+
+import org.simplity.fm.core.Conventions;
+import org.simplity.fm.core.app.AppManager;
+
+/**
+ * returns a snapshot of the latencies and outcomes of the requests served by
+ * this app, as collected by its metrics collector
+ *
+ * @author simplity.org
+ *
+ */
+public class GetMetrics extends AbstractService {
+	private static final String SERVICE_NAME = Conventions.App.SERVICE_METRICS;
+	private static final GetMetrics instance = new GetMetrics();
+
+	/**
+	 *
+	 * @return non-null instance
+	 */
+	public static IService getInstance() {
+		return instance;
+	}
+
+	private GetMetrics() {
+		super(SERVICE_NAME);
+	}
+
+	@Override
+	public void serve(final IServiceContext ctx, final IInputData payload) throws Exception {
+		AppManager.getApp().getMetricsCollector().writeSnapshot(ctx.getOutputData());
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2019 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.simplity.fm.core.service;
+
+import java.io.StringWriter;
+
+import org.simplity.fm.core.Conventions;
+import org.simplity.fm.core.Message;
+import org.simplity.fm.core.UserContext;
+import org.simplity.fm.core.app.AppManager;
+import org.simplity.fm.core.job.IJobHandle;
+import org.simplity.fm.core.job.IJobProgressReporter;
+import org.simplity.fm.core.job.JobStatus;
+
+/**
+ * returns the status and progress of a job that was started by an async
+ * service. The response of the service is also returned once the job is
+ * completed. The response is deleted once it is returned. Only the jobs that
+ * are started in the same session are returned.
+ *
+ * @author simplity.org
+ *
+ */
+public class GetResponse extends AbstractService {
+	private static final String SERVICE_NAME = Conventions.App.SERVICE_GET_RESPONSE;
+	private static final GetResponse instance = new GetResponse();
+
+	/**
+	 *
+	 * @return non-null instance
+	 */
+	public static IService getInstance() {
+		return instance;
+	}
+
+	private GetResponse() {
+		super(SERVICE_NAME);
+	}
+
+	@Override
+	public void serve(final IServiceContext ctx, final IInputData payload) throws Exception {
+		final String jobId = payload.getString(Conventions.Request.TAG_JOB_ID);
+		/*
+		 * only the jobs that are started in this session are returned
+		 */
+		final UserContext utx = ctx.hasUserContext() ? ctx.getCurrentUserContext() : null;
+		final IJobHandle job = utx == null || !utx.hasJob(jobId) ? null
+				: AppManager.getApp().getJobManager().getJob(jobId);
+		if (job == null) {
+			ctx.addMessage(Message.newError(Conventions.MessageId.INVALID_DATA));
+			return;
+		}
+
+		final IOutputData outData = ctx.getOutputData();
+		final JobStatus status = job.getStatus();
+		outData.addName("jobStatus").addValue(status.name());
+		final IJobProgressReporter progress = job.getProgress();
+		outData.addName("percentageCompleted").addValue(progress.getPercentageCompleted());
+		outData.addName("progressCount").addValue(progress.getProgressCount());
+		outData.addName("progressMessage").addValue(progress.getMessage());
+
+		if (status != JobStatus.Completed) {
+			return;
+		}
+
+		final StringWriter sw = new StringWriter();
+		if (job.writeOutput(sw)) {
+			outData.addName("response").addStringAsJson(sw.toString());
+			utx.removeJob(jobId);
+		}
+	}
+}
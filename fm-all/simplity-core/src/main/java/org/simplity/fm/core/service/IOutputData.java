@@ -222,6 +222,35 @@ public interface IOutputData {
 	 */
 	IOutputData addArrayElements(String[] names, Object[][] rows);
 
+	/**
+	 * tabular data is added as an object with column names written once, and rows
+	 * as arrays of values: {"columns": ["a", "b"...], "rows": [[1, 2..]...]}.
+	 *
+	 * to be used after addName() or inside an array, where a value is expected
+	 *
+	 * @param names column names. length must match the number of values in each
+	 *              row
+	 * @param rows  rows of data, each row being an array of objects. could be null
+	 *              or empty
+	 * @return current instance so that methods can be chained
+	 */
+	IOutputData addCompactTable(String[] names, Iterable<Object[]> rows);
+
+	/**
+	 * should arrays of rows be written in the compact form? When set,
+	 * addArray() uses addCompactTable() instead of an array of objects.
+	 *
+	 * @param compact true to use the compact form for tabular data
+	 * @return current instance so that methods can be chained
+	 */
+	IOutputData setCompactArrays(boolean compact);
+
+	/**
+	 *
+	 * @return true if tabular data is to be written in the compact form
+	 */
+	boolean isCompactArrays();
+
 	/**
 	 * to be used in case the caller has a serialized JSON as a string.
 	 * 
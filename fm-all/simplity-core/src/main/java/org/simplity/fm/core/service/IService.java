@@ -68,6 +68,18 @@ public interface IService {
 	 */
 	boolean isAbortable();
 
+	/**
+	 * a job for this service that was interrupted by a shut down of the app is
+	 * run again from its checkpoint only if the service declares that it is
+	 * safe to do so: it is idempotent, or it resumes from where it was
+	 * interrupted, like a checkpointed upload. Otherwise the job is abandoned,
+	 * as running it again may repeat its side effects
+	 *
+	 * @return true if a job for this service may be run again after it was
+	 *         interrupted
+	 */
+	boolean isResumable();
+
 	/**
 	 * should this be run in asynch mode? TODO: requires review to see if this
 	 * should be outside of a service.
@@ -78,4 +90,25 @@ public interface IService {
 	 *
 	 */
 	boolean isAsynch();
+
+	/**
+	 * a read-only service does not modify any data, and its response depends
+	 * only on its input payload and the user. Identical requests from a user for
+	 * such a service that arrive concurrently may be served with a single
+	 * execution, if the app is configured to coalesce them.
+	 *
+	 * @return true if this service only reads data.
+	 */
+	boolean isReadOnly();
+
+	/**
+	 * response of a user-independent service depends only on its input payload
+	 * and the tenant/overrides of the user, and not on who the user is. Relevant
+	 * only for a read-only service: identical requests from different users may
+	 * then be served with a single execution.
+	 *
+	 * @return true if the response does not depend on the user, other than on
+	 *         the tenant and overrides.
+	 */
+	boolean isUserIndependent();
 }
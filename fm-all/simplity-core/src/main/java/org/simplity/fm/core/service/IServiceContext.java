@@ -28,6 +28,7 @@ import java.io.Writer;
 import org.simplity.fm.core.Message;
 import org.simplity.fm.core.UserContext;
 import org.simplity.fm.core.data.RecordOverride;
+import org.simplity.fm.core.db.IRowProcessor;
 
 /**
  * context for a service execution thread. App specific instance is made
@@ -157,7 +158,8 @@ public interface IServiceContext {
 	 * exception. Also, this cannot be called after a call to getSerializer() is
 	 * called.
 	 * 
-	 * Response will be like {listName: [[...]...]}
+	 * Response will be like {listName: [{...}...]}, or {listName: {"columns":
+	 * [...], "rows": [[...]...]}} if the client has requested compact arrays
 	 *
 	 * @param listName
 	 * @param columnNames
@@ -172,7 +174,8 @@ public interface IServiceContext {
 	 * exception. Also, this cannot be called after a call to getSerializer() is
 	 * called.
 	 * 
-	 * Response will be like {listName: [[...]...]}
+	 * Response will be like {listName: [{...}...]}, or {listName: {"columns":
+	 * [...], "rows": [[...]...]}} if the client has requested compact arrays
 	 *
 	 * @param listName
 	 * @param columnNames
@@ -260,4 +263,27 @@ public interface IServiceContext {
 	 * @return
 	 */
 	String getSessionId();
+
+	/**
+	 * called by the app before invoking the service, if the client has asked for
+	 * the response to be streamed as new-line delimited json
+	 *
+	 * @param writer        to which the rows are to be streamed
+	 * @param flushInterval writer is flushed after these many rows
+	 */
+	void enableStreaming(Writer writer, int flushInterval);
+
+	/**
+	 * a service that outputs a large number of rows should use this to stream
+	 * rows to the client as they are read, instead of setAsResponse(). Each row is
+	 * written as a json object on a line of its own. Note that this can be called
+	 * only once with success, and not after any response is set.
+	 *
+	 * @param columnNames column names. length must match the number of values in
+	 *                    each row
+	 * @return row processor to which the rows are to be passed, typically from
+	 *         readWithRowProcessor(). null if the client has not asked for
+	 *         streaming. caller should use setAsResponse() in this case
+	 */
+	IRowProcessor getRowStreamer(String[] columnNames);
 }
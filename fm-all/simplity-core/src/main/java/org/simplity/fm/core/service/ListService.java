@@ -150,4 +150,9 @@ public class ListService extends AbstractService {
 	public boolean serveGuests() {
 		return true;
 	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
 }
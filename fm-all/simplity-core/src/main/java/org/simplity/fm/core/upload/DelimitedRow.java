@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2019 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.fm.core.upload;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * a row from a delimited file, as a view on the bytes read from the file. A
+ * column is decoded into a string only when its value is asked for.
+ *
+ * @author simplity.org
+ *
+ */
+public class DelimitedRow implements IUploadRow {
+	private static final byte QUOTE = '"';
+
+	private byte[] bytes;
+	private int[] starts;
+	private int[] ends;
+	private boolean[] quoted;
+	private int nbrColumns;
+	/*
+	 * values set during the upload. created only if required
+	 */
+	private Map<String, String> setValues;
+
+	DelimitedRow() {
+		this.starts = new int[16];
+		this.ends = new int[16];
+		this.quoted = new boolean[16];
+	}
+
+	private DelimitedRow(final byte[] bytes, final int[] starts, final int[] ends, final boolean[] quoted,
+			final int nbrColumns) {
+		this.bytes = bytes;
+		this.starts = starts;
+		this.ends = ends;
+		this.quoted = quoted;
+		this.nbrColumns = nbrColumns;
+	}
+
+	/**
+	 * start a new row
+	 *
+	 * @param data bytes in which the columns of this row are found
+	 */
+	void reset(final byte[] data) {
+		this.bytes = data;
+		this.nbrColumns = 0;
+		if (this.setValues != null) {
+			this.setValues.clear();
+		}
+	}
+
+	/**
+	 * add the next column
+	 *
+	 * @param start    index of the first byte
+	 * @param end      index after the last byte
+	 * @param isQuoted true if the value is enclosed in double-quotes
+	 */
+	void addColumn(final int start, final int end, final boolean isQuoted) {
+		final int idx = this.nbrColumns;
+		if (idx == this.starts.length) {
+			final int n = idx * 2;
+			this.starts = Arrays.copyOf(this.starts, n);
+			this.ends = Arrays.copyOf(this.ends, n);
+			this.quoted = Arrays.copyOf(this.quoted, n);
+		}
+		this.starts[idx] = start;
+		this.ends[idx] = end;
+		this.quoted[idx] = isQuoted;
+		this.nbrColumns++;
+	}
+
+	/**
+	 *
+	 * @return number of columns in this row
+	 */
+	public int getNbrColumns() {
+		return this.nbrColumns;
+	}
+
+	/**
+	 *
+	 * @param idx 0-based column index
+	 * @return value of the column. empty string if the column is empty. null if
+	 *         the row has no such column
+	 */
+	public String getValue(final int idx) {
+		if (idx < 0 || idx >= this.nbrColumns) {
+			return null;
+		}
+		final int start = this.starts[idx];
+		final int end = this.ends[idx];
+		if (!this.quoted[idx]) {
+			return new String(this.bytes, start, end - start, StandardCharsets.UTF_8);
+		}
+
+		/*
+		 * drop the enclosing quotes, and un-escape any doubled quote
+		 */
+		int last = end - 1;
+		while (last > start && this.bytes[last] != QUOTE) {
+			last--;
+		}
+		final String text = new String(this.bytes, start + 1, Math.max(last - start - 1, 0),
+				StandardCharsets.UTF_8);
+		if (text.indexOf('"') == -1) {
+			return text;
+		}
+		return text.replace("\"\"", "\"");
+	}
+
+	@Override
+	public String getValue(final String name) {
+		if (this.setValues != null) {
+			final String value = this.setValues.get(name);
+			if (value != null) {
+				return value;
+			}
+		}
+		return this.getValue(toColumnIndex(name));
+	}
+
+	@Override
+	public void setValue(final String name, final String value) {
+		if (this.setValues == null) {
+			this.setValues = new HashMap<>();
+		}
+		this.setValues.put(name, value);
+	}
+
+	@Override
+	public DelimitedRow copy() {
+		final int n = this.nbrColumns;
+		if (n == 0) {
+			return new DelimitedRow(this.bytes, new int[1], new int[1], new boolean[1], 0);
+		}
+		final int offset = this.starts[0];
+		final byte[] data = Arrays.copyOfRange(this.bytes, offset, this.ends[n - 1]);
+		final int[] newStarts = new int[n];
+		final int[] newEnds = new int[n];
+		for (int i = 0; i < n; i++) {
+			newStarts[i] = this.starts[i] - offset;
+			newEnds[i] = this.ends[i] - offset;
+		}
+		final DelimitedRow row = new DelimitedRow(data, newStarts, newEnds, Arrays.copyOf(this.quoted, n), n);
+		if (this.setValues != null) {
+			row.setValues = new HashMap<>(this.setValues);
+		}
+		return row;
+	}
+
+	/**
+	 * columns are named as in a spread sheet: a, b,..z, aa, ab...
+	 *
+	 * @param name
+	 * @return 0-based index of the column with this name. -1 if this is not a
+	 *         column name
+	 */
+	static int toColumnIndex(final String name) {
+		if (name == null || name.isEmpty() || name.length() > 4) {
+			return -1;
+		}
+		int idx = 0;
+		for (int i = 0; i < name.length(); i++) {
+			final char c = name.charAt(i);
+			if (c < 'a' || c > 'z') {
+				return -1;
+			}
+			idx = idx * 26 + (c - 'a' + 1);
+		}
+		return idx - 1;
+	}
+}
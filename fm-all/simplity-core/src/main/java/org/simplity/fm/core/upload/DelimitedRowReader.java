@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2019 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.fm.core.upload;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.simplity.fm.core.ApplicationError;
+import org.simplity.fm.core.service.IServiceContext;
+
+/**
+ * supplies rows from a delimited file, like a csv or a tsv, for an upload.
+ * The file is read in blocks into a buffer that is re-used, and each row is
+ * returned as a view on that buffer. A column is decoded into a string only
+ * when its value is asked for, and hence columns that are not used by the
+ * upload are never decoded.
+ *
+ * Text is expected in UTF-8. A value may be enclosed in double quotes, in
+ * which case it may have the delimiter, new-lines and doubled double-quotes
+ * in it. Rows end with a new-line, optionally preceded by a carriage-return.
+ * Blank rows are skipped.
+ *
+ * @author simplity.org
+ *
+ */
+public class DelimitedRowReader implements IUploadRowSource, Closeable {
+	/**
+	 * default size of the buffer. It is enlarged if a row does not fit into it
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+	/**
+	 * delimiter for comma separated values
+	 */
+	public static final char CSV = ',';
+	/**
+	 * delimiter for tab separated values
+	 */
+	public static final char TSV = '\t';
+
+	private static final byte QUOTE = '"';
+	private static final byte CR = '\r';
+	private static final byte LF = '\n';
+
+	private final ReadableByteChannel channel;
+	private final byte delimiter;
+	private final DelimitedRow row = new DelimitedRow();
+	private byte[] bytes;
+	private ByteBuffer buffer;
+	/*
+	 * bytes from pos up to limit are yet to be parsed
+	 */
+	private int pos;
+	private int limit;
+	private boolean eof;
+	private boolean toSkipRow;
+
+	/**
+	 *
+	 * @param file          to be read
+	 * @param delimiter     CSV, TSV or any other ASCII character
+	 * @param hasHeaderRow  true if the first row is a header, and is to be skipped
+	 * @return reader for the file. to be closed by the caller
+	 * @throws IOException
+	 */
+	public static DelimitedRowReader forFile(final File file, final char delimiter, final boolean hasHeaderRow)
+			throws IOException {
+		return new DelimitedRowReader(FileChannel.open(file.toPath(), StandardOpenOption.READ), delimiter,
+				hasHeaderRow, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 *
+	 * @param in           stream to read from. closed when this reader is closed
+	 * @param delimiter    CSV, TSV or any other ASCII character
+	 * @param hasHeaderRow true if the first row is a header, and is to be skipped
+	 */
+	public DelimitedRowReader(final InputStream in, final char delimiter, final boolean hasHeaderRow) {
+		this(Channels.newChannel(in), delimiter, hasHeaderRow, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 *
+	 * @param channel      to read from. closed when this reader is closed
+	 * @param delimiter    CSV, TSV or any other ASCII character
+	 * @param hasHeaderRow true if the first row is a header, and is to be skipped
+	 * @param bufferSize   initial size of the buffer
+	 */
+	public DelimitedRowReader(final ReadableByteChannel channel, final char delimiter, final boolean hasHeaderRow,
+			final int bufferSize) {
+		if (delimiter > 127 || delimiter == '"' || delimiter == '\n' || delimiter == '\r') {
+			throw new ApplicationError("'" + delimiter + "' can not be used as a delimiter");
+		}
+		this.channel = channel;
+		this.delimiter = (byte) delimiter;
+		this.toSkipRow = hasHeaderRow;
+		this.bytes = new byte[bufferSize < 16 ? 16 : bufferSize];
+		this.buffer = ByteBuffer.wrap(this.bytes);
+	}
+
+	/**
+	 * the returned row is re-used for the next row
+	 */
+	@Override
+	public DelimitedRow nextRow(final IServiceContext ctx) {
+		try {
+			while (this.parseRow()) {
+				if (this.toSkipRow) {
+					this.toSkipRow = false;
+					continue;
+				}
+				if (this.row.getNbrColumns() == 1 && this.row.getValue(0).isEmpty()) {
+					// blank row
+					continue;
+				}
+				return this.row;
+			}
+			return null;
+		} catch (final IOException e) {
+			throw new ApplicationError("Error while reading rows to upload", e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	private boolean parseRow() throws IOException {
+		while (true) {
+			if (this.scanRow()) {
+				return true;
+			}
+			if (this.eof) {
+				return false;
+			}
+			this.fill();
+		}
+	}
+
+	/*
+	 * parse the next row in the buffer into the row view. false if the buffer
+	 * does not have the complete row
+	 */
+	private boolean scanRow() {
+		final byte[] b = this.bytes;
+		final int end = this.limit;
+		if (this.pos >= end) {
+			return false;
+		}
+		this.row.reset(b);
+		int start = this.pos;
+		boolean quoted = false;
+		boolean inQuotes = false;
+		for (int i = start; i < end; i++) {
+			final byte c = b[i];
+			if (inQuotes) {
+				if (c == QUOTE) {
+					if (i + 1 == end && !this.eof) {
+						// can not say whether this quote is escaped
+						return false;
+					}
+					if (i + 1 < end && b[i + 1] == QUOTE) {
+						i++;
+					} else {
+						inQuotes = false;
+					}
+				}
+				continue;
+			}
+
+			if (c == QUOTE && i == start) {
+				inQuotes = true;
+				quoted = true;
+			} else if (c == this.delimiter) {
+				this.row.addColumn(start, i, quoted);
+				start = i + 1;
+				quoted = false;
+			} else if (c == LF) {
+				final int e = i > start && b[i - 1] == CR ? i - 1 : i;
+				this.row.addColumn(start, e, quoted);
+				this.pos = i + 1;
+				return true;
+			}
+		}
+
+		if (!this.eof) {
+			return false;
+		}
+		/*
+		 * last row without a new-line
+		 */
+		final int e = end > start && b[end - 1] == CR ? end - 1 : end;
+		this.row.addColumn(start, e, quoted);
+		this.pos = end;
+		return true;
+	}
+
+	/*
+	 * read more bytes after moving the incomplete row to the beginning of the
+	 * buffer
+	 */
+	private void fill() throws IOException {
+		if (this.pos > 0) {
+			System.arraycopy(this.bytes, this.pos, this.bytes, 0, this.limit - this.pos);
+			this.limit -= this.pos;
+			this.pos = 0;
+		}
+		if (this.limit == this.bytes.length) {
+			this.bytes = Arrays.copyOf(this.bytes, this.bytes.length * 2);
+			this.buffer = ByteBuffer.wrap(this.bytes);
+		}
+		this.buffer.limit(this.bytes.length);
+		this.buffer.position(this.limit);
+		final int n = this.channel.read(this.buffer);
+		if (n == -1) {
+			this.eof = true;
+		} else {
+			this.limit += n;
+		}
+	}
+}
@@ -23,10 +23,10 @@
 package org.simplity.fm.core.upload;
 
 import java.sql.SQLException;
-import java.util.Map;
+import java.util.List;
 
-import org.simplity.fm.core.Message;
 import org.simplity.fm.core.data.DbRecord;
+import org.simplity.fm.core.data.DbTable;
 import org.simplity.fm.core.db.ITransactionHandle;
 import org.simplity.fm.core.service.IServiceContext;
 
@@ -80,51 +80,153 @@ class FormLoader {
 	 * @return true of all ok. false otherwise, in which case ctx will have the
 	 *         errors
 	 */
-	boolean validate(final Map<String, String> values, final IServiceContext ctx) {
+	boolean validate(final IUploadRow values, final IServiceContext ctx) {
 		return this.parseInput(values, ctx);
 
 	}
 
-	private boolean parseInput(final Map<String, String> values, final IServiceContext ctx) {
+	private boolean parseInput(final IUploadRow values, final IServiceContext ctx) {
+		return this.parseInput(values, this.record, ctx);
+	}
+
+	private boolean parseInput(final IUploadRow values, final DbRecord rec, final IServiceContext ctx) {
 		int idx = -1;
 		for (final IValueProvider vp : this.valueProviders) {
 			idx++;
 			if (vp != null) {
-				this.record.assignValue(idx, vp.getValue(values, ctx));
+				rec.assignValue(idx, vp.getValue(values, ctx));
 			}
 		}
 
-		// this.record.parseForInsert(data, ctx);
+		// rec.parseForInsert(data, ctx);
 		return true;
 	}
 
+	/**
+	 *
+	 * @return true if this form generates a key that is used by the forms
+	 *         following it
+	 */
+	boolean generatesKey() {
+		return this.generatedKeyOutputName != null;
+	}
+
+	/**
+	 *
+	 * @return a new instance of the underlying record, for a thread to parse
+	 *         rows into
+	 */
+	DbRecord newRecord() {
+		return this.record.newInstance();
+	}
+
+	/**
+	 * parse the values into a data row for this form. To be used when rows are
+	 * parsed concurrently, with each thread using its own record
+	 *
+	 * @param values
+	 * @param rec    record owned by the calling thread. see newRecord()
+	 * @param ctx
+	 * @return data row with values for all the fields of this form. null in
+	 *         case of any error
+	 */
+	Object[] parseRow(final IUploadRow values, final DbRecord rec, final IServiceContext ctx) {
+		if (!this.parseInput(values, rec, ctx)) {
+			return null;
+		}
+		return rec.fetchRawData().clone();
+	}
+
 	/**
 	 *
 	 * @param values
 	 * @param ctx    that must have user and tenantKey if the insert operation
-	 *               require these. errors, if any are added to this.
-	 * @return true of all ok. false otherwise, in which case ctx will have the
-	 *         errors
+	 *               require these.
+	 * @return true of all ok. false if the row could not be inserted. Caller
+	 *         has to report the error, as it knows which row this is
 	 * @throws SQLException
 	 */
-	boolean loadData(final Map<String, String> values, final ITransactionHandle handle, final IServiceContext ctx)
+	boolean loadData(final IUploadRow values, final ITransactionHandle handle, final IServiceContext ctx)
 			throws SQLException {
 		if (!this.parseInput(values, ctx)) {
 			return false;
 		}
 
 		if (!this.record.insert(handle)) {
-			ctx.addMessage(Message.newError("Row not inserted, probably because of database constraints"));
 			return false;
 		}
 
 		if (this.generatedKeyOutputName != null) {
 			final Object key = this.record.fetchValue(this.keyIdx);
 			if (key != null) {
-				values.put(this.generatedKeyOutputName, key.toString());
+				values.setValue(this.generatedKeyOutputName, key.toString());
 			}
 		}
 		return true;
 	}
 
+	/**
+	 * insert a set of rows with one batch of statements. Generated keys, if any,
+	 * are copied back to the respective values map. This method does not report
+	 * the failure of a row, as the caller is expected to retry the rows one by
+	 * one in case of any failure. Value providers may add messages to the
+	 * context as they parse the rows. These are added again when the rows are
+	 * retried, and hence the caller is to use a context of its own, and report
+	 * its messages only if the rows are committed
+	 *
+	 * @param rows   values for the rows to be inserted
+	 * @param handle
+	 * @param ctx    passed to the value providers
+	 * @return true if all the rows were inserted. false otherwise, in which case
+	 *         the caller has to roll-back the transaction
+	 * @throws SQLException
+	 */
+	boolean loadBatch(final List<IUploadRow> rows, final ITransactionHandle handle,
+			final IServiceContext ctx) throws SQLException {
+		final Object[][] data = new Object[rows.size()][];
+		int idx = 0;
+		for (final IUploadRow values : rows) {
+			data[idx] = this.parseRow(values, this.record, ctx);
+			if (data[idx] == null) {
+				return false;
+			}
+			idx++;
+		}
+		return this.insertBatch(rows, data, handle);
+	}
+
+	/**
+	 * insert rows that are already parsed with one batch of statements.
+	 * Generated keys, if any, are copied back to the respective values map.
+	 *
+	 * @param rows   values for the rows to be inserted
+	 * @param data   parsed data rows, one for each row in rows
+	 * @param handle
+	 * @return true if all the rows were inserted. false otherwise, in which case
+	 *         the caller has to roll-back the transaction
+	 * @throws SQLException
+	 */
+	boolean insertBatch(final List<IUploadRow> rows, final Object[][] data,
+			final ITransactionHandle handle) throws SQLException {
+		final DbTable<DbRecord> table = new DbTable<>(this.record);
+		for (final Object[] row : data) {
+			table.addRow(row);
+		}
+
+		if (!table.insert(handle)) {
+			return false;
+		}
+
+		if (this.generatedKeyOutputName != null) {
+			int idx = 0;
+			for (final IUploadRow values : rows) {
+				final Object key = data[idx][this.keyIdx];
+				idx++;
+				if (key != null) {
+					values.setValue(this.generatedKeyOutputName, key.toString());
+				}
+			}
+		}
+		return true;
+	}
 }
@@ -24,6 +24,7 @@ package org.simplity.fm.core.upload;
 
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
 import org.simplity.fm.core.Conventions;
 import org.simplity.fm.core.app.AppManager;
@@ -72,7 +73,7 @@ class FormParser {
 	 * what is defined in this processor
 	 */
 	private final Map<String, String> params;
-	private final Map<String, Map<String, String>> valueLists;
+	private final Function<String, LookupTable> lookups;
 	private final Set<String> listsRequiringKey;
 	private final Map<String, IFunction> functions;
 
@@ -84,11 +85,11 @@ class FormParser {
 	private IValueProvider[] valueProviders;
 
 	FormParser(final Map<String, String> params,
-			final Map<String, Map<String, String>> valueLists,
+			final Function<String, LookupTable> lookups,
 			final Set<String> listsRequiringKey,
 			final Map<String, IFunction> functions) {
 		this.params = params;
-		this.valueLists = valueLists;
+		this.lookups = lookups;
 		this.listsRequiringKey = listsRequiringKey;
 		this.functions = functions;
 	}
@@ -234,7 +235,7 @@ class FormParser {
 			return new FunctionValueProvider(fn, vps);
 		}
 
-		final Map<String, String> valueList = this.valueLists.get(nam);
+		final LookupTable valueList = this.lookups.apply(nam);
 		if (valueList == null) {
 			logger.error("{} is not a valid lookup name", nam);
 			return null;
@@ -22,8 +22,6 @@
 
 package org.simplity.fm.core.upload;
 
-import java.util.Map;
-
 import org.simplity.fm.core.fn.IFunction;
 import org.simplity.fm.core.service.IServiceContext;
 
@@ -51,7 +49,7 @@ class FunctionValueProvider implements IValueProvider {
 	}
 
 	@Override
-	public String getValue(final Map<String, String> input, final IServiceContext ctx) {
+	public String getValue(final IUploadRow input, final IServiceContext ctx) {
 		String[] values = null;
 		if (this.params != null) {
 			values = new String[this.params.length];
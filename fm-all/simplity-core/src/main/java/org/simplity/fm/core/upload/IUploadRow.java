@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2019 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.fm.core.upload;
+
+/**
+ * a row of values being uploaded. Values are addressed by variable names. For
+ * rows from a spread sheet or a delimited file, the columns are named a, b,
+ * ...z, aa, ab... as in a spread sheet. Additional values, like the keys
+ * generated while inserting the row, are set by name during the upload.
+ *
+ * An instance may be re-used by its source for the next row. Hence the
+ * uploader makes a copy of the row if it has to retain it.
+ *
+ * @author simplity.org
+ *
+ */
+public interface IUploadRow {
+	/**
+	 *
+	 * @param name name of the column or of a value set during the upload
+	 * @return value, null if there is no such value in this row
+	 */
+	String getValue(String name);
+
+	/**
+	 * set a value that can be used for the rest of the upload of this row
+	 *
+	 * @param name
+	 * @param value
+	 */
+	void setValue(String name, String value);
+
+	/**
+	 *
+	 * @return a copy that is not affected when this instance is re-used for the
+	 *         next row
+	 */
+	IUploadRow copy();
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2019 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.fm.core.upload;
+
+import org.simplity.fm.core.service.IServiceContext;
+
+/**
+ * supplies rows to be uploaded as row views, so that the values need not be
+ * put into a map for each row.
+ *
+ * @author simplity.org
+ *
+ */
+@FunctionalInterface
+public interface IUploadRowSource {
+
+	/**
+	 * called by the uploader to get the next row
+	 *
+	 * @param ctx the service context in which this process is running
+	 * @return the next row. The instance may be re-used for the next call. null
+	 *         to imply end of data.
+	 */
+	IUploadRow nextRow(IServiceContext ctx);
+}
@@ -22,8 +22,6 @@
 
 package org.simplity.fm.core.upload;
 
-import java.util.Map;
-
 import org.simplity.fm.core.service.IServiceContext;
 
 /**
@@ -37,5 +35,5 @@ public interface IValueProvider {
 	 * @param ctx service context
 	 * @return the value for this field
 	 */
-	public String getValue(Map<String, String> input, IServiceContext ctx);
+	public String getValue(IUploadRow input, IServiceContext ctx);
 }
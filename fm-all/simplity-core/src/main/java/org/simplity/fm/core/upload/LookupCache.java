@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2019 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.fm.core.upload;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.simplity.fm.core.service.IServiceContext;
+import org.simplity.fm.core.validn.IValueList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * look-up tables built from the value lists of the app, shared across
+ * uploads. A table is built with one call to getAllEntries() of the list, and
+ * is re-built once it is older than the time-to-live. Tables are built per
+ * tenant, as runtime lists may be tenant specific.
+ *
+ * @author simplity.org
+ *
+ */
+public class LookupCache {
+	private static final Logger logger = LoggerFactory.getLogger(LookupCache.class);
+	/**
+	 * default number of seconds for which a table is used before it is re-built
+	 */
+	public static final int DEFAULT_TTL_SECONDS = 300;
+	private static final LookupCache instance = new LookupCache(DEFAULT_TTL_SECONDS);
+
+	private final long ttlNanos;
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 *
+	 * @return the instance used by the uploaders
+	 */
+	public static LookupCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 *
+	 * @param ttlSeconds number of seconds for which a table is used before it is
+	 *                   re-built
+	 */
+	public LookupCache(final int ttlSeconds) {
+		this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+	}
+
+	/**
+	 *
+	 * @param list
+	 * @param ctx
+	 * @return non-null table for the list. The table is empty if the list has
+	 *         no entries
+	 */
+	public LookupTable getTable(final IValueList list, final IServiceContext ctx) {
+		final Object tenantId = ctx == null ? null : ctx.getTenantId();
+		final String name = String.valueOf(list.getName());
+		final String key = tenantId == null ? name : name + '|' + tenantId;
+		return this.entries.computeIfAbsent(key, k -> new Entry()).get(list, ctx, this.ttlNanos);
+	}
+
+	/**
+	 * remove all tables, so that they are re-built when required next
+	 */
+	public void clear() {
+		this.entries.clear();
+	}
+
+	private static class Entry {
+		private volatile LookupTable table;
+		private volatile long builtAt;
+
+		Entry() {
+			//
+		}
+
+		LookupTable get(final IValueList list, final IServiceContext ctx, final long ttlNanos) {
+			LookupTable t = this.table;
+			if (t != null && System.nanoTime() - this.builtAt < ttlNanos) {
+				return t;
+			}
+			/*
+			 * one upload builds it while the others wait for it
+			 */
+			synchronized (this) {
+				t = this.table;
+				if (t != null && System.nanoTime() - this.builtAt < ttlNanos) {
+					return t;
+				}
+				final Map<String, String> map = list.getAllEntries(ctx);
+				if (map == null || map.isEmpty()) {
+					logger.error("List {} has no valid values. Lookup on this list will always fail", list.getName());
+					/*
+					 * not retained, as it could be due to a db error
+					 */
+					return new LookupTable(Collections.emptyMap());
+				}
+				t = new LookupTable(map);
+				this.table = t;
+				this.builtAt = System.nanoTime();
+				logger.info("Lookup table built for list {} with {} entries", list.getName(), t.size());
+				return t;
+			}
+		}
+	}
+}
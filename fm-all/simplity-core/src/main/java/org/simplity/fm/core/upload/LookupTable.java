@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2019 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.fm.core.upload;
+
+import java.util.Map;
+
+/**
+ * read-only table to look up the internal value for a text. Entries are held
+ * in a single array with open addressing, without an entry object per
+ * mapping, and hence the table is compact and is safe to be shared across
+ * threads once it is built.
+ *
+ * For a keyed list, the text is prefixed with the key and a '|'. The table
+ * can be looked-up with the key and the text without concatenating them.
+ *
+ * @author simplity.org
+ *
+ */
+public final class LookupTable {
+	/*
+	 * keys at even and values at odd positions. capacity is a power of 2, and
+	 * at least twice the number of entries
+	 */
+	private final String[] slots;
+	private final int mask;
+	private final int size;
+
+	/**
+	 *
+	 * @param entries non-null. text to internal-value mapping
+	 */
+	public LookupTable(final Map<String, String> entries) {
+		int capacity = 4;
+		while (capacity < entries.size() * 2) {
+			capacity <<= 1;
+		}
+		this.slots = new String[capacity * 2];
+		this.mask = capacity - 1;
+		int n = 0;
+		for (final Map.Entry<String, String> entry : entries.entrySet()) {
+			final String key = entry.getKey();
+			if (key == null) {
+				continue;
+			}
+			int idx = spread(key.hashCode()) & this.mask;
+			while (this.slots[idx * 2] != null) {
+				idx = (idx + 1) & this.mask;
+			}
+			this.slots[idx * 2] = key;
+			this.slots[idx * 2 + 1] = entry.getValue();
+			n++;
+		}
+		this.size = n;
+	}
+
+	/**
+	 *
+	 * @param text
+	 * @return internal value for this text. null if it is not found
+	 */
+	public String get(final String text) {
+		if (text == null) {
+			return null;
+		}
+		int idx = spread(text.hashCode()) & this.mask;
+		while (true) {
+			final String key = this.slots[idx * 2];
+			if (key == null) {
+				return null;
+			}
+			if (key.equals(text)) {
+				return this.slots[idx * 2 + 1];
+			}
+			idx = (idx + 1) & this.mask;
+		}
+	}
+
+	/**
+	 * look-up in a keyed list
+	 *
+	 * @param key       key of the list
+	 * @param separator separator between the key and the text in this table
+	 * @param text
+	 * @return internal value for the key+separator+text. null if it is not found
+	 */
+	public String get(final String key, final char separator, final String text) {
+		if (key == null || text == null) {
+			return null;
+		}
+		/*
+		 * same as the hashCode() of the concatenated string
+		 */
+		int h = key.hashCode();
+		h = 31 * h + separator;
+		for (int i = 0; i < text.length(); i++) {
+			h = 31 * h + text.charAt(i);
+		}
+
+		final int keyLen = key.length();
+		final int len = keyLen + 1 + text.length();
+		int idx = spread(h) & this.mask;
+		while (true) {
+			final String k = this.slots[idx * 2];
+			if (k == null) {
+				return null;
+			}
+			if (k.length() == len && k.startsWith(key) && k.charAt(keyLen) == separator
+					&& k.regionMatches(keyLen + 1, text, 0, text.length())) {
+				return this.slots[idx * 2 + 1];
+			}
+			idx = (idx + 1) & this.mask;
+		}
+	}
+
+	/**
+	 *
+	 * @return number of entries in this table
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	private static int spread(final int h) {
+		return h ^ (h >>> 16);
+	}
+}
@@ -33,7 +33,7 @@ import org.simplity.fm.core.service.IServiceContext;
  *
  */
 public class LookupValueProvider implements IValueProvider{
-	private final Map<String, String> lookup;
+	private final LookupTable lookup;
 	private final IValueProvider textValue;
 	private final IValueProvider keyValue;
 
@@ -44,25 +44,36 @@ public class LookupValueProvider implements IValueProvider{
 	 * @param keyValue must be null if this is simple lookup, and non-null if this is keyed lookup
 	 */
 	public LookupValueProvider(Map<String, String> lookup, IValueProvider textValue, IValueProvider keyValue ) {
+		this(new LookupTable(lookup), textValue, keyValue);
+	}
+
+	/**
+	 * 
+	 * @param lookup table for looking up internal value for the input text.
+	 *            It may be shared across uploads
+	 * @param textValue non-null value provider for text to look up.
+	 * @param keyValue must be null if this is simple lookup, and non-null if this is keyed lookup
+	 */
+	public LookupValueProvider(LookupTable lookup, IValueProvider textValue, IValueProvider keyValue ) {
 		this.lookup = lookup;
 		this.textValue = textValue;
 		this.keyValue = keyValue;
 	}
 	
 	@Override
-	public String getValue(Map<String, String> input, IServiceContext ctx) {
+	public String getValue(IUploadRow input, IServiceContext ctx) {
 		String text = this.textValue.getValue(input, ctx);
 		if(text == null) {
 			return null;
 		}
 		
-		if(this.keyValue != null) {
-			String key = this.keyValue.getValue(input, ctx);
-			if(key == null) {
-				return null;
-			}
-			text = key +Conventions.Upload.KEY_TEXT_SEPARATOR + text;
+		if(this.keyValue == null) {
+			return this.lookup.get(text);
+		}
+		String key = this.keyValue.getValue(input, ctx);
+		if(key == null) {
+			return null;
 		}
-		return this.lookup.get(text);
+		return this.lookup.get(key, Conventions.Upload.KEY_TEXT_SEPARATOR, text);
 	}
 }
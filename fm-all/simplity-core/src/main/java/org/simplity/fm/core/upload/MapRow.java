@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2019 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.fm.core.upload;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * row view on the map of values supplied by an IUploadClient
+ *
+ * @author simplity.org
+ *
+ */
+class MapRow implements IUploadRow {
+	private Map<String, String> values;
+
+	MapRow(final Map<String, String> values) {
+		this.values = values;
+	}
+
+	/**
+	 *
+	 * @param client
+	 * @return source that supplies the rows of the client as row views
+	 */
+	static IUploadRowSource toSource(final IUploadClient client) {
+		final MapRow row = new MapRow(null);
+		return ctx -> {
+			final Map<String, String> values = client.nextRow(ctx);
+			if (values == null) {
+				return null;
+			}
+			row.values = values;
+			return row;
+		};
+	}
+
+	@Override
+	public String getValue(final String name) {
+		return this.values.get(name);
+	}
+
+	@Override
+	public void setValue(final String name, final String value) {
+		this.values.put(name, value);
+	}
+
+	@Override
+	public IUploadRow copy() {
+		/*
+		 * client is allowed to re-use the map for the next row
+		 */
+		return new MapRow(new HashMap<>(this.values));
+	}
+}
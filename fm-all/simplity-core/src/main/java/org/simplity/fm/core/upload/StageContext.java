@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2019 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.simplity.fm.core.upload;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.simplity.fm.core.Message;
+import org.simplity.fm.core.service.DefaultServiceContext;
+import org.simplity.fm.core.service.IServiceContext;
+
+/**
+ * context in which rows are parsed, so that the messages added by the value
+ * providers are kept apart from those of the service context till they are to
+ * be reported, like when the rows are committed. Values and tenant are those
+ * of the service context
+ *
+ * @author simplity.org
+ *
+ */
+class StageContext extends DefaultServiceContext {
+	private final IServiceContext ctx;
+
+	StageContext(final IServiceContext ctx) {
+		super(ctx.hasUserContext() ? ctx.getCurrentUserContext() : null, ctx.getOutputData());
+		this.ctx = ctx;
+	}
+
+	@Override
+	public Object getValue(final String key) {
+		return this.ctx.getValue(key);
+	}
+
+	@Override
+	public Object getTenantId() {
+		return this.ctx.getTenantId();
+	}
+
+	/**
+	 *
+	 * @return messages added since the last call. non-null, could be empty
+	 */
+	List<Message> drainMessages() {
+		if (this.messages.isEmpty()) {
+			return Collections.emptyList();
+		}
+		final List<Message> msgs = new ArrayList<>(this.messages);
+		this.messages.clear();
+		this.nbrErrors = 0;
+		return msgs;
+	}
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2019 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.simplity.fm.core.upload;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+import org.simplity.fm.core.Conventions;
+import org.simplity.fm.core.Message;
+import org.simplity.fm.core.app.AppManager;
+import org.simplity.fm.core.db.IReadWriteHandle;
+import org.simplity.fm.core.infra.ICheckpointStore;
+import org.simplity.fm.core.job.Checkpoint;
+import org.simplity.fm.core.service.IServiceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * keeps the checkpoint of an upload in step with the rows that are committed.
+ * A no-op when the upload is not checkpointed.
+ *
+ * Uploads that are run as part of a job are numbered in the order in which
+ * they are run, and each is checkpointed with an id of its own, derived from
+ * the job id. The order is the same when the job is resumed, and hence each
+ * upload resumes from its own checkpoint. These checkpoints are kept till the
+ * job ends, so that an upload that is done is not repeated when the job is
+ * resumed.
+ *
+ * Messages are saved with every commit, and hence only the first few of them
+ * are saved
+ *
+ * @author simplity.org
+ *
+ */
+class UploadCheckpoint {
+	private static final Logger logger = LoggerFactory.getLogger(UploadCheckpoint.class);
+	/**
+	 * max number of messages saved with a checkpoint
+	 */
+	static final int MAX_MESSAGES = 100;
+
+	/**
+	 * used when the upload is not checkpointed
+	 */
+	static final UploadCheckpoint NONE = new UploadCheckpoint(null, null, false);
+
+	private final ICheckpointStore store;
+	/*
+	 * true if this is the checkpoint of an upload that is run as part of a job
+	 */
+	private final boolean inJob;
+	private Checkpoint checkpoint;
+	private boolean saved;
+
+	private UploadCheckpoint(final ICheckpointStore store, final Checkpoint checkpoint, final boolean inJob) {
+		this.store = store;
+		this.checkpoint = checkpoint;
+		this.inJob = inJob;
+	}
+
+	/**
+	 *
+	 * @param id id with which the upload is checkpointed. null if it is not to
+	 *           be checkpointed
+	 * @return non-null instance. If a checkpoint exists with this id, the upload
+	 *         is to be resumed from there
+	 * @throws SQLException
+	 */
+	static UploadCheckpoint forId(final String id) throws SQLException {
+		if (id == null) {
+			return NONE;
+		}
+		return forId(id, false, AppManager.getApp().getCheckpointStore());
+	}
+
+	/**
+	 * checkpoint for the next upload of the job in which the service is run
+	 *
+	 * @param ctx
+	 * @return non-null instance. NONE if the service is not run as a job
+	 * @throws SQLException
+	 */
+	static UploadCheckpoint forJob(final IServiceContext ctx) throws SQLException {
+		if (ctx.getValue(Conventions.App.JOB_ID_IN_CTX) instanceof String == false) {
+			return NONE;
+		}
+		return forJob(ctx, AppManager.getApp().getCheckpointStore());
+	}
+
+	/**
+	 *
+	 * @param ctx   of a service that is run as a job
+	 * @param store in which checkpoints are kept
+	 * @return checkpoint for the next upload of the job
+	 * @throws SQLException
+	 */
+	static UploadCheckpoint forJob(final IServiceContext ctx, final ICheckpointStore store) throws SQLException {
+		final Object jobId = ctx.getValue(Conventions.App.JOB_ID_IN_CTX);
+		if (jobId instanceof String == false) {
+			return NONE;
+		}
+		final Object obj = ctx.getValue(Conventions.App.NBR_UPLOADS_IN_CTX);
+		final int seq = obj instanceof Integer ? (Integer) obj + 1 : 1;
+		ctx.setValue(Conventions.App.NBR_UPLOADS_IN_CTX, seq);
+		return forId(Checkpoint.getUploadId((String) jobId, seq), true, store);
+	}
+
+	private static UploadCheckpoint forId(final String id, final boolean inJob, final ICheckpointStore store)
+			throws SQLException {
+		Checkpoint cp = store.get(id);
+		final boolean saved = cp != null;
+		if (cp == null) {
+			cp = Checkpoint.forUpload(id);
+		} else if (cp.nbrRowsDone > 0) {
+			logger.info("Upload {} is resumed after {} rows that were done earlier", id, cp.nbrRowsDone);
+		}
+		final UploadCheckpoint uc = new UploadCheckpoint(store, cp, inJob);
+		uc.saved = saved;
+		return uc;
+	}
+
+	/**
+	 *
+	 * @return checkpoint from which the upload is to be resumed. null if the
+	 *         upload is not checkpointed
+	 */
+	Checkpoint getCheckpoint() {
+		return this.checkpoint;
+	}
+
+	/**
+	 * skip the rows that were committed before the upload was interrupted
+	 *
+	 * @param source
+	 * @param ctx
+	 */
+	void skipRowsDone(final IUploadRowSource source, final IServiceContext ctx) {
+		if (this.checkpoint == null) {
+			return;
+		}
+		for (int i = 0; i < this.checkpoint.nbrRowsDone; i++) {
+			if (source.nextRow(ctx) == null) {
+				logger.warn("Source has only {} rows, but checkpoint {} has {} rows as done", i,
+						this.checkpoint.id, this.checkpoint.nbrRowsDone);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * save the progress as part of the transaction that commits the rows
+	 *
+	 * @param nbrRows
+	 * @param nbrErrors
+	 * @param nbrCommits
+	 * @param messages   supplies the messages so far. Not called once
+	 *                   MAX_MESSAGES are saved
+	 * @param handle     caller commits the transaction
+	 * @return true if the checkpoint is saved. false if the upload is not
+	 *         checkpointed
+	 * @throws SQLException
+	 */
+	boolean save(final int nbrRows, final int nbrErrors, final int nbrCommits, final Supplier<Message[]> messages,
+			final IReadWriteHandle handle) throws SQLException {
+		if (this.checkpoint == null) {
+			return false;
+		}
+		Message[] msgs = this.checkpoint.messages;
+		if (msgs.length < MAX_MESSAGES) {
+			msgs = messages.get();
+			if (msgs.length > MAX_MESSAGES) {
+				msgs = Arrays.copyOf(msgs, MAX_MESSAGES);
+			}
+		}
+		this.checkpoint = this.checkpoint.withProgress(nbrRows, nbrErrors, nbrCommits, msgs);
+		this.store.save(this.checkpoint, handle);
+		this.saved = true;
+		return true;
+	}
+
+	/**
+	 * upload is done. Checkpoint of an upload in a job is left to the job
+	 * manager, as the job may have more to do after this upload. It is saved if
+	 * it is not yet, so that the checkpoints of the uploads of a job are in an
+	 * unbroken sequence
+	 */
+	void done() {
+		if (this.checkpoint == null) {
+			return;
+		}
+		try {
+			if (this.inJob == false) {
+				this.store.remove(this.checkpoint.id);
+			} else if (this.saved == false) {
+				this.store.save(this.checkpoint);
+				this.saved = true;
+			}
+		} catch (final SQLException e) {
+			logger.error("Checkpoint {} could not be updated: {}", this.checkpoint.id, e.getMessage());
+		}
+	}
+}
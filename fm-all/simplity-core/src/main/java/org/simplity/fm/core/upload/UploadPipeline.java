@@ -0,0 +1,527 @@
+/*
+ * Copyright (c) 2019 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.fm.core.upload;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.simplity.fm.core.ApplicationError;
+import org.simplity.fm.core.Message;
+import org.simplity.fm.core.app.AppManager;
+import org.simplity.fm.core.data.DbRecord;
+import org.simplity.fm.core.db.IDbDriver;
+import org.simplity.fm.core.db.ITransactionHandle;
+import org.simplity.fm.core.job.Checkpoint;
+import org.simplity.fm.core.service.IServiceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * uploads rows in three stages that run concurrently: rows are read from the
+ * source on the calling thread, parsed into data rows by a set of worker
+ * threads, and inserted in chunks by a writer thread that has its own
+ * transaction handle. Stages are connected by bounded queues, and hence a slow
+ * stage holds back the stages before it.
+ *
+ * Forms that use a key generated by an earlier form can be parsed only after
+ * that form is inserted. Such forms are parsed by the writer.
+ *
+ * Workers and the writer do not share the context of the service. Each of them
+ * collects the messages from the value providers in a context of its own, and
+ * the writer merges them in the order of rows. A worker that fails, rather than
+ * rejecting a row, aborts the upload and its failure is thrown to the caller.
+ *
+ * @author simplity.org
+ *
+ */
+class UploadPipeline {
+	private static final Logger logger = LoggerFactory.getLogger(UploadPipeline.class);
+	/*
+	 * milli-seconds to wait for a full queue before checking whether the
+	 * upload is aborted
+	 */
+	private static final long WAIT_MILLIS = 100;
+	/*
+	 * marks the end of rows. each worker gets one, and passes it on to the
+	 * writer
+	 */
+	private static final Row END = new Row(-1, null);
+
+	private final FormLoader[] inserts;
+	private final int chunkSize;
+	private final int nbrWorkers;
+	private final IUploadRowSource source;
+	private final IServiceContext ctx;
+	private final UploadCheckpoint checkpoint;
+	/*
+	 * seq of the first row to be uploaded. non-zero when the upload is resumed
+	 * from a checkpoint
+	 */
+	private final int firstSeq;
+	/*
+	 * forms before this index are parsed by the workers
+	 */
+	private final int nbrPreParsed;
+	private final BlockingQueue<Row> toParse;
+	private final BlockingQueue<Row> toWrite;
+	private volatile boolean aborted;
+	/*
+	 * failure of a worker that aborted the upload
+	 */
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+	/*
+	 * used by the writer thread only, and read after it is done
+	 */
+	private final StageContext writerCtx;
+	private final List<Message> errors = new ArrayList<>();
+	private int nbrRows;
+	private int nbrErrors;
+	private int nbrCommits;
+
+	UploadPipeline(final FormLoader[] inserts, final int chunkSize, final int nbrWorkers,
+			final IUploadRowSource source, final IServiceContext ctx, final UploadCheckpoint checkpoint) {
+		this.inserts = inserts;
+		this.chunkSize = chunkSize;
+		this.nbrWorkers = nbrWorkers;
+		this.source = source;
+		this.ctx = ctx;
+		this.checkpoint = checkpoint;
+		this.writerCtx = new StageContext(ctx);
+		this.toParse = new ArrayBlockingQueue<>(chunkSize * 2);
+		this.toWrite = new ArrayBlockingQueue<>(chunkSize * 2);
+
+		int n = inserts.length;
+		for (int i = 0; i < inserts.length; i++) {
+			if (inserts[i].generatesKey()) {
+				n = i + 1;
+				break;
+			}
+		}
+		this.nbrPreParsed = n;
+
+		final Checkpoint cp = checkpoint.getCheckpoint();
+		if (cp == null) {
+			this.firstSeq = 0;
+			return;
+		}
+		this.firstSeq = cp.nbrRowsDone;
+		this.nbrRows = cp.nbrRowsDone;
+		this.nbrErrors = cp.nbrErrors;
+		this.nbrCommits = cp.nbrCommits;
+		this.errors.addAll(Arrays.asList(cp.messages));
+	}
+
+	UploadResult upload() throws SQLException {
+		return this.upload(AppManager.getApp().getDbDriver());
+	}
+
+	/**
+	 *
+	 * @param driver with which the writer gets its transaction handle
+	 * @return info about what happened
+	 * @throws SQLException
+	 */
+	UploadResult upload(final IDbDriver driver) throws SQLException {
+		final Instant startedAt = Instant.now();
+		final AtomicInteger nbr = new AtomicInteger();
+		final ExecutorService threads = Executors.newFixedThreadPool(this.nbrWorkers + 1, r -> {
+			final Thread t = new Thread(r, "upload-" + nbr.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+
+		try {
+			final Future<Boolean> writer = threads
+					.submit(() -> driver.doMultipleTransactions(this::write));
+			for (int i = 0; i < this.nbrWorkers; i++) {
+				threads.execute(this::parse);
+			}
+			this.read();
+			waitFor(writer);
+		} finally {
+			this.aborted = true;
+			threads.shutdownNow();
+		}
+
+		/*
+		 * messages are already in the order of rows
+		 */
+		for (final Message msg : this.errors) {
+			this.ctx.addMessage(msg);
+		}
+		return new UploadResult(startedAt, Instant.now(), this.nbrRows, this.nbrErrors, this.nbrCommits,
+				this.ctx.getMessages());
+	}
+
+	private static void waitFor(final Future<Boolean> writer) throws SQLException {
+		try {
+			writer.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Upload interrupted");
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof SQLException) {
+				throw (SQLException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new SQLException(cause.getMessage(), cause);
+		}
+	}
+
+	/*
+	 * reader stage, on the calling thread
+	 */
+	private void read() throws SQLException {
+		if (this.firstSeq > 0) {
+			this.checkpoint.skipRowsDone(this.source, this.ctx);
+		}
+		int seq = this.firstSeq;
+		try {
+			while (true) {
+				final IUploadRow input = this.source.nextRow(this.ctx);
+				if (input == null) {
+					break;
+				}
+				/*
+				 * source is allowed to re-use the row for the next row
+				 */
+				if (!this.put(this.toParse, new Row(seq, input.copy()))) {
+					return;
+				}
+				seq++;
+			}
+
+			for (int i = 0; i < this.nbrWorkers; i++) {
+				if (!this.put(this.toParse, END)) {
+					return;
+				}
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Upload interrupted");
+		}
+	}
+
+	/*
+	 * worker stage. Each worker parses into its own set of records
+	 */
+	private void parse() {
+		final StageContext workerCtx = new StageContext(this.ctx);
+		try {
+			final DbRecord[] records = new DbRecord[this.nbrPreParsed];
+			for (int i = 0; i < records.length; i++) {
+				records[i] = this.inserts[i].newRecord();
+			}
+
+			while (true) {
+				final Row row = this.toParse.take();
+				if (row == END) {
+					return;
+				}
+				row.parse(this.inserts, records, workerCtx);
+				row.messages = workerCtx.drainMessages();
+				if (!this.put(this.toWrite, row)) {
+					return;
+				}
+			}
+		} catch (final InterruptedException e) {
+			// upload is aborted
+		} catch (final Throwable e) {
+			logger.error("Upload aborted as a worker failed with {}", e.toString());
+			this.failure.compareAndSet(null, e);
+			this.aborted = true;
+		} finally {
+			/*
+			 * the writer waits for an END from every worker, however it ends
+			 */
+			try {
+				this.put(this.toWrite, END);
+			} catch (final InterruptedException e) {
+				// upload is aborted
+			}
+		}
+	}
+
+	/*
+	 * writer stage
+	 */
+	private boolean write(final ITransactionHandle handle) throws SQLException {
+		boolean done = false;
+		try {
+			handle.setAutoCommitMode(false);
+			/*
+			 * rows arrive out of order from the workers. They are held here till their
+			 * turn comes.
+			 */
+			final Map<Integer, Row> arrived = new HashMap<>();
+			final List<Row> chunk = new ArrayList<>(this.chunkSize);
+			int nextSeq = this.firstSeq;
+			int nbrEnded = 0;
+			while (nbrEnded < this.nbrWorkers) {
+				final Row row = this.toWrite.poll(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+				/*
+				 * a failed worker may never send the row it was parsing
+				 */
+				this.checkAborted();
+				if (row == null) {
+					continue;
+				}
+				if (row == END) {
+					nbrEnded++;
+					continue;
+				}
+
+				arrived.put(row.seq, row);
+				Row next;
+				while ((next = arrived.remove(nextSeq)) != null) {
+					nextSeq++;
+					chunk.add(next);
+					if (chunk.size() == this.chunkSize) {
+						this.writeChunk(chunk, handle);
+						chunk.clear();
+					}
+				}
+			}
+
+			if (chunk.isEmpty() == false) {
+				this.writeChunk(chunk, handle);
+			}
+			done = true;
+			return true;
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Upload interrupted");
+		} finally {
+			if (!done) {
+				this.aborted = true;
+			}
+		}
+	}
+
+	private void checkAborted() throws SQLException {
+		if (this.aborted == false) {
+			return;
+		}
+		final Throwable e = this.failure.get();
+		if (e instanceof Error) {
+			throw (Error) e;
+		}
+		if (e == null) {
+			throw new SQLException("Upload aborted");
+		}
+		throw new SQLException("Upload aborted as a worker failed with " + e.getMessage(), e);
+	}
+
+	private void writeChunk(final List<Row> chunk, final ITransactionHandle handle) throws SQLException {
+		final List<Row> rows = new ArrayList<>(chunk.size());
+		final List<IUploadRow> values = new ArrayList<>(chunk.size());
+		for (final Row row : chunk) {
+			if (row.error == null) {
+				rows.add(row);
+				values.add(row.values);
+			}
+		}
+		final int lastRow = chunk.get(chunk.size() - 1).seq + 1;
+		if (rows.isEmpty()) {
+			for (final Row row : chunk) {
+				this.report(row);
+			}
+			this.nbrRows = lastRow;
+			if (this.saveCheckpoint(handle)) {
+				handle.commit();
+			}
+			return;
+		}
+
+		boolean ok = true;
+		try {
+			for (int i = 0; i < this.inserts.length && ok; i++) {
+				final FormLoader loader = this.inserts[i];
+				if (i >= this.nbrPreParsed) {
+					ok = loader.loadBatch(values, handle, this.writerCtx);
+					continue;
+				}
+				final Object[][] data = new Object[rows.size()][];
+				for (int j = 0; j < data.length; j++) {
+					data[j] = rows.get(j).data[i];
+				}
+				ok = loader.insertBatch(values, data, handle);
+			}
+		} catch (final SQLException e) {
+			logger.warn("Chunk of {} rows starting at row {} failed with {}. Rows will be retried one by one",
+					rows.size(), rows.get(0).seq + 1, e.getMessage());
+			ok = false;
+		}
+
+		/*
+		 * messages from the forms parsed here are added again if the rows are
+		 * retried
+		 */
+		final List<Message> msgs = this.writerCtx.drainMessages();
+		if (ok) {
+			for (final Row row : chunk) {
+				this.report(row);
+			}
+			this.errors.addAll(msgs);
+			this.nbrRows = lastRow;
+			this.nbrCommits++;
+			this.saveCheckpoint(handle);
+			handle.commit();
+			return;
+		}
+
+		handle.rollback();
+		/*
+		 * rows are counted as done as and when they are committed
+		 */
+		for (final Row row : chunk) {
+			this.nbrRows = row.seq + 1;
+			this.report(row);
+			if (row.error == null) {
+				this.writeRow(row, handle);
+			}
+		}
+	}
+
+	/*
+	 * messages from the worker that parsed the row, and its rejection, if the
+	 * worker rejected it
+	 */
+	private void report(final Row row) {
+		if (row.messages != null) {
+			this.errors.addAll(row.messages);
+		}
+		if (row.error != null) {
+			this.reject(row, row.error);
+		}
+	}
+
+	private void writeRow(final Row row, final ITransactionHandle handle) throws SQLException {
+		String error = null;
+		try {
+			for (final FormLoader loader : this.inserts) {
+				if (!loader.loadData(row.values, handle, this.writerCtx)) {
+					error = Uploader.ROW_NOT_INSERTED;
+					break;
+				}
+			}
+		} catch (final SQLException e) {
+			error = e.getMessage();
+		}
+		this.errors.addAll(this.writerCtx.drainMessages());
+
+		if (error == null) {
+			this.nbrCommits++;
+			this.saveCheckpoint(handle);
+			handle.commit();
+			return;
+		}
+		handle.rollback();
+		this.reject(row, error);
+		/*
+		 * the rejected row is recorded as done in a transaction of its own
+		 */
+		if (this.saveCheckpoint(handle)) {
+			handle.commit();
+		}
+	}
+
+	private boolean saveCheckpoint(final ITransactionHandle handle) throws SQLException {
+		return this.checkpoint.save(this.nbrRows, this.nbrErrors, this.nbrCommits,
+				() -> this.errors.toArray(new Message[0]), handle);
+	}
+
+	private void reject(final Row row, final String error) {
+		final int rowNbr = row.seq + 1;
+		logger.error("Row {} could not be inserted: {}", rowNbr, error);
+		this.nbrErrors++;
+		this.errors.add(Uploader.newRowError(rowNbr, error));
+	}
+
+	private boolean put(final BlockingQueue<Row> queue, final Row row) throws InterruptedException {
+		while (!queue.offer(row, WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+			if (this.aborted) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * a row as it moves through the stages. handed over from one thread to the
+	 * next through the queues
+	 */
+	private static class Row {
+		final int seq;
+		final IUploadRow values;
+		/*
+		 * parsed data rows for the forms that are parsed by the workers
+		 */
+		Object[][] data;
+		/*
+		 * non-null if the row is rejected by the worker
+		 */
+		String error;
+		/*
+		 * added by the value providers while the worker parsed the row
+		 */
+		List<Message> messages;
+
+		Row(final int seq, final IUploadRow values) {
+			this.seq = seq;
+			this.values = values;
+		}
+
+		void parse(final FormLoader[] inserts, final DbRecord[] records, final IServiceContext ctx) {
+			this.data = new Object[records.length][];
+			try {
+				for (int i = 0; i < records.length; i++) {
+					this.data[i] = inserts[i].parseRow(this.values, records[i], ctx);
+					if (this.data[i] == null) {
+						this.error = "Row has invalid data";
+						return;
+					}
+				}
+			} catch (final RuntimeException | ApplicationError e) {
+				this.error = e.getMessage();
+			}
+		}
+	}
+}
@@ -22,6 +22,7 @@
 
 package org.simplity.fm.core.upload;
 
+import java.time.Duration;
 import java.time.Instant;
 
 import org.simplity.fm.core.Message;
@@ -49,6 +50,15 @@ public class UploadResult {
 	 * number of rows in error.
 	 */
 	public final int nbrRowsInError;
+	/**
+	 * number of transactions committed.
+	 */
+	public final int nbrCommits;
+	/**
+	 * number of rows processed per second. 0 if the time taken is too small to
+	 * be measured
+	 */
+	public final double rowsPerSecond;
 	/**
 	 * error messages if any. Could be empty, but not null
 	 */
@@ -69,9 +79,36 @@ public class UploadResult {
 	 */
 	public UploadResult(Instant startedAt, Instant doneAt, int nbrRowsProcessed, int nbrRowsInError,
 			Message[] errors) {
+		this(startedAt, doneAt, nbrRowsProcessed, nbrRowsInError, 0, errors);
+	}
+
+	/**
+	 * 
+	 * @param startedAt
+	 *            instance a which first row was started(after any set-up)
+	 * @param doneAt
+	 *            instance at which last row is processed
+	 * @param nbrRowsProcessed
+	 *            total rows processed
+	 * @param nbrRowsInError
+	 *            number of rows in error
+	 * @param nbrCommits
+	 *            number of transactions committed
+	 * @param errors
+	 *            error messages if any. Could be empty, but not null
+	 */
+	public UploadResult(Instant startedAt, Instant doneAt, int nbrRowsProcessed, int nbrRowsInError, int nbrCommits,
+			Message[] errors) {
 		this.startedAt = startedAt;
 		this.doneAt = doneAt;
 		this.nbrRowsProcessed = nbrRowsProcessed;
 		this.nbrRowsInError = nbrRowsInError;
+		this.nbrCommits = nbrCommits;
+		this.errors = errors;
+		long millis = 0;
+		if (startedAt != null && doneAt != null) {
+			millis = Duration.between(startedAt, doneAt).toMillis();
+		}
+		this.rowsPerSecond = millis <= 0 ? 0 : nbrRowsProcessed * 1000.0 / millis;
 	}
 }
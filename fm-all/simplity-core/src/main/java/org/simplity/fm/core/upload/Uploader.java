@@ -24,36 +24,171 @@ package org.simplity.fm.core.upload;
 
 import java.sql.SQLException;
 import java.time.Instant;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 
+import org.simplity.fm.core.Message;
 import org.simplity.fm.core.app.AppManager;
 import org.simplity.fm.core.db.ITransactionHandle;
+import org.simplity.fm.core.job.Checkpoint;
 import org.simplity.fm.core.service.IServiceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
+ * uploads rows supplied by a client into the db. Rows are inserted in chunks:
+ * each form is inserted for all the rows in a chunk with one batch of
+ * statements, and the chunk is committed as one transaction. If a chunk
+ * fails, it is rolled back and its rows are retried one by one, so that only
+ * the rows in error are rejected.
+ *
+ * An upload may be checkpointed: progress is saved with every commit, in the
+ * same transaction, so that an upload that is interrupted can be resumed from
+ * the last committed row by uploading the same rows again with the same
+ * checkpoint id. An upload that is run as part of a job is checkpointed with
+ * an id of its own that is derived from the job id, and the checkpoint is
+ * kept till the job ends.
+ *
  * @author simplity.org
  *
  */
 public class Uploader {
+	private static final Logger logger = LoggerFactory.getLogger(Uploader.class);
+	/**
+	 * default number of rows that are committed as one transaction
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 500;
+	static final String ROW_NOT_INSERTED = "Row not inserted, probably because of database constraints";
+
 	protected final FormLoader[] inserts;
+	protected final int chunkSize;
+	protected final int nbrWorkers;
 
 	Uploader(final FormLoader[] inserts) {
+		this(inserts, DEFAULT_CHUNK_SIZE, 0);
+	}
+
+	Uploader(final FormLoader[] inserts, final int chunkSize, final int nbrWorkers) {
 		this.inserts = inserts;
+		this.chunkSize = chunkSize < 1 ? 1 : chunkSize;
+		this.nbrWorkers = nbrWorkers < 0 ? 0 : nbrWorkers;
 	}
 
 	/**
+	 * rows are uploaded on the calling thread, unless this uploader is
+	 * configured with worker threads, in which case the upload is pipelined
+	 *
 	 * @param client client for this uploader that supplies input rows
 	 * @param ctx
 	 * @return info about what happened
 	 * @throws SQLException
 	 */
 	public UploadResult upload(final IUploadClient client, final IServiceContext ctx) throws SQLException {
-		final Worker worker = new Worker(client, ctx);
-		AppManager.getApp().getDbDriver().doMultipleTransactions(handle -> {
+		return this.uploadRows(MapRow.toSource(client), ctx);
+	}
 
-			return worker.transact(handle);
-		});
-		return worker.getResult();
+	/**
+	 * upload with a pipeline of stages. see uploadRows(IUploadRowSource,
+	 * IServiceContext, int)
+	 *
+	 * @param client     client for this uploader that supplies input rows. it is
+	 *                   called on the calling thread.
+	 * @param ctx
+	 * @param nbrWorkers number of threads to parse rows
+	 * @return info about what happened. Errors are reported in the order of
+	 *         rows, irrespective of the order in which they are processed
+	 * @throws SQLException
+	 */
+	public UploadResult upload(final IUploadClient client, final IServiceContext ctx, final int nbrWorkers)
+			throws SQLException {
+		return this.uploadRows(MapRow.toSource(client), ctx, nbrWorkers);
+	}
+
+	/**
+	 * upload rows supplied as row views, like the ones from a
+	 * DelimitedRowReader. Rows are uploaded on the calling thread, unless this
+	 * uploader is configured with worker threads, in which case the upload is
+	 * pipelined
+	 *
+	 * @param source supplies the rows to be uploaded
+	 * @param ctx
+	 * @return info about what happened
+	 * @throws SQLException
+	 */
+	public UploadResult uploadRows(final IUploadRowSource source, final IServiceContext ctx) throws SQLException {
+		return this.upload(source, ctx, UploadCheckpoint.forJob(ctx));
+	}
+
+	/**
+	 * checkpointed upload. If a checkpoint exists for this id, rows up to the
+	 * last committed row are skipped, and the counters and messages are
+	 * restored from the checkpoint. The checkpoint is removed once all the rows
+	 * are uploaded.
+	 *
+	 * @param source       supplies the rows to be uploaded. Must supply the
+	 *                     same rows, in the same order, when an upload is
+	 *                     resumed
+	 * @param ctx
+	 * @param checkpointId id with which progress is saved. null if the upload
+	 *                     is not to be checkpointed
+	 * @return info about what happened, including the rows that were done
+	 *         before the upload was resumed
+	 * @throws SQLException
+	 */
+	public UploadResult uploadRows(final IUploadRowSource source, final IServiceContext ctx,
+			final String checkpointId) throws SQLException {
+		return this.upload(source, ctx, UploadCheckpoint.forId(checkpointId));
+	}
+
+	private UploadResult upload(final IUploadRowSource source, final IServiceContext ctx,
+			final UploadCheckpoint checkpoint) throws SQLException {
+		final UploadResult result;
+		if (this.nbrWorkers > 0) {
+			result = new UploadPipeline(this.inserts, this.chunkSize, this.nbrWorkers, source, ctx, checkpoint)
+					.upload();
+		} else {
+			final Worker worker = new Worker(source, ctx, checkpoint);
+			AppManager.getApp().getDbDriver().doMultipleTransactions(handle -> {
+
+				return worker.transact(handle);
+			});
+			result = worker.getResult();
+		}
+		checkpoint.done();
+		return result;
+	}
+
+	/**
+	 * upload with a pipeline of stages: rows are read from the source on the
+	 * calling thread, parsed by the worker threads and inserted by a writer
+	 * thread with its own transaction handle. Stages are connected with bounded
+	 * queues, so that a slow stage holds back the ones before it.
+	 *
+	 * @param source     supplies the rows to be uploaded. it is called on the
+	 *                   calling thread.
+	 * @param ctx
+	 * @param nbrWorkers number of threads to parse rows
+	 * @return info about what happened. Errors are reported in the order of
+	 *         rows, irrespective of the order in which they are processed
+	 * @throws SQLException
+	 */
+	public UploadResult uploadRows(final IUploadRowSource source, final IServiceContext ctx, final int nbrWorkers)
+			throws SQLException {
+		final UploadCheckpoint checkpoint = UploadCheckpoint.forJob(ctx);
+		final UploadResult result = new UploadPipeline(this.inserts, this.chunkSize, nbrWorkers < 1 ? 1 : nbrWorkers,
+				source, ctx, checkpoint).upload();
+		checkpoint.done();
+		return result;
+	}
+
+	/**
+	 *
+	 * @param rowNbr 1-based row number
+	 * @param msg
+	 * @return error message for the row
+	 */
+	static Message newRowError(final int rowNbr, final String msg) {
+		return Message.newObjectFieldError(null, null, msg, rowNbr);
 	}
 
 	/**
@@ -63,59 +198,180 @@ public class Uploader {
 	 * @return info about what happened
 	 */
 	public UploadResult validate(final IUploadClient client, final IServiceContext ctx) {
-		final Worker worker = new Worker(client, ctx);
+		return this.validateRows(MapRow.toSource(client), ctx);
+	}
+
+	/**
+	 * @param source supplies the rows to be validated
+	 * @param ctx
+	 *
+	 * @return info about what happened
+	 */
+	public UploadResult validateRows(final IUploadRowSource source, final IServiceContext ctx) {
+		final Worker worker = new Worker(source, ctx);
 		worker.validate();
 		return worker.getResult();
 	}
 
 	protected class Worker {
 		private Instant startedAt;
-		private final IUploadClient client;
+		private final IUploadRowSource source;
 		private final IServiceContext ctx;
+		private final UploadCheckpoint checkpoint;
+		/*
+		 * rows of a chunk are parsed in this context, and its messages are
+		 * added to the service context only if the chunk is committed. The
+		 * rows of a chunk that fails are parsed again when they are retried
+		 */
+		private final StageContext batchCtx;
 		private Instant doneAt;
 		private int nbrRows = 0;
 		private int nbrErrors = 0;
+		private int nbrCommits = 0;
+
+		protected Worker(final IUploadRowSource source, final IServiceContext ctx) {
+			this(source, ctx, UploadCheckpoint.NONE);
+		}
 
-		protected Worker(final IUploadClient client, final IServiceContext ctx) {
-			this.client = client;
+		Worker(final IUploadRowSource source, final IServiceContext ctx, final UploadCheckpoint checkpoint) {
+			this.source = source;
 			this.ctx = ctx;
+			this.checkpoint = checkpoint;
+			this.batchCtx = new StageContext(ctx);
 		}
 
 		protected UploadResult getResult() {
-			return new UploadResult(this.startedAt, this.doneAt, this.nbrRows, this.nbrErrors, this.ctx.getMessages());
+			return new UploadResult(this.startedAt, this.doneAt, this.nbrRows, this.nbrErrors, this.nbrCommits,
+					this.ctx.getMessages());
 		}
 
 		protected boolean transact(final ITransactionHandle handle) throws SQLException {
 			this.startedAt = Instant.now();
+			handle.setAutoCommitMode(false);
+			this.resume();
+			final List<IUploadRow> chunk = new ArrayList<>(Uploader.this.chunkSize);
 			while (true) {
-				final Map<String, String> input = this.client.nextRow(this.ctx);
+				final IUploadRow input = this.source.nextRow(this.ctx);
+				if (input != null) {
+					/*
+					 * source is allowed to re-use the row for the next row
+					 */
+					chunk.add(input.copy());
+					if (chunk.size() < Uploader.this.chunkSize) {
+						continue;
+					}
+				}
+
+				if (chunk.isEmpty() == false) {
+					this.loadChunk(chunk, handle);
+					chunk.clear();
+				}
+
 				if (input == null) {
 					this.doneAt = Instant.now();
 					return true;
 				}
+			}
+		}
 
-				this.nbrRows++;
-				boolean ok = true;
+		private void resume() {
+			final Checkpoint cp = this.checkpoint.getCheckpoint();
+			if (cp == null || cp.nbrRowsDone == 0) {
+				return;
+			}
+			this.nbrRows = cp.nbrRowsDone;
+			this.nbrErrors = cp.nbrErrors;
+			this.nbrCommits = cp.nbrCommits;
+			for (final Message msg : cp.messages) {
+				this.ctx.addMessage(msg);
+			}
+			this.checkpoint.skipRowsDone(this.source, this.ctx);
+		}
+
+		private void saveCheckpoint(final ITransactionHandle handle) throws SQLException {
+			this.checkpoint.save(this.nbrRows, this.nbrErrors, this.nbrCommits, this.ctx::getMessages, handle);
+		}
+
+		private void loadChunk(final List<IUploadRow> chunk, final ITransactionHandle handle)
+				throws SQLException {
+			final int firstRow = this.nbrRows + 1;
+			this.nbrRows += chunk.size();
+			boolean ok = true;
+			try {
+				for (final FormLoader loader : Uploader.this.inserts) {
+					if (!loader.loadBatch(chunk, handle, this.batchCtx)) {
+						ok = false;
+						break;
+					}
+				}
+			} catch (final SQLException e) {
+				logger.warn("Chunk of {} rows starting at row {} failed with {}. Rows will be retried one by one",
+						chunk.size(), firstRow, e.getMessage());
+				ok = false;
+			}
+
+			final List<Message> msgs = this.batchCtx.drainMessages();
+			if (ok) {
+				this.ctx.addMessages(msgs);
+				this.nbrCommits++;
+				this.saveCheckpoint(handle);
+				handle.commit();
+				return;
+			}
+
+			handle.rollback();
+			/*
+			 * rows are counted as done as and when they are committed
+			 */
+			this.nbrRows = firstRow - 1;
+			int rowNbr = firstRow;
+			for (final IUploadRow input : chunk) {
+				this.loadRow(input, handle, rowNbr);
+				rowNbr++;
+			}
+		}
+
+		private void loadRow(final IUploadRow input, final ITransactionHandle handle, final int rowNbr)
+				throws SQLException {
+			boolean ok = true;
+			try {
 				for (final FormLoader loader : Uploader.this.inserts) {
 					if (!loader.loadData(input, handle, this.ctx)) {
 						ok = false;
 						break;
 					}
 				}
-				if (ok) {
-					handle.commit();
-				} else {
-					handle.rollback();
-					this.nbrErrors++;
+				if (!ok) {
+					this.ctx.addMessage(newRowError(rowNbr, ROW_NOT_INSERTED));
 				}
-				return ok;
+			} catch (final SQLException e) {
+				logger.error("Row {} could not be inserted: {}", rowNbr, e.getMessage());
+				this.ctx.addMessage(newRowError(rowNbr, e.getMessage()));
+				ok = false;
+			}
+
+			this.nbrRows = rowNbr;
+			if (ok) {
+				this.nbrCommits++;
+				this.saveCheckpoint(handle);
+				handle.commit();
+				return;
+			}
+
+			handle.rollback();
+			this.nbrErrors++;
+			/*
+			 * the rejected row is recorded as done in a transaction of its own
+			 */
+			if (this.checkpoint.save(this.nbrRows, this.nbrErrors, this.nbrCommits, this.ctx::getMessages, handle)) {
+				handle.commit();
 			}
 		}
 
 		protected void validate() {
 			this.startedAt = Instant.now();
 			while (true) {
-				final Map<String, String> input = this.client.nextRow(this.ctx);
+				final IUploadRow input = this.source.nextRow(this.ctx);
 				if (input == null) {
 					this.doneAt = Instant.now();
 					return;
@@ -51,11 +51,20 @@ public class UploaderParser {
 	private final ICompProvider compProvider = AppManager.getApp()
 			.getCompProvider();
 	private final Map<String, String> params = new HashMap<>();
-	private final Map<String, Map<String, String>> valueLists = new HashMap<>();
+	/*
+	 * look-up tables built so far
+	 */
+	private final Map<String, LookupTable> valueLists = new HashMap<>();
+	/*
+	 * lists of the app that are declared as look-ups. Tables are built for the
+	 * ones that are referred to, and only when they are referred to
+	 */
+	private final Map<String, IValueList> systemLists = new HashMap<>();
 	private final Set<String> listsRequiringKey = new HashSet<>();
 	private final Map<String, IFunction> functions = new HashMap<>();
 
 	FormLoader[] inserts;
+	private IServiceContext ctx;
 
 	/**
 	 * parse a json of meta-data into an instance of uploader
@@ -66,6 +75,7 @@ public class UploaderParser {
 	 *         not returned in any form to the caller
 	 */
 	public Uploader parse(final JsonObject json, final IServiceContext ctx) {
+		this.ctx = ctx;
 
 		JsonElement ele = json.get(Conventions.Upload.TAG_PARAMS);
 		if (ele != null) {
@@ -85,7 +95,7 @@ public class UploaderParser {
 				missingTag(Conventions.Upload.TAG_LOOKUPS);
 				return null;
 			}
-			if (!this.parseLookups((JsonObject) ele, ctx)) {
+			if (!this.parseLookups((JsonObject) ele)) {
 				return null;
 			}
 		}
@@ -111,7 +121,27 @@ public class UploaderParser {
 			return null;
 		}
 
-		return new Uploader(this.inserts);
+		int chunkSize = Uploader.DEFAULT_CHUNK_SIZE;
+		ele = json.get(Conventions.Upload.TAG_CHUNK_SIZE);
+		if (ele != null) {
+			if (!ele.isJsonPrimitive() || !ele.getAsJsonPrimitive().isNumber() || ele.getAsInt() < 1) {
+				logger.error("{} should be a positive number", Conventions.Upload.TAG_CHUNK_SIZE);
+				return null;
+			}
+			chunkSize = ele.getAsInt();
+		}
+
+		int nbrWorkers = 0;
+		ele = json.get(Conventions.Upload.TAG_NBR_WORKERS);
+		if (ele != null) {
+			if (!ele.isJsonPrimitive() || !ele.getAsJsonPrimitive().isNumber() || ele.getAsInt() < 0) {
+				logger.error("{} should be a non-negative number", Conventions.Upload.TAG_NBR_WORKERS);
+				return null;
+			}
+			nbrWorkers = ele.getAsInt();
+		}
+
+		return new Uploader(this.inserts, chunkSize, nbrWorkers);
 	}
 
 	private boolean parseParams(final JsonObject json) {
@@ -148,14 +178,13 @@ public class UploaderParser {
 		return true;
 	}
 
-	private boolean parseLookups(final JsonObject json,
-			final IServiceContext ctx) {
+	private boolean parseLookups(final JsonObject json) {
 		for (final Map.Entry<String, JsonElement> entry : json.entrySet()) {
 			final String attr = entry.getKey().trim();
 			final JsonElement ele = entry.getValue();
 			boolean ok = true;
 			if (ele.isJsonPrimitive()) {
-				ok = this.parseSystemList(attr, ele.getAsString().trim(), ctx);
+				ok = this.parseSystemList(attr, ele.getAsString().trim());
 			} else if (ele.isJsonObject()) {
 				ok = this.parseLocalList(attr, (JsonObject) ele);
 			} else {
@@ -172,16 +201,18 @@ public class UploaderParser {
 
 	private boolean parseLocalList(final String attr, final JsonObject json) {
 		final Map<String, String> map = new HashMap<>();
-		this.valueLists.put(attr, map);
-
+		boolean ok = true;
 		for (final Map.Entry<String, JsonElement> entry : json.entrySet()) {
 			if (entry.getValue().isJsonObject()) {
 				this.listsRequiringKey.add(attr);
-				return parseKeyedList(map, json);
+				ok = parseKeyedList(map, json);
+			} else {
+				ok = parseLocalSimpleList(map, json);
 			}
-			return parseLocalSimpleList(map, json);
+			break;
 		}
-		return true;
+		this.valueLists.put(attr, new LookupTable(map));
+		return ok;
 	}
 
 	private static boolean parseLocalSimpleList(final Map<String, String> map,
@@ -230,7 +261,7 @@ public class UploaderParser {
 	}
 
 	private boolean parseSystemList(final String lukupName,
-			final String sysName, final IServiceContext ctx) {
+			final String sysName) {
 		final IValueList vl = this.compProvider.getValueList(sysName);
 		if (vl == null) {
 			logger.error(
@@ -238,19 +269,31 @@ public class UploaderParser {
 					sysName);
 			return false;
 		}
-		Map<String, String> map = vl.getAllEntries(ctx);
-		if (map == null) {
-			logger.error(
-					"SYstem list {} has no valid values. lookup on this list will always fail");
-			map = new HashMap<>();
-		}
-		this.valueLists.put(lukupName, map);
+		this.systemLists.put(lukupName, vl);
 		if (vl.isKeyBased()) {
 			this.listsRequiringKey.add(lukupName);
 		}
 		return true;
 	}
 
+	/*
+	 * look-up table for a lookup name. Table for a list of the app is built, or
+	 * taken from the shared cache, when it is referred to for the first time
+	 */
+	private LookupTable getLookup(final String lookupName) {
+		LookupTable table = this.valueLists.get(lookupName);
+		if (table != null) {
+			return table;
+		}
+		final IValueList vl = this.systemLists.get(lookupName);
+		if (vl == null) {
+			return null;
+		}
+		table = LookupCache.getInstance().getTable(vl, this.ctx);
+		this.valueLists.put(lookupName, table);
+		return table;
+	}
+
 	private static void missingTag(final String tagName) {
 		logger.error("Tag/attribute {} is missing or is not valid", tagName);
 	}
@@ -259,7 +302,7 @@ public class UploaderParser {
 		final int nbr = arr.size();
 		this.inserts = new FormLoader[nbr];
 		int idx = -1;
-		final FormParser fp = new FormParser(this.params, this.valueLists,
+		final FormParser fp = new FormParser(this.params, this::getLookup,
 				this.listsRequiringKey, this.functions);
 		for (final JsonElement t : arr) {
 			idx++;
@@ -22,8 +22,6 @@
 
 package org.simplity.fm.core.upload;
 
-import java.util.Map;
-
 import org.simplity.fm.core.service.IServiceContext;
 
 /**
@@ -47,10 +45,10 @@ public class ValueProvider implements IValueProvider{
 	}
 	
 	@Override
-	public String getValue(Map<String, String> input, IServiceContext ctx) {
+	public String getValue(IUploadRow input, IServiceContext ctx) {
 		String result = null;
 		if(this.variable != null) {
-			result = input.get(this.variable);
+			result = input.getValue(this.variable);
 		}
 		if(result == null && this.constant != null) {
 			result = this.constant;
@@ -0,0 +1,80 @@
+package org.simplity.fm.core.app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+import org.simplity.fm.core.json.JsonUtil;
+import org.simplity.fm.core.service.IInputData;
+
+class BatchRequestTest {
+	private static final String CALLS = "{\"id\": \"c1\", \"service\": \"echo\", \"data\": {\"value\": \"a\", \"delay\": 100}}," //
+			+ "{\"id\": \"c2\", \"service\": \"echo\", \"data\": {\"value\": \"b\"}}," //
+			+ "{\"id\": \"c3\", \"service\": \"fail\"}";
+
+	private final App app = newApp();
+
+	@Test
+	void testParallelBatch() throws Exception {
+		this.checkBatch(true);
+	}
+
+	@Test
+	void testSequentialBatch() throws Exception {
+		this.checkBatch(false);
+	}
+
+	@Test
+	void testSizeLimit() throws Exception {
+		final String req = "{\"service\": \"_batch\", \"calls\": [" + CALLS
+				+ ", {\"id\": \"c4\", \"service\": \"echo\"}]}";
+		final StringWriter writer = new StringWriter();
+		assertEquals(RequestStatus.InvalidDataFormat, this.app.serve(toData(req), writer));
+	}
+
+	private void checkBatch(final boolean parallel) throws Exception {
+		final String req = "{\"service\": \"_batch\", \"parallel\": " + parallel + ", \"calls\": [" + CALLS + "]}";
+		final StringWriter writer = new StringWriter();
+		final RequestStatus status = this.app.serve(toData(req), writer);
+		/*
+		 * failure of one call does not fail the others
+		 */
+		assertEquals(RequestStatus.CompletedWithErrors, status);
+
+		final String text = writer.toString();
+		/*
+		 * responses are in the order of the calls, though c1 completes last
+		 */
+		final int i1 = text.indexOf("\"c1\"");
+		final int i2 = text.indexOf("\"c2\"");
+		final int i3 = text.indexOf("\"c3\"");
+		assertTrue(i1 > 0 && i1 < i2 && i2 < i3, "responses should be in the order of the calls");
+
+		final IInputData responses = toData(text).getData("responses");
+		assertEquals("a", responses.getData("c1").getData("data").getString("value"));
+		assertEquals(RequestStatus.Completed.getMessageId(), responses.getData("c1").getString("status"));
+		assertEquals("b", responses.getData("c2").getData("data").getString("value"));
+		assertEquals(RequestStatus.ServerError.getMessageId(), responses.getData("c3").getString("status"));
+	}
+
+	private static IInputData toData(final String json) {
+		return JsonUtil.newInputData(new StringReader(json));
+	}
+
+	private static App newApp() {
+		final AppConfig config = new AppConfig();
+		config.appName = "batchTest";
+		config.appRootPackage = "org.simplity.fm.core.app.batchtest";
+		config.guestsOk = true;
+		config.maxBatchCalls = 3;
+		config.batchThreads = 4;
+		try {
+			return new App(config);
+		} catch (final Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package org.simplity.fm.core.app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.simplity.fm.core.UserContext;
+import org.simplity.fm.core.json.JsonUtil;
+import org.simplity.fm.core.service.IInputData;
+
+class RequestCoalescerTest {
+
+	@Test
+	void testKeyIsUserSpecific() {
+		IInputData data = JsonUtil.newInputData();
+		data.addValue("a", "1");
+		UserContext u1 = new UserContext(1);
+		u1.setTenantId(9L);
+		UserContext u2 = new UserContext(2);
+		u2.setTenantId(9L);
+		assertEquals(App.toCoalescingKey("s", u1, false, data, false), App.toCoalescingKey("s", u1, false, data, false));
+		assertNotEquals(App.toCoalescingKey("s", u1, false, data, false), App.toCoalescingKey("s", u2, false, data, false));
+		assertNotEquals(App.toCoalescingKey("s", u1, false, data, false), App.toCoalescingKey("s", null, false, data, false));
+	}
+
+	@Test
+	void testKeyOfUserIndependentService() {
+		IInputData data = JsonUtil.newInputData();
+		data.addValue("a", "1");
+		UserContext u1 = new UserContext(1);
+		u1.setTenantId(9L);
+		UserContext u2 = new UserContext(2);
+		u2.setTenantId(9L);
+		UserContext u3 = new UserContext(3);
+		u3.setTenantId(8L);
+		assertEquals(App.toCoalescingKey("s", u1, true, data, false), App.toCoalescingKey("s", u2, true, data, false));
+		assertNotEquals(App.toCoalescingKey("s", u1, true, data, false),
+				App.toCoalescingKey("s", u3, true, data, false), "requests of different tenants are not coalesced");
+	}
+
+	@Test
+	void testIdenticalRequestsShareResponse() throws Exception {
+		RequestCoalescer coalescer = new RequestCoalescer();
+		AtomicInteger nbrExecuted = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService ex = Executors.newFixedThreadPool(2);
+		try {
+			Future<ServiceResponse> first = ex.submit(() -> coalescer.execute("k", () -> {
+				nbrExecuted.incrementAndGet();
+				started.countDown();
+				release.await();
+				return new ServiceResponse(RequestStatus.Completed, "{}");
+			}));
+			started.await(5, TimeUnit.SECONDS);
+			Future<ServiceResponse> second = ex.submit(() -> coalescer.execute("k", () -> {
+				nbrExecuted.incrementAndGet();
+				return new ServiceResponse(RequestStatus.Completed, "second");
+			}));
+			/*
+			 * wait for the second request to join the one in progress
+			 */
+			while (coalescer.getNbrCoalesced() == 0) {
+				Thread.sleep(1);
+			}
+			release.countDown();
+			assertSame(first.get(), second.get());
+			assertEquals(1, nbrExecuted.get());
+		} finally {
+			ex.shutdownNow();
+		}
+
+		/*
+		 * responses are not cached after completion
+		 */
+		ServiceResponse resp = coalescer.execute("k", () -> new ServiceResponse(RequestStatus.Completed, "again"));
+		assertEquals("again", resp.getResponseData());
+	}
+}
@@ -0,0 +1,32 @@
+package org.simplity.fm.core.app.batchtest.service;
+
+import org.simplity.fm.core.service.AbstractService;
+import org.simplity.fm.core.service.IInputData;
+import org.simplity.fm.core.service.IServiceContext;
+
+/**
+ * echoes the value it receives, after an optional delay
+ */
+public class Echo extends AbstractService {
+
+	/**
+	 * located by its class name
+	 */
+	public Echo() {
+		super("echo");
+	}
+
+	@Override
+	public void serve(final IServiceContext ctx, final IInputData inputData) throws Exception {
+		final long delay = inputData.getInteger("delay");
+		if (delay > 0) {
+			Thread.sleep(delay);
+		}
+		ctx.getOutputData().addName("value").addValue(inputData.getString("value"));
+	}
+
+	@Override
+	public boolean serveGuests() {
+		return true;
+	}
+}
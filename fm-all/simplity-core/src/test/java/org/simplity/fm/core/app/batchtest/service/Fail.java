@@ -0,0 +1,28 @@
+package org.simplity.fm.core.app.batchtest.service;
+
+import org.simplity.fm.core.service.AbstractService;
+import org.simplity.fm.core.service.IInputData;
+import org.simplity.fm.core.service.IServiceContext;
+
+/**
+ * always fails
+ */
+public class Fail extends AbstractService {
+
+	/**
+	 * located by its class name
+	 */
+	public Fail() {
+		super("fail");
+	}
+
+	@Override
+	public void serve(final IServiceContext ctx, final IInputData inputData) throws Exception {
+		throw new IllegalStateException("failed as designed");
+	}
+
+	@Override
+	public boolean serveGuests() {
+		return true;
+	}
+}
@@ -0,0 +1,182 @@
+package org.simplity.fm.core.data;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.simplity.fm.core.UserContext;
+import org.simplity.fm.core.data.OverrideUtil.Overrides;
+import org.simplity.fm.core.db.IDbDriver;
+import org.simplity.fm.core.db.IDbReader;
+import org.simplity.fm.core.db.IDbWriter;
+import org.simplity.fm.core.db.IReadWriteHandle;
+
+class OverrideUtilTest {
+
+	@Test
+	void testSaveAndDeleteChangeTheVersion() {
+		StubDb db = new StubDb();
+		long version = OverrideUtil.getVersion("v1");
+
+		OverrideUtil.saveOverides("v1", new Overrides(new String[] { "f1" }, new String[] { "r1" }), db.driver);
+		assertEquals(++version, OverrideUtil.getVersion("v1"));
+		Overrides overs = OverrideUtil.getOverides("v1", () -> db.driver);
+		assertArrayEquals(new String[] { "f1" }, overs.forms);
+		assertSame(overs, OverrideUtil.getOverides("v1", () -> db.driver), "overrides are cached");
+		assertEquals(1, db.nbrReads);
+
+		OverrideUtil.saveOverides("v1", new Overrides(new String[] { "f2" }, new String[] { "r1" }), db.driver);
+		assertEquals(++version, OverrideUtil.getVersion("v1"));
+		assertArrayEquals(new String[] { "f2" }, OverrideUtil.getOverides("v1", () -> db.driver).forms,
+				"cached overrides are evicted when they are saved");
+		assertEquals(2, db.nbrReads);
+
+		OverrideUtil.saveRecord("v1", "r1", "{\"name\":\"r1\"}", db.driver);
+		assertEquals(++version, OverrideUtil.getVersion("v1"));
+		RecordOverride rec = OverrideUtil.getRecord("v1", "r1", () -> db.driver);
+		assertEquals("r1", rec.name);
+		assertSame(rec, OverrideUtil.getRecord("v1", "r1", () -> db.driver), "record override is cached");
+		assertEquals(3, db.nbrReads);
+
+		OverrideUtil.deleteRecord("v1", "r1", db.driver);
+		assertEquals(++version, OverrideUtil.getVersion("v1"));
+		assertNull(OverrideUtil.getRecord("v1", "r1", () -> db.driver),
+				"cached record override is evicted when it is deleted");
+
+		OverrideUtil.deleteOverides("v1", db.driver);
+		assertEquals(++version, OverrideUtil.getVersion("v1"));
+		assertNull(OverrideUtil.getOverides("v1", () -> db.driver),
+				"cached overrides are evicted when they are deleted");
+		assertEquals(5, db.nbrReads);
+	}
+
+	@Test
+	void testInvalidate() {
+		StubDb db = new StubDb();
+		OverrideUtil.saveOverides("v2", new Overrides(new String[] { "f1" }, new String[] { "r1" }), db.driver);
+		OverrideUtil.saveRecord("v2", "r1", "{\"name\":\"r1\"}", db.driver);
+		Overrides overs = OverrideUtil.getOverides("v2", () -> db.driver);
+		RecordOverride rec = OverrideUtil.getRecord("v2", "r1", () -> db.driver);
+		long version = OverrideUtil.getVersion("v2");
+
+		// modified by another node
+		OverrideUtil.invalidate("v2");
+		assertEquals(version + 1, OverrideUtil.getVersion("v2"));
+		assertNotSame(overs, OverrideUtil.getOverides("v2", () -> db.driver));
+		assertNotSame(rec, OverrideUtil.getRecord("v2", "r1", () -> db.driver));
+		assertEquals(4, db.nbrReads);
+	}
+
+	@Test
+	void testContextRefreshesOverrides() {
+		StubDb db = new StubDb();
+		OverrideUtil.saveOverides("v3", new Overrides(new String[] { "f1" }, new String[] { "r1" }), db.driver);
+		/*
+		 * there is no app to read the overrides with. They are read into the cache
+		 * with the stub, and the context gets them from the cache
+		 */
+		OverrideUtil.getOverides("v3", () -> db.driver);
+		TestContext ctx = new TestContext();
+		ctx.useOverrides("v3");
+		assertEquals("v3", ctx.getFormOverrideId("f1"));
+		assertEquals("v3", ctx.getRecordOverrideId("r1"));
+		assertNull(ctx.getFormOverrideId("f2"));
+
+		OverrideUtil.saveOverides("v3", new Overrides(new String[] { "f2" }, new String[] { "r2" }), db.driver);
+		OverrideUtil.getOverides("v3", () -> db.driver);
+		assertNull(ctx.getFormOverrideId("f1"), "context with a stale version refreshes its overrides");
+		assertEquals("v3", ctx.getFormOverrideId("f2"));
+		assertNull(ctx.getRecordOverrideId("r1"));
+		assertEquals("v3", ctx.getRecordOverrideId("r2"));
+		assertEquals(2, db.nbrReads);
+	}
+
+	private static class TestContext extends UserContext {
+		TestContext() {
+			super(1);
+		}
+
+		void useOverrides(final String id) {
+			this.setOverrides(id);
+		}
+	}
+
+	/**
+	 * rows of st_overrides and st_rec_overrides in maps
+	 */
+	private static class StubDb {
+		final Map<String, Object[]> overrides = new HashMap<>();
+		final Map<String, Object> records = new HashMap<>();
+		int nbrReads;
+		final IDbDriver driver;
+
+		StubDb() {
+			IReadWriteHandle handle = (IReadWriteHandle) Proxy.newProxyInstance(
+					IReadWriteHandle.class.getClassLoader(), new Class<?>[] { IReadWriteHandle.class },
+					(proxy, method, args) -> {
+						switch (method.getName()) {
+						case "read":
+							return this.read((String) args[0], (Object[]) args[1], (Object[]) args[4]);
+						case "write":
+							return this.write((String) args[0], (Object[]) args[1]);
+						default:
+							throw new UnsupportedOperationException(method.getName());
+						}
+					});
+			this.driver = (IDbDriver) Proxy.newProxyInstance(IDbDriver.class.getClassLoader(),
+					new Class<?>[] { IDbDriver.class }, (proxy, method, args) -> {
+						switch (method.getName()) {
+						case "doReadonlyOperations":
+							return ((IDbReader) args[0]).read(handle);
+						case "doReadWriteOperations":
+							return ((IDbWriter) args[0]).readWrite(handle);
+						default:
+							throw new UnsupportedOperationException(method.getName());
+						}
+					});
+		}
+
+		private boolean read(final String sql, final Object[] values, final Object[] result) {
+			this.nbrReads++;
+			if (sql.contains("st_rec_overrides")) {
+				result[0] = this.records.get(values[0] + "|" + values[1]);
+				return result[0] != null;
+			}
+			Object[] row = this.overrides.get(values[0]);
+			if (row == null) {
+				return false;
+			}
+			System.arraycopy(row, 0, result, 0, row.length);
+			return true;
+		}
+
+		private int write(final String sql, final Object[] values) {
+			if (sql.contains("st_rec_overrides")) {
+				if (sql.startsWith("delete")) {
+					return this.records.remove(values[0] + "|" + values[1]) == null ? 0 : 1;
+				}
+				String key = values[1] + "|" + values[2];
+				if (sql.startsWith("update") && !this.records.containsKey(key)) {
+					return 0;
+				}
+				this.records.put(key, values[0]);
+				return 1;
+			}
+			if (sql.startsWith("delete")) {
+				return this.overrides.remove(values[0]) == null ? 0 : 1;
+			}
+			if (sql.startsWith("update") && !this.overrides.containsKey(values[2])) {
+				return 0;
+			}
+			this.overrides.put((String) values[2], new Object[] { values[0], values[1] });
+			return 1;
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package org.simplity.fm.core.infra.defalt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+import org.simplity.fm.core.infra.IRequestLogWriter;
+import org.simplity.fm.core.infra.RequestLogEntry;
+
+class AsyncRequestLoggerTest {
+
+	@Test
+	void testAllBufferedRequestsAreWrittenOnClose() {
+		ListWriter writer = new ListWriter(null);
+		AsyncRequestLogger reqLogger = new AsyncRequestLogger(writer, 1000, true, 10);
+		for (int i = 0; i < 500; i++) {
+			reqLogger.log("" + i, "s", "ip", "{}");
+		}
+		reqLogger.close();
+		assertEquals(500, writer.entries.size());
+		assertEquals("499", writer.entries.get(499).loginId);
+		assertTrue(writer.maxBatch <= 10);
+		assertEquals(500, reqLogger.getNbrWritten());
+		assertEquals(0, reqLogger.getNbrDropped());
+	}
+
+	@Test
+	void testDropsWhenFull() throws InterruptedException {
+		CountDownLatch gate = new CountDownLatch(1);
+		ListWriter writer = new ListWriter(gate);
+		AsyncRequestLogger reqLogger = new AsyncRequestLogger(writer, 5, false, 1);
+		for (int i = 0; i < 100; i++) {
+			reqLogger.log("" + i, "s", "ip", "{}");
+		}
+		gate.countDown();
+		reqLogger.close();
+		/*
+		 * one entry may be held by the writer in addition to the 5 in the buffer
+		 */
+		assertTrue(writer.entries.size() <= 6);
+		assertEquals(100, writer.entries.size() + reqLogger.getNbrDropped());
+	}
+
+	private static class ListWriter implements IRequestLogWriter {
+		final List<RequestLogEntry> entries = new ArrayList<>();
+		final CountDownLatch gate;
+		int maxBatch;
+
+		ListWriter(CountDownLatch gate) {
+			this.gate = gate;
+		}
+
+		@Override
+		public void write(List<RequestLogEntry> batch) throws Exception {
+			if (this.gate != null) {
+				this.gate.await();
+			}
+			this.entries.addAll(batch);
+			this.maxBatch = Math.max(this.maxBatch, batch.size());
+		}
+
+		@Override
+		public void close() {
+			//
+		}
+	}
+}
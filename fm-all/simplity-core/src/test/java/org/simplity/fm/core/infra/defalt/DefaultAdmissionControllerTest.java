@@ -0,0 +1,55 @@
+package org.simplity.fm.core.infra.defalt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.simplity.fm.core.infra.IAdmissionController.IPermit;
+
+class DefaultAdmissionControllerTest {
+
+	@Test
+	void testServiceAndTenantLimits() {
+		DefaultAdmissionController ac = new DefaultAdmissionController(Collections.singletonMap("report", 1), 2,
+				null, 0);
+		IPermit p1 = ac.admit("report", 1L);
+		assertNotNull(p1);
+		assertNull(ac.admit("report", 2L));
+
+		/*
+		 * other services are limited only by the tenant
+		 */
+		IPermit p2 = ac.admit("get", 1L);
+		assertNotNull(p2);
+		assertNull(ac.admit("get", 1L));
+		assertNotNull(ac.admit("get", 2L));
+
+		p1.release();
+		assertNotNull(ac.admit("report", 2L));
+		assertEquals(2, ac.getNbrRejected());
+	}
+
+	@Test
+	void testAdaptiveLimit() throws InterruptedException {
+		AdaptiveLimiter limiter = new AdaptiveLimiter(10, 2, 20, 1000);
+		for (int i = 0; i < 100; i++) {
+			assertTrue(limiter.tryAcquire(0));
+			limiter.release(0);
+		}
+		int limit = limiter.getLimit();
+		assertTrue(limit > 10 && limit <= 20, "limit should have increased, but is " + limit);
+
+		/*
+		 * a burst of slow requests cuts the limit only once within the target latency
+		 */
+		for (int i = 0; i < 10; i++) {
+			assertTrue(limiter.tryAcquire(0));
+			limiter.release(2_000_000_000L);
+		}
+		assertEquals((int) (limit * 0.9), limiter.getLimit(), 1);
+	}
+}
@@ -0,0 +1,147 @@
+package org.simplity.fm.core.infra.defalt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+import org.simplity.fm.core.data.Field;
+import org.simplity.fm.core.data.Form;
+import org.simplity.fm.core.data.IoType;
+import org.simplity.fm.core.data.OverrideUtil;
+import org.simplity.fm.core.data.Record;
+import org.simplity.fm.core.infra.ICompIndex;
+import org.simplity.fm.core.service.IService;
+import org.simplity.fm.core.service.IServiceContext;
+import org.simplity.fm.core.validn.IValueList;
+
+class DefaultCompProviderTest {
+	private static final int NBR_CHILDREN = 40;
+
+	@Test
+	void testFormLoadingChildForms() {
+		TestIndex index = new TestIndex();
+		DefaultCompProvider provider = new DefaultCompProvider("org.simplity.fm.test", index);
+		index.provider = provider;
+		/*
+		 * parent loads its child forms while it is being created, like a generated
+		 * form does
+		 */
+		Form<?> parent = provider.getForm("parent");
+		assertNotNull(parent);
+		assertEquals("parent", parent.getName());
+		assertSame(parent, provider.getForm("parent"));
+		for (int i = 0; i < NBR_CHILDREN; i++) {
+			assertNotNull(provider.getForm("child" + i));
+		}
+		assertEquals(NBR_CHILDREN + 1, provider.getNbrLoads());
+
+		assertNull(provider.getForm("unknown"));
+	}
+
+	@Test
+	void testServicesWithOverrides() {
+		TestIndex index = new TestIndex();
+		DefaultCompProvider provider = new DefaultCompProvider("org.simplity.fm.test", index);
+		IServiceContext plain = newContext(null);
+		IServiceContext overridden = newContext("ovr1");
+
+		IService service = provider.getService("get_orders", plain);
+		IService overriddenService = provider.getService("get_orders", overridden);
+		assertNotNull(overriddenService);
+		assertNotSame(service, overriddenService, "service is cached by its name and the override id");
+		assertSame(overriddenService, provider.getService("get_orders", overridden));
+		Form<?> form = provider.getForm("orders", overridden);
+
+		// overrides are saved
+		OverrideUtil.invalidate("ovr1");
+		IService newService = provider.getService("get_orders", overridden);
+		assertNotSame(overriddenService, newService, "service built with an older version is discarded");
+		assertSame(newService, provider.getService("get_orders", overridden));
+		assertNotSame(form, provider.getForm("orders", overridden));
+		assertSame(service, provider.getService("get_orders", plain), "service without overrides is retained");
+	}
+
+	/*
+	 * context in which forms are overridden with this id
+	 */
+	private static IServiceContext newContext(final String overrideId) {
+		return (IServiceContext) Proxy.newProxyInstance(IServiceContext.class.getClassLoader(),
+				new Class<?>[] { IServiceContext.class }, (proxy, method, args) -> {
+					switch (method.getName()) {
+					case "getFormOverrideId":
+						return overrideId;
+					case "getRecordOverrideId":
+						return null;
+					default:
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+
+	private static class TestIndex implements ICompIndex {
+		DefaultCompProvider provider;
+		private final Map<String, Supplier<Form<?>>> forms = new HashMap<>();
+
+		TestIndex() {
+			this.forms.put("parent", () -> {
+				for (int i = 0; i < NBR_CHILDREN; i++) {
+					assertNotNull(this.provider.getForm("child" + i));
+				}
+				return new TestForm("parent");
+			});
+			for (int i = 0; i < NBR_CHILDREN; i++) {
+				final String name = "child" + i;
+				this.forms.put(name, () -> new TestForm(name));
+			}
+			this.forms.put("orders", () -> new TestForm("orders", allOperations()));
+		}
+
+		@Override
+		public Map<String, Supplier<Form<?>>> getForms() {
+			return this.forms;
+		}
+
+		@Override
+		public Map<String, Supplier<Record>> getRecords() {
+			return Collections.emptyMap();
+		}
+
+		@Override
+		public Map<String, Supplier<IValueList>> getLists() {
+			return Collections.emptyMap();
+		}
+	}
+
+	private static boolean[] allOperations() {
+		boolean[] operations = new boolean[IoType.values().length];
+		Arrays.fill(operations, true);
+		return operations;
+	}
+
+	private static class TestForm extends Form<Record> {
+		TestForm(final String name) {
+			this(name, new boolean[0]);
+		}
+
+		TestForm(final String name, final boolean[] operations) {
+			super(name, new Record(new Field[0], null) {
+				//
+			}, operations, null);
+		}
+
+		@Override
+		public void override(final IServiceContext ctx) {
+			// record has nothing to override
+		}
+	}
+}
@@ -0,0 +1,390 @@
+package org.simplity.fm.core.infra.defalt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.simplity.fm.core.Conventions;
+import org.simplity.fm.core.db.IDbDriver;
+import org.simplity.fm.core.db.IDbWriter;
+import org.simplity.fm.core.db.IReadWriteHandle;
+import org.simplity.fm.core.infra.ICheckpointStore;
+import org.simplity.fm.core.job.Checkpoint;
+import org.simplity.fm.core.job.IJobHandle;
+import org.simplity.fm.core.job.IJobProgressRecorder;
+import org.simplity.fm.core.job.IPartitionedTask;
+import org.simplity.fm.core.job.JobStatus;
+import org.simplity.fm.core.job.Partition;
+import org.simplity.fm.core.json.JsonUtil;
+import org.simplity.fm.core.service.AbstractService;
+import org.simplity.fm.core.service.IInputData;
+import org.simplity.fm.core.service.IService;
+import org.simplity.fm.core.service.IServiceContext;
+
+class DefaultJobManagerTest {
+
+	@Test
+	void testRunAndCancel() throws IOException, InterruptedException {
+		File folder = Files.createTempDirectory("jobs").toFile();
+		DefaultJobManager manager = new DefaultJobManager(1, 10, new DefaultTempFileManager(folder, 2, 1L << 20), 60);
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			IJobHandle first = manager.newJob(new BlockingService(release), JsonUtil.newInputData(), null, 0);
+			assertTrue(first.start());
+			assertFalse(first.start(), "a job can be started only once");
+
+			IJobHandle second = manager.newJob(new BlockingService(null), JsonUtil.newInputData(), null, 0);
+			assertTrue(second.start());
+			assertTrue(second.cancelJob(false), "a waiting job can be cancelled");
+			assertEquals(JobStatus.Cancelled, second.getStatus());
+
+			release.countDown();
+			waitFor(first);
+			assertEquals(JobStatus.Completed, first.getStatus());
+			assertEquals(100, first.getProgress().getPercentageCompleted());
+
+			StringWriter sw = new StringWriter();
+			assertTrue(first.copyOutput(sw));
+			IInputData output = JsonUtil.newInputData(new StringReader(sw.toString()));
+			assertEquals("done", output.getData("data").getString("result"));
+			assertTrue(first.writeOutput(new StringWriter()));
+			assertFalse(first.writeOutput(new StringWriter()), "output is deleted once it is written");
+		} finally {
+			manager.shutdown();
+		}
+	}
+
+	@Test
+	void testErrorAndWaitingLimit() throws IOException, InterruptedException {
+		File folder = Files.createTempDirectory("jobs").toFile();
+		DefaultJobManager manager = new DefaultJobManager(1, 1, new DefaultTempFileManager(folder, 2, 1L << 20), 60);
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			/*
+			 * an Error thrown by the service fails the job, and not the worker
+			 */
+			IJobHandle failing = manager.newJob(new FailingService(), JsonUtil.newInputData(), null, 0);
+			assertTrue(failing.start());
+			waitFor(failing);
+			assertEquals(JobStatus.Failed, failing.getStatus());
+
+			IJobHandle running = manager.newJob(new BlockingService(release), JsonUtil.newInputData(), null, 0);
+			assertTrue(running.start());
+			while (running.getStatus() == JobStatus.Waiting) {
+				Thread.sleep(1);
+			}
+
+			IJobHandle waiting = manager.newJob(new BlockingService(null), JsonUtil.newInputData(), null, 0);
+			assertTrue(waiting.start());
+			IJobHandle extra = manager.newJob(new BlockingService(null), JsonUtil.newInputData(), null, 0);
+			assertFalse(extra.start(), "only one job may wait");
+
+			/*
+			 * cancelled job no longer counts as waiting
+			 */
+			assertTrue(waiting.cancelJob(false));
+			assertEquals(0, manager.getNbrWaiting());
+			assertTrue(extra.start());
+
+			release.countDown();
+			waitFor(running);
+			waitFor(extra);
+			assertEquals(JobStatus.Completed, running.getStatus());
+			assertEquals(JobStatus.Completed, extra.getStatus());
+		} finally {
+			manager.shutdown();
+		}
+	}
+
+	@Test
+	void testResumeInterruptedJobs() throws IOException, InterruptedException, SQLException {
+		/*
+		 * a job of each kind was left behind by a node that is gone
+		 */
+		ClusterStore cluster = new ClusterStore();
+		cluster.liveNodes.add("n1");
+		cluster.liveNodes.add("n2");
+		NodeStore deadNode = new NodeStore(cluster, "n0");
+		deadNode.save(Checkpoint.forJob("j1", "resumable", JsonUtil.newInputData(), null));
+		deadNode.save(Checkpoint.forJob("j2", "blocking", JsonUtil.newInputData(), null).withStatus(JobStatus.Running));
+		// uploads run by the jobs
+		deadNode.save(Checkpoint.forUpload(Checkpoint.getUploadId("j1", 1)));
+		deadNode.save(Checkpoint.forUpload(Checkpoint.getUploadId("j1", 2)));
+		deadNode.save(Checkpoint.forUpload(Checkpoint.getUploadId("j2", 1)));
+		ResumableService resumable = new ResumableService();
+		Map<String, IService> services = new HashMap<>();
+		services.put("resumable", resumable);
+		services.put("blocking", new BlockingService(null));
+
+		File folder = Files.createTempDirectory("jobs").toFile();
+		DefaultTempFileManager files = new DefaultTempFileManager(folder, 2, 1L << 20);
+		DefaultJobManager m1 = new DefaultJobManager(1, 10, files, 60, new NodeStore(cluster, "n1"));
+		DefaultJobManager m2 = new DefaultJobManager(1, 10, files, 60, new NodeStore(cluster, "n2"));
+		try {
+			assertEquals(1, m1.resumeInterruptedJobs(services::get), "only the resumable job is resumed");
+			assertNull(cluster.checkpoints.get("j2"), "job of a service that is not resumable is abandoned");
+			assertNull(cluster.checkpoints.get(Checkpoint.getUploadId("j2", 1)), "along with its uploads");
+			assertEquals(0, m2.resumeInterruptedJobs(services::get), "job claimed by another node is not resumed");
+
+			IJobHandle job = m1.getJob("j1");
+			waitFor(job);
+			assertEquals(JobStatus.Completed, job.getStatus());
+			assertNull(m2.getJob("j1"));
+			assertEquals(1, resumable.nbrRuns.get());
+			assertTrue(cluster.checkpoints.isEmpty(), "checkpoints of the job and its uploads are removed once it is done");
+		} finally {
+			m1.shutdown();
+			m2.shutdown();
+		}
+	}
+
+	@Test
+	void testPartitionedJobWithoutUser() throws IOException, InterruptedException {
+		File folder = Files.createTempDirectory("jobs").toFile();
+		DefaultJobManager manager = new DefaultJobManager(1, 10, new DefaultTempFileManager(folder, 2, 1L << 20), 60,
+				null, newDriver());
+		try {
+			CountingTask task = new CountingTask(3);
+			IJobHandle job = manager.newPartitionedJob(task, JsonUtil.newInputData(), null, 2, true);
+			assertTrue(job.start());
+			waitFor(job);
+			assertEquals(JobStatus.Completed, job.getStatus());
+			assertEquals(3, task.nbrProcessed.get());
+			assertEquals(0, task.nbrWithUser.get(), "partitions are processed without a user");
+		} finally {
+			manager.shutdown();
+		}
+	}
+
+	/*
+	 * driver that hands over a handle that is not to be used
+	 */
+	private static IDbDriver newDriver() {
+		return (IDbDriver) Proxy.newProxyInstance(IDbDriver.class.getClassLoader(), new Class<?>[] { IDbDriver.class },
+				(proxy, method, args) -> {
+					if (method.getName().equals("doReadWriteOperations") && args.length == 1) {
+						return ((IDbWriter) args[0]).readWrite(null);
+					}
+					throw new UnsupportedOperationException(method.getName());
+				});
+	}
+
+	@Test
+	void testShutdownStopsLeaseWatcher() throws IOException, InterruptedException {
+		File folder = Files.createTempDirectory("jobs").toFile();
+		DefaultTempFileManager files = new DefaultTempFileManager(folder, 2, 1L << 20);
+		Set<Thread> before = getLeaseWatchers();
+		DefaultJobManager defunct = new DefaultJobManager(1, 10, files, 60, new DefunctCheckpointStore());
+		assertEquals(before, getLeaseWatchers(), "leases are not watched for a defunct store");
+		defunct.shutdown();
+
+		DefaultJobManager manager = new DefaultJobManager(1, 10, files, 60, new NodeStore(new ClusterStore(), "n1"));
+		Set<Thread> started = getLeaseWatchers();
+		started.removeAll(before);
+		assertEquals(1, started.size());
+		manager.shutdown();
+		Thread watcher = started.iterator().next();
+		watcher.join(2000);
+		assertFalse(watcher.isAlive(), "lease watcher is stopped without waiting for its next renewal");
+	}
+
+	private static Set<Thread> getLeaseWatchers() {
+		Set<Thread> threads = new HashSet<>();
+		for (Thread t : Thread.getAllStackTraces().keySet()) {
+			if (t.getName().equals("job-leases") && t.isAlive()) {
+				threads.add(t);
+			}
+		}
+		return threads;
+	}
+
+	private static void waitFor(IJobHandle job) throws InterruptedException {
+		for (int i = 0; i < 500; i++) {
+			JobStatus status = job.getStatus();
+			if (status != JobStatus.Waiting && status != JobStatus.Running) {
+				return;
+			}
+			Thread.sleep(10);
+		}
+	}
+
+	/*
+	 * checkpoints shared by the nodes of a cluster. Lease of a node that is not
+	 * live is taken to have expired
+	 */
+	private static class ClusterStore {
+		final Map<String, Checkpoint> checkpoints = new ConcurrentHashMap<>();
+		final Map<String, String> owners = new ConcurrentHashMap<>();
+		final Set<String> liveNodes = ConcurrentHashMap.newKeySet();
+	}
+
+	private static class NodeStore implements ICheckpointStore {
+		private final ClusterStore cluster;
+		private final String nodeId;
+
+		NodeStore(ClusterStore cluster, String nodeId) {
+			this.cluster = cluster;
+			this.nodeId = nodeId;
+		}
+
+		@Override
+		public void save(Checkpoint checkpoint) {
+			synchronized (this.cluster) {
+				this.cluster.checkpoints.put(checkpoint.id, checkpoint);
+				this.cluster.owners.put(checkpoint.id, this.nodeId);
+			}
+		}
+
+		@Override
+		public void save(Checkpoint checkpoint, IReadWriteHandle handle) {
+			this.save(checkpoint);
+		}
+
+		@Override
+		public Checkpoint get(String id) {
+			return this.cluster.checkpoints.get(id);
+		}
+
+		@Override
+		public void remove(String id) {
+			synchronized (this.cluster) {
+				this.cluster.checkpoints.remove(id);
+				this.cluster.owners.remove(id);
+			}
+		}
+
+		@Override
+		public List<Checkpoint> getInterruptedJobs() {
+			List<Checkpoint> list = new ArrayList<>();
+			for (Checkpoint cp : this.cluster.checkpoints.values()) {
+				if (isActive(cp) && this.isFree(cp.id)) {
+					list.add(cp);
+				}
+			}
+			return list;
+		}
+
+		@Override
+		public boolean claim(String id) {
+			synchronized (this.cluster) {
+				Checkpoint cp = this.cluster.checkpoints.get(id);
+				if (cp == null || !isActive(cp) || !this.isFree(id)) {
+					return false;
+				}
+				this.cluster.owners.put(id, this.nodeId);
+				return true;
+			}
+		}
+
+		@Override
+		public void renewLeases() {
+			//
+		}
+
+		private boolean isFree(String id) {
+			String owner = this.cluster.owners.get(id);
+			return owner == null || owner.equals(this.nodeId) || !this.cluster.liveNodes.contains(owner);
+		}
+
+		private static boolean isActive(Checkpoint cp) {
+			return cp.status == JobStatus.Waiting || cp.status == JobStatus.Running;
+		}
+	}
+
+	private static class ResumableService extends AbstractService {
+		final AtomicInteger nbrRuns = new AtomicInteger();
+
+		ResumableService() {
+			super("resumable");
+		}
+
+		@Override
+		public boolean isResumable() {
+			return true;
+		}
+
+		@Override
+		public void serve(IServiceContext ctx, IInputData inputData) throws Exception {
+			this.nbrRuns.incrementAndGet();
+		}
+	}
+
+	private static class FailingService extends AbstractService {
+		FailingService() {
+			super("failing");
+		}
+
+		@Override
+		public void serve(IServiceContext ctx, IInputData inputData) throws Exception {
+			throw new AssertionError("failed as designed");
+		}
+	}
+
+	private static class BlockingService extends AbstractService {
+		private final CountDownLatch release;
+
+		BlockingService(CountDownLatch release) {
+			super("blocking");
+			this.release = release;
+		}
+
+		@Override
+		public void serve(IServiceContext ctx, IInputData inputData) throws Exception {
+			if (this.release != null) {
+				this.release.await();
+			}
+			IJobProgressRecorder progress = (IJobProgressRecorder) ctx.getValue(Conventions.App.JOB_PROGRESS_IN_CTX);
+			progress.setPercentageCompleted(100);
+			ctx.getOutputData().addName("result").addValue("done");
+		}
+	}
+
+	private static class CountingTask implements IPartitionedTask {
+		final int nbrPartitions;
+		final AtomicInteger nbrProcessed = new AtomicInteger();
+		final AtomicInteger nbrWithUser = new AtomicInteger();
+
+		CountingTask(int nbrPartitions) {
+			this.nbrPartitions = nbrPartitions;
+		}
+
+		@Override
+		public String getName() {
+			return "counting";
+		}
+
+		@Override
+		public Partition[] getPartitions(IInputData inputData, IServiceContext ctx) {
+			return Partition.byKeyRange("id", 1, this.nbrPartitions, this.nbrPartitions);
+		}
+
+		@Override
+		public boolean process(Partition partition, IReadWriteHandle handle, IInputData inputData,
+				IServiceContext ctx, IJobProgressRecorder progress) {
+			if (ctx.hasUserContext()) {
+				this.nbrWithUser.incrementAndGet();
+			}
+			this.nbrProcessed.incrementAndGet();
+			return true;
+		}
+	}
+}
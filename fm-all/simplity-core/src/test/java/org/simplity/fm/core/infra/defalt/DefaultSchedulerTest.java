@@ -0,0 +1,99 @@
+package org.simplity.fm.core.infra.defalt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.simplity.fm.core.job.MissedFirePolicy;
+import org.simplity.fm.core.job.Trigger;
+import org.simplity.fm.core.json.JsonUtil;
+import org.simplity.fm.core.service.AbstractService;
+import org.simplity.fm.core.service.IInputData;
+import org.simplity.fm.core.service.IServiceContext;
+
+class DefaultSchedulerTest {
+
+	@Test
+	void testFixedRateWithOverlap() throws IOException, InterruptedException {
+		File folder = Files.createTempDirectory("jobs").toFile();
+		DefaultJobManager jobs = new DefaultJobManager(2, 10, new DefaultTempFileManager(folder, 2, 1L << 20), 60);
+		DefaultScheduler scheduler = new DefaultScheduler(jobs, 5, 8, 1000);
+		CountDownLatch runs = new CountDownLatch(3);
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			String fast = scheduler.schedule(new CountingService(runs, null), JsonUtil.newInputData(), null,
+					Trigger.fixedRate(20), MissedFirePolicy.FireOnce);
+			String slow = scheduler.schedule(new CountingService(null, release), JsonUtil.newInputData(), null,
+					Trigger.fixedRate(20), MissedFirePolicy.FireOnce);
+
+			assertTrue(runs.await(5, TimeUnit.SECONDS), "fixed rate trigger should fire repeatedly");
+			/*
+			 * a fire is counted after the job is handed over, and hence the last one may
+			 * not have been counted yet
+			 */
+			assertTrue(scheduler.getNbrFired(fast) >= 2);
+			/*
+			 * slow one is still running its first fire
+			 */
+			assertTrue(scheduler.getNbrOverlapped(slow) > 0);
+			assertTrue(scheduler.unschedule(fast));
+		} finally {
+			release.countDown();
+			scheduler.shutdown();
+			jobs.shutdown();
+		}
+	}
+
+	@Test
+	void testPeriodEqualToWheelSpan() throws IOException, InterruptedException {
+		File folder = Files.createTempDirectory("jobs").toFile();
+		DefaultJobManager jobs = new DefaultJobManager(2, 10, new DefaultTempFileManager(folder, 2, 1L << 20), 60);
+		/*
+		 * 4 buckets of 10ms each, and the trigger is due every 40ms: it is always due
+		 * in the bucket in which it last fired
+		 */
+		DefaultScheduler scheduler = new DefaultScheduler(jobs, 10, 4, 1000);
+		try {
+			final long start = System.currentTimeMillis();
+			String id = scheduler.schedule(new CountingService(null, null), JsonUtil.newInputData(), null,
+					Trigger.fixedRate(40), MissedFirePolicy.FireOnce);
+			Thread.sleep(420);
+			final long nbrFired = scheduler.getNbrFired(id);
+			final long elapsed = System.currentTimeMillis() - start;
+			assertTrue(nbrFired >= 5, "trigger should fire about once in 40ms. It fired " + nbrFired + " times");
+			assertTrue(nbrFired <= elapsed / 40 + 1,
+					"trigger should not fire more than once in 40ms. It fired " + nbrFired + " times in " + elapsed);
+			assertEquals(0, scheduler.getNbrOverlapped(id));
+		} finally {
+			scheduler.shutdown();
+			jobs.shutdown();
+		}
+	}
+
+	private static class CountingService extends AbstractService {
+		private final CountDownLatch runs;
+		private final CountDownLatch release;
+
+		CountingService(CountDownLatch runs, CountDownLatch release) {
+			super("counting");
+			this.runs = runs;
+			this.release = release;
+		}
+
+		@Override
+		public void serve(IServiceContext ctx, IInputData inputData) throws Exception {
+			if (this.release != null) {
+				this.release.await();
+			}
+			if (this.runs != null) {
+				this.runs.countDown();
+			}
+		}
+	}
+}
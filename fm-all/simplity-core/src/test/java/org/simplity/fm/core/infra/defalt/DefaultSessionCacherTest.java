@@ -0,0 +1,56 @@
+package org.simplity.fm.core.infra.defalt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+import org.simplity.fm.core.UserContext;
+
+class DefaultSessionCacherTest {
+
+	@Test
+	void testEvictsLeastRecentlyUsed() {
+		/*
+		 * 16 stripes with one entry each
+		 */
+		DefaultSessionCacher cache = new DefaultSessionCacher(0, 0, 16);
+		for (int i = 0; i < 1000; i++) {
+			cache.put("s" + i, new UserContext(i));
+		}
+		assertEquals(16, cache.getNbrSessions());
+		assertEquals(1000 - 16, cache.getNbrEvictions());
+		assertNotNull(cache.get("s999"));
+		assertNull(cache.get("s0"));
+		assertEquals(1, cache.getNbrHits());
+		assertEquals(1, cache.getNbrMisses());
+		cache.shutdown();
+	}
+
+	@Test
+	void testExpiry() throws InterruptedException {
+		DefaultSessionCacher cache = new DefaultSessionCacher(1, 0, 100);
+		cache.put("a", new UserContext(1));
+		cache.put("b", new UserContext(2));
+		assertNotNull(cache.get("a"));
+		Thread.sleep(1100);
+		assertNull(cache.get("a"));
+		cache.reap();
+		assertEquals(0, cache.getNbrSessions());
+		assertEquals(2, cache.getNbrExpirations());
+		cache.shutdown();
+	}
+
+	@Test
+	void testMaxLifeOfModifiedSession() throws InterruptedException {
+		DefaultSessionCacher cache = new DefaultSessionCacher(0, 1, 100);
+		UserContext utx = new UserContext(1);
+		cache.put("a", utx);
+		Thread.sleep(600);
+		// put back after being modified
+		cache.put("a", utx);
+		Thread.sleep(600);
+		assertNull(cache.get("a"), "max-life is from when the session was first put");
+		cache.shutdown();
+	}
+}
@@ -0,0 +1,155 @@
+package org.simplity.fm.core.infra.defalt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+class DefaultTempFileManagerTest {
+	private static final String TEXT = "{\"name\":\"हिन्दी\"}";
+
+	@Test
+	void testRoundTrip() throws IOException {
+		File folder = Files.createTempDirectory("files").toFile();
+		DefaultTempFileManager files = new DefaultTempFileManager(folder, 2, 1L << 20);
+		assertTrue(files.newFile("a.json", writer -> write(writer, TEXT)));
+		assertTrue(files.fileExists("a.json"));
+		int nbrBytes = TEXT.getBytes(StandardCharsets.UTF_8).length;
+		assertEquals(nbrBytes, files.getTotalBytes());
+
+		StringBuilder sbf = new StringBuilder();
+		assertTrue(files.readFile("a.json", reader -> {
+			try {
+				int c;
+				while ((c = reader.read()) != -1) {
+					sbf.append((char) c);
+				}
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}, false));
+		assertEquals(TEXT, sbf.toString());
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertEquals(nbrBytes, files.transferTo("a.json", Channels.newChannel(out), true));
+		assertEquals(TEXT, new String(out.toByteArray(), StandardCharsets.UTF_8));
+		assertFalse(files.fileExists("a.json"), "file is removed after transfer");
+		assertEquals(0, files.getTotalBytes());
+
+		assertFalse(files.newFile("b.json", writer -> false), "writer may abandon the file");
+		assertFalse(files.fileExists("b.json"));
+	}
+
+	@Test
+	void testQuota() throws IOException {
+		File folder = Files.createTempDirectory("files").toFile();
+		DefaultTempFileManager files = new DefaultTempFileManager(folder, 2, 1000);
+		String text = new String(new char[400]).replace('\0', 'x');
+		for (int i = 0; i < 4; i++) {
+			assertTrue(files.newFile("f" + i, writer -> write(writer, text)));
+		}
+		assertEquals(800, files.getTotalBytes());
+		assertTrue(files.fileExists("f3"), "latest file is retained");
+	}
+
+	@Test
+	void testPinnedFilesAreNotEvicted() throws IOException {
+		File folder = Files.createTempDirectory("files").toFile();
+		DefaultTempFileManager files = new DefaultTempFileManager(folder, 2, 1000);
+		String text = new String(new char[400]).replace('\0', 'x');
+		files.pinFile("p0");
+		assertTrue(files.newFile("p0", writer -> write(writer, text)));
+		for (int i = 1; i < 4; i++) {
+			assertTrue(files.newFile("f" + i, writer -> write(writer, text)));
+		}
+		assertTrue(files.fileExists("p0"), "pinned file is not removed for the quota");
+		assertFalse(files.fileExists("f1"), "oldest un-pinned file is removed");
+		assertEquals(800, files.getTotalBytes());
+
+		files.removeFile("p0");
+		files.removeFile("f3");
+		assertTrue(files.newFile("p0", writer -> write(writer, text)));
+		assertTrue(files.newFile("f4", writer -> write(writer, text + text)));
+		assertFalse(files.fileExists("p0"), "pin is released once the file is removed");
+	}
+
+	@Test
+	void testDefaultFolderIsPerInstance() {
+		DefaultTempFileManager files1 = new DefaultTempFileManager();
+		DefaultTempFileManager files2 = new DefaultTempFileManager();
+		assertTrue(files1.newFile("a.json", writer -> write(writer, TEXT)));
+		assertFalse(files2.fileExists("a.json"), "files of another instance are not visible");
+		assertEquals(0, files2.getTotalBytes());
+		files1.removeFile("a.json");
+		files2.shutdown();
+
+		assertTrue(files1.newFile("b.json", writer -> write(writer, TEXT)));
+		files1.shutdown();
+		assertFalse(files1.fileExists("b.json"), "folder of the instance is removed on shutdown");
+		assertEquals(0, files1.getTotalBytes());
+	}
+
+	@Test
+	void testSuppliedFolderIsRetained() throws IOException {
+		File folder = Files.createTempDirectory("files").toFile();
+		DefaultTempFileManager files = new DefaultTempFileManager(folder, 2, 1L << 20);
+		assertTrue(files.newFile("a.json", writer -> write(writer, TEXT)));
+		files.shutdown();
+
+		files = new DefaultTempFileManager(folder, 2, 1L << 20);
+		assertTrue(files.fileExists("a.json"), "files in a folder of the caller survive a restart");
+		files.removeFile("a.json");
+	}
+
+	@Test
+	void testTransferToStalledChannel() throws IOException {
+		File folder = Files.createTempDirectory("files").toFile();
+		DefaultTempFileManager files = new DefaultTempFileManager(folder, 2, 1L << 20);
+		assertTrue(files.newFile("a.json", writer -> write(writer, TEXT)));
+		/*
+		 * a non-blocking channel that is full
+		 */
+		WritableByteChannel stalled = new WritableByteChannel() {
+			@Override
+			public boolean isOpen() {
+				return true;
+			}
+
+			@Override
+			public void close() {
+				//
+			}
+
+			@Override
+			public int write(ByteBuffer src) {
+				return 0;
+			}
+		};
+		long nbrBytes = assertTimeoutPreemptively(Duration.ofSeconds(5),
+				() -> files.transferTo("a.json", stalled, true), "transfer does not spin on a stalled channel");
+		assertEquals(-1, nbrBytes);
+		assertTrue(files.fileExists("a.json"), "file is not removed if it is not transferred");
+	}
+
+	private static boolean write(Writer writer, String text) {
+		try {
+			writer.write(text);
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,38 @@
+package org.simplity.fm.core.infra.defalt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+	@Test
+	void testPercentilesWithinPrecision() {
+		LatencyHistogram hist = new LatencyHistogram();
+		for (int i = 1; i <= 10000; i++) {
+			hist.record(i);
+		}
+		assertEquals(10000, hist.getCount());
+		assertEquals(10000, hist.getMax());
+		assertEquals(5000.5, hist.getMean(), 0.001);
+		assertClose(5000, hist.getValueAtPercentile(50));
+		assertClose(9900, hist.getValueAtPercentile(99));
+		assertEquals(10000, hist.getValueAtPercentile(100));
+	}
+
+	@Test
+	void testBucketBoundaries() {
+		for (long v : new long[] { 0, 1, 31, 32, 33, 63, 64, 1000, 123456789L }) {
+			int idx = LatencyHistogram.toIndex(v);
+			assertTrue(LatencyHistogram.highestValueAt(idx) >= v);
+			if (idx > 0) {
+				assertTrue(LatencyHistogram.highestValueAt(idx - 1) < v);
+			}
+		}
+	}
+
+	private static void assertClose(long expected, long actual) {
+		assertTrue(Math.abs(expected - actual) <= expected / 32, "expected " + expected + " but got " + actual);
+	}
+}
@@ -0,0 +1,96 @@
+package org.simplity.fm.core.infra.defalt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+import org.simplity.fm.core.UserContext;
+
+class MappedFileSessionStoreTest {
+
+	@Test
+	void testSharedSessions() throws IOException {
+		File file = File.createTempFile("sessions", ".dat");
+		file.deleteOnExit();
+		/*
+		 * two caches on the same store stand for two nodes
+		 */
+		MappedFileSessionStore store = new MappedFileSessionStore(file, 64, 256);
+		StoreBackedSessionCache node1 = new StoreBackedSessionCache(store, 600, 3600, 30);
+		StoreBackedSessionCache node2 = new StoreBackedSessionCache(store, 600, 3600, 30);
+
+		UserContext utx = new UserContext(23);
+		utx.setTenantId(7L);
+		node1.put("s1", utx);
+
+		UserContext copy = node2.get("s1");
+		assertNotNull(copy);
+		assertEquals(23, copy.getUserId());
+		assertEquals(7L, copy.getTenantId());
+
+		/*
+		 * modification is saved back to the store
+		 */
+		utx.addJob("job1");
+		assertTrue(utx.checkAndResetModified());
+		assertFalse(utx.checkAndResetModified());
+		node1.put("s1", utx);
+		copy = new StoreBackedSessionCache(store, 600, 3600, 30).get("s1");
+		assertNotNull(copy);
+		copy.removeJob("job1");
+		assertTrue(copy.checkAndResetModified(), "job1 should have been saved with the session");
+
+		node1.remove("s1");
+		assertNull(store.load("s1"));
+
+		for (int i = 0; i < 64; i++) {
+			store.save("id" + i, new byte[10], System.currentTimeMillis() + 60000);
+		}
+		store.close();
+
+		/*
+		 * sessions survive a restart
+		 */
+		store = new MappedFileSessionStore(file, 64, 256);
+		assertEquals(10, store.load("id63").length);
+
+		/*
+		 * an expired session is not returned, and its slot is re-used
+		 */
+		store.save("id0", new byte[10], System.currentTimeMillis() - 1);
+		assertNull(store.load("id0"));
+		store.save("new", new byte[5], System.currentTimeMillis() + 60000);
+		assertEquals(5, store.load("new").length);
+		store.close();
+	}
+
+	@Test
+	void testSerialization() throws IOException {
+		UserContext utx = new UserContext(5);
+		utx.setTenantId(7);
+		UserContext copy = UserContext.fromBytes(UserContext.toBytes(utx));
+		assertNotNull(copy);
+		assertEquals(Integer.valueOf(7), copy.getTenantId());
+
+		utx.setTenantId("t1");
+		assertEquals("t1", UserContext.fromBytes(UserContext.toBytes(utx)).getTenantId());
+
+		/*
+		 * class named in the stored data must be a UserContext
+		 */
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeUTF(StringBuilder.class.getName());
+			out.writeLong(5);
+		}
+		assertNull(UserContext.fromBytes(bytes.toByteArray()));
+	}
+}
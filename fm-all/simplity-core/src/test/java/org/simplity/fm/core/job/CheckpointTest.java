@@ -0,0 +1,53 @@
+package org.simplity.fm.core.job;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.simplity.fm.core.Message;
+import org.simplity.fm.core.MessageType;
+
+class CheckpointTest {
+
+	@Test
+	void testMessagesRoundTrip() {
+		Message[] msgs = { Message.newObjectFieldError("code", "items", "invalidCode", 12, "a", "b"),
+				Message.newMessage(MessageType.Warning, "slow"), Message.newFieldError("name", "required") };
+		Message[] copies = Checkpoint.messagesFromJson(Checkpoint.messagesToJson(msgs));
+		assertEquals(msgs.length, copies.length);
+
+		assertEquals(MessageType.Error, copies[0].messageType);
+		assertEquals("invalidCode", copies[0].messageId);
+		assertEquals("code", copies[0].fieldName);
+		assertEquals("items", copies[0].objectName);
+		assertEquals(12, copies[0].rowNumber);
+		assertArrayEquals(new String[] { "a", "b" }, copies[0].params);
+
+		assertEquals(MessageType.Warning, copies[1].messageType);
+		assertEquals(-1, copies[1].rowNumber);
+		assertNull(copies[1].fieldName);
+		assertEquals("name", copies[2].fieldName);
+
+		assertEquals(0, Checkpoint.messagesFromJson(null).length);
+		assertEquals(0, Checkpoint.messagesFromJson(Checkpoint.messagesToJson(new Message[0])).length);
+	}
+
+	@Test
+	void testProgress() {
+		Checkpoint cp = Checkpoint.forUpload("u1");
+		assertEquals(false, cp.isJob());
+		assertNull(cp.getInputData());
+		assertNull(cp.getUserContext());
+
+		Message[] msgs = { Message.newError("e1") };
+		Checkpoint next = cp.withProgress(500, 1, 2, msgs).withStatus(JobStatus.Running);
+		assertEquals("u1", next.id);
+		assertEquals(500, next.nbrRowsDone);
+		assertEquals(1, next.nbrErrors);
+		assertEquals(2, next.nbrCommits);
+		assertTrue(next.messages == msgs);
+		assertEquals(0, cp.nbrRowsDone);
+	}
+}
@@ -0,0 +1,58 @@
+package org.simplity.fm.core.job;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.simplity.fm.core.Conventions;
+import org.simplity.fm.core.filter.FilterCondition;
+import org.simplity.fm.core.filter.FilterParams;
+
+class PartitionTest {
+
+	@Test
+	void testKeyRange() {
+		Partition[] parts = Partition.byKeyRange("studentId", 1, 10, 3);
+		assertEquals(3, parts.length);
+		long next = 1;
+		for (int i = 0; i < parts.length; i++) {
+			Partition p = parts[i];
+			assertEquals(i, p.index);
+			assertTrue(p.isKeyRange());
+			assertEquals(next, p.fromKey);
+			FilterCondition cond = p.filterParams.filters[0];
+			assertEquals("studentId", cond.field);
+			assertEquals(Conventions.Filter.BETWEEN, cond.comparator);
+			assertEquals(Long.toString(p.fromKey), cond.value);
+			assertEquals(Long.toString(p.toKey), cond.toValue);
+			next = p.toKey + 1;
+		}
+		assertEquals(11, next, "all keys are covered without overlaps");
+		assertEquals(4, parts[0].toKey - parts[0].fromKey + 1);
+
+		assertEquals(2, Partition.byKeyRange("id", 5, 6, 8).length, "no more partitions than keys");
+		assertEquals(1, Partition.byKeyRange("id", 5, 5, 0).length);
+	}
+
+	@Test
+	void testFilters() {
+		FilterParams base = new FilterParams();
+		base.maxRows = 100;
+		base.filters = new FilterCondition[] { new FilterCondition("year", Conventions.Filter.EQ, "2024", null) };
+		FilterCondition[] splits = { new FilterCondition("dept", Conventions.Filter.EQ, "a", null),
+				new FilterCondition("dept", Conventions.Filter.EQ, "b", null) };
+
+		Partition[] parts = Partition.byFilters(base, splits);
+		assertEquals(2, parts.length);
+		for (int i = 0; i < parts.length; i++) {
+			Partition p = parts[i];
+			assertFalse(p.isKeyRange());
+			assertEquals(100, p.filterParams.maxRows);
+			assertEquals(2, p.filterParams.filters.length);
+			assertEquals("year", p.filterParams.filters[0].field);
+			assertEquals(splits[i], p.filterParams.filters[1]);
+		}
+		assertEquals(1, base.filters.length, "base filter is not altered");
+	}
+}
@@ -0,0 +1,50 @@
+package org.simplity.fm.core.job;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.Test;
+import org.simplity.fm.core.ApplicationError;
+
+class TriggerTest {
+	private static final ZoneId UTC = ZoneOffset.UTC;
+
+	@Test
+	void testCron() {
+		// 2024-01-01 is a Monday
+		long t = toMillis("2024-01-01T10:07:30");
+		assertEquals(toMillis("2024-01-01T10:15:00"), Trigger.cron("*/15 * * * *", UTC).nextFireAfter(t));
+		assertEquals(toMillis("2024-01-02T02:30:00"), Trigger.cron("30 2 * * *", UTC).nextFireAfter(t));
+		assertEquals(toMillis("2024-01-06T00:00:00"), Trigger.cron("0 0 * * 6,7", UTC).nextFireAfter(t));
+		assertEquals(toMillis("2024-02-29T09:00:00"), Trigger.cron("0 9 29 2 *", UTC).nextFireAfter(t));
+		/*
+		 * either of the day fields may match when both are restricted
+		 */
+		assertEquals(toMillis("2024-01-05T00:00:00"), Trigger.cron("0 0 15 * 5", UTC).nextFireAfter(t));
+		assertEquals(Trigger.NEVER, Trigger.cron("0 0 30 2 *", UTC).nextFireAfter(t));
+	}
+
+	@Test
+	void testInvalidCron() {
+		assertThrows(ApplicationError.class, () -> Trigger.cron("* * * *"));
+		assertThrows(ApplicationError.class, () -> Trigger.cron("60 * * * *"));
+		assertThrows(ApplicationError.class, () -> Trigger.cron("a * * * *"));
+	}
+
+	@Test
+	void testFixedRate() {
+		Trigger trigger = new FixedRateTrigger(1000, 100);
+		assertEquals(1100, trigger.nextFireAfter(1000));
+		assertEquals(1100, trigger.nextFireAfter(1099));
+		// does not drift even if the earlier fire was late
+		assertEquals(1400, trigger.nextFireAfter(1350));
+	}
+
+	private static long toMillis(String dateTime) {
+		return LocalDateTime.parse(dateTime).atZone(UTC).toInstant().toEpochMilli();
+	}
+}
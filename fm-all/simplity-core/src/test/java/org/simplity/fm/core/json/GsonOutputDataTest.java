@@ -0,0 +1,33 @@
+package org.simplity.fm.core.json;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.simplity.fm.core.service.IOutputData;
+
+class GsonOutputDataTest {
+	private static final String[] NAMES = { "id", "name" };
+	private static final List<Object[]> ROWS = Arrays.asList(new Object[] { 1L, "a" }, new Object[] { 2L, null });
+
+	@Test
+	void testArrayOfObjects() {
+		assertEquals("{\"list\":[{\"id\":1,\"name\":\"a\"},{\"id\":2,\"name\":\"\"}]}", write(false));
+	}
+
+	@Test
+	void testCompactArray() {
+		assertEquals("{\"list\":{\"columns\":[\"id\",\"name\"],\"rows\":[[1,\"a\"],[2,\"\"]]}}", write(true));
+	}
+
+	private static String write(boolean compact) {
+		StringWriter sw = new StringWriter();
+		IOutputData outData = JsonUtil.newOutputData(sw);
+		outData.setCompactArrays(compact);
+		outData.beginObject().addArray("list", NAMES, ROWS).endObject();
+		return sw.toString();
+	}
+}
@@ -0,0 +1,63 @@
+package org.simplity.fm.core.upload;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class DelimitedRowReaderTest {
+
+	@Test
+	void testCsv() {
+		String text = "id,name,remarks\r\n" //
+				+ "1,ant,\"small, \"\"red\"\" one\"\r\n" //
+				+ "\n" //
+				+ "2,bee,\"multi\nline\"\n" //
+				+ "3,cat,\n" //
+				+ "4,देवनागरी";
+		/*
+		 * tiny buffer to have rows span across reads and the buffer grow
+		 */
+		DelimitedRowReader reader = new DelimitedRowReader(
+				Channels.newChannel(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))),
+				DelimitedRowReader.CSV, true, 16);
+
+		DelimitedRow row = reader.nextRow(null);
+		assertEquals(3, row.getNbrColumns());
+		assertEquals("1", row.getValue("a"));
+		assertEquals("small, \"red\" one", row.getValue("c"));
+		IUploadRow first = row.copy();
+
+		row = reader.nextRow(null);
+		assertEquals("bee", row.getValue(1));
+		assertEquals("multi\nline", row.getValue("c"));
+		row.setValue("id", "22");
+		assertEquals("22", row.getValue("id"));
+
+		row = reader.nextRow(null);
+		assertEquals("", row.getValue("c"));
+		assertNull(row.getValue("d"));
+		assertNull(row.getValue("id"), "values set for a row are not carried to the next row");
+
+		row = reader.nextRow(null);
+		assertEquals(2, row.getNbrColumns());
+		assertEquals("देवनागरी", row.getValue("b"));
+		assertNull(reader.nextRow(null));
+
+		assertEquals("ant", first.getValue("b"), "copy is not affected by the reader moving on");
+	}
+
+	@Test
+	void testColumnNames() {
+		assertEquals(0, DelimitedRow.toColumnIndex("a"));
+		assertEquals(25, DelimitedRow.toColumnIndex("z"));
+		assertEquals(26, DelimitedRow.toColumnIndex("aa"));
+		assertEquals(27, DelimitedRow.toColumnIndex("ab"));
+		assertEquals(-1, DelimitedRow.toColumnIndex("a1"));
+		assertEquals(-1, DelimitedRow.toColumnIndex("Name"));
+	}
+}
@@ -0,0 +1,43 @@
+package org.simplity.fm.core.upload;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class LookupTableTest {
+
+	@Test
+	void testSimpleList() {
+		Map<String, String> map = new HashMap<>();
+		for (int i = 0; i < 1000; i++) {
+			map.put("text" + i, "v" + i);
+		}
+		LookupTable table = new LookupTable(map);
+		assertEquals(1000, table.size());
+		for (int i = 0; i < 1000; i++) {
+			assertEquals("v" + i, table.get("text" + i));
+		}
+		assertNull(table.get("text1000"));
+		assertNull(table.get(null));
+		assertNull(new LookupTable(new HashMap<>()).get("a"));
+	}
+
+	@Test
+	void testKeyedList() {
+		Map<String, String> map = new HashMap<>();
+		map.put("India|Karnataka", "KA");
+		map.put("India|Kerala", "KL");
+		map.put("USA|Kansas", "KS");
+		LookupTable table = new LookupTable(map);
+		assertEquals("KA", table.get("India", '|', "Karnataka"));
+		assertEquals("KA", table.get("India|Karnataka"));
+		assertEquals("KS", table.get("USA", '|', "Kansas"));
+		assertNull(table.get("USA", '|', "Kerala"));
+		assertNull(table.get("Indi", '|', "a|Kerala"));
+		assertNull(table.get(null, '|', "Kansas"));
+	}
+}
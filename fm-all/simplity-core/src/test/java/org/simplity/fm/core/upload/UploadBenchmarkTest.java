@@ -0,0 +1,113 @@
+package org.simplity.fm.core.upload;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.SQLException;
+
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.simplity.fm.core.json.JsonUtil;
+import org.simplity.fm.core.service.DefaultServiceContext;
+import org.simplity.fm.core.service.IServiceContext;
+import org.simplity.fm.core.upload.UploaderTest.StubLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * compares the sequential upload with the pipeline for a large CSV file read
+ * with DelimitedRowReader. Rows are parsed by the stub loader, that sleeps on
+ * every fourth row in place of the lookups of real value providers. Not run as
+ * part of the build. Number of rows and workers can be set with the system
+ * properties upload.benchmark.rows and upload.benchmark.workers
+ */
+@Disabled("benchmark, to be run manually")
+class UploadBenchmarkTest {
+	private static final Logger logger = LoggerFactory.getLogger(UploadBenchmarkTest.class);
+	private static final int NBR_ROWS = Integer.getInteger("upload.benchmark.rows", 10000);
+	private static final int NBR_WORKERS = Integer.getInteger("upload.benchmark.workers", 4);
+
+	@Test
+	void compareSequentialWithPipeline() throws IOException, SQLException {
+		File file = newCsvFile(NBR_ROWS);
+		try {
+			// warm up both before timing them
+			sequential(file);
+			pipeline(file);
+
+			long sequential = sequential(file);
+			long pipeline = pipeline(file);
+			logger.info("{} rows uploaded in {} ms sequentially, and in {} ms with a pipeline of {} workers",
+					NBR_ROWS, sequential, pipeline, NBR_WORKERS);
+		} finally {
+			Files.deleteIfExists(file.toPath());
+		}
+	}
+
+	private static long sequential(final File file) throws IOException, SQLException {
+		StubLoader loader = newLoader();
+		Uploader uploader = new Uploader(new FormLoader[] { loader }, Uploader.DEFAULT_CHUNK_SIZE, 0);
+		long start = System.nanoTime();
+		try (DelimitedRowReader reader = DelimitedRowReader.forFile(file, DelimitedRowReader.CSV, true)) {
+			Uploader.Worker worker = uploader.new Worker(toSource(reader), newContext());
+			worker.transact(loader.newHandle());
+		}
+		long elapsed = (System.nanoTime() - start) / 1000000;
+		assertEquals(NBR_ROWS, loader.committed.size());
+		return elapsed;
+	}
+
+	private static long pipeline(final File file) throws IOException, SQLException {
+		StubLoader loader = newLoader();
+		long start = System.nanoTime();
+		try (DelimitedRowReader reader = DelimitedRowReader.forFile(file, DelimitedRowReader.CSV, true)) {
+			new UploadPipeline(new FormLoader[] { loader }, Uploader.DEFAULT_CHUNK_SIZE, NBR_WORKERS,
+					toSource(reader), newContext(), UploadCheckpoint.NONE)
+							.upload(UploadPipelineTest.newDriver(loader));
+		}
+		long elapsed = (System.nanoTime() - start) / 1000000;
+		assertEquals(NBR_ROWS, loader.committed.size());
+		return elapsed;
+	}
+
+	private static StubLoader newLoader() {
+		StubLoader loader = new StubLoader(null);
+		// sequential upload parses rows as it loads them
+		loader.parseOnLoad = true;
+		return loader;
+	}
+
+	/*
+	 * stub loader reads the column "id", that is the first column of the file
+	 */
+	private static IUploadRowSource toSource(final DelimitedRowReader reader) {
+		return ctx -> {
+			DelimitedRow row = reader.nextRow(ctx);
+			if (row != null) {
+				row.setValue("id", row.getValue(0));
+			}
+			return row;
+		};
+	}
+
+	private static IServiceContext newContext() {
+		return new DefaultServiceContext(null, JsonUtil.newOutputData(new StringWriter()));
+	}
+
+	private static File newCsvFile(final int nbrRows) throws IOException {
+		File file = File.createTempFile("upload", ".csv");
+		file.deleteOnExit();
+		try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+			writer.write("id,name,description,amount\n");
+			for (int i = 1; i <= nbrRows; i++) {
+				writer.write(i + ",name " + i + ",\"description of row " + i + ", with a comma\"," + i * 7 + ".25\n");
+			}
+		}
+		return file;
+	}
+}
@@ -0,0 +1,119 @@
+package org.simplity.fm.core.upload;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.StringWriter;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.simplity.fm.core.Conventions;
+import org.simplity.fm.core.Message;
+import org.simplity.fm.core.db.IReadWriteHandle;
+import org.simplity.fm.core.infra.ICheckpointStore;
+import org.simplity.fm.core.job.Checkpoint;
+import org.simplity.fm.core.json.JsonUtil;
+import org.simplity.fm.core.service.DefaultServiceContext;
+import org.simplity.fm.core.service.IServiceContext;
+
+class UploadCheckpointTest {
+
+	@Test
+	void testUploadsInAJob() throws SQLException {
+		MapStore store = new MapStore();
+		IServiceContext ctx = newJobContext("j1");
+		UploadCheckpoint first = UploadCheckpoint.forJob(ctx, store);
+		first.save(10, 0, 1, () -> new Message[0], null);
+		first.done();
+
+		UploadCheckpoint second = UploadCheckpoint.forJob(ctx, store);
+		assertEquals(Checkpoint.getUploadId("j1", 2), second.getCheckpoint().id);
+		assertEquals(0, second.getCheckpoint().nbrRowsDone, "second upload does not start from the first one");
+		second.done();
+		assertNotNull(store.get(Checkpoint.getUploadId("j1", 2)),
+				"checkpoint of an upload in a job is kept even if it has nothing to save");
+
+		/*
+		 * job is resumed: uploads are numbered afresh, and each resumes from its
+		 * own checkpoint
+		 */
+		ctx = newJobContext("j1");
+		assertEquals(10, UploadCheckpoint.forJob(ctx, store).getCheckpoint().nbrRowsDone);
+		assertEquals(0, UploadCheckpoint.forJob(ctx, store).getCheckpoint().nbrRowsDone);
+
+		assertSame(UploadCheckpoint.NONE,
+				UploadCheckpoint.forJob(new DefaultServiceContext(null, JsonUtil.newOutputData(new StringWriter())),
+						store));
+	}
+
+	@Test
+	void testMessagesAreCapped() throws SQLException {
+		MapStore store = new MapStore();
+		UploadCheckpoint cp = UploadCheckpoint.forJob(newJobContext("j2"), store);
+		Message[] msgs = new Message[UploadCheckpoint.MAX_MESSAGES + 10];
+		for (int i = 0; i < msgs.length; i++) {
+			msgs[i] = Uploader.newRowError(i + 1, "error");
+		}
+		cp.save(msgs.length, msgs.length, 0, () -> msgs, null);
+		assertEquals(UploadCheckpoint.MAX_MESSAGES, cp.getCheckpoint().messages.length);
+
+		boolean[] called = { false };
+		cp.save(msgs.length + 1, msgs.length + 1, 0, () -> {
+			called[0] = true;
+			return msgs;
+		}, null);
+		assertFalse(called[0], "messages are not collected once the cap is reached");
+		assertEquals(msgs.length + 1, cp.getCheckpoint().nbrErrors);
+	}
+
+	private static IServiceContext newJobContext(String jobId) {
+		IServiceContext ctx = new DefaultServiceContext(null, JsonUtil.newOutputData(new StringWriter()));
+		ctx.setValue(Conventions.App.JOB_ID_IN_CTX, jobId);
+		return ctx;
+	}
+
+	private static class MapStore implements ICheckpointStore {
+		final Map<String, Checkpoint> checkpoints = new HashMap<>();
+
+		@Override
+		public void save(Checkpoint checkpoint) {
+			this.checkpoints.put(checkpoint.id, checkpoint);
+		}
+
+		@Override
+		public void save(Checkpoint checkpoint, IReadWriteHandle handle) {
+			this.save(checkpoint);
+		}
+
+		@Override
+		public Checkpoint get(String id) {
+			return this.checkpoints.get(id);
+		}
+
+		@Override
+		public void remove(String id) {
+			this.checkpoints.remove(id);
+		}
+
+		@Override
+		public List<Checkpoint> getInterruptedJobs() {
+			return new ArrayList<>();
+		}
+
+		@Override
+		public boolean claim(String id) {
+			return false;
+		}
+
+		@Override
+		public void renewLeases() {
+			//
+		}
+	}
+}
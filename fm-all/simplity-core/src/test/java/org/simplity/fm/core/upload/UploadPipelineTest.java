@@ -0,0 +1,104 @@
+package org.simplity.fm.core.upload;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.simplity.fm.core.Message;
+import org.simplity.fm.core.db.IDbDriver;
+import org.simplity.fm.core.db.IDbTransacter;
+import org.simplity.fm.core.json.JsonUtil;
+import org.simplity.fm.core.service.DefaultServiceContext;
+import org.simplity.fm.core.service.IServiceContext;
+import org.simplity.fm.core.upload.UploaderTest.StubLoader;
+
+class UploadPipelineTest {
+	private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+	@Test
+	void testRowsAreWrittenInOrder() throws SQLException {
+		StubLoader loader = new StubLoader(null);
+		IServiceContext ctx = newContext();
+		UploadResult result = newPipeline(loader, 40, ctx).upload(newDriver(loader));
+
+		List<String> expected = new ArrayList<>();
+		for (int i = 1; i <= 40; i++) {
+			expected.add("" + i);
+		}
+		assertEquals(expected, loader.committed);
+		assertEquals(40, result.nbrRowsProcessed);
+		assertEquals(0, result.nbrRowsInError);
+		assertArrayEquals(new int[] { 5, 10, 15, 20, 25, 30, 35, 40 }, rowNumbers(ctx.getMessages()),
+				"messages from all the workers are merged in the order of rows");
+	}
+
+	@Test
+	void testErrorRows() throws SQLException {
+		StubLoader loader = new StubLoader("7");
+		loader.invalidId = "11";
+		IServiceContext ctx = newContext();
+		UploadResult result = newPipeline(loader, 20, ctx).upload(newDriver(loader));
+
+		List<String> expected = new ArrayList<>();
+		for (int i = 1; i <= 20; i++) {
+			if (i != 7 && i != 11) {
+				expected.add("" + i);
+			}
+		}
+		assertEquals(expected, loader.committed, "rows other than the ones in error are committed");
+		assertEquals(20, result.nbrRowsProcessed);
+		assertEquals(2, result.nbrRowsInError);
+		assertArrayEquals(new int[] { 5, 7, 10, 11, 15, 20 }, rowNumbers(ctx.getMessages()),
+				"rejected rows are reported along with other messages in the order of rows");
+	}
+
+	@Test
+	void testWorkerFailure() {
+		StubLoader loader = new StubLoader(null);
+		loader.fatalId = "13";
+		UploadPipeline pipeline = newPipeline(loader, 60, newContext());
+		AssertionError e = assertTimeoutPreemptively(TIMEOUT,
+				() -> assertThrows(AssertionError.class, () -> pipeline.upload(newDriver(loader))),
+				"upload does not hang when a worker fails");
+		assertEquals("worker failed on row 13", e.getMessage(), "failure of the worker is thrown to the caller");
+	}
+
+	private static UploadPipeline newPipeline(StubLoader loader, int nbrRows, IServiceContext ctx) {
+		return new UploadPipeline(new FormLoader[] { loader }, 3, 4, UploaderTest.newSource(nbrRows), ctx,
+				UploadCheckpoint.NONE);
+	}
+
+	private static IServiceContext newContext() {
+		return new DefaultServiceContext(null, JsonUtil.newOutputData(new StringWriter()));
+	}
+
+	/*
+	 * driver that runs transactions with the handle of the loader
+	 */
+	static IDbDriver newDriver(StubLoader loader) {
+		return (IDbDriver) Proxy.newProxyInstance(IDbDriver.class.getClassLoader(),
+				new Class<?>[] { IDbDriver.class }, (proxy, method, args) -> {
+					if (method.getName().equals("doMultipleTransactions") && args.length == 1) {
+						return ((IDbTransacter) args[0]).transact(loader.newHandle());
+					}
+					throw new UnsupportedOperationException(method.getName());
+				});
+	}
+
+	private static int[] rowNumbers(Message[] msgs) {
+		int[] nbrs = new int[msgs.length];
+		for (int i = 0; i < msgs.length; i++) {
+			nbrs[i] = msgs[i].rowNumber;
+		}
+		return nbrs;
+	}
+}
@@ -0,0 +1,190 @@
+package org.simplity.fm.core.upload;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.simplity.fm.core.Message;
+import org.simplity.fm.core.data.DbRecord;
+import org.simplity.fm.core.db.ITransactionHandle;
+import org.simplity.fm.core.json.JsonUtil;
+import org.simplity.fm.core.service.DefaultServiceContext;
+import org.simplity.fm.core.service.IServiceContext;
+
+class UploaderTest {
+
+	@Test
+	void testBadRowInChunk() throws SQLException {
+		StubLoader loader = new StubLoader("2");
+		Uploader uploader = new Uploader(new FormLoader[] { loader }, 3, 0);
+		IServiceContext ctx = new DefaultServiceContext(null, JsonUtil.newOutputData(new StringWriter()));
+		Uploader.Worker worker = uploader.new Worker(newSource(5), ctx);
+		worker.transact(loader.newHandle());
+
+		assertEquals(Arrays.asList("1", "3", "4", "5"), loader.committed,
+				"rows of the failed chunk other than the bad one are committed one by one");
+		UploadResult result = worker.getResult();
+		assertEquals(5, result.nbrRowsProcessed);
+		assertEquals(1, result.nbrRowsInError);
+		assertEquals(3, result.nbrCommits, "row 1, row 3 and the chunk of rows 4-5");
+		Message[] msgs = ctx.getMessages();
+		assertEquals(1, msgs.length);
+		assertEquals(2, msgs[0].rowNumber);
+		assertArrayEquals(new int[] { 2, 3 }, new int[] { loader.nbrBatches, loader.nbrSingles },
+				"two chunks as batches, and the three rows of the failed one singly");
+	}
+
+	@Test
+	void testMessagesOfRetriedChunk() throws SQLException {
+		StubLoader loader = new StubLoader("2");
+		loader.parseOnLoad = true;
+		Uploader uploader = new Uploader(new FormLoader[] { loader }, 5, 0);
+		IServiceContext ctx = new DefaultServiceContext(null, JsonUtil.newOutputData(new StringWriter()));
+		Uploader.Worker worker = uploader.new Worker(newSource(10), ctx);
+		worker.transact(loader.newHandle());
+
+		Message[] msgs = ctx.getMessages();
+		int[] rows = new int[msgs.length];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = msgs[i].rowNumber;
+		}
+		assertArrayEquals(new int[] { 2, 5, 10 }, rows,
+				"messages of the failed chunk are reported once, after the rows are retried");
+	}
+
+	/**
+	 * rows with a column named id, 1 to n
+	 */
+	static IUploadRowSource newSource(final int nbrRows) {
+		final List<IUploadRow> rows = new ArrayList<>();
+		for (int i = 1; i <= nbrRows; i++) {
+			Map<String, String> values = new HashMap<>();
+			values.put("id", "" + i);
+			rows.add(new MapRow(values));
+		}
+		final Iterator<IUploadRow> iter = rows.iterator();
+		return ctx -> iter.hasNext() ? iter.next() : null;
+	}
+
+	/**
+	 * inserts ids of rows into a list in place of a table. Rows with the bad id
+	 * are rejected by the "database". When rows are parsed by a pipeline, a
+	 * message is added for every fifth row, rows with the invalid id are
+	 * rejected, and the row with the fatal id fails the worker
+	 */
+	static class StubLoader extends FormLoader {
+		final List<String> committed = Collections.synchronizedList(new ArrayList<>());
+		final List<String> staged = new ArrayList<>();
+		final String badId;
+		String invalidId;
+		String fatalId;
+		/*
+		 * parse the rows when they are loaded, as the value providers would
+		 */
+		boolean parseOnLoad;
+		int nbrBatches;
+		int nbrSingles;
+
+		StubLoader(final String badId) {
+			super(null, null, new IValueProvider[0]);
+			this.badId = badId;
+		}
+
+		@Override
+		DbRecord newRecord() {
+			return null;
+		}
+
+		@Override
+		Object[] parseRow(final IUploadRow values, final DbRecord rec, final IServiceContext ctx) {
+			final String id = values.getValue("id");
+			final int rowNbr = Integer.parseInt(id);
+			// rows get to the writer out of order
+			if (rowNbr % 4 == 1) {
+				try {
+					Thread.sleep(2);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			if (id.equals(this.fatalId)) {
+				throw new AssertionError("worker failed on row " + id);
+			}
+			if (id.equals(this.invalidId)) {
+				throw new IllegalArgumentException("invalid id " + id);
+			}
+			if (rowNbr % 5 == 0) {
+				ctx.addMessage(Message.newObjectFieldError("id", null, "multiple of 5", rowNbr));
+			}
+			return new Object[] { id };
+		}
+
+		@Override
+		boolean insertBatch(final List<IUploadRow> rows, final Object[][] data, final ITransactionHandle handle)
+				throws SQLException {
+			this.nbrBatches++;
+			for (Object[] row : data) {
+				this.insert((String) row[0]);
+			}
+			return true;
+		}
+
+		@Override
+		boolean loadBatch(final List<IUploadRow> rows, final ITransactionHandle handle, final IServiceContext ctx)
+				throws SQLException {
+			this.nbrBatches++;
+			for (IUploadRow row : rows) {
+				if (this.parseOnLoad) {
+					this.parseRow(row, null, ctx);
+				}
+				this.insert(row.getValue("id"));
+			}
+			return true;
+		}
+
+		@Override
+		boolean loadData(final IUploadRow values, final ITransactionHandle handle, final IServiceContext ctx)
+				throws SQLException {
+			this.nbrSingles++;
+			if (this.parseOnLoad) {
+				this.parseRow(values, null, ctx);
+			}
+			this.insert(values.getValue("id"));
+			return true;
+		}
+
+		void insert(final String id) throws SQLException {
+			if (id.equals(this.badId)) {
+				throw new SQLException("duplicate key " + id);
+			}
+			this.staged.add(id);
+		}
+
+		/**
+		 * transaction handle that commits or discards the staged rows
+		 */
+		ITransactionHandle newHandle() {
+			return (ITransactionHandle) Proxy.newProxyInstance(ITransactionHandle.class.getClassLoader(),
+					new Class<?>[] { ITransactionHandle.class }, (proxy, method, args) -> {
+						if (method.getName().equals("commit")) {
+							this.committed.addAll(this.staged);
+							this.staged.clear();
+						} else if (method.getName().equals("rollback")) {
+							this.staged.clear();
+						}
+						return null;
+					});
+		}
+	}
+}
@@ -25,10 +25,14 @@ package org.simplity.fm.gen;
 import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
 
 import org.simplity.fm.core.Conventions;
 import org.simplity.fm.core.app.IApp;
 import org.simplity.fm.core.data.DataTable;
+import org.simplity.fm.core.infra.ICompIndex;
+import org.simplity.fm.core.validn.IValueList;
 import org.simplity.fm.gen.db.ColumnMetaRecord;
 import org.simplity.fm.gen.db.MetaUtil;
 import org.simplity.fm.gen.db.TableMetaRecord;
@@ -244,6 +248,12 @@ public class Generator {
 	private MessageMap messages;
 	private ValueListMap valueLists;
 	private ValueSchemaMap valueSchemas;
+	/*
+	 * id to fully qualified class name of generated components, to be emitted
+	 * into the component index
+	 */
+	private final Map<String, String> formClasses = new TreeMap<>();
+	private final Map<String, String> recordClasses = new TreeMap<>();
 
 	private Generator(String inputRoot, String outputRoot, String packageName) {
 		this.inputRoot = inputRoot;
@@ -307,6 +317,7 @@ public class Generator {
 
 		// this is generated at the end to ensure that the required Records are loaded..
 		this.accumulate(this.generateSqls());
+		this.generateCompIndex();
 		return this.allOk;
 	}
 
@@ -371,7 +382,10 @@ public class Generator {
 			}
 
 			form.initialize(record);
-			form.generateJava(javaFolder, this.packageName);
+			if (form.generateJava(javaFolder, this.packageName)) {
+				this.formClasses.put(form.name,
+						this.toFullClassName(Conventions.App.FOLDER_NAME_FORM, form.name, Conventions.App.FORM_CLASS_SUFIX));
+			}
 		}
 	}
 
@@ -446,7 +460,10 @@ public class Generator {
 		}
 
 		for (Record record : this.records.values()) {
-			record.generateJava(javaFolder, this.packageName);
+			if (record.generateJava(javaFolder, this.packageName)) {
+				this.recordClasses.put(record.name, this.toFullClassName(Conventions.App.FOLDER_NAME_RECORD, record.name,
+						Conventions.App.RECORD_CLASS_SUFIX));
+			}
 			record.emitSql(createSqls, dataSqls);
 		}
 
@@ -497,4 +514,98 @@ public class Generator {
 		return true;
 	}
 
+	/*
+	 * class name as generated for a form/record. a.b.c1 is generated as class C1
+	 * in the sub-package a.b
+	 */
+	private String toFullClassName(final String folder, final String name, final String suffix) {
+		final StringBuilder sbf = new StringBuilder(this.packageName).append('.').append(folder).append('.');
+		final String qual = Util.getClassQualifier(name);
+		if (qual != null) {
+			sbf.append(qual).append('.');
+		}
+		return sbf.append(Util.toClassName(name)).append(suffix).toString();
+	}
+
+	/**
+	 * generate a class that indexes all the generated forms, records and lists
+	 * with their constructors. This allows the components to be created without
+	 * locating their classes by name at run time
+	 */
+	private void generateCompIndex() {
+		final Map<String, String> listClasses = new TreeMap<>();
+		final String listPackage = this.packageName + '.' + Conventions.App.FOLDER_NAME_LIST + '.';
+		for (final String name : this.valueLists.getNames()) {
+			listClasses.put(name, listPackage + Util.toClassName(name));
+		}
+
+		final String clsName = Conventions.App.GENERATED_COMP_INDEX_CLASS_NAME;
+		final String text = emitCompIndex(this.packageName, this.formClasses, this.recordClasses, listClasses);
+		Util.writeOut(this.javaOutputRoot + clsName + ".java", text);
+		logger.info("Component index generated with {} forms, {} records and {} lists", this.formClasses.size(),
+				this.recordClasses.size(), listClasses.size());
+	}
+
+	/**
+	 * java source of the component index
+	 *
+	 * @param packageName root package of the generated classes
+	 * @param forms       form-id to fully qualified class name
+	 * @param records     record name to fully qualified class name
+	 * @param lists       list-id to fully qualified class name
+	 * @return source of the class that implements ICompIndex
+	 */
+	static String emitCompIndex(final String packageName, final Map<String, String> forms,
+			final Map<String, String> records, final Map<String, String> lists) {
+		final StringBuilder sbf = new StringBuilder();
+		sbf.append("package ").append(packageName).append(';');
+		sbf.append('\n');
+
+		Util.emitImport(sbf, HashMap.class);
+		Util.emitImport(sbf, Map.class);
+		Util.emitImport(sbf, Supplier.class);
+		sbf.append("\n");
+
+		Util.emitImport(sbf, org.simplity.fm.core.data.Form.class);
+		Util.emitImport(sbf, org.simplity.fm.core.data.Record.class);
+		Util.emitImport(sbf, ICompIndex.class);
+		Util.emitImport(sbf, IValueList.class);
+
+		final String clsName = Conventions.App.GENERATED_COMP_INDEX_CLASS_NAME;
+		sbf.append("\n\n/**\n * constructors of all the forms, records and lists generated for this project");
+		sbf.append("\n */ ");
+		sbf.append("\npublic class ").append(clsName).append(" implements ICompIndex {");
+
+		sbf.append("\n\tprivate static final Map<String, Supplier<Form<?>>> FORMS = new HashMap<>();");
+		sbf.append("\n\tprivate static final Map<String, Supplier<Record>> RECORDS = new HashMap<>();");
+		sbf.append("\n\tprivate static final Map<String, Supplier<IValueList>> LISTS = new HashMap<>();");
+
+		sbf.append("\n\n\tstatic {");
+		emitIndexEntries(sbf, "FORMS", forms);
+		emitIndexEntries(sbf, "RECORDS", records);
+		emitIndexEntries(sbf, "LISTS", lists);
+		sbf.append("\n\t}");
+
+		emitIndexGetter(sbf, "Form<?>", "getForms", "FORMS");
+		emitIndexGetter(sbf, "Record", "getRecords", "RECORDS");
+		emitIndexGetter(sbf, "IValueList", "getLists", "LISTS");
+		sbf.append("\n}\n");
+		return sbf.toString();
+	}
+
+	private static void emitIndexEntries(final StringBuilder sbf, final String mapName,
+			final Map<String, String> classes) {
+		for (final Map.Entry<String, String> entry : classes.entrySet()) {
+			sbf.append("\n\t\t").append(mapName).append(".put(\"").append(entry.getKey()).append("\", ")
+					.append(entry.getValue()).append("::new);");
+		}
+	}
+
+	private static void emitIndexGetter(final StringBuilder sbf, final String type, final String getter,
+			final String mapName) {
+		sbf.append("\n\n\t@Override\n\tpublic Map<String, Supplier<").append(type).append(">> ").append(getter)
+				.append("() {");
+		sbf.append("\n\t\treturn ").append(mapName).append(';');
+		sbf.append("\n\t}");
+	}
 }
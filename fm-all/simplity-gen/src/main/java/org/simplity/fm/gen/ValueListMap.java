@@ -1,7 +1,9 @@
 package org.simplity.fm.gen;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +33,17 @@ public class ValueListMap {
 		this.valueLists = valueLists;
 	}
 
+	/**
+	 *
+	 * @return names of all the lists defined for this project. non-null
+	 */
+	public Set<String> getNames() {
+		if (this.valueLists == null) {
+			return Collections.emptySet();
+		}
+		return this.valueLists.keySet();
+	}
+
 	public boolean generateJava(final String rootFolder, final String packageName) {
 		final String pck = packageName + ".list";
 		final String folder = rootFolder + "list/";
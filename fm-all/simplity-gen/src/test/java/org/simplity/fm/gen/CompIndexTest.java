@@ -0,0 +1,73 @@
+package org.simplity.fm.gen;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.Test;
+import org.simplity.fm.core.Conventions;
+import org.simplity.fm.core.data.Record;
+import org.simplity.fm.core.infra.ICompIndex;
+
+/**
+ *
+ * @author simplity.org
+ *
+ */
+class CompIndexTest {
+	private static final String PACKAGE = "org.simplity.fm.test.gen";
+	private static final String RECORD_CLASS = PACKAGE + ".rec.CustomerRecord";
+	private static final String RECORD_SOURCE = "package " + PACKAGE + ".rec;\n" //
+			+ "public class CustomerRecord extends org.simplity.fm.core.data.Record {\n" //
+			+ "\tpublic CustomerRecord() {\n" //
+			+ "\t\tsuper(new org.simplity.fm.core.data.Field[0], null);\n" //
+			+ "\t}\n}\n";
+
+	@Test
+	void testEmittedIndexCompiles() throws Exception {
+		final Map<String, String> records = new TreeMap<>();
+		records.put("customer", RECORD_CLASS);
+		final String text = Generator.emitCompIndex(PACKAGE, Collections.emptyMap(), records,
+				Collections.emptyMap());
+		final String clsName = Conventions.App.GENERATED_COMP_INDEX_CLASS_NAME;
+		assertTrue(text.contains("RECORDS.put(\"customer\", " + RECORD_CLASS + "::new);"));
+
+		final Path dir = Files.createTempDirectory("index");
+		final File index = write(dir, PACKAGE + '.' + clsName, text);
+		final File rec = write(dir, RECORD_CLASS, RECORD_SOURCE);
+		final JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+		final int result = javac.run(null, null, null, "-d", dir.toString(), "-cp",
+				System.getProperty("java.class.path"), index.getPath(), rec.getPath());
+		assertEquals(0, result, "generated index should compile");
+
+		try (URLClassLoader loader = new URLClassLoader(new URL[] { dir.toUri().toURL() },
+				this.getClass().getClassLoader())) {
+			final ICompIndex idx = (ICompIndex) loader.loadClass(PACKAGE + '.' + clsName).getConstructor()
+					.newInstance();
+			assertTrue(idx.getForms().isEmpty());
+			assertTrue(idx.getLists().isEmpty());
+			final Record r = idx.getRecords().get("customer").get();
+			assertEquals(RECORD_CLASS, r.getClass().getName());
+		}
+	}
+
+	private static File write(final Path dir, final String cls, final String text) throws IOException {
+		final Path file = dir.resolve(cls.replace('.', '/') + ".java");
+		Files.createDirectories(file.getParent());
+		Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+		return file.toFile();
+	}
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2019 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.fm.http;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * response handed over to a service that is run asynchronously. Once the
+ * container times the request out, the service may still be running, and the
+ * underlying response may have been completed, or even recycled for another
+ * request. Whatever the service writes after that is discarded.
+ *
+ * @author simplity.org
+ *
+ */
+class GuardedResponse extends HttpServletResponseWrapper {
+	/*
+	 * every write to the underlying response is made after locking this, so that
+	 * closing is never in the middle of a write
+	 */
+	private final Object lock = new Object();
+	private boolean closed;
+	private PrintWriter writer;
+	private ServletOutputStream stream;
+
+	GuardedResponse(final HttpServletResponse resp) {
+		super(resp);
+	}
+
+	/**
+	 * stop passing anything to the underlying response.
+	 *
+	 * @return true if this call closed the response, false if it was already
+	 *         closed
+	 */
+	boolean close() {
+		synchronized (this.lock) {
+			if (this.closed) {
+				return false;
+			}
+			this.closed = true;
+			return true;
+		}
+	}
+
+	@Override
+	public void setStatus(final int sc) {
+		synchronized (this.lock) {
+			if (!this.closed) {
+				super.setStatus(sc);
+			}
+		}
+	}
+
+	@Override
+	public void setHeader(final String name, final String value) {
+		synchronized (this.lock) {
+			if (!this.closed) {
+				super.setHeader(name, value);
+			}
+		}
+	}
+
+	@Override
+	public void setContentType(final String type) {
+		synchronized (this.lock) {
+			if (!this.closed) {
+				super.setContentType(type);
+			}
+		}
+	}
+
+	@Override
+	public void setCharacterEncoding(final String charset) {
+		synchronized (this.lock) {
+			if (!this.closed) {
+				super.setCharacterEncoding(charset);
+			}
+		}
+	}
+
+	@Override
+	public boolean isCommitted() {
+		synchronized (this.lock) {
+			return this.closed || super.isCommitted();
+		}
+	}
+
+	@Override
+	public PrintWriter getWriter() throws IOException {
+		synchronized (this.lock) {
+			if (this.writer == null) {
+				final Writer w = this.closed ? null : super.getWriter();
+				this.writer = new PrintWriter(new GuardedWriter(w));
+			}
+			return this.writer;
+		}
+	}
+
+	@Override
+	public ServletOutputStream getOutputStream() throws IOException {
+		synchronized (this.lock) {
+			if (this.stream == null) {
+				final ServletOutputStream out = this.closed ? null : super.getOutputStream();
+				this.stream = new GuardedStream(out);
+			}
+			return this.stream;
+		}
+	}
+
+	@Override
+	public void flushBuffer() throws IOException {
+		synchronized (this.lock) {
+			if (!this.closed) {
+				super.flushBuffer();
+			}
+		}
+	}
+
+	private class GuardedWriter extends Writer {
+		private final Writer out;
+
+		GuardedWriter(final Writer out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(final char[] cbuf, final int off, final int len) throws IOException {
+			synchronized (GuardedResponse.this.lock) {
+				if (!GuardedResponse.this.closed) {
+					this.out.write(cbuf, off, len);
+				}
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			synchronized (GuardedResponse.this.lock) {
+				if (!GuardedResponse.this.closed) {
+					this.out.flush();
+				}
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			synchronized (GuardedResponse.this.lock) {
+				if (!GuardedResponse.this.closed) {
+					this.out.close();
+				}
+			}
+		}
+	}
+
+	private class GuardedStream extends ServletOutputStream {
+		private final ServletOutputStream out;
+
+		GuardedStream(final ServletOutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public boolean isReady() {
+			synchronized (GuardedResponse.this.lock) {
+				return GuardedResponse.this.closed || this.out.isReady();
+			}
+		}
+
+		@Override
+		public void setWriteListener(final WriteListener writeListener) {
+			synchronized (GuardedResponse.this.lock) {
+				if (!GuardedResponse.this.closed) {
+					this.out.setWriteListener(writeListener);
+				}
+			}
+		}
+
+		@Override
+		public void write(final int b) throws IOException {
+			synchronized (GuardedResponse.this.lock) {
+				if (!GuardedResponse.this.closed) {
+					this.out.write(b);
+				}
+			}
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) throws IOException {
+			synchronized (GuardedResponse.this.lock) {
+				if (!GuardedResponse.this.closed) {
+					this.out.write(b, off, len);
+				}
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			synchronized (GuardedResponse.this.lock) {
+				if (!GuardedResponse.this.closed) {
+					this.out.flush();
+				}
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			synchronized (GuardedResponse.this.lock) {
+				if (!GuardedResponse.this.closed) {
+					this.out.close();
+				}
+			}
+		}
+	}
+}
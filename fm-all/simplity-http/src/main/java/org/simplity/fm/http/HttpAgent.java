@@ -22,18 +22,32 @@
 package org.simplity.fm.http;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.simplity.fm.core.Conventions;
+import org.simplity.fm.core.UserContext;
 import org.simplity.fm.core.app.IApp;
 import org.simplity.fm.core.app.RequestStatus;
+import org.simplity.fm.core.infra.ISessionCache;
+import org.simplity.fm.core.job.IJobHandle;
+import org.simplity.fm.core.job.JobStatus;
 import org.simplity.fm.core.json.JsonUtil;
 import org.simplity.fm.core.service.IInputData;
 import org.slf4j.Logger;
@@ -51,18 +65,50 @@ import org.slf4j.LoggerFactory;
 class HttpAgent {
 	private static final Logger logger = LoggerFactory.getLogger(HttpAgent.class);
 
+	private static final String HDR_CONTENT_ENCODING = "Content-Encoding";
+	private static final String HDR_VARY = "Vary";
+	private static final String HDR_ACCEPT_ENCODING = "Accept-Encoding";
+	private static final String TAG_SERVICE = "service";
+	private static final String CONTENT_TYPE_JSON = "application/json; charset=utf-8";
+	/*
+	 * 202-Accepted: job is still being processed
+	 */
+	private static final int STATUS_NOT_READY = 202;
+	private static final String CONTENT_TYPE_EVENTS = "text/event-stream; charset=utf-8";
+	private static final String TAG_SINCE = "since";
+	/*
+	 * a long-poll is responded to after this time even if there is no change in
+	 * progress
+	 */
+	private static final long LONG_POLL_MILLIS = 25000;
+
 	private final IRestAdapter restAdapter;
 	private final IApp app;
+	private final ResponseCompressor compressor;
+	private final JobProgressBroadcaster broadcaster = new JobProgressBroadcaster(
+			JobProgressBroadcaster.DEFAULT_INTERVAL_MILLIS);
 
 	/**
-	 * set the parser to process REST requests
+	 * set the parser to process REST requests. Responses are compressed with
+	 * default settings
 	 *
 	 * @param app
 	 * @param restAdapter
 	 */
 	public HttpAgent(IApp app, IRestAdapter restAdapter) {
+		this(app, restAdapter, new ResponseCompressor());
+	}
+
+	/**
+	 *
+	 * @param app
+	 * @param restAdapter
+	 * @param compressor  null if responses are not to be compressed
+	 */
+	public HttpAgent(IApp app, IRestAdapter restAdapter, ResponseCompressor compressor) {
 		this.restAdapter = restAdapter;
 		this.app = app;
+		this.compressor = compressor;
 	}
 
 	/**
@@ -88,7 +134,9 @@ class HttpAgent {
 
 	/**
 	 * serve an in-bound request. client request pay-load is of the form {service:
-	 * string, session; string, data; Vo}
+	 * string, session; string, data; Vo}. Several services may be requested in
+	 * one round-trip with {service: "_batch", session: string, parallel: boolean,
+	 * calls: [{id: string, service: string, data: Vo}...]}
 	 *
 	 * @param req
 	 * @param resp
@@ -122,32 +170,363 @@ class HttpAgent {
 			}
 		}
 
+		String encoding = null;
+		if (this.compressor != null) {
+			encoding = this.compressor.selectEncoding(req);
+			resp.setHeader(HDR_VARY, HDR_ACCEPT_ENCODING);
+		}
+
+		if (toStream(req, inputData)) {
+			this.serveAsStream(inputData, resp, encoding);
+			return;
+		}
+
 		StringWriter sw = new StringWriter();
 		RequestStatus status = this.app.serve(inputData, sw);
 		resp.setStatus(toHttpStatus(status));
-		try (PrintWriter writer = resp.getWriter()) {
+		if (encoding == null || !this.compressor.toCompress(sw.getBuffer().length())) {
+			try (PrintWriter writer = resp.getWriter()) {
+				writer.write(sw.toString());
+			}
+			return;
+		}
+
+		resp.setHeader(HDR_CONTENT_ENCODING, encoding);
+		try (Writer writer = this.newCompressingWriter(resp, encoding)) {
 			writer.write(sw.toString());
 		}
 	}
 
+	/**
+	 * download the response of a completed job, for a request of the form
+	 * GET ...?jobId=id&sessionId=id. Only the session that started the job can
+	 * download it. The response, spooled to a file by the job manager, is
+	 * streamed to the client without being read into memory as a whole, and is
+	 * deleted once it is downloaded.
+	 *
+	 * @param req
+	 * @param resp
+	 * @throws IOException
+	 */
+	public void download(final HttpServletRequest req, final HttpServletResponse resp) throws IOException {
+		final IInputData inputData = JsonUtil.newInputData();
+		readQueryString(req.getQueryString(), inputData);
+		final String sessionId = inputData.getString(Conventions.Http.SESSION_ID_FIELD_NAME);
+		final UserContext utx = this.getUserContext(sessionId);
+		final String jobId = inputData.getString(Conventions.Request.TAG_JOB_ID);
+		final IJobHandle job = this.getOwnJob(utx, jobId, resp);
+		if (job == null) {
+			return;
+		}
+
+		final JobStatus status = job.getStatus();
+		if (status == JobStatus.Waiting || status == JobStatus.Running) {
+			resp.setStatus(STATUS_NOT_READY);
+			return;
+		}
+		if (status != JobStatus.Completed) {
+			resp.setStatus(Conventions.Http.STATUS_INVALID_DATA);
+			return;
+		}
+
+		resp.setContentType(CONTENT_TYPE_JSON);
+		resp.setStatus(Conventions.Http.STATUS_ALL_OK);
+		try (OutputStream out = resp.getOutputStream()) {
+			if (!job.transferOutput(Channels.newChannel(out))) {
+				logger.error("Output of job {} could not be transferred", jobId);
+				return;
+			}
+		}
+
+		// the output is gone, and so is the job for this session
+		utx.removeJob(jobId);
+		final ISessionCache cache = this.app.getSessionCache();
+		if (utx.checkAndResetModified() && cache.get(sessionId) != null) {
+			cache.put(sessionId, utx);
+		}
+	}
+
+	/*
+	 * user context of the session, or null if the session is not active
+	 */
+	private UserContext getUserContext(final String sessionId) {
+		if (sessionId == null || sessionId.isEmpty()) {
+			return null;
+		}
+		return this.app.getSessionCache().get(sessionId);
+	}
+
+	/*
+	 * a job is visible only to the session that started it. Status is set on the
+	 * response, and null is returned, if the job is not visible
+	 */
+	private IJobHandle getOwnJob(final UserContext utx, final String jobId, final HttpServletResponse resp) {
+		if (utx == null) {
+			logger.info("No active session for a request on job {}", jobId);
+			resp.setStatus(Conventions.Http.STATUS_AUTH_REQUIRED);
+			return null;
+		}
+		final IJobHandle job = jobId.isEmpty() || !utx.hasJob(jobId) ? null
+				: this.app.getJobManager().getJob(jobId);
+		if (job == null) {
+			logger.info("Job {} is not found for this session", jobId);
+			resp.setStatus(Conventions.Http.STATUS_INVALID_DATA);
+		}
+		return job;
+	}
+
+	/**
+	 * a request to watch the progress of a job carries the id of the job, and
+	 * either accepts text/event-stream or has the version last seen by the
+	 * client as since. A path that is mapped to a REST service is served as
+	 * such, even if it has these parameters
+	 *
+	 * @param req
+	 * @return true if this is a request to watch the progress of a job, rather
+	 *         than to download its output
+	 */
+	public boolean isProgressRequest(final HttpServletRequest req) {
+		final IInputData inputData = JsonUtil.newInputData();
+		readQueryString(req.getQueryString(), inputData);
+		if (inputData.getString(Conventions.Request.TAG_JOB_ID).isEmpty()) {
+			return false;
+		}
+		if (!acceptsEvents(req) && inputData.getString(TAG_SINCE).isEmpty()) {
+			return false;
+		}
+		return !this.isRestPath(req);
+	}
+
+	/**
+	 * a request to download the output of a job carries the id of the job, but
+	 * is not a request to watch its progress. A path that is mapped to a REST
+	 * service is served as such, even if it has the id of a job
+	 *
+	 * @param req
+	 * @return true if this is a request to download the output of a job
+	 */
+	public boolean isDownloadRequest(final HttpServletRequest req) {
+		final IInputData inputData = JsonUtil.newInputData();
+		readQueryString(req.getQueryString(), inputData);
+		if (inputData.getString(Conventions.Request.TAG_JOB_ID).isEmpty()) {
+			return false;
+		}
+		if (acceptsEvents(req) || !inputData.getString(TAG_SINCE).isEmpty()) {
+			return false;
+		}
+		return !this.isRestPath(req);
+	}
+
+	private boolean isRestPath(final HttpServletRequest req) {
+		if (this.restAdapter == null) {
+			return false;
+		}
+		return this.restAdapter.parsePath(req.getPathInfo(), req.getMethod(), JsonUtil.newInputData()) != null;
+	}
+
+	/**
+	 * send the progress of a job to the client, for a request of the form GET
+	 * ...?jobId=id&sessionId=id. Only the session that started the job can
+	 * watch it. Progress is streamed as server-sent events till the job ends
+	 * if the client accepts text/event-stream. Otherwise the request is a
+	 * long-poll of the form GET ...?jobId=id&since=version that is responded to
+	 * as soon as the progress differs from the version that the client has, or
+	 * after a while even if it does not. No thread is held while the client
+	 * waits.
+	 *
+	 * @param req
+	 * @param resp
+	 * @throws IOException
+	 */
+	public void watchProgress(final HttpServletRequest req, final HttpServletResponse resp) throws IOException {
+		final IInputData inputData = JsonUtil.newInputData();
+		readQueryString(req.getQueryString(), inputData);
+		final UserContext utx = this.getUserContext(inputData.getString(Conventions.Http.SESSION_ID_FIELD_NAME));
+		final IJobHandle job = this.getOwnJob(utx, inputData.getString(Conventions.Request.TAG_JOB_ID), resp);
+		if (job == null) {
+			return;
+		}
+
+		final boolean toStream = acceptsEvents(req);
+		final long version = JobProgressBroadcaster.getVersion(job);
+		final long since = toStream ? -1 : inputData.getInteger(TAG_SINCE);
+		final boolean toWait = toStream || (since == version && !JobProgressBroadcaster.hasEnded(job));
+		if (!toWait || !req.isAsyncSupported()) {
+			resp.setContentType(CONTENT_TYPE_JSON);
+			resp.setStatus(Conventions.Http.STATUS_ALL_OK);
+			try (Writer writer = resp.getWriter()) {
+				writer.write(JobProgressBroadcaster.toJson(job, version));
+			}
+			return;
+		}
+
+		final AsyncContext asyncCtx = req.startAsync(req, resp);
+		final JobProgressBroadcaster.Watcher watcher;
+		if (toStream) {
+			asyncCtx.setTimeout(0);
+			watcher = new EventWatcher(asyncCtx, resp);
+		} else {
+			asyncCtx.setTimeout(LONG_POLL_MILLIS * 2);
+			watcher = new PollWatcher(asyncCtx, resp, since, System.currentTimeMillis() + LONG_POLL_MILLIS);
+		}
+		this.broadcaster.watch(job, watcher);
+	}
+
+	/**
+	 * release the resources held by this agent, like the clients that are
+	 * watching jobs, and shut down the app. To be called when the server is shut
+	 * down
+	 */
+	public void shutdown() {
+		this.broadcaster.shutdown();
+		this.app.shutdown();
+	}
+
+	/**
+	 * serve the request asynchronously on the executor, releasing the container
+	 * thread. Request is rejected with 503 if the executor is at its full
+	 * capacity. Served synchronously if the container does not support async for
+	 * this request
+	 *
+	 * @param req
+	 * @param resp
+	 * @param executor
+	 * @throws IOException
+	 */
+	public void serveAsync(final HttpServletRequest req, final HttpServletResponse resp,
+			final ServiceExecutor executor) throws IOException {
+		if (!req.isAsyncSupported()) {
+			this.serve(req, resp);
+			return;
+		}
+
+		final AsyncContext asyncCtx = req.startAsync(req, resp);
+		asyncCtx.setTimeout(executor.getTimeout());
+		/*
+		 * if the container times the request out, we respond with 503 and the
+		 * service, that may still be running, writes into the void
+		 */
+		final GuardedResponse guarded = new GuardedResponse(resp);
+		asyncCtx.addListener(new TimeoutListener(guarded));
+		final boolean accepted = executor.submit(() -> {
+			try {
+				this.serve(req, guarded);
+			} catch (final Exception e) {
+				logger.error("Error while serving an async request: {}", e.getMessage());
+				if (!guarded.isCommitted()) {
+					guarded.setStatus(Conventions.Http.STATUS_INTERNAL_ERROR);
+				}
+			} finally {
+				if (guarded.close()) {
+					asyncCtx.complete();
+				}
+			}
+		});
+
+		if (!accepted) {
+			logger.warn("Service executor is at its full capacity. Request rejected");
+			if (guarded.close()) {
+				resp.setStatus(Conventions.Http.STATUS_SERVICE_UNAVAILABLE);
+				resp.setHeader("Retry-After", "1");
+				asyncCtx.complete();
+			}
+		}
+	}
+
+	/*
+	 * writer that compresses the characters into the response stream
+	 */
+	private Writer newCompressingWriter(final HttpServletResponse resp, final String encoding) throws IOException {
+		final OutputStream out = this.compressor.wrap(resp.getOutputStream(), encoding);
+		return new OutputStreamWriter(out, StandardCharsets.UTF_8);
+	}
+
+	/*
+	 * rows are written to the response as and when they are read, with chunked
+	 * transfer-encoding. Response status can be set only if no rows were flushed
+	 * before the app returned. Otherwise the client gets the status in the last
+	 * line
+	 */
+	private void serveAsStream(final IInputData inputData, final HttpServletResponse resp, final String encoding)
+			throws IOException {
+		resp.setContentType(Conventions.Http.CONTENT_TYPE_NDJSON);
+		resp.setCharacterEncoding("UTF-8");
+		/*
+		 * size is not known upfront. compressed if the client accepts it. Compressed
+		 * stream is sync-flushed whenever the rows are flushed
+		 */
+		Writer w;
+		if (encoding == null) {
+			w = resp.getWriter();
+		} else {
+			resp.setHeader(HDR_CONTENT_ENCODING, encoding);
+			w = this.newCompressingWriter(resp, encoding);
+		}
+		try (Writer writer = w) {
+			RequestStatus status = this.app.serve(inputData, writer);
+			if (!resp.isCommitted()) {
+				resp.setStatus(toHttpStatus(status));
+			}
+		}
+	}
+
+	/*
+	 * client may ask for streaming either with an Accept header or with an
+	 * attribute in the payload. Response to a batch request is never streamed, as
+	 * it combines the responses of its calls
+	 */
+	private static boolean toStream(final HttpServletRequest req, final IInputData inputData) {
+		if (Conventions.App.SERVICE_BATCH.equals(inputData.getString(TAG_SERVICE))) {
+			return false;
+		}
+		final String accept = req.getHeader("Accept");
+		if (accept != null && accept.contains(Conventions.Http.CONTENT_TYPE_NDJSON)) {
+			inputData.addValue(Conventions.Request.TAG_STREAM, "true");
+			return true;
+		}
+		return inputData.getBoolean(Conventions.Request.TAG_STREAM);
+	}
+
+	private static boolean acceptsEvents(final HttpServletRequest req) {
+		final String accept = req.getHeader("Accept");
+		return accept != null && accept.contains("text/event-stream");
+	}
+
 	private static void readQueryString(String qry, IInputData inData) {
 		if (qry == null) {
 			return;
 		}
 
-		for (final String part : qry.split("&")) {
-			final String[] pair = part.split("=");
-			String val;
-			if (pair.length == 1) {
-				val = "";
-			} else {
-				val = decode(pair[1]);
+		/*
+		 * scan with indexes rather than split() with its regex and arrays
+		 */
+		final int len = qry.length();
+		int start = 0;
+		while (start < len) {
+			int end = qry.indexOf('&', start);
+			if (end == -1) {
+				end = len;
+			}
+			if (end > start) {
+				// '=' of this pair, if any. not beyond it
+				int eq = start;
+				while (eq < end && qry.charAt(eq) != '=') {
+					eq++;
+				}
+				if (eq == end) {
+					inData.addValue(qry.substring(start, end).trim(), "");
+				} else {
+					inData.addValue(qry.substring(start, eq).trim(), decode(qry.substring(eq + 1, end)));
+				}
 			}
-			inData.addValue(pair[0].trim(), val);
+			start = end + 1;
 		}
 	}
 
 	private static String decode(final String text) {
+		if (text.indexOf('%') == -1 && text.indexOf('+') == -1) {
+			return text;
+		}
 		try {
 			return URLDecoder.decode(text, "UTF-8");
 		} catch (final UnsupportedEncodingException e) {
@@ -180,6 +559,8 @@ class HttpAgent {
 			return Conventions.Http.STATUS_AUTH_REQUIRED;
 		case ServerError:
 			return Conventions.Http.STATUS_INTERNAL_ERROR;
+		case Overloaded:
+			return Conventions.Http.STATUS_SERVICE_UNAVAILABLE;
 		case Completed:
 			return Conventions.Http.STATUS_ALL_OK;
 		default:
@@ -199,4 +580,219 @@ class HttpAgent {
 		}
 		inputData.addValue(Conventions.Http.CLIENT_IP_FIELD_NAME, ip);
 	}
+
+	/*
+	 * responds with 503 when the container times out an async request before
+	 * the service completes
+	 */
+	private static class TimeoutListener implements AsyncListener {
+		private final GuardedResponse resp;
+
+		TimeoutListener(final GuardedResponse resp) {
+			this.resp = resp;
+		}
+
+		@Override
+		public void onTimeout(final AsyncEvent event) throws IOException {
+			this.onFailure(event, Conventions.Http.STATUS_SERVICE_UNAVAILABLE);
+		}
+
+		@Override
+		public void onError(final AsyncEvent event) throws IOException {
+			this.onFailure(event, Conventions.Http.STATUS_INTERNAL_ERROR);
+		}
+
+		private void onFailure(final AsyncEvent event, final int status) {
+			if (!this.resp.close()) {
+				return;
+			}
+			logger.error("Async request ended before the service could complete");
+			final HttpServletResponse r = (HttpServletResponse) this.resp.getResponse();
+			if (!r.isCommitted()) {
+				r.setStatus(status);
+			}
+			event.getAsyncContext().complete();
+		}
+
+		@Override
+		public void onComplete(final AsyncEvent event) throws IOException {
+			//
+		}
+
+		@Override
+		public void onStartAsync(final AsyncEvent event) throws IOException {
+			//
+		}
+	}
+
+	/**
+	 * streams progress as server-sent events with non-blocking writes. An event
+	 * that can not be written right away is skipped, and the client gets the
+	 * latest progress when it is ready again
+	 */
+	private static class EventWatcher extends JobProgressBroadcaster.Watcher implements WriteListener, AsyncListener {
+		private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+		private final AsyncContext asyncCtx;
+		private final ServletOutputStream out;
+		private volatile boolean gone;
+
+		EventWatcher(final AsyncContext asyncCtx, final HttpServletResponse resp) throws IOException {
+			super(-1, Long.MAX_VALUE);
+			this.asyncCtx = asyncCtx;
+			resp.setStatus(Conventions.Http.STATUS_ALL_OK);
+			resp.setContentType(CONTENT_TYPE_EVENTS);
+			resp.setHeader("Cache-Control", "no-cache");
+			asyncCtx.addListener(this);
+			this.out = resp.getOutputStream();
+			this.out.setWriteListener(this);
+		}
+
+		@Override
+		boolean isGone() {
+			return this.gone;
+		}
+
+		@Override
+		boolean send(final String json, final boolean isFinal) {
+			if (this.gone || !this.out.isReady()) {
+				return false;
+			}
+			final String event = (isFinal ? "event: end\n" : "event: progress\n") + "data: " + json + "\n\n";
+			this.write(event.getBytes(StandardCharsets.UTF_8));
+			return true;
+		}
+
+		@Override
+		void heartbeat() {
+			if (!this.gone && this.out.isReady()) {
+				this.write(HEARTBEAT);
+			}
+		}
+
+		private void write(final byte[] bytes) {
+			try {
+				this.out.write(bytes);
+				if (this.out.isReady()) {
+					this.out.flush();
+				}
+			} catch (final IOException | IllegalStateException e) {
+				this.gone = true;
+			}
+		}
+
+		@Override
+		void close() {
+			this.gone = true;
+			complete(this.asyncCtx);
+		}
+
+		@Override
+		public void onWritePossible() {
+			// pending progress, if any, is sent at the next tick
+		}
+
+		@Override
+		public void onError(final Throwable t) {
+			this.gone = true;
+		}
+
+		@Override
+		public void onComplete(final AsyncEvent event) {
+			this.gone = true;
+		}
+
+		@Override
+		public void onTimeout(final AsyncEvent event) {
+			this.gone = true;
+			complete(this.asyncCtx);
+		}
+
+		@Override
+		public void onError(final AsyncEvent event) {
+			this.gone = true;
+		}
+
+		@Override
+		public void onStartAsync(final AsyncEvent event) {
+			//
+		}
+	}
+
+	/**
+	 * responds to a long-poll with the progress, once
+	 */
+	private static class PollWatcher extends JobProgressBroadcaster.Watcher implements AsyncListener {
+		private final AsyncContext asyncCtx;
+		private final HttpServletResponse resp;
+		private volatile boolean gone;
+
+		PollWatcher(final AsyncContext asyncCtx, final HttpServletResponse resp, final long since,
+				final long expiresAt) {
+			super(since, expiresAt);
+			this.asyncCtx = asyncCtx;
+			this.resp = resp;
+			asyncCtx.addListener(this);
+		}
+
+		@Override
+		boolean isGone() {
+			return this.gone;
+		}
+
+		@Override
+		boolean send(final String json, final boolean isFinal) {
+			if (this.gone) {
+				return false;
+			}
+			this.gone = true;
+			this.resp.setContentType(CONTENT_TYPE_JSON);
+			this.resp.setStatus(Conventions.Http.STATUS_ALL_OK);
+			try (Writer writer = this.resp.getWriter()) {
+				writer.write(json);
+			} catch (final IOException | IllegalStateException e) {
+				logger.info("Progress could not be sent to a client: {}", e.getMessage());
+			}
+			return true;
+		}
+
+		@Override
+		void heartbeat() {
+			// client is responded to before it times out
+		}
+
+		@Override
+		void close() {
+			this.gone = true;
+			complete(this.asyncCtx);
+		}
+
+		@Override
+		public void onComplete(final AsyncEvent event) {
+			this.gone = true;
+		}
+
+		@Override
+		public void onTimeout(final AsyncEvent event) {
+			this.gone = true;
+			complete(this.asyncCtx);
+		}
+
+		@Override
+		public void onError(final AsyncEvent event) {
+			this.gone = true;
+		}
+
+		@Override
+		public void onStartAsync(final AsyncEvent event) {
+			//
+		}
+	}
+
+	private static void complete(final AsyncContext asyncCtx) {
+		try {
+			asyncCtx.complete();
+		} catch (final IllegalStateException e) {
+			// already completed
+		}
+	}
 }
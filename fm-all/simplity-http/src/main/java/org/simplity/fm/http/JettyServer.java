@@ -20,6 +20,11 @@ import org.slf4j.LoggerFactory;
  *
  */
 public class JettyServer extends Server implements IAppServer {
+	/*
+	 * executor on which services are run. null if they are run on Jetty's threads
+	 */
+	private ServiceExecutor executor;
+	private JettyHandler handler;
 
 	/**
 	 * start a Jetty server as a server-wrapper for an APP
@@ -30,10 +35,42 @@ public class JettyServer extends Server implements IAppServer {
 	 * @return null in case the Jetty Server could not be started
 	 */
 	public static IAppServer newServer(int port, IApp app, IRestAdapter restAdapter) {
+		return newServer(port, app, restAdapter, new ResponseCompressor());
+	}
+
+	/**
+	 * start a Jetty server as a server-wrapper for an APP
+	 *
+	 * @param port        to listen on
+	 * @param app
+	 * @param restAdapter
+	 * @param compressor  null if responses are not to be compressed
+	 * @return null in case the Jetty Server could not be started
+	 */
+	public static IAppServer newServer(int port, IApp app, IRestAdapter restAdapter, ResponseCompressor compressor) {
+		return newServer(port, app, restAdapter, compressor, null);
+	}
+
+	/**
+	 * start a Jetty server as a server-wrapper for an APP
+	 *
+	 * @param port        to listen on
+	 * @param app
+	 * @param restAdapter
+	 * @param compressor  null if responses are not to be compressed
+	 * @param executor    services are run asynchronously on this executor,
+	 *                    instead of on Jetty's threads. null to run them on
+	 *                    Jetty's threads
+	 * @return null in case the Jetty Server could not be started
+	 */
+	public static IAppServer newServer(int port, IApp app, IRestAdapter restAdapter, ResponseCompressor compressor,
+			ServiceExecutor executor) {
 
 		try {
 			JettyServer server = new JettyServer(port);
-			server.setHandler(new JettyHandler(app, restAdapter));
+			server.handler = new JettyHandler(app, restAdapter, compressor, executor);
+			server.setHandler(server.handler);
+			server.executor = executor;
 			server.start();
 			server.join();
 			JettyHandler.logger.info("App {} started as a Jetty Server on port {}", app.getName(), port);
@@ -54,6 +91,12 @@ public class JettyServer extends Server implements IAppServer {
 
 	@Override
 	public void shutdown() {
+		if (this.executor != null) {
+			this.executor.shutdown();
+		}
+		if (this.handler != null) {
+			this.handler.shutdown();
+		}
 		this.destroy();
 	}
 }
@@ -62,9 +105,15 @@ class JettyHandler extends AbstractHandler {
 	protected static final Logger logger = LoggerFactory.getLogger(JettyHandler.class);
 	private static final int STATUS_METHOD_NOT_ALLOWED = 405;
 	private HttpAgent httpAgent;
+	private final ServiceExecutor executor;
+
+	JettyHandler(IApp app, IRestAdapter restAdapter, ResponseCompressor compressor, ServiceExecutor executor) {
+		this.httpAgent = new HttpAgent(app, restAdapter, compressor);
+		this.executor = executor;
+	}
 
-	JettyHandler(IApp app, IRestAdapter restAdapter) {
-		this.httpAgent = new HttpAgent(app, restAdapter);
+	void shutdown() {
+		this.httpAgent.shutdown();
 	}
 
 	@Override
@@ -75,7 +124,27 @@ class JettyHandler extends AbstractHandler {
 		final long start = System.currentTimeMillis();
 		this.httpAgent.setOptions(baseRequest, response);
 
+		if (method.equals("GET") && this.httpAgent.isProgressRequest(baseRequest)) {
+			baseRequest.setHandled(true);
+			this.httpAgent.watchProgress(baseRequest, response);
+			return;
+		}
+
+		if (method.equals("GET") && this.httpAgent.isDownloadRequest(baseRequest)) {
+			baseRequest.setHandled(true);
+			this.httpAgent.download(baseRequest, response);
+			logger.info("Output of a job downloaded in {}ms", System.currentTimeMillis() - start);
+			return;
+		}
+
 		if (method.equals("POST") || method.equals("GET")) {
+			if (this.executor != null) {
+				baseRequest.setHandled(true);
+				this.httpAgent.serveAsync(baseRequest, response, this.executor);
+				logger.info("Request handed over to the service executor in {}ms",
+						System.currentTimeMillis() - start);
+				return;
+			}
 			this.httpAgent.serve(baseRequest, response);
 		} else if (method.equals("OPTIONS")) {
 			logger.info("Got a pre-flight request. responding generously.. ");
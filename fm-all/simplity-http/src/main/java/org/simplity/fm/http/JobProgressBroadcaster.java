@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2019 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.fm.http;
+
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.simplity.fm.core.job.IJobHandle;
+import org.simplity.fm.core.job.IJobProgressReporter;
+import org.simplity.fm.core.job.JobStatus;
+import org.simplity.fm.core.json.JsonUtil;
+import org.simplity.fm.core.service.IOutputData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * pushes the progress of jobs to the clients that are watching them. A single
+ * thread checks the jobs being watched at a fixed interval, and sends the
+ * latest progress of a job to its watchers if it has changed since what they
+ * were sent last. Changes in between are coalesced, and hence the events are
+ * sent at a capped rate irrespective of how often a job records its progress.
+ * No thread is held by a watcher while it waits.
+ *
+ * @author simplity.org
+ *
+ */
+class JobProgressBroadcaster {
+	private static final Logger logger = LoggerFactory.getLogger(JobProgressBroadcaster.class);
+	/**
+	 * default interval in milliseconds at which jobs are checked for progress
+	 */
+	static final long DEFAULT_INTERVAL_MILLIS = 500;
+	/*
+	 * an idle watcher is sent a heart-beat at this interval, so that a client
+	 * that is gone is detected
+	 */
+	private static final long HEARTBEAT_MILLIS = 15000;
+	private static final String TAG_JOB_ID = "jobId";
+	private static final String TAG_STATUS = "status";
+	private static final String TAG_PERCENT = "percentCompleted";
+	private static final String TAG_COUNT = "progressCount";
+	private static final String TAG_MESSAGE = "message";
+	private static final String TAG_VERSION = "version";
+
+	private final long intervalMillis;
+	private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+	/*
+	 * started when the first watcher arrives. guarded by this
+	 */
+	private ScheduledExecutorService ticker;
+	private volatile boolean shutdown;
+
+	/**
+	 *
+	 * @param intervalMillis interval at which jobs are checked for progress.
+	 *                       No job is sent more than one event per interval
+	 */
+	JobProgressBroadcaster(final long intervalMillis) {
+		this.intervalMillis = intervalMillis;
+	}
+
+	/**
+	 * add a watcher for a job. The watcher is sent the current progress at the
+	 * next tick, unless it already has it. It is released right away if the
+	 * broadcaster is shut down
+	 *
+	 * @param job
+	 * @param watcher
+	 */
+	void watch(final IJobHandle job, final Watcher watcher) {
+		this.topics.compute(job.getId(), (id, topic) -> {
+			final Topic t = topic == null ? new Topic(job) : topic;
+			t.watchers.add(watcher);
+			return t;
+		});
+		this.startTicker();
+		// shutdown() may have released the watchers before this one was added
+		if (this.shutdown) {
+			watcher.close();
+		}
+	}
+
+	/**
+	 *
+	 * @return number of jobs being watched
+	 */
+	int getNbrJobsWatched() {
+		return this.topics.size();
+	}
+
+	/**
+	 * stop the ticker, and release all the watchers
+	 */
+	synchronized void shutdown() {
+		this.shutdown = true;
+		if (this.ticker != null) {
+			this.ticker.shutdownNow();
+		}
+		for (final Topic topic : this.topics.values()) {
+			for (final Watcher w : topic.watchers) {
+				w.close();
+			}
+		}
+		this.topics.clear();
+	}
+
+	private synchronized void startTicker() {
+		if (this.ticker != null || this.shutdown) {
+			return;
+		}
+		this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+			final Thread t = new Thread(r, "job-progress");
+			t.setDaemon(true);
+			return t;
+		});
+		this.ticker.scheduleWithFixedDelay(() -> {
+			try {
+				this.tick(System.currentTimeMillis());
+			} catch (final Exception e) {
+				logger.error("Error while broadcasting job progress: {}", e.getMessage());
+			}
+		}, this.intervalMillis, this.intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * send the latest progress to the watchers that do not have it yet. Invoked
+	 * by the ticker
+	 *
+	 * @param now epoch in milliseconds
+	 */
+	void tick(final long now) {
+		for (final Topic topic : this.topics.values()) {
+			topic.broadcast(now);
+			this.topics.computeIfPresent(topic.job.getId(), (id, t) -> t.watchers.isEmpty() ? null : t);
+		}
+	}
+
+	/**
+	 * an opaque number that changes whenever the progress or the status of the
+	 * job changes
+	 *
+	 * @param job
+	 * @return version of the progress, including the status
+	 */
+	static long getVersion(final IJobHandle job) {
+		return job.getProgress().getVersion() * JobStatus.values().length + job.getStatus().ordinal();
+	}
+
+	/**
+	 *
+	 * @param job
+	 * @return true if the job has ended, and there is no more progress to be
+	 *         reported
+	 */
+	static boolean hasEnded(final IJobHandle job) {
+		final JobStatus status = job.getStatus();
+		return status != JobStatus.Waiting && status != JobStatus.Running;
+	}
+
+	/**
+	 *
+	 * @param job
+	 * @param version version of the progress as per getVersion()
+	 * @return json with the progress of the job
+	 */
+	static String toJson(final IJobHandle job, final long version) {
+		final IJobProgressReporter progress = job.getProgress();
+		final StringWriter writer = new StringWriter();
+		final IOutputData outData = JsonUtil.newOutputData(writer);
+		outData.beginObject();
+		outData.addName(TAG_JOB_ID).addValue(job.getId());
+		outData.addName(TAG_STATUS).addValue(job.getStatus().name());
+		outData.addName(TAG_PERCENT).addValue(progress.getPercentageCompleted());
+		outData.addName(TAG_COUNT).addValue(progress.getProgressCount());
+		outData.addName(TAG_MESSAGE).addValue(progress.getMessage());
+		outData.addName(TAG_VERSION).addValue(version);
+		outData.endObject();
+		return writer.toString();
+	}
+
+	/**
+	 * a client that is watching a job. Implementations are not to block while
+	 * sending
+	 */
+	abstract static class Watcher {
+		/*
+		 * accessed by the ticker thread only
+		 */
+		long sentVersion;
+		long sentAt;
+		/*
+		 * epoch at which the watcher is to be sent the progress, even if there
+		 * is no change
+		 */
+		final long expiresAt;
+
+		/**
+		 *
+		 * @param knownVersion version of the progress that the client already
+		 *                     has. -1 if it has none
+		 * @param expiresAt    epoch at which the watcher is to be sent the
+		 *                     current progress even if it is not changed, and
+		 *                     closed. Long.MAX_VALUE to watch till the job ends
+		 */
+		Watcher(final long knownVersion, final long expiresAt) {
+			this.sentVersion = knownVersion;
+			this.expiresAt = expiresAt;
+			this.sentAt = System.currentTimeMillis();
+		}
+
+		/**
+		 *
+		 * @return true if the client is gone, and nothing more can be sent
+		 */
+		abstract boolean isGone();
+
+		/**
+		 * send the progress
+		 *
+		 * @param json    progress as a json
+		 * @param isFinal true if this is the last event for this watcher
+		 * @return true if sent. false if the client is not ready to receive it
+		 *         now
+		 */
+		abstract boolean send(String json, boolean isFinal);
+
+		/**
+		 * send a heart-beat to an idle client, if relevant
+		 */
+		abstract void heartbeat();
+
+		/**
+		 * release the client. no more sends after this
+		 */
+		abstract void close();
+	}
+
+	private static class Topic {
+		final IJobHandle job;
+		final List<Watcher> watchers = new CopyOnWriteArrayList<>();
+		/*
+		 * json is built only when the version changes
+		 */
+		private long version = -1;
+		private String json;
+
+		Topic(final IJobHandle job) {
+			this.job = job;
+		}
+
+		void broadcast(final long now) {
+			/*
+			 * status is checked before the version, so that the final event has
+			 * the final progress
+			 */
+			final boolean ended = hasEnded(this.job);
+			final long v = getVersion(this.job);
+			if (v != this.version) {
+				this.version = v;
+				this.json = toJson(this.job, v);
+			}
+
+			for (final Watcher w : this.watchers) {
+				if (w.isGone()) {
+					this.remove(w);
+					continue;
+				}
+
+				final boolean expired = now >= w.expiresAt;
+				if (w.sentVersion == v && !ended && !expired) {
+					if (now - w.sentAt >= HEARTBEAT_MILLIS) {
+						w.heartbeat();
+						w.sentAt = now;
+					}
+					continue;
+				}
+
+				final boolean isFinal = ended || expired;
+				if (w.send(this.json, isFinal)) {
+					w.sentVersion = v;
+					w.sentAt = now;
+					/*
+					 * a watcher may be done after one send, like a long-poll
+					 */
+					if (isFinal || w.isGone()) {
+						this.remove(w);
+					}
+				}
+			}
+		}
+
+		private void remove(final Watcher w) {
+			w.close();
+			this.watchers.remove(w);
+		}
+	}
+}
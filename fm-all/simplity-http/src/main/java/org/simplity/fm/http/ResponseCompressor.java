@@ -0,0 +1,218 @@
+package org.simplity.fm.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * compresses responses with gzip or deflate, as accepted by the client.
+ * Deflaters hold native memory that is released only on end(). Hence they are
+ * pooled and reused across requests instead of being created for every
+ * response.
+ *
+ * @author simplity.org
+ *
+ */
+public class ResponseCompressor {
+	/**
+	 * responses smaller than this are not worth compressing
+	 */
+	public static final int DEFAULT_MIN_SIZE = 1024;
+	/**
+	 * max number of idle deflaters kept in the pool for each encoding
+	 */
+	public static final int DEFAULT_POOL_SIZE = 32;
+
+	static final String GZIP = "gzip";
+	static final String DEFLATE = "deflate";
+
+	private static final String HDR_ACCEPT_ENCODING = "Accept-Encoding";
+	private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+	private final int minSize;
+	private final int level;
+	/*
+	 * gzip requires raw deflate (nowrap) while http-deflate is the zlib format
+	 */
+	private final BlockingQueue<Deflater> gzipPool;
+	private final BlockingQueue<Deflater> deflatePool;
+
+	/**
+	 * compressor with default settings
+	 */
+	public ResponseCompressor() {
+		this(DEFAULT_MIN_SIZE, Deflater.DEFAULT_COMPRESSION, DEFAULT_POOL_SIZE);
+	}
+
+	/**
+	 *
+	 * @param minSize  responses smaller than this number of characters are not
+	 *                 compressed. Streamed responses are always compressed, as
+	 *                 their size is not known upfront
+	 * @param level    compression level 0-9, or -1 for the default level
+	 * @param poolSize max number of idle deflaters to be pooled
+	 */
+	public ResponseCompressor(final int minSize, final int level, final int poolSize) {
+		this.minSize = minSize;
+		this.level = level;
+		this.gzipPool = new ArrayBlockingQueue<>(poolSize);
+		this.deflatePool = new ArrayBlockingQueue<>(poolSize);
+	}
+
+	/**
+	 *
+	 * @param req
+	 * @return encoding to be used for the response. null if the client does not
+	 *         accept any of the encodings we support
+	 */
+	@SuppressWarnings("static-method")
+	public String selectEncoding(final HttpServletRequest req) {
+		return selectEncoding(req.getHeader(HDR_ACCEPT_ENCODING));
+	}
+
+	static String selectEncoding(final String hdr) {
+		if (hdr == null) {
+			return null;
+		}
+		/*
+		 * an explicit refusal of an encoding takes precedence over "*",
+		 * irrespective of the order in which they appear
+		 */
+		boolean gzipOk = false;
+		boolean gzipRefused = false;
+		boolean deflateOk = false;
+		boolean deflateRefused = false;
+		boolean anyOk = false;
+		for (final String part : hdr.split(",")) {
+			final String[] pair = part.split(";");
+			final String encoding = pair[0].trim().toLowerCase();
+			final boolean refused = pair.length > 1 && pair[1].replace(" ", "").matches("q=0(\\.0*)?");
+			if (encoding.equals(GZIP)) {
+				if (refused) {
+					gzipRefused = true;
+				} else {
+					gzipOk = true;
+				}
+			} else if (encoding.equals(DEFLATE)) {
+				if (refused) {
+					deflateRefused = true;
+				} else {
+					deflateOk = true;
+				}
+			} else if (encoding.equals("*") && !refused) {
+				anyOk = true;
+			}
+		}
+		if (!gzipRefused && (gzipOk || anyOk)) {
+			return GZIP;
+		}
+		if (!deflateRefused && (deflateOk || anyOk)) {
+			return DEFLATE;
+		}
+		return null;
+	}
+
+	/**
+	 *
+	 * @param size number of characters in the response
+	 * @return true if a response of this size should be compressed
+	 */
+	public boolean toCompress(final int size) {
+		return size >= this.minSize;
+	}
+
+	/**
+	 * wrap the output stream to compress whatever is written to it. flush() on the
+	 * returned stream flushes the data compressed so far, so that it can be used
+	 * for streaming. close() MUST be called to release the deflater back to the
+	 * pool
+	 *
+	 * @param out      underlying stream
+	 * @param encoding GZIP or DEFLATE as returned by selectEncoding()
+	 * @return stream to which the data to be compressed is to be written
+	 * @throws IOException
+	 */
+	public OutputStream wrap(final OutputStream out, final String encoding) throws IOException {
+		final boolean gzip = GZIP.equals(encoding);
+		final BlockingQueue<Deflater> pool = gzip ? this.gzipPool : this.deflatePool;
+		Deflater deflater = pool.poll();
+		if (deflater == null) {
+			deflater = new Deflater(this.level, gzip);
+		}
+		return new PooledDeflaterStream(out, deflater, pool, gzip);
+	}
+
+	private static class PooledDeflaterStream extends DeflaterOutputStream {
+		private final BlockingQueue<Deflater> pool;
+		private final CRC32 crc;
+		private boolean released;
+
+		PooledDeflaterStream(final OutputStream out, final Deflater deflater, final BlockingQueue<Deflater> pool,
+				final boolean gzip) throws IOException {
+			super(out, deflater, true);
+			this.pool = pool;
+			if (gzip) {
+				this.crc = new CRC32();
+				out.write(GZIP_HEADER);
+			} else {
+				this.crc = null;
+			}
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) throws IOException {
+			super.write(b, off, len);
+			if (this.crc != null) {
+				this.crc.update(b, off, len);
+			}
+		}
+
+		@Override
+		public void finish() throws IOException {
+			if (this.def.finished()) {
+				return;
+			}
+			super.finish();
+			if (this.crc != null) {
+				writeInt((int) this.crc.getValue());
+				writeInt(this.def.getTotalIn());
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				this.release();
+			}
+		}
+
+		private void release() {
+			if (this.released) {
+				return;
+			}
+			this.released = true;
+			this.def.reset();
+			if (!this.pool.offer(this.def)) {
+				this.def.end();
+			}
+		}
+
+		/*
+		 * gzip trailer is little-endian
+		 */
+		private void writeInt(final int i) throws IOException {
+			this.out.write(i & 0xff);
+			this.out.write((i >> 8) & 0xff);
+			this.out.write((i >> 16) & 0xff);
+			this.out.write((i >> 24) & 0xff);
+		}
+	}
+}
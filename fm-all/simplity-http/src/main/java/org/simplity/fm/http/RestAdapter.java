@@ -24,7 +24,10 @@ package org.simplity.fm.http;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -116,6 +119,11 @@ public class RestAdapter implements IRestAdapter {
 	 * root node. PathNode has the tree structure built into that.
 	 */
 	private Node rootNode;
+	/*
+	 * flattened form of the tree that is used for parsing paths at run time.
+	 * built after all the paths are added
+	 */
+	private RouteTable routes;
 
 	/**
 	 * create an empty tree to which paths can be added later
@@ -225,6 +233,7 @@ public class RestAdapter implements IRestAdapter {
 		}
 		if (nbr > 0) {
 			logger.info("{} paths added", nbr);
+			this.routes = new RouteTable(this.rootNode);
 		} else {
 			logger.error("No paths added to the paths collection.");
 		}
@@ -250,76 +259,11 @@ public class RestAdapter implements IRestAdapter {
 		if (path == null || path.isEmpty()) {
 			return null;
 		}
-		Node node = this.findNodeForPath(path, fields);
-		if (node == null) {
-			logger.info("{} is an invalid path", path);
-			return null;
-		}
-		/*
-		 * get the service at this node. In case we do not have one at this
-		 * node, then we keep going up
-		 *
-		 */
-		while (node != null) {
-			if (node.isValidEndNode()) {
-				return node.getService(method);
-			}
-			/*
-			 * it is possible that this part is a field and is optional..
-			 */
-			if (node.isFieldChild()) {
-				node = node.getParent();
-			} else {
-				break;
-			}
-		}
-		/*
-		 * So, the path was partial part of a valid path
-		 */
-		logger.info("{} is an incomplete path", path);
-		return null;
-	}
-
-	/**
-	 * find the node corresponding to the path
-	 *
-	 * @param path
-	 *            non-null, non-empty
-	 * @param fields
-	 * @return
-	 */
-	private Node findNodeForPath(String path, IInputData fields) {
-		Node node = this.rootNode;
-		if (node.isLeaf()) {
+		if (this.routes == null) {
 			logger.info("We have an empty list of paths!!");
 			return null;
 		}
-		/*
-		 * go down the path as much as we can.
-		 */
-		String[] parts = path.split(PATH_SEP_STR);
-		for (String part : parts) {
-			if (part.isEmpty()) {
-				continue;
-			}
-			Node child = node.getChild(part);
-			if (child == null) {
-				/*
-				 * this is not a valid path
-				 */
-				logger.warn("Path {} is invalid starting at token {}", path,
-						part);
-				return null;
-			}
-			/*
-			 * is this a field to be picked-up
-			 */
-			if (child.isFieldChild() && fields != null) {
-				fields.addValue(child.getName(), part);
-			}
-			node = child;
-		}
-		return node;
+		return this.routes.parse(path, method, fields);
 	}
 
 }
@@ -376,14 +320,6 @@ class Node {
 		this.isFieldChild = isField;
 	}
 
-	/**
-	 * @return true if this is a leaf node. False if this node has at least one
-	 *         child node, either a field-child or path-child
-	 */
-	public boolean isLeaf() {
-		return this.children == null && this.fieldChild == null;
-	}
-
 	/**
 	 * @return true if this node is the field-child of its parent. false if it
 	 *         is a path-child
@@ -462,23 +398,6 @@ class Node {
 		return child;
 	}
 
-	/**
-	 * @param pathPart
-	 *            as received from client. can be value of field in case this
-	 *            node is for a field
-	 * @return child node for this pathPart. null if no child node for this
-	 *         part.
-	 */
-	Node getChild(String pathPart) {
-		if (this.fieldChild != null) {
-			return this.fieldChild;
-		}
-		if (this.children != null) {
-			return this.children.get(pathPart);
-		}
-		return null;
-	}
-
 	/**
 	 * set service associated with methods
 	 *
@@ -517,43 +436,225 @@ class Node {
 	}
 
 	/**
-	 * @param method
-	 * @return service associated with this method, or null if not service is
-	 *         associated for this path.
-	 */
-	String getService(String method) {
-		if (method == null || method.isEmpty()) {
-			if (this.defaultService == null) {
-				RestAdapter.logger.info(
-						"No method specified and this path has no default service.");
-			}
-			return this.defaultService;
-		}
+	 * @return the parent node. null for the root node
+	 */
+	Node getParent() {
+		return this.parent;
+	}
+
+	Node getFieldChild() {
+		return this.fieldChild;
+	}
+
+	Map<String, Node> getChildren() {
+		return this.children;
+	}
+
+	String getDefaultService() {
+		return this.defaultService;
+	}
+
+	Map<String, String> getServices() {
+		return this.services;
+	}
+}
+
+/**
+ * Node-tree flattened into arrays indexed by node-number, root being 0. This is
+ * built once after all the paths are added, and is used to parse the paths at
+ * run time. Path is scanned with indexes, and path-parts are matched in-place
+ * against the child segments. No object is created while parsing, except for
+ * the values of path-fields.
+ *
+ * @author simplity.org
+ *
+ */
+class RouteTable {
+	private static final int NONE = -1;
+	/**
+	 * index of the field-child. NONE if the next part is not a field
+	 */
+	private final int[] fieldChildren;
+	/**
+	 * path-parts of the child nodes. null if no path-children
+	 */
+	private final String[][] childSegments;
+	/**
+	 * node index of the child nodes, in the same order as in childSegments
+	 */
+	private final int[][] childNodes;
+	private final int[] parents;
+	/**
+	 * field name if this node is a field-child. null otherwise
+	 */
+	private final String[] fieldNames;
+	private final boolean[] endNodes;
+	private final String[] defaultServices;
+	/**
+	 * all methods across all paths, in lower case
+	 */
+	private final String[] methods;
+	/**
+	 * services[methodIdx][nodeIdx]
+	 */
+	private final String[][] services;
 
+	RouteTable(final Node root) {
 		/*
-		 * is there an entry for this method?
+		 * number the nodes breadth-first
 		 */
-		if (this.services != null) {
-			String serviceName = this.services.get(method.toLowerCase());
-			if (serviceName != null) {
-				return serviceName;
+		final List<Node> nodes = new ArrayList<>();
+		final Map<Node, Integer> indexes = new IdentityHashMap<>();
+		final List<String> allMethods = new ArrayList<>();
+		nodes.add(root);
+		indexes.put(root, 0);
+		for (int i = 0; i < nodes.size(); i++) {
+			final Node node = nodes.get(i);
+			final Node fc = node.getFieldChild();
+			if (fc != null) {
+				indexes.put(fc, nodes.size());
+				nodes.add(fc);
+			}
+			final Map<String, Node> children = node.getChildren();
+			if (children != null) {
+				for (final Node child : children.values()) {
+					indexes.put(child, nodes.size());
+					nodes.add(child);
+				}
+			}
+			final Map<String, String> map = node.getServices();
+			if (map != null) {
+				for (final String method : map.keySet()) {
+					if (!allMethods.contains(method)) {
+						allMethods.add(method);
+					}
+				}
 			}
 		}
-		/*
-		 * go for default
-		 */
-		if (this.defaultService == null) {
-			RestAdapter.logger.info(
-					"No service attached to method {}, and there is no default service",
-					method);
+
+		final int n = nodes.size();
+		this.fieldChildren = new int[n];
+		this.childSegments = new String[n][];
+		this.childNodes = new int[n][];
+		this.parents = new int[n];
+		this.fieldNames = new String[n];
+		this.endNodes = new boolean[n];
+		this.defaultServices = new String[n];
+		this.methods = allMethods.toArray(new String[0]);
+		this.services = new String[this.methods.length][n];
+
+		for (int i = 0; i < n; i++) {
+			final Node node = nodes.get(i);
+			final Node parent = node.getParent();
+			this.parents[i] = parent == null ? NONE : indexes.get(parent);
+			if (node.isFieldChild()) {
+				this.fieldNames[i] = node.getName().intern();
+			}
+			final Node fc = node.getFieldChild();
+			this.fieldChildren[i] = fc == null ? NONE : indexes.get(fc);
+
+			final Map<String, Node> children = node.getChildren();
+			if (children != null) {
+				final int nbr = children.size();
+				final String[] segments = new String[nbr];
+				final int[] idxs = new int[nbr];
+				int j = 0;
+				for (final Map.Entry<String, Node> entry : children.entrySet()) {
+					segments[j] = entry.getKey().intern();
+					idxs[j] = indexes.get(entry.getValue());
+					j++;
+				}
+				this.childSegments[i] = segments;
+				this.childNodes[i] = idxs;
+			}
+
+			this.endNodes[i] = node.isValidEndNode();
+			this.defaultServices[i] = node.getDefaultService();
+			final Map<String, String> map = node.getServices();
+			if (map != null) {
+				for (int m = 0; m < this.methods.length; m++) {
+					this.services[m][i] = map.get(this.methods[m]);
+				}
+			}
 		}
-		return this.defaultService;
 	}
 
 	/**
-	 * @return the parent node. null for the root node
+	 * @see IRestAdapter#parsePath(String, String, IInputData)
 	 */
-	Node getParent() {
-		return this.parent;
+	String parse(final String path, final String method, final IInputData fields) {
+		int node = 0;
+		final int len = path.length();
+		int start = 0;
+		while (start < len) {
+			int end = path.indexOf('/', start);
+			if (end == NONE) {
+				end = len;
+			}
+			if (end > start) {
+				int child = this.fieldChildren[node];
+				if (child == NONE) {
+					child = this.findChild(node, path, start, end - start);
+					if (child == NONE) {
+						RestAdapter.logger.warn("Path {} is invalid starting at token {}", path,
+								path.substring(start, end));
+						return null;
+					}
+				} else if (fields != null) {
+					fields.addValue(this.fieldNames[child], path.substring(start, end));
+				}
+				node = child;
+			}
+			start = end + 1;
+		}
+
+		/*
+		 * get the service at this node. In case we do not have one at this node, then
+		 * we keep going up, so long as the node is for an optional field
+		 */
+		while (node != NONE) {
+			if (this.endNodes[node]) {
+				return this.getService(node, method);
+			}
+			if (this.fieldNames[node] == null) {
+				break;
+			}
+			node = this.parents[node];
+		}
+		RestAdapter.logger.info("{} is an incomplete path", path);
+		return null;
+	}
+
+	private int findChild(final int node, final String path, final int start, final int len) {
+		final String[] segments = this.childSegments[node];
+		if (segments == null) {
+			return NONE;
+		}
+		for (int i = 0; i < segments.length; i++) {
+			final String seg = segments[i];
+			if (seg.length() == len && path.regionMatches(start, seg, 0, len)) {
+				return this.childNodes[node][i];
+			}
+		}
+		return NONE;
+	}
+
+	private String getService(final int node, final String method) {
+		if (method != null && method.isEmpty() == false) {
+			for (int m = 0; m < this.methods.length; m++) {
+				if (this.methods[m].equalsIgnoreCase(method)) {
+					final String service = this.services[m][node];
+					if (service != null) {
+						return service;
+					}
+					break;
+				}
+			}
+		}
+		final String service = this.defaultServices[node];
+		if (service == null) {
+			RestAdapter.logger.info("No service attached to method {}, and there is no default service", method);
+		}
+		return service;
 	}
 }
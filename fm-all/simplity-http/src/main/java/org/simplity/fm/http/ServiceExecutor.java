@@ -0,0 +1,189 @@
+package org.simplity.fm.http;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * bounded executor on which services are run, so that the threads of the
+ * http-container are not blocked by db operations. Requests beyond the
+ * capacity (running + waiting) are rejected right away, so that the server
+ * sheds load instead of building up a queue that it can never catch up with.
+ *
+ * @author simplity.org
+ *
+ */
+public class ServiceExecutor {
+	private static final Logger logger = LoggerFactory.getLogger(ServiceExecutor.class);
+	/**
+	 * default number of threads to run services
+	 */
+	public static final int DEFAULT_NBR_THREADS = 50;
+	/**
+	 * default number of requests that may wait for a thread
+	 */
+	public static final int DEFAULT_QUEUE_SIZE = 200;
+	/**
+	 * default time-out in milliseconds for an async request
+	 */
+	public static final long DEFAULT_TIMEOUT = 60000;
+
+	private final ExecutorService executor;
+	private final Semaphore capacity;
+	/*
+	 * virtual threads are not pooled. concurrency is limited with this instead.
+	 * null when platform threads are used
+	 */
+	private final Semaphore runPermits;
+	private final long timeout;
+	private final AtomicLong nbrRejected = new AtomicLong();
+
+	/**
+	 * executor with default settings, running on platform threads
+	 */
+	public ServiceExecutor() {
+		this(DEFAULT_NBR_THREADS, DEFAULT_QUEUE_SIZE, DEFAULT_TIMEOUT, false);
+	}
+
+	/**
+	 *
+	 * @param nbrThreads        max number of services that may run concurrently
+	 * @param queueSize         max number of requests that may wait for their turn.
+	 *                          requests beyond this are rejected
+	 * @param timeout           milliseconds after which an async request is timed
+	 *                          out by the container
+	 * @param useVirtualThreads run each service on a virtual thread if the JDK
+	 *                          supports it. Platform threads are used otherwise.
+	 *                          nbrThreads continues to limit the concurrency in
+	 *                          either case
+	 */
+	public ServiceExecutor(final int nbrThreads, final int queueSize, final long timeout,
+			final boolean useVirtualThreads) {
+		this.timeout = timeout;
+		this.capacity = new Semaphore(nbrThreads + queueSize);
+		ExecutorService ex = null;
+		if (useVirtualThreads) {
+			ex = newVirtualThreadExecutor(nbrThreads);
+		}
+		if (ex != null) {
+			this.runPermits = new Semaphore(nbrThreads);
+		} else {
+			this.runPermits = null;
+			final ThreadPoolExecutor pool = new ThreadPoolExecutor(nbrThreads, nbrThreads, 60, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<>(), new ServiceThreadFactory());
+			pool.allowCoreThreadTimeOut(true);
+			ex = pool;
+		}
+		this.executor = ex;
+	}
+
+	/**
+	 * submit a task to be run
+	 *
+	 * @param task
+	 * @return true if the task is accepted. false if it is rejected because we
+	 *         are running at full capacity
+	 */
+	public boolean submit(final Runnable task) {
+		if (!this.capacity.tryAcquire()) {
+			this.nbrRejected.incrementAndGet();
+			return false;
+		}
+		try {
+			this.executor.execute(() -> {
+				if (this.runPermits == null) {
+					this.run(task);
+					return;
+				}
+				/*
+				 * a virtual thread waiting for its turn is cheap
+				 */
+				this.runPermits.acquireUninterruptibly();
+				try {
+					this.run(task);
+				} finally {
+					this.runPermits.release();
+				}
+			});
+			return true;
+		} catch (final RejectedExecutionException e) {
+			// executor is shut down
+			this.capacity.release();
+			this.nbrRejected.incrementAndGet();
+			return false;
+		}
+	}
+
+	private void run(final Runnable task) {
+		try {
+			task.run();
+		} finally {
+			this.capacity.release();
+		}
+	}
+
+	/**
+	 *
+	 * @return milliseconds after which an async request is to be timed out
+	 */
+	public long getTimeout() {
+		return this.timeout;
+	}
+
+	/**
+	 *
+	 * @return number of requests rejected so far because of lack of capacity
+	 */
+	public long getNbrRejected() {
+		return this.nbrRejected.get();
+	}
+
+	/**
+	 * stop accepting requests. Requests already accepted are completed
+	 */
+	public void shutdown() {
+		this.executor.shutdown();
+	}
+
+	/*
+	 * virtual threads are available from Java 21. We are compiled for an older
+	 * version, and hence the reflection
+	 */
+	private static ExecutorService newVirtualThreadExecutor(final int nbrThreads) {
+		try {
+			final Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			final ExecutorService ex = (ExecutorService) method.invoke(null);
+			logger.info("Services will run on virtual threads with a max of {} concurrent services", nbrThreads);
+			return ex;
+		} catch (final Exception e) {
+			logger.warn("Virtual threads are not supported by this JDK. Platform threads are used instead");
+			return null;
+		}
+	}
+
+	private static class ServiceThreadFactory implements ThreadFactory {
+		private final AtomicInteger nbr = new AtomicInteger();
+
+		ServiceThreadFactory() {
+			//
+		}
+
+		@Override
+		public Thread newThread(final Runnable r) {
+			final Thread t = new Thread(r, "service-" + this.nbr.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
@@ -43,16 +43,45 @@ import org.simplity.fm.core.app.IApp;
  * @author simplity.org
  *
  */
-@WebServlet(value = {"/a"})
+@WebServlet(value = {"/a"}, asyncSupported = true)
 public class Servlet extends HttpServlet {
 
 	private static final long serialVersionUID = 1L;
 	protected static final int STATUS_METHOD_NOT_ALLOWED = 405;
 
 	private final HttpAgent agent;
+	/*
+	 * null if requests are to be served on the container thread
+	 */
+	private final ServiceExecutor executor;
 
 	Servlet(IApp app, IRestAdapter adapter) {
 		this.agent = new HttpAgent(app, adapter);
+		this.executor = null;
+	}
+
+	/**
+	 *
+	 * @param app
+	 * @param adapter    REST adapter, or null if REST paths are not used
+	 * @param compressor null if responses are not to be compressed
+	 */
+	public Servlet(IApp app, IRestAdapter adapter, ResponseCompressor compressor) {
+		this(app, adapter, compressor, null);
+	}
+
+	/**
+	 *
+	 * @param app
+	 * @param adapter    REST adapter, or null if REST paths are not used
+	 * @param compressor null if responses are not to be compressed
+	 * @param executor   services are run asynchronously on this executor,
+	 *                   releasing the container threads. null to run them on
+	 *                   the container threads
+	 */
+	public Servlet(IApp app, IRestAdapter adapter, ResponseCompressor compressor, ServiceExecutor executor) {
+		this.agent = new HttpAgent(app, adapter, compressor);
+		this.executor = executor;
 	}
 
 	/**
@@ -101,13 +130,31 @@ public class Servlet extends HttpServlet {
 	protected void doPost(final HttpServletRequest req,
 			final HttpServletResponse resp)
 			throws ServletException, IOException {
-		this.agent.serve(req, resp);
+		if (this.executor == null) {
+			this.agent.serve(req, resp);
+		} else {
+			this.agent.serveAsync(req, resp, this.executor);
+		}
 	}
 
 	@Override
 	protected void doGet(final HttpServletRequest req,
 			final HttpServletResponse resp)
 			throws ServletException, IOException {
-		resp.setStatus(STATUS_METHOD_NOT_ALLOWED);
+		/*
+		 * the only GETs we entertain are to watch the progress of a job, and to
+		 * download its response
+		 */
+		if (this.agent.isProgressRequest(req)) {
+			this.agent.watchProgress(req, resp);
+		} else {
+			this.agent.download(req, resp);
+		}
+	}
+
+	@Override
+	public void destroy() {
+		this.agent.shutdown();
+		super.destroy();
 	}
 }
@@ -0,0 +1,74 @@
+package org.simplity.fm.http;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+import java.lang.reflect.Proxy;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.jupiter.api.Test;
+import org.simplity.fm.core.json.JsonUtil;
+
+/**
+ *
+ * @author simplity.org
+ *
+ */
+class HttpAgentTest {
+	private static final String PATHS = "{\"basePath\": \"/app/\", \"paths\": {\"orders\": {\"get\": \"getOrders\"}}}";
+
+	@Test
+	void testProgressRequest() {
+		HttpAgent agent = new HttpAgent(null, null, null);
+		assertTrue(agent.isProgressRequest(newRequest("/a", "jobId=j1&since=3", null)));
+		assertTrue(agent.isProgressRequest(newRequest("/a", "jobId=j1", "text/event-stream")));
+		assertFalse(agent.isProgressRequest(newRequest("/a", "jobId=j1", null)), "download of the output");
+		assertFalse(agent.isProgressRequest(newRequest("/a", "since=3", null)), "no job to watch");
+		assertFalse(agent.isProgressRequest(newRequest("/a", null, "text/event-stream")));
+	}
+
+	@Test
+	void testRestPathIsNotProgress() {
+		IRestAdapter adapter = RestAdapter.fromInputData(JsonUtil.newInputData(new StringReader(PATHS)));
+		HttpAgent agent = new HttpAgent(null, adapter, null);
+		assertFalse(agent.isProgressRequest(newRequest("/app/orders", "since=3", null)));
+		assertFalse(agent.isProgressRequest(newRequest("/app/orders", "jobId=j1&since=3", null)),
+				"a path mapped to a service is served by it");
+		assertTrue(agent.isProgressRequest(newRequest("/app/jobs", "jobId=j1&since=3", null)));
+	}
+
+	@Test
+	void testDownloadRequest() {
+		IRestAdapter adapter = RestAdapter.fromInputData(JsonUtil.newInputData(new StringReader(PATHS)));
+		HttpAgent agent = new HttpAgent(null, adapter, null);
+		assertTrue(agent.isDownloadRequest(newRequest("/app/jobs", "jobId=j1&sessionId=s1", null)));
+		assertTrue(agent.isDownloadRequest(newRequest("/app/jobs", "raw&jobId=j1", null)),
+				"a parameter without a value does not take the value of the next one");
+		assertFalse(agent.isDownloadRequest(newRequest("/app/jobs", "jobId&since=3", null)));
+		assertFalse(agent.isDownloadRequest(newRequest("/app/jobs", "jobId=j1&since=3", null)), "progress of the job");
+		assertFalse(agent.isDownloadRequest(newRequest("/app/jobs", "jobId=j1", "text/event-stream")));
+		assertFalse(agent.isDownloadRequest(newRequest("/app/jobs", "sessionId=s1", null)), "no job to download");
+		assertFalse(agent.isDownloadRequest(newRequest("/app/orders", "jobId=j1", null)),
+				"a path mapped to a service is served by it");
+	}
+
+	private static HttpServletRequest newRequest(String path, String query, String accept) {
+		return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(),
+				new Class<?>[] { HttpServletRequest.class }, (proxy, method, args) -> {
+					switch (method.getName()) {
+					case "getPathInfo":
+						return path;
+					case "getQueryString":
+						return query;
+					case "getMethod":
+						return "GET";
+					case "getHeader":
+						return "Accept".equals(args[0]) ? accept : null;
+					default:
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+}
@@ -0,0 +1,196 @@
+package org.simplity.fm.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.simplity.fm.core.job.IJobHandle;
+import org.simplity.fm.core.job.IJobProgressReporter;
+import org.simplity.fm.core.job.JobStatus;
+import org.simplity.fm.core.job.internal.JobProgress;
+import org.simplity.fm.core.json.JsonUtil;
+import org.simplity.fm.core.service.IInputData;
+
+/**
+ *
+ * @author simplity.org
+ *
+ */
+class JobProgressBroadcasterTest {
+
+	@Test
+	void testEventsAreCoalesced() {
+		JobProgressBroadcaster broadcaster = new JobProgressBroadcaster(1000);
+		TestJob job = new TestJob("j1");
+		TestWatcher first = new TestWatcher(-1, Long.MAX_VALUE);
+		TestWatcher second = new TestWatcher(-1, Long.MAX_VALUE);
+		broadcaster.watch(job, first);
+		broadcaster.watch(job, second);
+		assertEquals(1, broadcaster.getNbrJobsWatched());
+
+		broadcaster.tick(0);
+		assertEquals(1, first.events.size(), "current progress is sent to a new watcher");
+		assertEquals(1, second.events.size());
+
+		broadcaster.tick(1);
+		assertEquals(1, first.events.size(), "nothing is sent if there is no change");
+
+		job.progress.setPercentageCompleted(10);
+		job.progress.setPercentageCompleted(20);
+		job.progress.setProgressCount(200);
+		broadcaster.tick(2);
+		assertEquals(2, first.events.size(), "changes between ticks are sent as one event");
+		IInputData data = JsonUtil.newInputData(new StringReader(first.events.get(1)));
+		assertEquals("20", data.getString("percentCompleted"));
+		assertEquals("200", data.getString("progressCount"));
+
+		second.ready = false;
+		job.progress.setPercentageCompleted(30);
+		broadcaster.tick(3);
+		job.progress.setPercentageCompleted(40);
+		second.ready = true;
+		broadcaster.tick(4);
+		assertEquals(4, first.events.size());
+		assertEquals(3, second.events.size(), "a watcher that is not ready gets only the latest");
+
+		job.status = JobStatus.Completed;
+		broadcaster.tick(5);
+		assertTrue(first.closed && first.gotFinal);
+		assertTrue(second.closed && second.gotFinal);
+		assertEquals(0, broadcaster.getNbrJobsWatched(), "job is not watched once it ends");
+	}
+
+	@Test
+	void testLongPoll() {
+		JobProgressBroadcaster broadcaster = new JobProgressBroadcaster(1000);
+		TestJob job = new TestJob("j2");
+		long version = JobProgressBroadcaster.getVersion(job);
+		TestWatcher poller = new TestWatcher(version, 100);
+		poller.singleShot = true;
+		broadcaster.watch(job, poller);
+
+		broadcaster.tick(10);
+		assertEquals(0, poller.events.size(), "poller already has this version");
+
+		job.status = JobStatus.Running;
+		broadcaster.tick(20);
+		assertEquals(1, poller.events.size(), "change in status is a change in version");
+		assertTrue(poller.closed);
+		assertEquals(0, broadcaster.getNbrJobsWatched());
+
+		TestWatcher expiring = new TestWatcher(JobProgressBroadcaster.getVersion(job), 100);
+		broadcaster.watch(job, expiring);
+		broadcaster.tick(50);
+		assertEquals(0, expiring.events.size());
+		broadcaster.tick(100);
+		assertEquals(1, expiring.events.size(), "poller gets the progress when it expires");
+		assertTrue(expiring.closed);
+	}
+
+	@Test
+	void testShutdown() {
+		JobProgressBroadcaster broadcaster = new JobProgressBroadcaster(1000);
+		TestWatcher watcher = new TestWatcher(-1, Long.MAX_VALUE);
+		broadcaster.watch(new TestJob("j3"), watcher);
+		broadcaster.shutdown();
+		assertTrue(watcher.closed, "watchers are released on shutdown");
+		assertEquals(0, broadcaster.getNbrJobsWatched());
+
+		TestWatcher late = new TestWatcher(-1, Long.MAX_VALUE);
+		broadcaster.watch(new TestJob("j4"), late);
+		assertTrue(late.closed, "a watcher that arrives after shutdown is released right away");
+	}
+
+	private static class TestWatcher extends JobProgressBroadcaster.Watcher {
+		final List<String> events = new ArrayList<>();
+		boolean ready = true;
+		boolean singleShot;
+		boolean closed;
+		boolean gotFinal;
+
+		TestWatcher(long knownVersion, long expiresAt) {
+			super(knownVersion, expiresAt);
+		}
+
+		@Override
+		boolean isGone() {
+			return this.closed || (this.singleShot && this.events.size() > 0);
+		}
+
+		@Override
+		boolean send(String json, boolean isFinal) {
+			if (!this.ready) {
+				return false;
+			}
+			this.events.add(json);
+			this.gotFinal = isFinal;
+			return true;
+		}
+
+		@Override
+		void heartbeat() {
+			//
+		}
+
+		@Override
+		void close() {
+			this.closed = true;
+		}
+	}
+
+	private static class TestJob implements IJobHandle {
+		final String id;
+		final JobProgress progress = new JobProgress();
+		volatile JobStatus status = JobStatus.Waiting;
+
+		TestJob(String id) {
+			this.id = id;
+		}
+
+		@Override
+		public String getId() {
+			return this.id;
+		}
+
+		@Override
+		public JobStatus getStatus() {
+			return this.status;
+		}
+
+		@Override
+		public IJobProgressReporter getProgress() {
+			return this.progress;
+		}
+
+		@Override
+		public boolean cancelJob(boolean abortIfRunning) {
+			return false;
+		}
+
+		@Override
+		public boolean writeOutput(Writer writer) {
+			return false;
+		}
+
+		@Override
+		public boolean copyOutput(Writer writer) {
+			return false;
+		}
+
+		@Override
+		public boolean transferOutput(WritableByteChannel channel) {
+			return false;
+		}
+
+		@Override
+		public boolean start() {
+			return false;
+		}
+	}
+}
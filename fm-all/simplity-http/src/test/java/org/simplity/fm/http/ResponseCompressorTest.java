@@ -0,0 +1,78 @@
+package org.simplity.fm.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author simplity.org
+ *
+ */
+class ResponseCompressorTest {
+	private static final String TEXT = "{\"list\":[{\"id\":1,\"name\":\"a\"},{\"id\":2,\"name\":\"b\"}]}";
+
+	@Test
+	void testGzipRoundTrip() throws IOException {
+		ResponseCompressor compressor = new ResponseCompressor();
+		/*
+		 * second round uses the pooled deflater
+		 */
+		for (int i = 0; i < 2; i++) {
+			byte[] bytes = compress(compressor, ResponseCompressor.GZIP);
+			assertEquals(TEXT, read(new GZIPInputStream(new ByteArrayInputStream(bytes))));
+		}
+	}
+
+	@Test
+	void testDeflateRoundTrip() throws IOException {
+		ResponseCompressor compressor = new ResponseCompressor();
+		for (int i = 0; i < 2; i++) {
+			byte[] bytes = compress(compressor, ResponseCompressor.DEFLATE);
+			assertEquals(TEXT, read(new InflaterInputStream(new ByteArrayInputStream(bytes))));
+		}
+	}
+
+	@Test
+	void testSelectEncoding() {
+		assertNull(ResponseCompressor.selectEncoding((String) null));
+		assertEquals(ResponseCompressor.GZIP, ResponseCompressor.selectEncoding("deflate, gzip"));
+		assertEquals(ResponseCompressor.GZIP, ResponseCompressor.selectEncoding("*"));
+		assertEquals(ResponseCompressor.DEFLATE, ResponseCompressor.selectEncoding("deflate"));
+		assertEquals(ResponseCompressor.DEFLATE, ResponseCompressor.selectEncoding("gzip;q=0, *"));
+		assertEquals(ResponseCompressor.DEFLATE, ResponseCompressor.selectEncoding("*, gzip; q=0.0"));
+		assertNull(ResponseCompressor.selectEncoding("gzip;q=0, deflate;q=0, *"));
+		assertNull(ResponseCompressor.selectEncoding("br, *;q=0"));
+	}
+
+	private static byte[] compress(ResponseCompressor compressor, String encoding) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (OutputStream out = compressor.wrap(bytes, encoding)) {
+			byte[] b = TEXT.getBytes(StandardCharsets.UTF_8);
+			out.write(b, 0, 10);
+			out.flush();
+			out.write(b, 10, b.length - 10);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static String read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[256];
+		int n;
+		while ((n = in.read(buf)) != -1) {
+			out.write(buf, 0, n);
+		}
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,62 @@
+package org.simplity.fm.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.StringReader;
+
+import org.junit.jupiter.api.Test;
+import org.simplity.fm.core.json.JsonUtil;
+import org.simplity.fm.core.service.IInputData;
+
+/**
+ *
+ * @author simplity.org
+ *
+ */
+class RestAdapterTest {
+	private static final String PATHS = "{\"basePath\": \"/app/\", \"serviceNamePrefix\": \"m.\", \"paths\": {"
+			+ "\"a\": {\"*\": \"defaultService\", \"get\": \"gets\", \"put\": \"puts\"}," //
+			+ "\"a/b/\": {\"get\": \"getb\"}," //
+			+ "\"a/c/{f1}\": {\"*\": \"c\"}," //
+			+ "\"a/c/{f1}/d/{f2}\": {\"*\": \"d\"}}}";
+
+	private final RestAdapter adapter = RestAdapter.fromInputData(JsonUtil.newInputData(new StringReader(PATHS)));
+
+	@Test
+	void testServiceForMethod() {
+		assertNotNull(this.adapter);
+		assertEquals("m.gets", this.adapter.parsePath("/app/a", "GET", null));
+		assertEquals("m.puts", this.adapter.parsePath("app/a/", "put", null));
+		assertEquals("m.defaultService", this.adapter.parsePath("/app/a", "post", null));
+		assertEquals("m.getb", this.adapter.parsePath("/app/a/b", "get", null));
+		assertNull(this.adapter.parsePath("/app/a/b", "put", null));
+	}
+
+	@Test
+	void testInvalidPaths() {
+		assertNull(this.adapter.parsePath("/app/a/d", "get", null));
+		assertNull(this.adapter.parsePath("/app/b", "get", null));
+		assertNull(this.adapter.parsePath("/app/ab", "get", null));
+		assertNull(this.adapter.parsePath("/app/a/c", "get", null));
+		assertNull(this.adapter.parsePath("", "get", null));
+	}
+
+	@Test
+	void testPathFields() {
+		IInputData data = JsonUtil.newInputData();
+		assertEquals("m.c", this.adapter.parsePath("/app/a/c/v1/", "get", data));
+		assertEquals("v1", data.getString("f1"));
+
+		data = JsonUtil.newInputData();
+		assertEquals("m.d", this.adapter.parsePath("/app//a/c/v1/d/2", "get", data));
+		assertEquals("v1", data.getString("f1"));
+		assertEquals("2", data.getString("f2"));
+
+		/*
+		 * incomplete path
+		 */
+		assertNull(this.adapter.parsePath("/app/a/c/v1/d", "get", JsonUtil.newInputData()));
+	}
+}